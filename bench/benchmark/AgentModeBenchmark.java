@@ -0,0 +1,109 @@
+package benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+
+import javafx.scene.paint.Color;
+import army.Army;
+import engine.ActorAgents;
+import engine.BattleEngine;
+import util.BattleRandom;
+
+/**
+ * Runs the same battle on the partitioned fork/join engine and with every
+ * actor as an agent of its own (<i>ActorAgents</i>), and compares their
+ * throughput and their tick latency with the <i>Harness</i>: every iteration
+ * starts a new battle, untimed, and runs its first ticks, each tick timed on
+ * its own. The report gives the mean time of a tick and its p50, p99 and
+ * maximum. With <code>-Dengine.pinningMonitor=true -Dharness.forks=0</code>
+ * it also prints what the experimental carrier pinning monitor saw during the
+ * last iteration, when there is one.
+ * <p>
+ * The default is two armies of 50k actors each, which needs virtual threads
+ * (Java 21 or later). On older runtimes the agents fall back to platform
+ * threads and the armies are cut to {@value #PLATFORM_ARMY_SIZE} actors each.
+ * <p>
+ * Runs headless:
+ * <code>java benchmark.AgentModeBenchmark [actors per army] [ticks]</code>
+ */
+public class AgentModeBenchmark
+{
+    private static final int DEFAULT_ARMY_SIZE = 50_000;
+    /** actors per army when agents only have platform threads, currently:{@value} */
+    private static final int PLATFORM_ARMY_SIZE = 1_000;
+    /** ticks of every iteration, currently:{@value} */
+    private static final int DEFAULT_TICKS = 120;
+    private static final long SEED = 42L;
+
+    public static void main(String[] args) throws InterruptedException
+    {
+	boolean virtual = ActorAgents.virtualThreads() != null;
+	int armySize = args.length > 0 ? Integer.parseInt(args[0]) : virtual ? DEFAULT_ARMY_SIZE : PLATFORM_ARMY_SIZE;
+	int ticks = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TICKS;
+	if (!virtual)
+	    System.out.println("no virtual threads on this runtime: agents run on platform threads");
+	Harness harness = new Harness(AgentModeBenchmark.class, args);
+	System.out.printf("%-34s %-24s %14s%n", "benchmark", "parameters", "time");
+	String parameters = String.format("actors=%d ticks=%d", 2 * armySize, ticks);
+	measure(harness, new Ticks("fork/join", armySize, ticks, null), parameters);
+	measure(harness, new Ticks(virtual ? "virtual" : "platform", armySize, ticks, ActorAgents.defaultThreads()),
+		parameters);
+	System.out.println("sink " + harness.getSink());
+    } // end main()
+
+    private static void measure(Harness harness, Ticks benchmark, String parameters) throws InterruptedException
+    {
+	harness.measure(benchmark, parameters);
+	if (benchmark.engine == null)
+	    return;
+	String pinning = benchmark.engine.getPinningReport();
+	if (pinning != null)
+	{
+	    Thread.sleep(2_000L); // pins reach the monitor through the flight recorder, a second or so late
+	    System.out.println("  carrier pinning: " + pinning);
+	}
+	benchmark.engine.close();
+    }
+
+    /**
+     * one operation is one tick of a battle started before the iteration
+     */
+    private static final class Ticks extends Harness.Benchmark
+    {
+	private final int armySize;
+	/** threads of the agents, or null for the fork/join engine */
+	private final ThreadFactory agentThreads;
+	/** battle of the current iteration, or null before the first */
+	private BattleEngine engine;
+
+	private Ticks(String name, int armySize, int ticks, ThreadFactory agentThreads)
+	{
+	    super(name, ticks, true);
+	    this.armySize = armySize;
+	    this.agentThreads = agentThreads;
+	}
+
+	@Override
+	protected void setUpIteration()
+	{
+	    if (this.engine != null)
+		this.engine.close();
+	    BattleRandom random = new BattleRandom(SEED);
+	    Army light = SimulationBenchmark.Mix.LIGHT.populate("Forces of Light", Color.AQUA, this.armySize, random);
+	    Army dark = SimulationBenchmark.Mix.DARK.populate("Forces of Darkness", Color.RED, this.armySize, random);
+	    light.setOpposingArmy(dark);
+	    dark.setOpposingArmy(light);
+	    this.engine = this.agentThreads == null
+		    ? new BattleEngine(light, dark, ForkJoinPool.commonPool(), random.split())
+		    : new BattleEngine(light, dark, this.agentThreads, random.split());
+	}
+
+	@Override
+	protected double run(int operations)
+	{
+	    for (int i = 0; i < operations; ++i)
+		this.engine.step(BattleEngine.TIME_STEP);
+	    return this.engine.getTickCount();
+	}
+    } // end class Ticks
+}
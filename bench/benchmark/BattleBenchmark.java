@@ -0,0 +1,46 @@
+package benchmark;
+
+import engine.BattleEngine;
+
+/**
+ * <i>BattleBenchmark</i> times whole headless battles with the <i>Harness</i>,
+ * one battle per iteration, as JMH's single-shot mode does: the armies and the
+ * engine are built before every iteration, untimed, and the one operation
+ * fights the battle until it is over or <i>maxSeconds</i> of simulated time
+ * have passed.
+ */
+abstract class BattleBenchmark extends Harness.Benchmark
+{
+    private final double maxSeconds;
+    private BattleEngine engine;
+
+    /**
+     * @param name name printed in the report
+     * @param maxSeconds simulated seconds after which a battle is abandoned
+     */
+    BattleBenchmark(String name, double maxSeconds)
+    {
+	super(name, 1, false);
+	this.maxSeconds = maxSeconds;
+    }
+
+    /**
+     * @return a battle that has not started yet, built the same way every time
+     */
+    protected abstract BattleEngine newBattle();
+
+    @Override
+    protected void setUpIteration()
+    {
+	this.engine = newBattle();
+    }
+
+    @Override
+    protected double run(int operations)
+    {
+	double seconds = 0.0;
+	for (int i = 0; i < operations; ++i)
+	    seconds += this.engine.run(this.maxSeconds);
+	return seconds;
+    }
+}
@@ -0,0 +1,170 @@
+package benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javafx.scene.paint.Color;
+import actor.Actor;
+import actor.ActorFactory;
+import army.Army;
+import army.BattlefieldFile;
+import util.BattleRandom;
+
+/**
+ * Saves and restores two armies of 500k actors each with the <i>Harness</i>,
+ * once with <i>BattlefieldFile</i> and once with Java serialization
+ * (<i>Army.serialize()</i>/<i>deserialize()</i>), one operation being both
+ * armies, and checks beforehand that the binary round trip gives back every
+ * attribute and trait.
+ * <p>
+ * Runs headless: <code>java benchmark.BattlefieldFileBenchmark [actors per army]</code>
+ */
+public class BattlefieldFileBenchmark
+{
+    private static final int DEFAULT_ARMY_SIZE = 500_000;
+
+    public static void main(String[] args) throws IOException
+    {
+	int armySize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ARMY_SIZE;
+	BattleRandom random = new BattleRandom(42L);
+	Army light = new Army("Forces of Light", Color.AQUA);
+	Army dark = new Army("Forces of Darkness", Color.RED);
+	light.setRandom(random.split());
+	dark.setRandom(random.split());
+	light.populate(ActorFactory.Type.HOBBIT, armySize / 2);
+	light.populate(ActorFactory.Type.WIZARD, armySize - armySize / 2);
+	dark.populate(ActorFactory.Type.ORC, armySize / 2);
+	dark.populate(ActorFactory.Type.NAZGUL, armySize - armySize / 2);
+	light.getCollectionActors().get(0).setName("Frodo");
+
+	Path binary = Files.createTempFile("battlefield", ".bin");
+	Path serialized = Files.createTempFile("battlefield", ".ser");
+	binary.toFile().deleteOnExit(); // forks exit in the middle of main()
+	serialized.toFile().deleteOnExit();
+	try
+	{
+	    Army restoredLight = new Army("", Color.BLACK);
+	    Army restoredDark = new Army("", Color.BLACK);
+	    BattlefieldFile.write(binary, light, dark);
+	    BattlefieldFile.read(binary, restoredLight, restoredDark);
+	    check(light, restoredLight);
+	    check(dark, restoredDark);
+	    serialize(serialized, light, dark);
+
+	    Harness harness = new Harness(BattlefieldFileBenchmark.class, args);
+	    String parameters = "actors=" + 2 * armySize;
+	    System.out.printf("%-34s %-24s %14s%n", "benchmark", "parameters", "time");
+	    harness.measure(new Harness.Benchmark("BattlefieldFile.write")
+	    {
+		@Override
+		protected double run(int operations)
+		{
+		    try
+		    {
+			for (int i = 0; i < operations; ++i)
+			    BattlefieldFile.write(binary, light, dark);
+			return Files.size(binary);
+		    } catch (IOException e)
+		    {
+			throw new UncheckedIOException(e);
+		    }
+		}
+	    }, parameters);
+	    harness.measure(new Harness.Benchmark("BattlefieldFile.read")
+	    {
+		@Override
+		protected double run(int operations)
+		{
+		    try
+		    {
+			for (int i = 0; i < operations; ++i)
+			    BattlefieldFile.read(binary, restoredLight, restoredDark);
+			return restoredLight.size() + restoredDark.size();
+		    } catch (IOException e)
+		    {
+			throw new UncheckedIOException(e);
+		    }
+		}
+	    }, parameters);
+	    harness.measure(new Harness.Benchmark("Army.serialize")
+	    {
+		@Override
+		protected double run(int operations)
+		{
+		    for (int i = 0; i < operations; ++i)
+			serialize(serialized, light, dark);
+		    return serialized.toFile().length();
+		}
+	    }, parameters);
+	    harness.measure(new Harness.Benchmark("Army.deserialize")
+	    {
+		@Override
+		protected double run(int operations)
+		{
+		    for (int i = 0; i < operations; ++i)
+		    {
+			try (ObjectInputStream in = new ObjectInputStream(
+				new BufferedInputStream(Files.newInputStream(serialized))))
+			{
+			    restoredLight.deserialize(in);
+			    restoredDark.deserialize(in);
+			} catch (IOException e)
+			{
+			    throw new UncheckedIOException(e);
+			} catch (ClassNotFoundException e)
+			{
+			    throw new IllegalStateException(e);
+			}
+		    }
+		    return restoredLight.size() + restoredDark.size();
+		}
+	    }, parameters);
+	    System.out.println("sink " + harness.getSink());
+	    System.out.printf("%n%-22s %12s%n%-22s %12d%n%-22s %12d%n", "format", "file bytes", "BattlefieldFile",
+		    Files.size(binary), "Java serialization", Files.size(serialized));
+	} finally
+	{
+	    Files.deleteIfExists(binary);
+	    Files.deleteIfExists(serialized);
+	}
+    } // end main()
+
+    private static void serialize(Path path, Army light, Army dark)
+    {
+	try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(path))))
+	{
+	    light.serialize(out);
+	    dark.serialize(out);
+	} catch (IOException e)
+	{
+	    throw new UncheckedIOException(e);
+	}
+    }
+
+    /**
+     * compares the textual form of every actor, which covers the name, the
+     * attributes and the subclass traits, plus the location
+     */
+    private static void check(Army original, Army restored)
+    {
+	if (original.size() != restored.size() || !original.getName().equals(restored.getName()))
+	    throw new IllegalStateException("army " + original.getName() + " was not restored");
+	for (int i = 0; i < original.size(); ++i)
+	{
+	    Actor expected = original.getCollectionActors().get(i);
+	    Actor actual = restored.getCollectionActors().get(i);
+	    String expectedText = expected.hasDefaultName() ? expected.toString().replace(expected.getName(), "")
+		    : expected.toString();
+	    String actualText = actual.hasDefaultName() ? actual.toString().replace(actual.getName(), "")
+		    : actual.toString();
+	    if (!expectedText.equals(actualText) || expected.getX() != actual.getX() || expected.getY() != actual.getY())
+		throw new IllegalStateException("actor " + i + " restored as " + actual + " instead of " + expected);
+	}
+    }
+}
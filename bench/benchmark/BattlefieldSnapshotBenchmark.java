@@ -0,0 +1,180 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javafx.scene.paint.Color;
+import actor.Actor;
+import actor.ActorFactory;
+import army.Army;
+import army.BattlefieldSnapshot;
+import engine.BattleEngine;
+import util.BattleRandom;
+
+/**
+ * Measures snapshots of two armies of 1M actors each, spread over the
+ * battlefield, with the <i>Harness</i>:
+ * <ul>
+ * <li><i>write</i>: one operation writes the whole snapshot</li>
+ * <li><i>open</i>: one operation maps the snapshot and closes it again</li>
+ * <li><i>materializeWithin</i>: one operation attaches a fresh army to the
+ * first section and materializes only the actors inside a small window, the
+ * way a viewport would</li>
+ * </ul>
+ * Then prints how much heap the opened snapshot costs, and checks that an
+ * actor comes back from it as it was written.
+ * <p>
+ * Runs headless: <code>java benchmark.BattlefieldSnapshotBenchmark [actors per army]</code>
+ */
+public class BattlefieldSnapshotBenchmark
+{
+    private static final int DEFAULT_ARMY_SIZE = 1_000_000;
+    /** side of the window that is materialized */
+    private static final double WINDOW = 100.0;
+
+    /**
+     * the actor in the middle of the first army as it was written, and the
+     * window around it
+     */
+    private static final class Probe
+    {
+	private final String text;
+	private final double windowX;
+	private final double windowY;
+
+	private Probe(Actor actor)
+	{
+	    this.text = actor.toString().replace(actor.getName(), "");
+	    this.windowX = actor.getX() - WINDOW / 2.0;
+	    this.windowY = actor.getY() - WINDOW / 2.0;
+	}
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+	int armySize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ARMY_SIZE;
+	Harness harness = new Harness(BattlefieldSnapshotBenchmark.class, args);
+	String parameters = "actors=" + 2 * armySize;
+	Path path = Files.createTempFile("battlefield", ".snapshot");
+	path.toFile().deleteOnExit(); // forks exit in the middle of main()
+	try
+	{
+	    System.out.printf("%-34s %-24s %14s%n", "benchmark", "parameters", "time");
+	    // the armies only live in measureWrite(), so the heap measured below is the snapshot's
+	    Probe probe = measureWrite(harness, path, armySize, parameters);
+	    harness.measure(new Harness.Benchmark("open")
+	    {
+		@Override
+		protected double run(int operations)
+		{
+		    double sum = 0.0;
+		    for (int i = 0; i < operations; ++i)
+		    {
+			try (BattlefieldSnapshot snapshot = BattlefieldSnapshot.open(path))
+			{
+			    sum += snapshot.getArmy(0).size();
+			} catch (IOException e)
+			{
+			    throw new UncheckedIOException(e);
+			}
+		    }
+		    return sum;
+		}
+	    }, parameters);
+	    try (BattlefieldSnapshot snapshot = BattlefieldSnapshot.open(path))
+	    {
+		BattlefieldSnapshot.Section section = snapshot.getArmy(0);
+		Army restored = new Army("", Color.BLACK);
+		harness.measure(new Harness.Benchmark("materializeWithin")
+		{
+		    @Override
+		    protected double run(int operations)
+		    {
+			double sum = 0.0;
+			for (int i = 0; i < operations; ++i)
+			{
+			    section.attach(restored);
+			    sum += section.materializeWithin(probe.windowX, probe.windowY, probe.windowX + WINDOW,
+				    probe.windowY + WINDOW);
+			}
+			return sum;
+		    }
+		}, parameters);
+	    }
+	    System.out.println("sink " + harness.getSink());
+
+	    long heapBefore = usedHeap();
+	    try (BattlefieldSnapshot snapshot = BattlefieldSnapshot.open(path))
+	    {
+		BattlefieldSnapshot.Section section = snapshot.getArmy(0);
+		section.attach(new Army("", Color.BLACK));
+		int inside = section.materializeWithin(probe.windowX, probe.windowY, probe.windowX + WINDOW,
+			probe.windowY + WINDOW);
+		System.out.printf("%nwindow holds %d of %d actors%n", inside, section.size());
+		System.out.printf("heap after opening:  %8.1f MB more%n", (usedHeap() - heapBefore) / 1.0e6);
+
+		Actor actual = section.materialize(armySize / 2);
+		String actualText = actual.toString().replace(actual.getName(), "");
+		if (!probe.text.equals(actualText))
+		    throw new IllegalStateException("snapshot gave " + actualText + " instead of " + probe.text);
+	    }
+	} finally
+	{
+	    Files.deleteIfExists(path);
+	}
+    } // end main()
+
+    /**
+     * builds two armies spread over the battlefield, writes them to
+     * <i>path</i> and measures writing them again
+     *
+     * @return the actor in the middle of the first army, as written
+     */
+    private static Probe measureWrite(Harness harness, Path path, int armySize, String parameters)
+	    throws IOException
+    {
+	BattleRandom random = new BattleRandom(42L);
+	Army light = new Army("Forces of Light", Color.AQUA);
+	Army dark = new Army("Forces of Darkness", Color.RED);
+	light.setRandom(random.split());
+	dark.setRandom(random.split());
+	light.populate(ActorFactory.Type.HOBBIT, armySize / 2);
+	light.populate(ActorFactory.Type.WIZARD, armySize - armySize / 2);
+	dark.populate(ActorFactory.Type.ORC, armySize / 2);
+	dark.populate(ActorFactory.Type.NAZGUL, armySize - armySize / 2);
+	for (Army army : new Army[] { light, dark })
+	{ // populate() clusters each army; spread it so the window holds only a part
+	    for (Actor actor : army.getCollectionActors())
+		actor.setLocation(random.nextDouble() * BattleEngine.BATTLEFIELD_WIDTH,
+			random.nextDouble() * BattleEngine.BATTLEFIELD_HEIGHT);
+	}
+	BattlefieldSnapshot.write(path, light, dark);
+	harness.measure(new Harness.Benchmark("write")
+	{
+	    @Override
+	    protected double run(int operations)
+	    {
+		try
+		{
+		    for (int i = 0; i < operations; ++i)
+			BattlefieldSnapshot.write(path, light, dark);
+		    return Files.size(path);
+		} catch (IOException e)
+		{
+		    throw new UncheckedIOException(e);
+		}
+	    }
+	}, parameters);
+	return new Probe(light.getCollectionActors().get(armySize / 2));
+    } // end measureWrite()
+
+    private static long usedHeap()
+    {
+	Runtime runtime = Runtime.getRuntime();
+	for (int i = 0; i < 3; ++i)
+	    System.gc();
+	return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
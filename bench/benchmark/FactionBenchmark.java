@@ -0,0 +1,155 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import javafx.scene.paint.Color;
+import actor.Actor;
+import army.Army;
+import army.Factions;
+import engine.BattleEngine;
+import util.BattleRandom;
+
+/**
+ * Measures battles of more than two factions, with the same number of actors
+ * spread over 2 to 16 armies:
+ * <ul>
+ * <li><i>sharedGrid</i>: <i>Factions.findNearestEnemy()</i>, one search of the
+ * grid the factions share, passing over cells that hold no enemy</li>
+ * <li><i>perArmy</i>: the nearest of <i>Army.findNearestActor()</i> over every
+ * hostile army, one search of the grid per army, as an index that could not
+ * search several factions at once would do</li>
+ * <li>a headless battle of every faction against every other, and one of two
+ * alliances, reporting ticks per second and how it ended</li>
+ * </ul>
+ * Runs headless: <code>java benchmark.FactionBenchmark [total actors]</code>
+ */
+public class FactionBenchmark
+{
+    private static final int[] FACTION_COUNTS = { 2, 4, 8, 16 };
+    private static final int DEFAULT_TOTAL_ACTORS = 16_000;
+    /** simulated seconds after which a battle is abandoned, currently:{@value} */
+    private static final double MAX_SECONDS = 60.0;
+    private static final long SEED = 42L;
+    /** lookups of each kind run before any is measured, currently:{@value} */
+    private static final int WARMUP_OPERATIONS = 200_000;
+
+    public static void main(String[] args)
+    {
+	int totalActors = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TOTAL_ACTORS;
+	Harness harness = new Harness(FactionBenchmark.class, args);
+	System.out.printf("%-34s %-24s %14s%n", "benchmark", "parameters", "time");
+	for (int count : FACTION_COUNTS)
+	{
+	    Factions factions = roster(count, totalActors / count, new BattleRandom(SEED));
+	    Actor[] seekers = factions.get(0).getCollectionActors().toArray(new Actor[0]);
+	    String parameters = String.format("factions=%d actors=%d", count, totalActors);
+	    if (count == FACTION_COUNTS[0])
+	    { // with harness.forks=0 the first lookup measured would pay for compiling what both share
+		sharedGrid(factions, seekers).run(WARMUP_OPERATIONS);
+		perArmy(factions, seekers).run(WARMUP_OPERATIONS);
+	    }
+	    harness.measure(sharedGrid(factions, seekers), parameters);
+	    harness.measure(perArmy(factions, seekers), parameters);
+	}
+	System.out.println("sink " + harness.getSink());
+	System.out.printf("%n%8s %-10s %8s %10s %10s %10s %s%n", "factions", "sides", "ticks", "ticks/s", "seconds",
+		"survivors", "winner");
+	for (int count : FACTION_COUNTS)
+	{
+	    battle(count, totalActors, false);
+	    if (count > 2)
+		battle(count, totalActors, true);
+	}
+    } // end main()
+
+    /**
+     * builds a roster of <i>count</i> headless armies in which every army fights
+     * every other one
+     */
+    private static Factions roster(int count, int armySize, BattleRandom random)
+    {
+	Army[] armies = new Army[count];
+	for (int i = 0; i < count; ++i)
+	    armies[i] = SimulationBenchmark.Mix.ALL.populate("Faction " + (i + 1),
+		    Color.hsb(360.0 * i / count, 0.8, 1.0), armySize, random);
+	return new Factions(armies);
+    }
+
+    private static Harness.Benchmark sharedGrid(Factions factions, Actor[] seekers)
+    {
+	return new Harness.Benchmark("sharedGrid")
+	{
+	    @Override
+	    protected double run(int operations)
+	    {
+		int found = 0;
+		for (int i = 0; i < operations; ++i)
+		    if (factions.findNearestEnemy(seekers[i % seekers.length]) != null)
+			++found;
+		return found;
+	    }
+	};
+    }
+
+    private static Harness.Benchmark perArmy(Factions factions, Actor[] seekers)
+    {
+	ArrayList<Army> hostile = new ArrayList<>();
+	for (Army army : factions.getArmies())
+	{
+	    if (factions.isHostile(factions.get(0), army))
+		hostile.add(army);
+	}
+	return new Harness.Benchmark("perArmy")
+	{
+	    @Override
+	    protected double run(int operations)
+	    {
+		int found = 0;
+		for (int i = 0; i < operations; ++i)
+		{
+		    Actor seeker = seekers[i % seekers.length];
+		    Actor nearest = null;
+		    double distance = Double.MAX_VALUE;
+		    for (int j = 0; j < hostile.size(); ++j)
+		    {
+			Actor candidate = hostile.get(j).findNearestActor(seeker);
+			if (candidate != null && seeker.distanceTo(candidate) < distance)
+			{
+			    nearest = candidate;
+			    distance = seeker.distanceTo(candidate);
+			}
+		    }
+		    if (nearest != null)
+			++found;
+		}
+		return found;
+	    }
+	};
+    }
+
+    /**
+     * fights one battle and prints one line of the report
+     *
+     * @param alliances true to have the armies at even positions fight those at
+     * odd positions, false for every army against every other
+     */
+    private static void battle(int count, int totalActors, boolean alliances)
+    {
+	BattleRandom random = new BattleRandom(SEED);
+	Factions factions = roster(count, totalActors / count, random);
+	for (int i = 0; i < count; ++i)
+	{
+	    for (int j = i + 1; j < count; ++j)
+		factions.setAllied(factions.get(i), factions.get(j), alliances && i % 2 == j % 2);
+	}
+	BattleEngine engine = new BattleEngine(factions, ForkJoinPool.commonPool(), random.split());
+	long start = System.nanoTime();
+	double seconds = engine.run(MAX_SECONDS);
+	long nanos = System.nanoTime() - start;
+	Army winner = engine.getWinner();
+	System.out.printf("%8d %-10s %8d %10.1f %10.1f %10d %s%n", count, alliances ? "alliances" : "all", engine
+		.getTickCount(), engine.getTickCount() / (nanos / 1.0e9), seconds, factions.getSurvivors().size(),
+		winner != null ? winner.getName() : engine.isBattleOver() ? "alliance" : "-");
+    } // end battle()
+}
@@ -0,0 +1,100 @@
+package benchmark;
+
+import java.util.Random;
+
+import javafx.scene.paint.Color;
+import actor.Actor;
+import actor.ActorFactory;
+import army.Army;
+import engine.BattleEngine;
+
+/**
+ * Measures <i>Army.findNearestActor()</i> (spatial grid) against
+ * <i>Army.findNearestActorByScan()</i> (the original linear scan) for armies of
+ * 1k, 10k and 100k actors spread evenly over the battlefield. Both searches are
+ * also checked to agree on the distance to the nearest opponent.
+ * <p>
+ * Runs headless: <code>java benchmark.FindNearestActorBenchmark</code>
+ */
+public class FindNearestActorBenchmark
+{
+    private static final int[] ARMY_SIZES = { 1_000, 10_000, 100_000 };
+    private static final int QUERIES = 2_000;
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args)
+    {
+	Random random = new Random(42L);
+	System.out.printf("%10s %14s %14s %10s%n", "actors", "scan ns/query", "grid ns/query", "speed-up");
+	for (int armySize : ARMY_SIZES)
+	{
+	    Army opponents = new Army("Opponents", Color.RED);
+	    Army seekers = new Army("Seekers", Color.AQUA);
+	    opponents.populate(ActorFactory.Type.ORC, armySize);
+	    seekers.populate(ActorFactory.Type.HOBBIT, QUERIES);
+	    scatter(opponents, random);
+	    scatter(seekers, random);
+	    Actor[] queries = seekers.getCollectionActors().toArray(new Actor[0]);
+
+	    checkAgreement(opponents, queries);
+	    long scanNanos = 0L;
+	    long gridNanos = 0L;
+	    for (int round = 0; round <= WARMUP_ROUNDS; ++round)
+	    { // the last round is the measured one
+		scanNanos = timeScan(opponents, queries);
+		gridNanos = timeGrid(opponents, queries);
+	    }
+	    System.out.printf("%10d %14d %14d %9.1fx%n", armySize, scanNanos / queries.length,
+		    gridNanos / queries.length, (double) scanNanos / gridNanos);
+	}
+    } // end main()
+
+    private static void scatter(Army army, Random random)
+    {
+	for (Actor actor : army.getCollectionActors())
+	    actor.setLocation(random.nextDouble() * BattleEngine.BATTLEFIELD_WIDTH,
+		    random.nextDouble() * BattleEngine.BATTLEFIELD_HEIGHT);
+    }
+
+    private static long timeScan(Army army, Actor[] queries)
+    {
+	long start = System.nanoTime();
+	int found = 0;
+	for (Actor query : queries)
+	    if (army.findNearestActorByScan(query) != null)
+		++found;
+	consume(found);
+	return System.nanoTime() - start;
+    }
+
+    private static long timeGrid(Army army, Actor[] queries)
+    {
+	long start = System.nanoTime();
+	int found = 0;
+	for (Actor query : queries)
+	    if (army.findNearestActor(query) != null)
+		++found;
+	consume(found);
+	return System.nanoTime() - start;
+    }
+
+    private static void checkAgreement(Army army, Actor[] queries)
+    {
+	for (Actor query : queries)
+	{
+	    Actor byScan = army.findNearestActorByScan(query);
+	    Actor byGrid = army.findNearestActor(query);
+	    double scanDistance = byScan == null ? -1.0 : query.distanceTo(byScan);
+	    double gridDistance = byGrid == null ? -1.0 : query.distanceTo(byGrid);
+	    if (scanDistance != gridDistance)
+		throw new IllegalStateException("grid found " + gridDistance + " but scan found " + scanDistance);
+	}
+    }
+
+    private static int sink;
+
+    private static void consume(int value)
+    {
+	sink += value;
+    }
+}
@@ -0,0 +1,425 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import util.LatencyHistogram;
+
+/**
+ * <i>Harness</i> is a small stand-in for JMH, for a project that is built
+ * without a dependency manager, and runs benchmarks the way JMH does by
+ * default: each <i>Benchmark</i> is measured in {@value #DEFAULT_FORKS} fresh
+ * JVMs, one after the other, so neither the profile the JIT gathered for
+ * another benchmark nor the garbage it left behind colours the result. In
+ * every fork the benchmark is calibrated so one iteration lasts about the
+ * iteration time, warmed up for {@value #WARMUP_ITERATIONS} iterations so the
+ * JIT settles, then measured for {@value #MEASURED_ITERATIONS} iterations. The
+ * result is the mean time per operation with a 95% confidence interval over
+ * the measured iterations of all forks.
+ * <p>
+ * A fork runs the <i>main()</i> of the benchmark class again, with the same
+ * arguments and JVM options, and only measures the call of <i>measure()</i> it
+ * was started for; every call before it is skipped and the fork exits once it
+ * is done. So <i>main()</i> has to set up the same benchmarks in the same
+ * order in every JVM. JMH iterations last 10 s; these last
+ * {@value #DEFAULT_ITERATION_MILLIS} ms, enough for the operations here. The
+ * system properties <i>harness.forks</i> (0 to measure in this JVM, as JMH's
+ * <i>-f 0</i>) and <i>harness.iterationMillis</i> change either.
+ * <p>
+ * Operations that take long, such as a whole battle, are not calibrated: a
+ * <i>Benchmark</i> built with a batch size runs that many operations in every
+ * iteration, and one per iteration is JMH's single-shot mode. Its
+ * <i>setUpIteration()</i> then builds what the batch uses up, untimed. A
+ * sampled <i>Benchmark</i> also has each of its measured operations timed on
+ * its own, as JMH's sample mode does, and reports their percentiles.
+ * <p>
+ * Every operation returns a value that is folded into a sink, so the JIT
+ * cannot throw the work away as dead code (what JMH calls a Blackhole).
+ */
+public final class Harness
+{
+    /** JVMs each benchmark is measured in, as in JMH, currently:{@value} */
+    public static final int DEFAULT_FORKS = 5;
+    /** target length of one iteration in milliseconds, currently:{@value} */
+    public static final long DEFAULT_ITERATION_MILLIS = 1_000L;
+    /** iterations thrown away before measuring, per fork, as in JMH, currently:{@value} */
+    public static final int WARMUP_ITERATIONS = 5;
+    /** iterations measured per fork, as in JMH, currently:{@value} */
+    public static final int MEASURED_ITERATIONS = 5;
+    /** system property telling a fork which call of <i>measure()</i> it runs, currently:{@value} */
+    private static final String FORK_PROPERTY = "harness.fork";
+    /** start of the line a fork reports its iterations on */
+    private static final String FORK_RESULT = "harness-result\t";
+    /** z-score of a two-sided 95% confidence interval, currently:{@value} */
+    private static final double Z_95 = 1.959963984540054;
+
+    /**
+     * one operation under test, together with the state it works on
+     */
+    public abstract static class Benchmark
+    {
+	private final String name;
+	/** operations of every iteration, or 0 to calibrate them */
+	private final int batchSize;
+	/** true when every measured operation is timed on its own */
+	private final boolean sampled;
+
+	/**
+	 * @param name name printed in the report
+	 */
+	protected Benchmark(String name)
+	{
+	    this(name, 0, false);
+	}
+
+	/**
+	 * @param name name printed in the report
+	 * @param batchSize operations of every iteration instead of as many as fill
+	 * the iteration time, or 0 to calibrate them
+	 * @param sampled true to time every measured operation on its own and report
+	 * their percentiles
+	 */
+	protected Benchmark(String name, int batchSize, boolean sampled)
+	{
+	    if (batchSize < 0)
+		throw new IllegalArgumentException("batch size " + batchSize);
+	    this.name = name;
+	    this.batchSize = batchSize;
+	    this.sampled = sampled;
+	}
+
+	public String getName()
+	{
+	    return this.name;
+	}
+
+	/**
+	 * called before every iteration, outside the timed section; resets any
+	 * state the operations use up
+	 */
+	protected void setUpIteration()
+	{
+	}
+
+	/**
+	 * runs the operation <i>operations</i> times
+	 *
+	 * @param operations number of operations to run
+	 * @return any value computed from the results, so they cannot be optimised
+	 * away
+	 */
+	protected abstract double run(int operations);
+    } // end class Benchmark
+
+    /**
+     * timing of one benchmark for one set of parameters
+     */
+    public static final class Result
+    {
+	private final String benchmark;
+	private final String parameters;
+	private final double nanosPerOperation;
+	private final double halfWidth95;
+	/** times of the single operations, or null when they were not sampled */
+	private final LatencyHistogram.Summary operationTimes;
+
+	private Result(String benchmark, String parameters, double nanosPerOperation, double halfWidth95,
+		LatencyHistogram.Summary operationTimes)
+	{
+	    this.benchmark = benchmark;
+	    this.parameters = parameters;
+	    this.nanosPerOperation = nanosPerOperation;
+	    this.halfWidth95 = halfWidth95;
+	    this.operationTimes = operationTimes;
+	}
+
+	public String getBenchmark()
+	{
+	    return this.benchmark;
+	}
+
+	public String getParameters()
+	{
+	    return this.parameters;
+	}
+
+	public double getNanosPerOperation()
+	{
+	    return this.nanosPerOperation;
+	}
+
+	public double getHalfWidth95()
+	{
+	    return this.halfWidth95;
+	}
+
+	/**
+	 * @return times of the single measured operations of a sampled
+	 * <i>Benchmark</i>, or null
+	 */
+	public LatencyHistogram.Summary getOperationTimes()
+	{
+	    return this.operationTimes;
+	}
+
+	@Override
+	public String toString()
+	{
+	    String line = String.format("%-34s %-24s %14.1f +/- %-10.1f ns/op", this.benchmark, this.parameters,
+		    this.nanosPerOperation, this.halfWidth95);
+	    if (this.operationTimes == null)
+		return line;
+	    return String.format("%s  p50 %.3f  p99 %.3f  max %.3f ms", line, this.operationTimes.getP50Millis(),
+		    this.operationTimes.getP99Millis(), this.operationTimes.getMaxMillis());
+	}
+    } // end class Result
+
+    private final Class<?> mainClass;
+    private final String[] args;
+    private final int forks;
+    private final long iterationNanos;
+    /** call of <i>measure()</i> this JVM was forked for, or -1 in the JVM that forks */
+    private final int forkedFor;
+    private int measureCalls;
+    private final List<Result> results = new ArrayList<>();
+    private double sink;
+    /** times of the measured operations of a sampled benchmark, in nanoseconds */
+    private long[] operationNanos = new long[0];
+    private int operationCount;
+
+    /**
+     * @param mainClass class whose <i>main()</i> sets up the benchmarks; forks
+     * run it again
+     * @param args arguments <i>main()</i> was called with, passed on to forks
+     */
+    public Harness(Class<?> mainClass, String... args)
+    {
+	this.mainClass = mainClass;
+	this.args = args.clone();
+	this.forks = Math.max(0, Integer.getInteger("harness.forks", DEFAULT_FORKS));
+	this.iterationNanos = 1_000_000L * Math.max(1L, Long.getLong("harness.iterationMillis",
+		DEFAULT_ITERATION_MILLIS));
+	this.forkedFor = Integer.getInteger(FORK_PROPERTY, -1);
+    }
+
+    /**
+     * Measures one benchmark in fresh JVMs, or in this one when forks are off,
+     * prints its result and keeps it for <i>getResults()</i>. In a fork, only
+     * the call the fork was started for measures anything; the fork reports
+     * back and exits at its end.
+     *
+     * @param benchmark the benchmark to run
+     * @param parameters description of the parameters it was set up with
+     * @return the measured result, or null for a call a fork skips
+     */
+    public Result measure(Benchmark benchmark, String parameters)
+    {
+	int call = this.measureCalls++;
+	if (this.forkedFor >= 0)
+	{
+	    if (call != this.forkedFor)
+		return null;
+	    double[] samples = runIterations(benchmark);
+	    StringBuilder line = new StringBuilder(FORK_RESULT);
+	    line.append(benchmark.getName()).append('\t').append(parameters).append('\t').append(this.sink);
+	    line.append('\t');
+	    for (int i = 0; i < this.operationCount; ++i)
+		line.append(i == 0 ? "" : ",").append(this.operationNanos[i]);
+	    for (double sample : samples)
+		line.append('\t').append(sample);
+	    System.out.println(line);
+	    System.out.flush();
+	    System.exit(0);
+	}
+	this.operationCount = 0;
+	double[] samples;
+	if (this.forks == 0)
+	    samples = runIterations(benchmark);
+	else
+	{
+	    samples = new double[this.forks * MEASURED_ITERATIONS];
+	    for (int fork = 0; fork < this.forks; ++fork)
+		System.arraycopy(fork(call, benchmark.getName(), parameters), 0, samples, fork * MEASURED_ITERATIONS,
+			MEASURED_ITERATIONS);
+	}
+	double mean = 0.0;
+	double sumOfSquares = 0.0;
+	for (int i = 1; i <= samples.length; ++i)
+	{ // Welford's running mean and variance
+	    double value = samples[i - 1];
+	    double delta = value - mean;
+	    mean += delta / i;
+	    sumOfSquares += delta * (value - mean);
+	}
+	double standardDeviation = Math.sqrt(sumOfSquares / (samples.length - 1));
+	LatencyHistogram operationTimes = null;
+	if (benchmark.sampled)
+	{
+	    operationTimes = new LatencyHistogram();
+	    for (int i = 0; i < this.operationCount; ++i)
+		operationTimes.record(this.operationNanos[i]);
+	}
+	Result result = new Result(benchmark.getName(), parameters, mean,
+		Z_95 * standardDeviation / Math.sqrt(samples.length),
+		operationTimes != null ? operationTimes.getSummary() : null);
+	this.results.add(result);
+	System.out.println(result);
+	return result;
+    } // end measure()
+
+    public List<Result> getResults()
+    {
+	return this.results;
+    }
+
+    /**
+     * @return the folded results of every operation run so far, in this JVM and
+     * in its forks; print it so the work is observably used
+     */
+    public double getSink()
+    {
+	return this.sink;
+    }
+
+    /**
+     * calibrates, unless the benchmark has a batch size, warms up and measures
+     * one benchmark in this JVM
+     *
+     * @return nanoseconds per operation of each measured iteration
+     */
+    private double[] runIterations(Benchmark benchmark)
+    {
+	int operations = benchmark.batchSize > 0 ? benchmark.batchSize : calibrate(benchmark);
+	for (int i = 0; i < WARMUP_ITERATIONS; ++i)
+	    timeIteration(benchmark, operations, false);
+	double[] samples = new double[MEASURED_ITERATIONS];
+	for (int i = 0; i < MEASURED_ITERATIONS; ++i)
+	    samples[i] = (double) timeIteration(benchmark, operations, true) / operations;
+	return samples;
+    }
+
+    /**
+     * Runs <i>main()</i> again in a fresh JVM, with the options and class path
+     * of this one, to measure one call of <i>measure()</i>. What the fork prints
+     * besides its result is dropped; what it reports on standard error shows.
+     *
+     * @param call index of the call of <i>measure()</i> to run
+     * @return nanoseconds per operation of each iteration the fork measured
+     */
+    private double[] fork(int call, String name, String parameters)
+    {
+	List<String> command = new ArrayList<>();
+	command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+	for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments())
+	{
+	    if (!option.startsWith("-D" + FORK_PROPERTY + "="))
+		command.add(option);
+	}
+	command.add("-D" + FORK_PROPERTY + "=" + call);
+	command.add("-cp");
+	command.add(System.getProperty("java.class.path"));
+	command.add(this.mainClass.getName());
+	command.addAll(Arrays.asList(this.args));
+	try
+	{
+	    Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+	    String[] fields = null;
+	    try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(),
+		    StandardCharsets.UTF_8)))
+	    {
+		for (String line = output.readLine(); line != null; line = output.readLine())
+		{
+		    if (line.startsWith(FORK_RESULT))
+			fields = line.substring(FORK_RESULT.length()).split("\t", -1);
+		}
+	    }
+	    int exitCode = process.waitFor();
+	    if (fields == null || exitCode != 0)
+		throw new IllegalStateException("fork for " + name + " " + parameters + " failed with exit code "
+			+ exitCode);
+	    if (!fields[0].equals(name) || !fields[1].equals(parameters))
+		throw new IllegalStateException("fork for " + name + " " + parameters + " measured " + fields[0] + " "
+			+ fields[1] + "; main() must set up the same benchmarks in every JVM");
+	    this.sink += Double.parseDouble(fields[2]);
+	    if (!fields[3].isEmpty())
+	    {
+		for (String nanos : fields[3].split(","))
+		    recordOperation(Long.parseLong(nanos));
+	    }
+	    double[] samples = new double[fields.length - 4];
+	    for (int i = 0; i < samples.length; ++i)
+		samples[i] = Double.parseDouble(fields[i + 4]);
+	    return samples;
+	} catch (IOException e)
+	{
+	    throw new UncheckedIOException("cannot fork a JVM for " + name, e);
+	} catch (InterruptedException e)
+	{
+	    Thread.currentThread().interrupt();
+	    throw new IllegalStateException("interrupted while waiting for the fork for " + name, e);
+	}
+    } // end fork()
+
+    /**
+     * doubles the number of operations until one iteration takes at least a
+     * tenth of the iteration time, then scales it up to the full length
+     */
+    private int calibrate(Benchmark benchmark)
+    {
+	int operations = 1;
+	long elapsed = timeIteration(benchmark, operations, false);
+	while (elapsed < this.iterationNanos / 10 && operations < Integer.MAX_VALUE / 2)
+	{
+	    operations *= 2;
+	    elapsed = timeIteration(benchmark, operations, false);
+	}
+	long scaled = operations * this.iterationNanos / Math.max(1L, elapsed);
+	return (int) Math.max(1L, Math.min(Integer.MAX_VALUE, scaled));
+    }
+
+    /**
+     * runs one iteration; a sampled benchmark is run one operation at a time
+     *
+     * @param measured true when the times of the single operations are kept
+     * @return nanoseconds the operations took
+     */
+    private long timeIteration(Benchmark benchmark, int operations, boolean measured)
+    {
+	benchmark.setUpIteration();
+	if (!benchmark.sampled)
+	{
+	    long start = System.nanoTime();
+	    double value = benchmark.run(operations);
+	    long elapsed = System.nanoTime() - start;
+	    this.sink += value;
+	    return elapsed;
+	}
+	long elapsed = 0L;
+	for (int i = 0; i < operations; ++i)
+	{
+	    long start = System.nanoTime();
+	    double value = benchmark.run(1);
+	    long nanos = System.nanoTime() - start;
+	    elapsed += nanos;
+	    this.sink += value;
+	    if (measured)
+		recordOperation(nanos);
+	}
+	return elapsed;
+    } // end timeIteration()
+
+    private void recordOperation(long nanos)
+    {
+	if (this.operationCount == this.operationNanos.length)
+	    this.operationNanos = Arrays.copyOf(this.operationNanos, Math.max(64, 2 * this.operationCount));
+	this.operationNanos[this.operationCount++] = nanos;
+    }
+}
@@ -0,0 +1,95 @@
+package benchmark;
+
+import javafx.scene.paint.Color;
+import actor.ActorFactory;
+import army.Army;
+import util.BattleRandom;
+
+/**
+ * Measures <i>Army.populate()</i> and <i>Army.clearScreen()</i> with the
+ * <i>Harness</i> for armies of 1k, 10k and 100k actors, half hobbits and half
+ * wizards. Populating 100k actors is meant to stay well under a second.
+ * <ul>
+ * <li><i>populate</i>: one operation fills a new army</li>
+ * <li><i>clearScreen</i>: one operation empties an army; a batch of full
+ * armies, {@value #CLEAR_BATCH_ACTORS} actors in all, is populated before
+ * every iteration, untimed</li>
+ * </ul>
+ * Runs headless: <code>java benchmark.PopulateBenchmark</code>
+ */
+public class PopulateBenchmark
+{
+    private static final int[] ARMY_SIZES = { 1_000, 10_000, 100_000 };
+    /** actors of the armies one iteration of <i>clearScreen</i> empties, currently:{@value} */
+    private static final int CLEAR_BATCH_ACTORS = 100_000;
+    private static final long SEED = 42L;
+
+    public static void main(String[] args)
+    {
+	Harness harness = new Harness(PopulateBenchmark.class, args);
+	System.out.printf("%-34s %-24s %14s%n", "benchmark", "parameters", "time");
+	for (int armySize : ARMY_SIZES)
+	{
+	    String parameters = "actors=" + armySize;
+	    harness.measure(populate(armySize), parameters);
+	    harness.measure(clearScreen(armySize), parameters);
+	}
+	System.out.println("sink " + harness.getSink());
+    } // end main()
+
+    /**
+     * @return a new army of <i>armySize</i> actors, half hobbits and half wizards
+     */
+    private static Army populated(int armySize)
+    {
+	Army army = new Army("Forces of Light", Color.AQUA);
+	army.setRandom(new BattleRandom(SEED));
+	army.populate(ActorFactory.Type.HOBBIT, armySize / 2);
+	army.populate(ActorFactory.Type.WIZARD, armySize - armySize / 2);
+	if (army.getAliveCount() != armySize)
+	    throw new IllegalStateException("populated " + army.getAliveCount() + " of " + armySize);
+	return army;
+    }
+
+    private static Harness.Benchmark populate(int armySize)
+    {
+	return new Harness.Benchmark("populate")
+	{
+	    @Override
+	    protected double run(int operations)
+	    {
+		double sum = 0.0;
+		for (int i = 0; i < operations; ++i)
+		    sum += populated(armySize).getAliveCount();
+		return sum;
+	    }
+	};
+    }
+
+    private static Harness.Benchmark clearScreen(int armySize)
+    {
+	return new Harness.Benchmark("clearScreen", Math.max(1, CLEAR_BATCH_ACTORS / armySize), false)
+	{
+	    private final Army[] armies = new Army[Math.max(1, CLEAR_BATCH_ACTORS / armySize)];
+
+	    @Override
+	    protected void setUpIteration()
+	    {
+		for (int i = 0; i < this.armies.length; ++i)
+		    this.armies[i] = populated(armySize);
+	    }
+
+	    @Override
+	    protected double run(int operations)
+	    {
+		double sum = 0.0;
+		for (int i = 0; i < operations; ++i)
+		{
+		    this.armies[i].clearScreen();
+		    sum += this.armies[i].size();
+		}
+		return sum;
+	    }
+	};
+    }
+}
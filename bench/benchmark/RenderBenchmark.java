@@ -0,0 +1,65 @@
+package benchmark;
+
+import javafx.scene.paint.Color;
+import army.Army;
+import engine.BattleEngine;
+import simulator.BattlefieldRaster;
+import util.BattleRandom;
+
+/**
+ * Times one frame of the canvas renderer, that is everything
+ * <i>BattlefieldRaster</i> does per pulse (clear, draw both armies, blur and
+ * pack the glow), with the actors scattered over the whole battlefield. One
+ * operation is one frame; a 60 fps budget is 16.7 ms, from which the two
+ * image uploads and draw calls of <i>CanvasRenderer</i> still have to be paid.
+ * <p>
+ * Runs headless: <code>java benchmark.RenderBenchmark</code>
+ */
+public class RenderBenchmark
+{
+    /** actors in each of the two armies */
+    private static final int[] ARMY_SIZES = { 1_000, 10_000, 25_000 };
+    private static final long SEED = 42L;
+    /**
+     * frames drawn untimed before the first measurement; without them, and with
+     * harness.forks=0, the first size measured runs several times slower than
+     * the same size measured later
+     */
+    private static final int WARMUP_FRAMES = 500;
+
+    public static void main(String[] args)
+    {
+	Harness harness = new Harness(RenderBenchmark.class, args);
+	System.out.printf("%-34s %-24s %14s%n", "benchmark", "parameters", "time");
+	rasterFrame(ARMY_SIZES[0]).run(WARMUP_FRAMES);
+	for (int size : ARMY_SIZES)
+	    harness.measure(rasterFrame(size), String.format("actors=%d", 2 * size));
+	System.out.println("sink " + harness.getSink());
+    } // end main()
+
+    private static Harness.Benchmark rasterFrame(int size)
+    {
+	BattleRandom random = new BattleRandom(SEED);
+	Army light = SimulationBenchmark.Mix.LIGHT.populate("Forces of Light", Color.AQUA, size, random);
+	Army dark = SimulationBenchmark.Mix.DARK.populate("Forces of Darkness", Color.RED, size, random);
+	BattlefieldRaster raster = new BattlefieldRaster((int) BattleEngine.BATTLEFIELD_WIDTH,
+		(int) BattleEngine.BATTLEFIELD_HEIGHT);
+	return new Harness.Benchmark("rasterFrame")
+	{
+	    @Override
+	    protected double run(int operations)
+	    {
+		int drawn = 0;
+		for (int i = 0; i < operations; ++i)
+		{
+		    raster.clear();
+		    raster.draw(light);
+		    raster.draw(dark);
+		    raster.finish();
+		    drawn += raster.getDrawnCount() + raster.getGlowPixels()[i % raster.getGlowPixels().length];
+		}
+		return drawn;
+	    }
+	};
+    }
+}
@@ -0,0 +1,326 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+
+import javafx.geometry.Point2D;
+import javafx.scene.paint.Color;
+import actor.Actor;
+import actor.ActorFactory;
+import army.Army;
+import engine.BattleEngine;
+import util.BattleRandom;
+import util.SingletonRandom;
+
+/**
+ * Baseline for every performance change: times the hot paths of the
+ * simulation with the <i>Harness</i>, for every combination of army size and
+ * actor-type mix.
+ * <ul>
+ * <li><i>Actor.distanceTo()</i></li>
+ * <li><i>Army.findNearestActor()</i></li>
+ * <li><i>Actor.combatRound()</i></li>
+ * <li><i>Actor.findNewLocation()</i></li>
+ * <li><i>ActorFactory.Type.create()</i></li>
+ * <li><i>Army.serialize()</i> and <i>Army.deserialize()</i>, one operation
+ * being the whole army</li>
+ * <li><i>SingletonRandom.getNormalDistribution()</i> next to
+ * <i>BattleRandom.getNormalDistribution()</i>, which depend on neither
+ * parameter and run once</li>
+ * </ul>
+ * Runs headless:
+ * <code>java benchmark.SimulationBenchmark [benchmark name filter]</code>
+ */
+public class SimulationBenchmark
+{
+    /** actors in each of the two armies */
+    private static final int[] ARMY_SIZES = { 100, 1_000, 10_000 };
+    /** actors created before <i>create</i> starts over with a fresh army */
+    private static final int CREATE_BATCH = 4_096;
+    private static final long SEED = 42L;
+
+    /**
+     * share of each <i>ActorFactory.Type</i> in both armies
+     */
+    public enum Mix
+    {
+	LIGHT(1, 1, 0, 0), // hobbits and wizards only
+	DARK(0, 0, 1, 1), // orcs and nazgul only
+	ALL(1, 1, 1, 1); // every type in equal parts
+
+	private final int[] weights;
+
+	Mix(int hobbits, int wizards, int orcs, int nazgul)
+	{
+	    this.weights = new int[] { hobbits, wizards, orcs, nazgul };
+	}
+
+	/**
+	 * fills a headless army with <i>size</i> actors in this mix and scatters
+	 * them over the whole battlefield
+	 */
+	Army populate(String name, Color color, int size, BattleRandom random)
+	{
+	    Army army = new Army(name, color);
+	    army.setRandom(random.split());
+	    int totalWeight = 0;
+	    for (int weight : this.weights)
+		totalWeight += weight;
+	    int remaining = size;
+	    for (int i = 0; i < this.weights.length; ++i)
+	    {
+		int count = i == this.weights.length - 1 ? remaining : size * this.weights[i] / totalWeight;
+		army.populate(ActorFactory.Type.values()[i], count);
+		remaining -= count;
+	    }
+	    for (Actor actor : army.getCollectionActors())
+		actor.setLocation(random.nextDouble() * BattleEngine.BATTLEFIELD_WIDTH,
+			random.nextDouble() * BattleEngine.BATTLEFIELD_HEIGHT);
+	    return army;
+	}
+
+	/**
+	 * @return the type of the <i>index</i>-th actor created in this mix
+	 */
+	ActorFactory.Type typeAt(int index)
+	{
+	    int totalWeight = 0;
+	    for (int weight : this.weights)
+		totalWeight += weight;
+	    int slot = index % totalWeight;
+	    for (int i = 0; i < this.weights.length; ++i)
+	    {
+		slot -= this.weights[i];
+		if (slot < 0)
+		    return ActorFactory.Type.values()[i];
+	    }
+	    throw new IllegalStateException();
+	}
+    } // end enum Mix
+
+    public static void main(String[] args)
+    {
+	String filter = args.length > 0 ? args[0] : "";
+	Harness harness = new Harness(SimulationBenchmark.class, args);
+	System.out.printf("%-34s %-24s %14s%n", "benchmark", "parameters", "time");
+	for (int size : ARMY_SIZES)
+	{
+	    for (Mix mix : Mix.values())
+	    {
+		String parameters = String.format("size=%d mix=%s", size, mix);
+		BattleRandom random = new BattleRandom(SEED);
+		Army friends = mix.populate("Friends", Color.AQUA, size, random);
+		Army opponents = mix.populate("Opponents", Color.RED, size, random);
+		Actor[] attackers = friends.getCollectionActors().toArray(new Actor[0]);
+		Actor[] defenders = opponents.getCollectionActors().toArray(new Actor[0]);
+		for (Harness.Benchmark benchmark : benchmarks(mix, attackers, defenders, opponents))
+		{
+		    if (benchmark.getName().contains(filter))
+			harness.measure(benchmark, parameters);
+		}
+	    }
+	}
+	for (Harness.Benchmark benchmark : new Harness.Benchmark[] { singletonNormalDistribution(),
+		battleNormalDistribution() })
+	{
+	    if (benchmark.getName().contains(filter))
+		harness.measure(benchmark, "-");
+	}
+	System.out.println("sink " + harness.getSink());
+    } // end main()
+
+    private static Harness.Benchmark[] benchmarks(Mix mix, Actor[] attackers, Actor[] defenders, Army opponents)
+    {
+	return new Harness.Benchmark[] { distanceTo(attackers, defenders), findNearestActor(attackers, opponents),
+		combatRound(attackers, defenders), findNewLocation(attackers, defenders), create(mix),
+		serialize(opponents), deserialize(opponents) };
+    }
+
+    private static Harness.Benchmark distanceTo(Actor[] attackers, Actor[] defenders)
+    {
+	return new Harness.Benchmark("distanceTo")
+	{
+	    @Override
+	    protected double run(int operations)
+	    {
+		double sum = 0.0;
+		for (int i = 0; i < operations; ++i)
+		    sum += attackers[i % attackers.length].distanceTo(defenders[(i * 7) % defenders.length]);
+		return sum;
+	    }
+	};
+    }
+
+    private static Harness.Benchmark findNearestActor(Actor[] attackers, Army opponents)
+    {
+	return new Harness.Benchmark("findNearestActor")
+	{
+	    @Override
+	    protected double run(int operations)
+	    {
+		int found = 0;
+		for (int i = 0; i < operations; ++i)
+		    if (opponents.findNearestActor(attackers[i % attackers.length]) != null)
+			++found;
+		return found;
+	    }
+	};
+    }
+
+    private static Harness.Benchmark combatRound(Actor[] attackers, Actor[] defenders)
+    {
+	return new Harness.Benchmark("combatRound")
+	{
+	    @Override
+	    protected double run(int operations)
+	    {
+		double sum = 0.0;
+		for (int i = 0; i < operations; ++i)
+		{
+		    Actor attacker = attackers[i % attackers.length];
+		    Actor defender = defenders[i % defenders.length];
+		    // restore health so every round fights at full strength instead of among the dead
+		    attacker.setHealth(100.0);
+		    defender.setHealth(100.0);
+		    sum += attacker.combatRound(defender);
+		}
+		return sum;
+	    }
+	};
+    }
+
+    private static Harness.Benchmark findNewLocation(Actor[] attackers, Actor[] defenders)
+    {
+	return new Harness.Benchmark("findNewLocation")
+	{
+	    @Override
+	    protected double run(int operations)
+	    {
+		double sum = 0.0;
+		for (int i = 0; i < operations; ++i)
+		{
+		    Point2D location = attackers[i % attackers.length].findNewLocation(defenders[(i * 7) % defenders.length]);
+		    sum += location.getX() + location.getY();
+		}
+		return sum;
+	    }
+	};
+    }
+
+    private static Harness.Benchmark create(Mix mix)
+    {
+	return new Harness.Benchmark("Type.create")
+	{
+	    private final BattleRandom random = new BattleRandom(SEED);
+
+	    @Override
+	    protected double run(int operations)
+	    {
+		double sum = 0.0;
+		Army army = null;
+		for (int i = 0; i < operations; ++i)
+		{
+		    if (i % CREATE_BATCH == 0)
+		    { // keeps the store of the army from growing for the whole iteration
+			army = new Army("Recruits", Color.AQUA);
+			army.setRandom(this.random.split());
+		    }
+		    sum += mix.typeAt(i).create(army).getHealth();
+		}
+		return sum;
+	    }
+	};
+    }
+
+    private static Harness.Benchmark serialize(Army army)
+    {
+	return new Harness.Benchmark("Army.serialize")
+	{
+	    @Override
+	    protected double run(int operations)
+	    {
+		double sum = 0.0;
+		for (int i = 0; i < operations; ++i)
+		    sum += write(army).length;
+		return sum;
+	    }
+	};
+    }
+
+    private static Harness.Benchmark deserialize(Army army)
+    {
+	byte[] bytes = write(army);
+	return new Harness.Benchmark("Army.deserialize")
+	{
+	    private final Army target = new Army("Restored", Color.RED);
+
+	    @Override
+	    protected double run(int operations)
+	    {
+		double sum = 0.0;
+		for (int i = 0; i < operations; ++i)
+		{
+		    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes)))
+		    {
+			this.target.deserialize(in);
+		    } catch (IOException | ClassNotFoundException e)
+		    {
+			throw new IllegalStateException(e);
+		    }
+		    sum += this.target.size();
+		}
+		return sum;
+	    }
+	};
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Harness.Benchmark singletonNormalDistribution()
+    {
+	return new Harness.Benchmark("getNormalDistribution(Singleton)")
+	{
+	    @Override
+	    protected double run(int operations)
+	    {
+		double sum = 0.0;
+		for (int i = 0; i < operations; ++i)
+		    sum += SingletonRandom.instance.getNormalDistribution(0.0, 100.0, 2.0);
+		return sum;
+	    }
+	};
+    }
+
+    private static Harness.Benchmark battleNormalDistribution()
+    {
+	return new Harness.Benchmark("getNormalDistribution(Battle)")
+	{
+	    private final BattleRandom random = new BattleRandom(SEED);
+
+	    @Override
+	    protected double run(int operations)
+	    {
+		double sum = 0.0;
+		for (int i = 0; i < operations; ++i)
+		    sum += this.random.getNormalDistribution(0.0, 100.0, 2.0);
+		return sum;
+	    }
+	};
+    }
+
+    private static byte[] write(Army army)
+    {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+	{
+	    army.serialize(out);
+	} catch (IOException e)
+	{
+	    throw new UncheckedIOException(e);
+	}
+	return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,96 @@
+package benchmark;
+
+import javafx.scene.paint.Color;
+import army.Army;
+import engine.BattleEngine;
+import engine.SimulationMetrics;
+import util.BattleRandom;
+
+/**
+ * Fights the same battles with and without the target cache of the
+ * <i>BattleEngine</i>. The <i>Harness</i> times each battle, one per
+ * iteration (see <i>BattleBenchmark</i>); one more battle of each kind then
+ * counts how many full nearest-opponent searches it needs and how often the
+ * cache answered instead. With the cache the searches are meant to drop by
+ * more than 90%.
+ * <p>
+ * The two runs of a battle start from the same armies and seed but do not stay
+ * the same battle, since a unit that keeps its target may fight a different
+ * opponent than the nearest one.
+ * <p>
+ * Runs headless: <code>java benchmark.TargetCacheBenchmark [max seconds]</code>
+ */
+public class TargetCacheBenchmark
+{
+    private static final int[] ARMY_SIZES = { 1_000, 10_000 };
+    /** simulated seconds after which a battle is abandoned, currently:{@value} */
+    private static final double DEFAULT_MAX_SECONDS = 120.0;
+    private static final long SEED = 42L;
+
+    public static void main(String[] args)
+    {
+	double maxSeconds = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_MAX_SECONDS;
+	Harness harness = new Harness(TargetCacheBenchmark.class, args);
+	System.out.printf("%-34s %-24s %14s%n", "benchmark", "parameters", "time");
+	for (int armySize : ARMY_SIZES)
+	{
+	    for (boolean caching : new boolean[] { false, true })
+	    {
+		harness.measure(new BattleBenchmark("battle", maxSeconds)
+		{
+		    @Override
+		    protected BattleEngine newBattle()
+		    {
+			return battle(armySize, caching);
+		    }
+		}, String.format("actors=%d cache=%s", 2 * armySize, caching ? "on" : "off"));
+	    }
+	}
+	System.out.println("sink " + harness.getSink());
+	System.out.printf("%n%8s %-6s %8s %12s %12s %10s %10s%n", "actors", "cache", "seconds", "decisions",
+		"searches", "hit rate", "searches");
+	for (int armySize : ARMY_SIZES)
+	{
+	    long uncached = count(armySize, false, maxSeconds, -1L);
+	    count(armySize, true, maxSeconds, uncached);
+	}
+    } // end main()
+
+    /**
+     * @return a battle of two armies of <i>armySize</i> actors, with or without
+     * the target cache
+     */
+    private static BattleEngine battle(int armySize, boolean caching)
+    {
+	BattleRandom random = new BattleRandom(SEED);
+	Army light = SimulationBenchmark.Mix.LIGHT.populate("Forces of Light", Color.AQUA, armySize, random);
+	Army dark = SimulationBenchmark.Mix.DARK.populate("Forces of Darkness", Color.RED, armySize, random);
+	light.setOpposingArmy(dark);
+	dark.setOpposingArmy(light);
+	BattleEngine engine = new BattleEngine(light, dark);
+	engine.setTargetCaching(caching);
+	return engine;
+    }
+
+    /**
+     * fights one battle, counting its searches, and prints one line of the
+     * report
+     *
+     * @param uncachedSearches full searches of the same battle without the
+     * cache, or -1 for the run without it
+     * @return full searches made
+     */
+    private static long count(int armySize, boolean caching, double maxSeconds, long uncachedSearches)
+    {
+	BattleEngine engine = battle(armySize, caching);
+	SimulationMetrics metrics = new SimulationMetrics();
+	engine.setMetrics(metrics);
+	double seconds = engine.run(maxSeconds);
+	long searches = metrics.getNearestQueries();
+	String drop = uncachedSearches <= 0L ? "-"
+		: String.format("-%.1f%%", 100.0 * (uncachedSearches - searches) / uncachedSearches);
+	System.out.printf("%8d %-6s %8.1f %12d %12d %9.1f%% %10s%n", 2 * armySize, caching ? "on" : "off", seconds,
+		searches + metrics.getTargetCacheHits(), searches, 100.0 * metrics.getTargetCacheHitRate(), drop);
+	return searches;
+    } // end count()
+}
@@ -0,0 +1,116 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+import javafx.scene.paint.Color;
+import army.Army;
+import engine.BattleEngine;
+import engine.TerrainMap;
+import util.BattleRandom;
+
+/**
+ * Fights the same battles on open ground and on the terrain of the background
+ * image, and reports what walking on the terrain costs. The <i>Harness</i>
+ * times each battle, one per iteration (see <i>BattleBenchmark</i>); one more
+ * battle of each kind then reports how many flow fields it took, how often
+ * the fields cached by the <i>TerrainMap</i> served instead and how many were
+ * dropped to make room. The fields are shared by every actor heading for the
+ * same region, so far fewer are built than actors set off.
+ * <p>
+ * Each battle gets a terrain of its own, read before the iteration, so no
+ * battle starts with the fields of the one before. The two runs of a battle
+ * start from the same armies and seed but are not the same battle.
+ * <p>
+ * Runs headless from the project directory:
+ * <code>java benchmark.TerrainBenchmark [max seconds]</code>
+ */
+public class TerrainBenchmark
+{
+    private static final int[] ARMY_SIZES = { 1_000, 10_000 };
+    /** background image the terrain is read from, currently:{@value} */
+    private static final String TERRAIN_IMAGE = "MiddleEarth-3.jpg";
+    /** simulated seconds after which a battle is abandoned, currently:{@value} */
+    private static final double DEFAULT_MAX_SECONDS = 60.0;
+    private static final long SEED = 42L;
+
+    public static void main(String[] args)
+    {
+	double maxSeconds = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_MAX_SECONDS;
+	Harness harness = new Harness(TerrainBenchmark.class, args);
+	System.out.printf("%-34s %-24s %14s%n", "benchmark", "parameters", "time");
+	for (int armySize : ARMY_SIZES)
+	{
+	    for (boolean onTerrain : new boolean[] { false, true })
+	    {
+		harness.measure(new BattleBenchmark("battle", maxSeconds)
+		{
+		    @Override
+		    protected BattleEngine newBattle()
+		    {
+			return battle(armySize, onTerrain ? terrain() : null);
+		    }
+		}, String.format("actors=%d ground=%s", 2 * armySize, onTerrain ? "terrain" : "open"));
+	    }
+	}
+	System.out.println("sink " + harness.getSink());
+	System.out.printf("%n%8s %-8s %8s %10s %10s %10s %10s%n", "actors", "ground", "seconds", "survivors",
+		"fields", "hits", "evicted");
+	for (int armySize : ARMY_SIZES)
+	{
+	    count(armySize, null, maxSeconds);
+	    count(armySize, terrain(), maxSeconds);
+	}
+    } // end main()
+
+    /**
+     * @return a new terrain, read from the background image, with no flow field
+     * cached yet
+     */
+    private static TerrainMap terrain()
+    {
+	try
+	{
+	    return TerrainMap.read(Paths.get(TERRAIN_IMAGE), BattleEngine.BATTLEFIELD_WIDTH,
+		    BattleEngine.BATTLEFIELD_HEIGHT);
+	} catch (IOException e)
+	{
+	    throw new UncheckedIOException("cannot read the terrain from " + TERRAIN_IMAGE, e);
+	}
+    }
+
+    /**
+     * @param terrain ground of the battle, or null for open ground
+     * @return a battle of two armies of <i>armySize</i> actors
+     */
+    private static BattleEngine battle(int armySize, TerrainMap terrain)
+    {
+	BattleRandom random = new BattleRandom(SEED);
+	Army light = SimulationBenchmark.Mix.LIGHT.populate("Forces of Light", Color.AQUA, armySize, random);
+	Army dark = SimulationBenchmark.Mix.DARK.populate("Forces of Darkness", Color.RED, armySize, random);
+	light.setOpposingArmy(dark);
+	dark.setOpposingArmy(light);
+	BattleEngine engine = new BattleEngine(light, dark);
+	engine.setTerrain(terrain);
+	return engine;
+    }
+
+    /**
+     * fights one battle and prints one line of the report
+     *
+     * @param terrain ground of the battle, or null for open ground
+     */
+    private static void count(int armySize, TerrainMap terrain, double maxSeconds)
+    {
+	BattleEngine engine = battle(armySize, terrain);
+	double seconds = engine.run(maxSeconds);
+	int survivors = engine.getForcesOfLight().size() + engine.getForcesOfDarkness().size();
+	if (terrain == null)
+	    System.out.printf("%8d %-8s %8.1f %10d %10s %10s %10s%n", 2 * armySize, "open", seconds, survivors, "-",
+		    "-", "-");
+	else
+	    System.out.printf("%8d %-8s %8.1f %10d %10d %10d %10d%n", 2 * armySize, "terrain", seconds, survivors,
+		    terrain.getFlowFieldsBuilt(), terrain.getFlowFieldHits(), terrain.getFlowFieldEvictions());
+    } // end count()
+}
@@ -0,0 +1,119 @@
+package engine;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import util.LatencyHistogram;
+
+/**
+ * <i>CarrierPinningMonitor</i> watches for virtual threads pinned to their
+ * carrier, which is what turns a battle of a hundred thousand actor agents
+ * back into a battle of a handful of carrier threads: an agent that blocks
+ * while pinned (inside a <i>synchronized</i> block, or in native code) holds
+ * its carrier for as long as it waits.
+ * <p>
+ * It listens to the <i>{@value #PINNED_EVENT}</i> event of the JDK Flight
+ * Recorder in the background, with no threshold, so every pin is counted,
+ * timed and filed under the method it happened in. Events reach the monitor a
+ * second or so after they happen.
+ * <p>
+ * The event stream only exists from Java 14 on and the event from Java 21 on,
+ * so this class lives in the <i>jdk21</i> source folder, out of the Java 8
+ * build, and is compiled on top of it with a JDK 21:
+ * <code>javac -cp bin -d bin jdk21/engine/*.java</code>. <i>ActorAgents</i>
+ * loads it through reflection, and only for agents on virtual threads with
+ * <code>-Dengine.pinningMonitor=true</code>. It is experimental: it has not
+ * been run on a Java 21 runtime yet, so whether it reports pinning at all is
+ * still to be confirmed.
+ */
+public final class CarrierPinningMonitor implements AutoCloseable
+{
+    /** event the JDK records when a virtual thread blocks while pinned, currently:{@value} */
+    public static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final RecordingStream stream = new RecordingStream();
+    /** how long each pin lasted; only the stream thread records */
+    private final LatencyHistogram pinnedTime = new LatencyHistogram();
+    /** pins by the top frame of the pinned thread */
+    private final ConcurrentHashMap<String, Long> pinsBySite = new ConcurrentHashMap<>();
+
+    private CarrierPinningMonitor()
+    {
+	this.stream.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+	this.stream.onEvent(PINNED_EVENT, event -> {
+	    this.pinnedTime.record(event.getDuration().toNanos());
+	    this.pinsBySite.merge(site(event.getStackTrace()), 1L, Long::sum);
+	});
+    }
+
+    /**
+     * @return a monitor listening in the background, or null when the flight
+     * recorder cannot stream events here
+     */
+    public static CarrierPinningMonitor start()
+    {
+	try
+	{
+	    CarrierPinningMonitor monitor = new CarrierPinningMonitor();
+	    monitor.stream.startAsync();
+	    return monitor;
+	} catch (RuntimeException e)
+	{
+	    e.printStackTrace(); // agents still run; pinning just goes unmeasured
+	    return null;
+	}
+    }
+
+    /**
+     * @return number of pins seen so far
+     */
+    public long getPinCount()
+    {
+	return this.pinnedTime.getSummary().getCount();
+    }
+
+    /**
+     * @return how long the pins seen so far lasted
+     */
+    public LatencyHistogram.Summary getPinnedTime()
+    {
+	return this.pinnedTime.getSummary();
+    }
+
+    /**
+     * @return pins seen so far by the method the pinned thread was in, sorted by
+     * name
+     */
+    public Map<String, Long> getPinsBySite()
+    {
+	return new TreeMap<>(this.pinsBySite);
+    }
+
+    /**
+     * stops listening; what was seen so far can still be read
+     */
+    @Override
+    public void close()
+    {
+	this.stream.close();
+    }
+
+    @Override
+    public String toString()
+    {
+	return "pins=" + getPinCount() + " pinned time: " + getPinnedTime() + " by site: " + getPinsBySite();
+    }
+
+    private static String site(RecordedStackTrace stackTrace)
+    {
+	if (stackTrace == null || stackTrace.getFrames().isEmpty())
+	    return "unknown";
+	RecordedFrame top = stackTrace.getFrames().get(0);
+	return top.getMethod().getType().getName() + "." + top.getMethod().getName() + ":" + top.getLineNumber();
+    }
+}
@@ -0,0 +1,259 @@
+package engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * <i>JfrFlightEvents</i> holds the JDK Flight Recorder events behind the
+ * interfaces of <i>FlightEvents</i>, which loads it through reflection. It is
+ * kept out of the <i>src</i> folder because <i>jdk.jfr</i> is not part of
+ * Java 8; see <i>FlightEvents</i> for how it is built.
+ */
+public final class JfrFlightEvents implements FlightEvents.Factory
+{
+    private static final String CATEGORY = "Hobbit Battlefield";
+
+    @Override
+    public FlightEvents.BattleStarted battleStarted()
+    {
+	return new BattleStarted();
+    }
+
+    @Override
+    public FlightEvents.BattleEnded battleEnded()
+    {
+	return new BattleEnded();
+    }
+
+    @Override
+    public FlightEvents.Tick tick()
+    {
+	return new Tick();
+    }
+
+    @Override
+    public FlightEvents.PartitionPhase partitionPhase()
+    {
+	return new PartitionPhase();
+    }
+
+    @Override
+    public FlightEvents.CombatRounds combatRounds()
+    {
+	return new CombatRounds();
+    }
+
+    @Override
+    public FlightEvents.SpatialIndexRebuild spatialIndexRebuild()
+    {
+	return new SpatialIndexRebuild();
+    }
+
+    @Override
+    public FlightEvents.Persistence persistence()
+    {
+	return new Persistence();
+    }
+
+    @Name("battlefield.BattleStarted")
+    @Label("Battle Started")
+    @Category({ CATEGORY, "Battle" })
+    @Description("An engine ran the first tick of its battle")
+    public static final class BattleStarted extends Event implements FlightEvents.BattleStarted
+    {
+	@Label("First Army")
+	public String firstArmy;
+	@Label("First Army Actors")
+	public int firstArmyActors;
+	@Label("Second Army")
+	public String secondArmy;
+	@Label("Second Army Actors")
+	public int secondArmyActors;
+	@Label("Armies")
+	@Description("Factions of the battle; only the first two are named here")
+	public int armies;
+	@Label("Seed")
+	@Description("Seed of the stream of the battle; the same seed replays the same battle")
+	public long seed;
+
+	@Override
+	public void set(String firstArmy, int firstArmyActors, String secondArmy, int secondArmyActors, int armies,
+		long seed)
+	{
+	    this.firstArmy = firstArmy;
+	    this.firstArmyActors = firstArmyActors;
+	    this.secondArmy = secondArmy;
+	    this.secondArmyActors = secondArmyActors;
+	    this.armies = armies;
+	    this.seed = seed;
+	}
+    }
+
+    @Name("battlefield.BattleEnded")
+    @Label("Battle Ended")
+    @Category({ CATEGORY, "Battle" })
+    @Description("No army left standing has an enemy left standing")
+    public static final class BattleEnded extends Event implements FlightEvents.BattleEnded
+    {
+	@Label("Winner")
+	public String winner;
+	@Label("Survivors")
+	public int survivors;
+	@Label("Ticks")
+	public long ticks;
+	@Label("Simulated Seconds")
+	public double simulatedSeconds;
+
+	@Override
+	public void set(String winner, int survivors, long ticks, double simulatedSeconds)
+	{
+	    this.winner = winner;
+	    this.survivors = survivors;
+	    this.ticks = ticks;
+	    this.simulatedSeconds = simulatedSeconds;
+	}
+    }
+
+    @Name("battlefield.Tick")
+    @Label("Tick")
+    @Category({ CATEGORY, "Engine" })
+    @Description("One fixed time step of the battle")
+    public static final class Tick extends Event implements FlightEvents.Tick
+    {
+	@Label("Tick")
+	public long tick;
+	@Label("Units")
+	@Description("Actors still taking part at the start of the tick")
+	public int units;
+	@Label("Partitions")
+	public int partitions;
+	@Label("Nearest Queries")
+	@Description("Full searches for the nearest opponent")
+	public int nearestQueries;
+	@Label("Target Cache Hits")
+	@Description("Decisions taken against a cached target instead of a full search")
+	public int targetCacheHits;
+	@Label("Combat Rounds")
+	public int combatRounds;
+	@Label("Deaths")
+	public int deaths;
+
+	@Override
+	public void set(long tick, int units, int partitions, int nearestQueries, int targetCacheHits,
+		int combatRounds, int deaths)
+	{
+	    this.tick = tick;
+	    this.units = units;
+	    this.partitions = partitions;
+	    this.nearestQueries = nearestQueries;
+	    this.targetCacheHits = targetCacheHits;
+	    this.combatRounds = combatRounds;
+	    this.deaths = deaths;
+	}
+    }
+
+    @Name("battlefield.PartitionPhase")
+    @Label("Partition Phase")
+    @Category({ CATEGORY, "Engine" })
+    @Description("One phase of a tick run over one partition of the units")
+    public static final class PartitionPhase extends Event implements FlightEvents.PartitionPhase
+    {
+	@Label("Phase")
+	@Description("read, move or merge")
+	public String phase;
+	@Label("Tick")
+	public long tick;
+	@Label("Partition")
+	public int partition;
+	@Label("Units")
+	public int units;
+
+	@Override
+	public void set(String phase, long tick, int partition, int units)
+	{
+	    this.phase = phase;
+	    this.tick = tick;
+	    this.partition = partition;
+	    this.units = units;
+	}
+    }
+
+    @Name("battlefield.CombatRounds")
+    @Label("Combat Rounds")
+    @Category({ CATEGORY, "Engine" })
+    @Description("Damage of the combat rounds one partition rolled, dealt in the merge")
+    public static final class CombatRounds extends Event implements FlightEvents.CombatRounds
+    {
+	@Label("Tick")
+	public long tick;
+	@Label("Partition")
+	public int partition;
+	@Label("Rounds")
+	public int rounds;
+
+	@Override
+	public void set(long tick, int partition, int rounds)
+	{
+	    this.tick = tick;
+	    this.partition = partition;
+	    this.rounds = rounds;
+	}
+    }
+
+    @Name("battlefield.SpatialIndexRebuild")
+    @Label("Spatial Index Rebuild")
+    @Category({ CATEGORY, "Army" })
+    @Description("The spatial grid of an army was filled from scratch")
+    public static final class SpatialIndexRebuild extends Event implements FlightEvents.SpatialIndexRebuild
+    {
+	@Label("Army")
+	public String army;
+	@Label("Actors")
+	public int actors;
+	@Label("Cause")
+	@Description("populate or restore")
+	public String cause;
+
+	@Override
+	public void set(String army, int actors, String cause)
+	{
+	    this.army = army;
+	    this.actors = actors;
+	    this.cause = cause;
+	}
+    }
+
+    @Name("battlefield.Persistence")
+    @Label("Save or Restore")
+    @Category({ CATEGORY, "Persistence" })
+    @Description("A battlefield was saved to or restored from a file")
+    public static final class Persistence extends Event implements FlightEvents.Persistence
+    {
+	@Label("Operation")
+	@Description("save, restore, snapshot save or snapshot open")
+	public String operation;
+	@Label("Path")
+	public String path;
+	@Label("Armies")
+	public int armies;
+	@Label("Actors")
+	public int actors;
+	@Label("Size")
+	@DataAmount
+	public long bytes;
+
+	@Override
+	public void set(String operation, String path, int armies, int actors, long bytes)
+	{
+	    this.operation = operation;
+	    this.path = path;
+	    this.armies = armies;
+	    this.actors = actors;
+	    this.bytes = bytes;
+	}
+    }
+}
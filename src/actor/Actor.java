@@ -4,24 +4,17 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javafx.animation.Animation;
-import javafx.animation.RotateTransition;
-import javafx.animation.TranslateTransition;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.ObservableList;
 import javafx.geometry.Point2D;
 import javafx.scene.Node;
-import javafx.scene.control.TableColumn;
-import javafx.scene.control.TableView;
-import javafx.scene.control.Tooltip;
-import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.scene.control.cell.TextFieldTableCell;
-import javafx.util.Duration;
-import javafx.util.converter.DoubleStringConverter;
+import javafx.scene.image.ImageView;
+import javafx.scene.paint.Color;
 import util.Input;
-import util.SingletonRandom;
+import util.BattleRandom;
 import army.Army;
 
 /**
@@ -50,14 +43,21 @@ import army.Army;
  * @author Calvin Li
  */
 
-@SuppressWarnings("serial")
 public abstract class Actor implements Serializable
 {
+    /**
+     * UID of the class as the first version saved it in <i>battlefield.ser</i>.
+     * The fields have changed since, but <i>writeObject()</i> never wrote any
+     * of them, only the values it writes by hand in the same order as then, so
+     * pinning the UIDs of <i>Actor</i> and its subclasses is what keeps those
+     * files readable, currently:{@value}
+     */
+    private static final long serialVersionUID = -2799570279252744783L;
     /**
      * Static variable used to keep track of the number of <i>Actor</i> objects
-     * built.
+     * built. Atomic, since batch runs build armies on many threads at once.
      */
-    private static int actorSerialNumber = 1;
+    private static final AtomicInteger actorSerialNumber = new AtomicInteger(1);
 
     // THESE ARE BOUNDARIES FOR THE ATTRIBUTES
     /** Minimum Boundary for <i>health</i> attribute, currently:{@value} */
@@ -72,44 +72,54 @@ public abstract class Actor implements Serializable
     public final static double MIN_SPEED = 20.0;
     /** Maximum Boundary for <i>speed</i> attribute, currently:{@value} */
     public final static double MAX_SPEED = 100.0;
+    /** Largest share of <i>strength</i> dealt as damage in one round, currently:{@value} */
+    public final static double DAMAGE_RATIO = 0.2;
+    /** Bytes of subclass attributes in a saved battlefield record, currently:{@value} */
+    public final static int TRAITS_SIZE = 9;
 
     // THESE ARE VARIOUS INSTANCE FIELDS USED FOR EACH ACTOR
     /**
-     * * Stores the <i>name</i> value assigned to the specific <i>Actor</i> object
-     */
-    private SimpleStringProperty name = new SimpleStringProperty();
-    /**
-     * * Stores the <i>strength</i> value assigned to the specific <i>Actor</i> *
-     * object
+     * columns holding <i>health</i>, <i>strength</i>, <i>speed</i>, location,
+     * type and alive flag of this <i>Actor</i>; shared with the rest of its
+     * <i>Army</i>
      */
-    private SimpleDoubleProperty strength = new SimpleDoubleProperty();
+    private ActorStore store;
+    /** index of this <i>Actor</i> in <i>store</i> */
+    private int id;
+    /** serial number the default <i>name</i> is built from */
+    private int serialNumber;
     /**
-     * * Stores the <i>speed</i> value assigned to the specific <i>Actor</i> *
-     * object
+     * * Stores the <i>name</i> value assigned to the specific <i>Actor</i> object,
+     * only once it differs from the default class name plus serial number
      */
-    private SimpleDoubleProperty speed = new SimpleDoubleProperty();
+    private String name;
     /**
-     * * Stores the <i>health</i> value assigned to the specific <i>Actor</i> *
-     * object
+     * JavaFX properties for the table UI, created the first time one is asked for
      */
-    private SimpleDoubleProperty health = new SimpleDoubleProperty();
+    private ActorProperties properties;
 
     /**
      * generates a variable for army class to call upon army methods
      */
     private Army armyAllegiance;
     /**
-     * it is use to make actors move
-     */
-    private TranslateTransition tt;
-    /**
-     * it is use to make actors rotate
+     * screen avatar, built only when the actor first comes into view; it shows
+     * a sprite shared with every actor that looks the same
      */
-    private RotateTransition rt;
+    private transient ImageView avatar;
+
     /**
-     * use to display attributes of the individual actors
+     * <i>ActorProperties</i> holds the observable view of an <i>Actor</i> used by
+     * the table UI. Simulation code never needs it, so most actors never build
+     * one.
      */
-    private Tooltip tooltip;
+    private static final class ActorProperties
+    {
+	private SimpleStringProperty name;
+	private SimpleDoubleProperty health;
+	private SimpleDoubleProperty strength;
+	private SimpleDoubleProperty speed;
+    }
 
     // CONSTRUCTOR
     /**
@@ -119,29 +129,138 @@ public abstract class Actor implements Serializable
      */
     public Actor()
     {
-	setName(this.getClass().getSimpleName() + actorSerialNumber);
-	setStrength((double) Math
-		.round((SingletonRandom.instance.getNormalDistribution(MIN_STRENGTH, MAX_STRENGTH, 3.0)) * 10.0)
-		/ 10.0);
-	setHealth((double) Math
-		.round((SingletonRandom.instance.getNormalDistribution(MIN_HEALTH, MAX_HEALTH, 3.0)) * 10.0) / 10.0);// Math.round((MAX_HEALTH)*10)/10.0);
-	setSpeed((double) Math.round((SingletonRandom.instance.getNormalDistribution(MIN_SPEED, MAX_SPEED, 3.0)) * 10.0)
-		/ 10.0);
-	actorSerialNumber++;
+	this(null);
     }
 
     /**
      * <i>Actor</i> constructor is used to create <i>Actor</i> objects
      * automatically. It gives them randomly generated values for <i>name</i>,
      * <i>health</i>, <i>strength</i> and <i>speed</i>. It takes a parameter
-     * <i>armyAllegiance</i>.
+     * <i>armyAllegiance</i>. The new <i>Actor</i> lives in the <i>ActorStore</i>
+     * of its <i>Army</i>, or in a store of its own when it has none.
      * 
      * @param armyAllegiance This is used to return the army it belongs to.
      */
     public Actor(Army armyAllegiance)
     {
-	this();
+	this(armyAllegiance, true);
+    }
+
+    /**
+     * Builds an <i>Actor</i> in the <i>ActorStore</i> of <i>armyAllegiance</i>.
+     * Without <i>rollAttributes</i> nothing is drawn from the random stream and
+     * every attribute starts at zero, for actors whose state is about to be read
+     * back from a saved battlefield.
+     * 
+     * @param armyAllegiance This is used to return the army it belongs to.
+     * @param rollAttributes true to give the attributes randomly generated values
+     */
+    protected Actor(Army armyAllegiance, boolean rollAttributes)
+    {
+	this.armyAllegiance = armyAllegiance;
+	this.store = armyAllegiance == null ? new ActorStore(1) : armyAllegiance.getStore();
+	this.id = this.store.allocate(getType());
+	this.serialNumber = actorSerialNumber.getAndIncrement();
+	if (rollAttributes)
+	    rollAttributes(getRandom());
+    }
+
+    /**
+     * Builds an <i>Actor</i> as part of a batch built in parallel, into an id
+     * and a serial number reserved for it beforehand. The id is not alive yet,
+     * so nothing here touches the totals of the store, and the attributes are
+     * drawn from <i>random</i>, the stream of the part of the batch this thread
+     * builds, instead of the stream of the <i>Army</i>.
+     * 
+     * @param armyAllegiance army the actor belongs to
+     * @param id id reserved through <i>ActorStore.reserve()</i>
+     * @param serialNumber serial number reserved through
+     * <i>reserveSerialNumbers()</i>
+     * @param random stream to draw the attributes from
+     */
+    protected Actor(Army armyAllegiance, int id, int serialNumber, BattleRandom random)
+    {
 	this.armyAllegiance = armyAllegiance;
+	this.store = armyAllegiance.getStore();
+	this.id = id;
+	this.serialNumber = serialNumber;
+	rollAttributes(random);
+    }
+
+    /**
+     * reserves a run of serial numbers for a batch of actors, so a batch built in
+     * parallel is numbered in order whichever thread builds which actor
+     * 
+     * @param count number of actors in the batch
+     * @return the serial number of the first of them
+     */
+    public static int reserveSerialNumbers(int count)
+    {
+	return actorSerialNumber.getAndAdd(count);
+    }
+
+    private void rollAttributes(BattleRandom random)
+    {
+	setStrength((double) Math
+		.round((random.getNormalDistribution(MIN_STRENGTH, MAX_STRENGTH, 3.0)) * 10.0)
+		/ 10.0);
+	setHealth((double) Math
+		.round((random.getNormalDistribution(MIN_HEALTH, MAX_HEALTH, 3.0)) * 10.0) / 10.0);// Math.round((MAX_HEALTH)*10)/10.0);
+	setSpeed((double) Math.round((random.getNormalDistribution(MIN_SPEED, MAX_SPEED, 3.0)) * 10.0)
+		/ 10.0);
+    }
+
+    /**
+     * tells which <i>ActorFactory.Type</i> builds this kind of <i>Actor</i>
+     * 
+     * @return the type of this <i>Actor</i>
+     */
+    public abstract ActorFactory.Type getType();
+
+    /**
+     * gives the random stream used while this <i>Actor</i> is being built and
+     * outside the engine: the stream of its <i>Army</i>, or a fresh unseeded one
+     * for an <i>Actor</i> without an <i>Army</i>
+     * 
+     * @return the stream to draw from
+     */
+    protected BattleRandom getRandom()
+    {
+	if (this.armyAllegiance != null)
+	    return this.armyAllegiance.getRandom();
+	return new BattleRandom();
+    }
+
+    /**
+     * @return the store holding the state of this <i>Actor</i>
+     */
+    public ActorStore getStore()
+    {
+	return this.store;
+    }
+
+    /**
+     * @return the index of this <i>Actor</i> in its <i>ActorStore</i>
+     */
+    public int getId()
+    {
+	return this.id;
+    }
+
+    /**
+     * @return false once the <i>Actor</i> has been removed from the battle
+     */
+    public boolean isAlive()
+    {
+	return this.store.isAlive(this.id);
+    }
+
+    /**
+     * flags the <i>Actor</i> as no longer taking part in the battle
+     */
+    public void markDead()
+    {
+	this.store.setAlive(this.id, false);
     }
 
     // SETTER FOR NAME
@@ -152,7 +271,18 @@ public abstract class Actor implements Serializable
      */
     public void setName(String name)
     {
-	this.name.set(name);
+	this.name = name;
+	if (this.properties != null && this.properties.name != null)
+	    this.properties.name.set(name);
+    }
+
+    /**
+     * @return true while the <i>name</i> is still the default class name plus
+     * serial number
+     */
+    public boolean hasDefaultName()
+    {
+	return this.name == null;
     }
 
     // GETTER FOR NAME
@@ -163,7 +293,9 @@ public abstract class Actor implements Serializable
      */
     public String getName()
     {
-	return this.name.get();
+	if (this.name == null)
+	    return this.getClass().getSimpleName() + this.serialNumber;
+	return this.name;
     }
 
     // SETTER FOR HEALTH
@@ -179,7 +311,9 @@ public abstract class Actor implements Serializable
 	    health = MIN_HEALTH;
 	else if (health > MAX_HEALTH)
 	    health = MAX_HEALTH;
-	this.health.set(health);
+	this.store.setHealth(this.id, health);
+	if (this.properties != null && this.properties.health != null)
+	    this.properties.health.set(health);
     }
 
     // GETTER FOR HEALTH
@@ -190,7 +324,7 @@ public abstract class Actor implements Serializable
      */
     public double getHealth()
     {
-	return this.health.get();
+	return this.store.getHealth(this.id);
     }
 
     // SETTER FOR STRENGTH
@@ -206,7 +340,9 @@ public abstract class Actor implements Serializable
 	    strength = MIN_STRENGTH;
 	else if (strength > MAX_STRENGTH)
 	    strength = MAX_STRENGTH;
-	this.strength.set(strength);
+	this.store.setStrength(this.id, strength);
+	if (this.properties != null && this.properties.strength != null)
+	    this.properties.strength.set(strength);
     }
 
     // GETTER FOR STRENGTH
@@ -217,7 +353,7 @@ public abstract class Actor implements Serializable
      */
     public double getStrength()
     {
-	return this.strength.get();
+	return this.store.getStrength(this.id);
     }
 
     // SETTER FOR SPEED
@@ -233,7 +369,9 @@ public abstract class Actor implements Serializable
 	    speed = MIN_SPEED;
 	else if (speed > MAX_SPEED)
 	    speed = MAX_SPEED;
-	this.speed.set(speed);
+	this.store.setSpeed(this.id, speed);
+	if (this.properties != null && this.properties.speed != null)
+	    this.properties.speed.set(speed);
     }
 
     // GETTER FOR SPEED
@@ -244,7 +382,59 @@ public abstract class Actor implements Serializable
      */
     public double getSpeed()
     {
-	return this.speed.get();
+	return this.store.getSpeed(this.id);
+    }
+
+    // PROPERTIES FOR THE TABLE UI
+    /**
+     * @return observable <i>name</i>, built on first use
+     */
+    public SimpleStringProperty nameProperty()
+    {
+	ActorProperties p = getProperties();
+	if (p.name == null)
+	    p.name = new SimpleStringProperty(this, "name", getName());
+	return p.name;
+    }
+
+    /**
+     * @return observable <i>health</i>, built on first use
+     */
+    public SimpleDoubleProperty healthProperty()
+    {
+	ActorProperties p = getProperties();
+	if (p.health == null)
+	    p.health = new SimpleDoubleProperty(this, "health", getHealth());
+	return p.health;
+    }
+
+    /**
+     * @return observable <i>strength</i>, built on first use
+     */
+    public SimpleDoubleProperty strengthProperty()
+    {
+	ActorProperties p = getProperties();
+	if (p.strength == null)
+	    p.strength = new SimpleDoubleProperty(this, "strength", getStrength());
+	return p.strength;
+    }
+
+    /**
+     * @return observable <i>speed</i>, built on first use
+     */
+    public SimpleDoubleProperty speedProperty()
+    {
+	ActorProperties p = getProperties();
+	if (p.speed == null)
+	    p.speed = new SimpleDoubleProperty(this, "speed", getSpeed());
+	return p.speed;
+    }
+
+    private ActorProperties getProperties()
+    {
+	if (this.properties == null)
+	    this.properties = new ActorProperties();
+	return this.properties;
     }
 
     // GETTER FOR ARMY ALLEGIANCE
@@ -258,6 +448,62 @@ public abstract class Actor implements Serializable
 	return this.armyAllegiance;
     }
 
+    // GETTER FOR X
+    /**
+     * Returns the horizontal location of the <i>Actor</i> on the battlefield.
+     * 
+     * @return the horizontal location of the <i>Actor</i>.
+     */
+    public double getX()
+    {
+	return this.store.getX(this.id);
+    }
+
+    // GETTER FOR Y
+    /**
+     * Returns the vertical location of the <i>Actor</i> on the battlefield.
+     * 
+     * @return the vertical location of the <i>Actor</i>.
+     */
+    public double getY()
+    {
+	return this.store.getY(this.id);
+    }
+
+    // SETTER FOR LOCATION
+    /**
+     * Moves the <i>Actor</i> to a new location on the battlefield. The avatar is
+     * not touched here, it catches up the next time <i>updateAvatar()</i> is
+     * called by the renderer. The <i>Army</i> is told so it can keep its spatial
+     * index current.
+     * 
+     * @param x new horizontal location
+     * @param y new vertical location
+     */
+    public void setLocation(double x, double y)
+    {
+	double oldX = this.getX();
+	double oldY = this.getY();
+	this.store.setLocation(this.id, x, y);
+	if (this.armyAllegiance != null)
+	    this.armyAllegiance.actorMoved(this, oldX, oldY);
+    }
+
+    /**
+     * copies the battlefield location onto the avatar so the screen shows the
+     * current state of the simulation. Does nothing for headless actors that
+     * never created an avatar.
+     */
+    public void updateAvatar()
+    {
+	Node avatar = this.getAvatar();
+	if (avatar != null)
+	{
+	    avatar.setTranslateX(this.getX());
+	    avatar.setTranslateY(this.getY());
+	}
+    }
+
     // METHOD FOR USER INPUTED VALUES
     /**
      * This method is called when a user wants to fill in all the fields for a
@@ -282,16 +528,41 @@ public abstract class Actor implements Serializable
      * be engaged in the battle.
      * @return The health of the <i>Actor</i> object that started the battle.
      */
-    protected double combatRound(Actor defender)
+    public double combatRound(Actor defender)
     {
-	double damageRatio = 0.2;
 	// 100 * (0.2 * 1) = 20
-	double damageDef = defender.strength.get() * (damageRatio * Math.random());
-	double damageOpp = this.strength.get() * (damageRatio * Math.random());
-	this.health.set((Math.round(this.health.get() - damageDef)) * 10.0 / 10.0);
-	defender.health.set(Math.round((defender.health.get() - damageOpp)) * 10.0 / 10.0);
+	BattleRandom random = this.getRandom();
+	double damageDef = defender.rollDamage(random);
+	double damageOpp = this.rollDamage(random);
+	this.takeDamage(damageDef);
+	defender.takeDamage(damageOpp);
+
+	return this.getHealth();
+    }
+
+    /**
+     * rolls the damage this <i>Actor</i> deals in one round of combat. Nothing is
+     * changed, so the engine can roll damage for many actors at once and apply it
+     * later.
+     * 
+     * @param random the stream of whoever is rolling; the engine passes the
+     * stream of the partition so workers never share one
+     * @return damage between zero and <i>DAMAGE_RATIO</i> times the strength
+     */
+    public double rollDamage(BattleRandom random)
+    {
+	return this.getStrength() * (DAMAGE_RATIO * random.nextDouble());
+    }
 
-	return this.health.get();
+    /**
+     * takes damage dealt by an opponent, rounding the remaining health the same
+     * way every round of combat does
+     * 
+     * @param damage the damage dealt
+     */
+    public void takeDamage(double damage)
+    {
+	this.setHealth((Math.round(this.getHealth() - damage)) * 10.0 / 10.0);
     }
 
     // METHOD FOR TEXTUAL DISPLAY
@@ -308,63 +579,35 @@ public abstract class Actor implements Serializable
     }
 
     /**
-     * this abstract method makes the individual actors create an avatar for display
-     * (eg. Hobbit Red Circles)
+     * makes the individual actors create an avatar for display (eg. Hobbit Red
+     * Circles): an <i>ImageView</i> of the sprite of its type, size and army,
+     * drawn once by <i>AvatarSprites</i> and shared. The avatar carries the
+     * <i>Actor</i> as its user data, so a hover on it can tell whose it is.
      */
-    public abstract void createAvatar();
+    public void createAvatar()
+    {
+	this.avatar = new ImageView();
+	this.avatar.setUserData(this);
+	showSprite();
+    }
 
     /**
-     * this abstract method makes the individual actors display an avatar
+     * gives the avatar of the actor
      * 
-     * @return it returns a node it could be a ImageView if the avatar is a gif
+     * @return the avatar, or null until <i>createAvatar()</i> is called
      */
-    public abstract Node getAvatar();
-
-    /**
-     * startMoving method is method use to make avatars move and rotate use for most
-     * of the displays of how actors interact in simulator
-     */
-    public void startMoving()
+    public Node getAvatar()
     {
-	Army opposingArmy = this.armyAllegiance.getOpposingArmy();
-	Actor opponent = opposingArmy.findNearestActor(this);
-	if (opponent == null)
-	{
-	    return;
-	} else
-	{
-	    if (this.getHealth() <= 0.0)
-	    {
-		this.getAvatar().setVisible(false);
-		this.armyAllegiance.removeNowDeadActor(this);
-		return;
-	    } else
-	    {
-		double distanceToOpponent = this.distanceTo(opponent);
-		if (tt == null && rt == null)
-		{
-		    tt = new TranslateTransition(Duration.seconds(distanceToOpponent / this.getSpeed()),
-			    this.getAvatar());
-		    rt = new RotateTransition(Duration.seconds(0.5), this.getAvatar());
-		}
-		if (distanceToOpponent < 4.0)
-		{
-		    this.combatRound(opponent);
-		    this.rt.setByAngle(this.combatRound(opponent));
-		    this.rt.setOnFinished(event -> startMoving());
-		    this.rt.play();
-		} else
-		{
-		    Point2D newLocation = findNewLocation(opponent);
-		    this.tt.setDelay(Duration.seconds(1.0 / this.getSpeed()));
-		    this.tt.setToY(newLocation.getY());
-		    this.tt.setToX(newLocation.getX());
-		    this.tt.setOnFinished(event -> this.startMoving()); // NOT RECURSION!!!!
-		    this.tt.play();
-		}
-	    }
+	return this.avatar;
+    }
 
-	}
+    private void showSprite()
+    {
+	Color armyColor = this.armyAllegiance != null ? this.armyAllegiance.getColor() : Color.TRANSPARENT;
+	AvatarSprites.Sprite sprite = AvatarSprites.get(getType(), getStrength(), armyColor);
+	this.avatar.setImage(sprite.getImage());
+	this.avatar.setX(sprite.getOffsetX());
+	this.avatar.setY(sprite.getOffsetY());
     }
 
     /**
@@ -374,12 +617,12 @@ public abstract class Actor implements Serializable
      * @param opponent use to find the actors closest opponent
      * @return this returns a point (x,y) on the simulator
      */
-    protected Point2D findNewLocation(Actor opponent)
+    public Point2D findNewLocation(Actor opponent)
     {
-	double xOpponent = opponent.getAvatar().getTranslateX();
-	double yOpponent = opponent.getAvatar().getTranslateY();
-	double xToMove = getAvatar().getTranslateX();
-	double yToMove = getAvatar().getTranslateY();
+	double xOpponent = opponent.getX();
+	double yOpponent = opponent.getY();
+	double xToMove = this.getX();
+	double yToMove = this.getY();
 	double deltaX = xOpponent - xToMove;
 	double deltaY = yOpponent - yToMove;
 	if (Math.abs(Math.round(deltaX)) < 4.0 && Math.abs(Math.round(deltaY)) < 4.0)
@@ -395,29 +638,6 @@ public abstract class Actor implements Serializable
 	}
     };
 
-    /**
-     * this pauses all actor from moving on the simulator
-     */
-    public void suspendMoving()
-    {
-	if (tt == null && rt == null)
-	{
-	    Army opposingArmy = this.armyAllegiance.getOpposingArmy();
-	    Actor opponent = opposingArmy.findNearestActor(this);
-	    double distanceToOpponent = this.distanceTo(opponent);
-	    tt = new TranslateTransition(Duration.seconds(distanceToOpponent / this.getSpeed()), this.getAvatar());
-	    rt = new RotateTransition(Duration.seconds(0.5), this.getAvatar());
-	}
-	if (this.tt.getStatus() == Animation.Status.RUNNING && this.tt != null)
-	{
-	    this.tt.stop();
-	}
-	if (this.rt.getStatus() == Animation.Status.RUNNING && this.rt != null)
-	{
-	    this.rt.stop();
-	}
-    }
-
     /**
      * this is use for actors that have less then 15.0 when actors are to weak and
      * they will not move
@@ -429,7 +649,7 @@ public abstract class Actor implements Serializable
     {
 	if (this.getHealth() < 15.0)
 	{
-	    return new Point2D(this.getAvatar().getTranslateX(), this.getAvatar().getTranslateY());
+	    return new Point2D(this.getX(), this.getY());
 	} else
 	{
 	    return null;
@@ -445,107 +665,25 @@ public abstract class Actor implements Serializable
      */
     public double distanceTo(Actor opponent)
     {
-	double xToMove = getAvatar().getTranslateX();
-	double yToMove = getAvatar().getTranslateY();
-	double xOpponent = opponent.getAvatar().getTranslateX();
-	double yOpponent = opponent.getAvatar().getTranslateY();
+	double xToMove = this.getX();
+	double yToMove = this.getY();
+	double xOpponent = opponent.getX();
+	double yOpponent = opponent.getY();
 	double deltaX = xToMove - xOpponent;
 	double deltaY = yToMove - yOpponent;
 	double calculatedDistance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
 	return calculatedDistance;
     }
 
-    // * createTable is static to allow Army to define a table without having
-    // any Actor objects present. */
-    /**
-     * createTable is static to allow Army to define a table without having any
-     * Actor objects present.
-     */
-    public static TableView<Actor> createTable()
-    {
-	TableView<Actor> table = new TableView<Actor>();
-	final double PREF_WIDTH_DOUBLE = 75.0;
-	table.setPrefWidth(PREF_WIDTH_DOUBLE * 7.5);
-	table.setEditable(true);
-
-	TableColumn<Actor, String> nameCol = new TableColumn<>("Name");
-	nameCol.setCellValueFactory(new PropertyValueFactory<Actor, String>("name"));
-	nameCol.setPrefWidth(PREF_WIDTH_DOUBLE);
-	TableColumn<Actor, Double> healthCol = new TableColumn<>("Health");
-	healthCol.setCellValueFactory(new PropertyValueFactory<Actor, Double>("health"));
-	healthCol.setPrefWidth(PREF_WIDTH_DOUBLE);
-	TableColumn<Actor, Double> strengthCol = new TableColumn<>("Strength");
-	strengthCol.setCellValueFactory(new PropertyValueFactory<Actor, Double>("strength"));
-	strengthCol.setPrefWidth(PREF_WIDTH_DOUBLE);
-	TableColumn<Actor, Double> speedCol = new TableColumn<>("Speed");
-	speedCol.setCellValueFactory(new PropertyValueFactory<Actor, Double>("speed"));
-	speedCol.setPrefWidth(PREF_WIDTH_DOUBLE);
-	TableColumn<Actor, Number> locationXCol = new TableColumn<>("X");
-	locationXCol.setCellValueFactory(cell -> cell.getValue().getAvatar().translateXProperty());
-	locationXCol.setPrefWidth(PREF_WIDTH_DOUBLE);
-	TableColumn<Actor, Number> locationYCol = new TableColumn<>("Y");
-	locationYCol.setCellValueFactory(cell -> cell.getValue().getAvatar().translateYProperty());
-	locationYCol.setPrefWidth(PREF_WIDTH_DOUBLE);
-	ObservableList<TableColumn<Actor, ?>> c = table.getColumns();
-	c.add(nameCol);
-	c.add(healthCol);
-	c.add(strengthCol);
-	c.add(speedCol);
-	c.add(locationXCol);
-	c.add(locationYCol);
-	// Compare line ABOVE with line BELOW: The BELOW line looks cleaner and does
-	// actually work . . . but the compiler spits out a warning. The ABOVE line
-	// accomplishes the same thing, less elegantly, but without warnings.
-	// table.getColumns().addAll(nameCol, healthCol, strengthCol, speedCol,
-	// locationXCol, locationYCol);
-
-	// The following code makes each cell in the selected columns editable (Name,
-	// Health, Strength, Speed)
-	// We CANNOT implement edit capabilities on the X/Y columns since they are
-	// READ-ONLY.
-	nameCol.setCellFactory(TextFieldTableCell.<Actor>forTableColumn());
-	nameCol.setOnEditCommit(event ->
-	{
-	    Actor a = (event.getTableView().getItems().get(event.getTablePosition().getRow()));
-	    a.setName(event.getNewValue());
-	    a.resetAvatarAttributes();
-	});
-
-	healthCol.setCellFactory(TextFieldTableCell.<Actor, Double>forTableColumn(new DoubleStringConverter()));
-	healthCol.setOnEditCommit(event ->
-	{
-	    Actor a = (event.getTableView().getItems().get(event.getTablePosition().getRow()));
-	    a.setHealth(event.getNewValue());
-	    a.resetAvatarAttributes();
-	});
-
-	strengthCol.setCellFactory(TextFieldTableCell.<Actor, Double>forTableColumn(new DoubleStringConverter()));
-	strengthCol.setOnEditCommit(event ->
-	{
-	    Actor a = (event.getTableView().getItems().get(event.getTablePosition().getRow()));
-	    a.setStrength(event.getNewValue());
-	    a.resetAvatarAttributes();
-	});
-
-	speedCol.setCellFactory(TextFieldTableCell.<Actor, Double>forTableColumn(new DoubleStringConverter()));
-	speedCol.setOnEditCommit(event ->
-	{
-	    Actor a = (event.getTableView().getItems().get(event.getTablePosition().getRow()));
-	    a.setSpeed(event.getNewValue());
-	    a.resetAvatarAttributes();
-	});
-
-	return table;
-    } // end createTable()
-
     /**
-     * use to update the tooltip on actors
+     * use to update the avatar after the attributes were edited: a new strength
+     * may call for a sprite of another size. The text shown on hover is built
+     * when it is shown, so it needs nothing here.
      */
     public void resetAvatarAttributes()
     {
-	this.tooltip = new Tooltip();
-	this.tooltip.setText(this.toString());// Note: This updates the text in the Tooltip that was installed earlier.
-	// We re-use the originally installed Tooltip.
+	if (this.avatar != null)
+	    showSprite();
     }
 
     /**
@@ -563,7 +701,7 @@ public abstract class Actor implements Serializable
      */
     public int getactorSerial()
     {
-	return actorSerialNumber;
+	return actorSerialNumber.get();
     }
 
     /**
@@ -574,6 +712,37 @@ public abstract class Actor implements Serializable
     public void setArmyAllegiance(Army army)
     {
 	this.armyAllegiance = army;
+	if (army != null && army.getStore() != this.store)
+	{ // move the state into the columns of the new army
+	    int newId = army.getStore().copyFrom(this.store, this.id);
+	    this.store.setAlive(this.id, false);
+	    this.store = army.getStore();
+	    this.id = newId;
+	}
+    }
+
+    /**
+     * writes the attributes a subclass adds to <i>Actor</i> into the fixed-width
+     * trait field of a saved battlefield record: one byte of flags followed by
+     * one double, <i>TRAITS_SIZE</i> bytes in all. <i>Actor</i> itself has no
+     * traits and writes zeros.
+     * 
+     * @param buffer buffer positioned at the trait field
+     */
+    public void writeTraits(ByteBuffer buffer)
+    {
+	buffer.put((byte) 0);
+	buffer.putDouble(0.0);
+    }
+
+    /**
+     * reads back what <i>writeTraits()</i> wrote
+     * 
+     * @param buffer buffer positioned at the trait field
+     */
+    public void readTraits(ByteBuffer buffer)
+    {
+	buffer.position(buffer.position() + TRAITS_SIZE);
     }
 
     // Explicit implementation of writeObject, but called implicitly as a result
@@ -586,16 +755,13 @@ public abstract class Actor implements Serializable
      */
     private void writeObject(ObjectOutputStream out) throws IOException
     {
-	out.writeObject(getName()); // SimpleDoubleProperty name is NOT serializable, so I do it manually
-	out.writeDouble(getStrength()); // SimpleDoubleProperty strength is NOT serializable, so I do it manually
-	out.writeDouble(getHealth()); // SimpleDoubleProperty health is NOT serializable, so I do it manually
-	out.writeDouble(getSpeed()); // SimpleDoubleProperty speed is NOT serializable, so I do it manually
-	out.writeDouble(getAvatar().getTranslateX()); // Node battlefieldAvatar is NOT serializable. It's TOO BIG
-	// anyway, so I extract the elements that I need (here, translateX
-	// property) to retain manually.
-	out.writeDouble(getAvatar().getTranslateY()); // Node battlefieldAvatar is NOT serializable. It's TOO BIG
-	// anyway, so I extract the elements that I need (here, translateY
-	// property) to retain manually.
+	out.writeObject(getName()); // the state lives in the ActorStore columns, so I write it manually
+	out.writeDouble(getStrength());
+	out.writeDouble(getHealth());
+	out.writeDouble(getSpeed());
+	out.writeDouble(getX()); // Node battlefieldAvatar is NOT serializable. It's TOO BIG anyway, and the engine
+	// keeps the location on the Actor itself, so that is what gets retained.
+	out.writeDouble(getY());
     } // end writeObject() to support serialization
 
     // Explicit implementation of readObject, but called implicitly as a result
@@ -610,15 +776,43 @@ public abstract class Actor implements Serializable
      */
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
     {
-	this.name = new SimpleStringProperty((String) in.readObject());
-	this.strength = new SimpleDoubleProperty(in.readDouble());
-	this.health = new SimpleDoubleProperty(in.readDouble());
-	this.speed = new SimpleDoubleProperty(in.readDouble());
-	this.createAvatar();
-	this.getAvatar().setTranslateX(in.readDouble());
-	this.getAvatar().setTranslateY(in.readDouble());
-	this.tooltip = new Tooltip(toString());
-	Tooltip.install(getAvatar(), tooltip);
-	this.resetAvatarAttributes();
+	this.store = new ActorStore(1); // the Army moves it into its own store in setArmyAllegiance()
+	this.id = this.store.allocate(getType());
+	String name = (String) in.readObject(); // saves always carry a name, the default one included
+	int serialNumber = name != null ? defaultSerialNumber(name) : -1;
+	if (serialNumber >= 0)
+	{
+	    this.serialNumber = serialNumber; // keeps hasDefaultName() true, and the same name
+	    // actors made after the restore must not be numbered, and named, like this one
+	    actorSerialNumber.accumulateAndGet(serialNumber + 1, Math::max);
+	}
+	else
+	{
+	    this.serialNumber = actorSerialNumber.getAndIncrement();
+	    this.name = name;
+	}
+	this.store.setStrength(this.id, in.readDouble());
+	this.store.setHealth(this.id, in.readDouble());
+	this.store.setSpeed(this.id, in.readDouble());
+	this.setLocation(in.readDouble(), in.readDouble());
+	// the avatar is built by the Army that adopts this actor, and only when it has a Simulator to show it on
     } // end readObject() to support serialization
+
+    /**
+     * @return the serial number a default name was built from, or -1 when the
+     * name is not the class name plus a serial number
+     */
+    private int defaultSerialNumber(String name)
+    {
+	String prefix = this.getClass().getSimpleName();
+	if (!name.startsWith(prefix) || name.length() == prefix.length()
+		|| name.length() - prefix.length() > 9 || name.charAt(prefix.length()) == '0')
+	    return -1;
+	for (int i = prefix.length(); i < name.length(); ++i)
+	{
+	    if (name.charAt(i) < '0' || name.charAt(i) > '9')
+		return -1;
+	}
+	return Integer.parseInt(name.substring(prefix.length()));
+    }
 }
\ No newline at end of file
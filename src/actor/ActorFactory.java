@@ -1,6 +1,8 @@
 package actor;
 
+import javafx.scene.paint.Color;
 import army.Army;
+import util.BattleRandom;
 
 /**
  * class ActorFactory is a wrapper class that encapsulates tools needed for the
@@ -30,6 +32,36 @@ public final class ActorFactory
 	    {
 		return new Hobbit(armyAllegiance);
 	    }
+
+	    @Override
+	    public Actor restore(Army armyAllegiance)
+	    {
+		return new Hobbit(armyAllegiance, false);
+	    }
+
+	    @Override
+	    public Actor create(Army armyAllegiance, int id, int serialNumber, BattleRandom random)
+	    {
+		return new Hobbit(armyAllegiance, id, serialNumber, random);
+	    }
+
+	    @Override
+	    public double getAvatarSize(double strength)
+	    {
+		return Hobbit.avatarSize(strength);
+	    }
+
+	    @Override
+	    public Color getAvatarColor()
+	    {
+		return Hobbit.AVATAR_COLOR;
+	    }
+
+	    @Override
+	    public boolean isAvatarRound()
+	    {
+		return true;
+	    }
 	}, // HOBBIT is a constant, thus all UPPERCASE letters
 	WIZARD()
 	{
@@ -38,6 +70,30 @@ public final class ActorFactory
 	    {
 		return new Wizard(armyAllegiance);
 	    }
+
+	    @Override
+	    public Actor restore(Army armyAllegiance)
+	    {
+		return new Wizard(armyAllegiance, false);
+	    }
+
+	    @Override
+	    public Actor create(Army armyAllegiance, int id, int serialNumber, BattleRandom random)
+	    {
+		return new Wizard(armyAllegiance, id, serialNumber, random);
+	    }
+
+	    @Override
+	    public double getAvatarSize(double strength)
+	    {
+		return Wizard.avatarSize(strength);
+	    }
+
+	    @Override
+	    public Color getAvatarColor()
+	    {
+		return Wizard.AVATAR_COLOR;
+	    }
 	},
 	ORC()
 	{
@@ -46,6 +102,30 @@ public final class ActorFactory
 	    {
 		return new Orc(armyAllegiance);
 	    }
+
+	    @Override
+	    public Actor restore(Army armyAllegiance)
+	    {
+		return new Orc(armyAllegiance, false);
+	    }
+
+	    @Override
+	    public Actor create(Army armyAllegiance, int id, int serialNumber, BattleRandom random)
+	    {
+		return new Orc(armyAllegiance, id, serialNumber, random);
+	    }
+
+	    @Override
+	    public double getAvatarSize(double strength)
+	    {
+		return Orc.avatarSize(strength);
+	    }
+
+	    @Override
+	    public Color getAvatarColor()
+	    {
+		return Orc.AVATAR_COLOR;
+	    }
 	},
 	NAZGUL()
 	{
@@ -54,6 +134,30 @@ public final class ActorFactory
 	    {
 		return new Nazgul(armyAllegiance);
 	    }
+
+	    @Override
+	    public Actor restore(Army armyAllegiance)
+	    {
+		return new Nazgul(armyAllegiance, false);
+	    }
+
+	    @Override
+	    public Actor create(Army armyAllegiance, int id, int serialNumber, BattleRandom random)
+	    {
+		return new Nazgul(armyAllegiance, id, serialNumber, random);
+	    }
+
+	    @Override
+	    public double getAvatarSize(double strength)
+	    {
+		return Nazgul.avatarSize(strength);
+	    }
+
+	    @Override
+	    public Color getAvatarColor()
+	    {
+		return Nazgul.AVATAR_COLOR;
+	    }
 	},
 	RANDOM()
 	{
@@ -62,6 +166,30 @@ public final class ActorFactory
 	    {
 		return createActorRandomSelection(armyAllegiance);
 	    }
+
+	    @Override
+	    public Actor restore(Army armyAllegiance)
+	    {
+		throw new UnsupportedOperationException("an actor is never saved as RANDOM");
+	    }
+
+	    @Override
+	    public Actor create(Army armyAllegiance, int id, int serialNumber, BattleRandom random)
+	    {
+		throw new UnsupportedOperationException("ids are reserved per type; RANDOM actors are built one at a time");
+	    }
+
+	    @Override
+	    public double getAvatarSize(double strength)
+	    {
+		throw new UnsupportedOperationException("no actor is ever of type RANDOM");
+	    }
+
+	    @Override
+	    public Color getAvatarColor()
+	    {
+		throw new UnsupportedOperationException("no actor is ever of type RANDOM");
+	    }
 	};
 	/**
 	 * Polymorphic method that will bind to the specific create() method for the
@@ -75,6 +203,56 @@ public final class ActorFactory
 	 */
 	public abstract Actor create(Army armyAllegiance); // supports polymorphic call where actual subclass objects
 	// are created.
+
+	/**
+	 * Creates an object of the named type without drawing any random values;
+	 * every attribute is zero until it is read back from a saved battlefield.
+	 * 
+	 * @param armyAllegiance Used to define the <i>Army</i> allegiance of the
+	 * <i>Actor</i>.
+	 * @return reference-to the new <i>Actor</i> object.
+	 */
+	public abstract Actor restore(Army armyAllegiance);
+
+	/**
+	 * Creates an object of the named type as part of a batch built in
+	 * parallel, into an id of the <i>ActorStore</i> of <i>armyAllegiance</i>
+	 * reserved for it, with a serial number reserved for it, drawing its
+	 * attributes from <i>random</i>. The new <i>Actor</i> only counts as alive
+	 * once the whole batch is activated in the store.
+	 * 
+	 * @param armyAllegiance Used to define the <i>Army</i> allegiance of the
+	 * <i>Actor</i>.
+	 * @param id id reserved through <i>ActorStore.reserve()</i>
+	 * @param serialNumber serial number reserved through
+	 * <i>Actor.reserveSerialNumbers()</i>
+	 * @param random stream of the part of the batch being built on this thread
+	 * @return reference-to the new <i>Actor</i> object.
+	 */
+	public abstract Actor create(Army armyAllegiance, int id, int serialNumber, BattleRandom random);
+
+	/**
+	 * Size of the avatar an actor of this type and <i>strength</i> is drawn
+	 * with, for renderers that draw from the <i>ActorStore</i> columns rather
+	 * than from avatar nodes.
+	 * 
+	 * @param strength strength of the actor
+	 * @return width (and height) of the avatar in pixels
+	 */
+	public abstract double getAvatarSize(double strength);
+
+	/**
+	 * @return colour the avatars of this type are filled with
+	 */
+	public abstract Color getAvatarColor();
+
+	/**
+	 * @return true when the avatars of this type are circles rather than squares
+	 */
+	public boolean isAvatarRound()
+	{
+	    return false;
+	}
     } // end enum Type
 
     public final static int numTypes = Type.values().length; // Auto detects the number of CONSTANTS that have been
@@ -92,7 +270,8 @@ public final class ActorFactory
      */
     public final static Actor createActorRandomSelection(Army armyAllegiance)
     {
-	return Type.values()[(int) (Math.random() * (double) (numTypes - 4))].create(armyAllegiance); // subtract last
+	BattleRandom random = armyAllegiance != null ? armyAllegiance.getRandom() : new BattleRandom();
+	return Type.values()[random.nextInt(numTypes - 4)].create(armyAllegiance); // subtract last
 	// because one
 	// enum type is
 	// RANDOM
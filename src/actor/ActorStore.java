@@ -0,0 +1,310 @@
+package actor;
+
+import java.util.Arrays;
+
+/**
+ * <i>ActorStore</i> keeps the simulation state of many <i>Actor</i> objects in
+ * parallel primitive arrays (one column per attribute) indexed by actor id.
+ * An <i>Actor</i> is only a thin view that remembers its store and its id, so
+ * a battle with a million actors costs a few dozen bytes per actor instead of
+ * a handful of JavaFX property objects each.
+ * <p>
+ * Ids are handed out in order and are never reused while the store lives; an
+ * actor that dies is only flagged as no longer alive. Each <i>Army</i> owns
+ * one store, which is thrown away when the <i>Army</i> is cleared.
+ * <p>
+ * The store also keeps army-wide totals of its living actors (how many there
+ * are of each type, their health and their strength per type), adjusted by
+ * every setter as the columns change, so they read in constant time. The
+ * setters are not thread-safe; the engine only calls them from its merge.
+ */
+public final class ActorStore
+{
+    /** capacity of a store built without an explicit one, currently:{@value} */
+    public static final int DEFAULT_CAPACITY = 16;
+    private static final ActorFactory.Type[] TYPES = ActorFactory.Type.values();
+
+    private double[] health;
+    private double[] strength;
+    private double[] speed;
+    private double[] x;
+    private double[] y;
+    /** <i>ActorFactory.Type</i> ordinal of each actor */
+    private byte[] type;
+    private boolean[] alive;
+    private int size;
+    private int aliveCount;
+    /** living actors of each type, indexed by ordinal */
+    private final int[] aliveByType = new int[TYPES.length];
+    private double totalHealth;
+    /** strength of the living actors of each type, indexed by ordinal */
+    private final double[] strengthByType = new double[TYPES.length];
+
+    /**
+     * builds an empty store with room for {@value #DEFAULT_CAPACITY} actors
+     */
+    public ActorStore()
+    {
+	this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity number of actors that fit before the columns grow
+     */
+    public ActorStore(int initialCapacity)
+    {
+	int capacity = Math.max(1, initialCapacity);
+	this.health = new double[capacity];
+	this.strength = new double[capacity];
+	this.speed = new double[capacity];
+	this.x = new double[capacity];
+	this.y = new double[capacity];
+	this.type = new byte[capacity];
+	this.alive = new boolean[capacity];
+    }
+
+    /**
+     * reserves the next id for a living actor of the given type; every other
+     * column starts at zero
+     *
+     * @param actorType type of the actor
+     * @return the id of the new actor
+     */
+    public int allocate(ActorFactory.Type actorType)
+    {
+	ensureCapacity(this.size + 1);
+	int id = this.size++;
+	this.type[id] = (byte) actorType.ordinal();
+	this.alive[id] = true;
+	++this.aliveCount;
+	++this.aliveByType[actorType.ordinal()];
+	return id;
+    }
+
+    /**
+     * Reserves a run of ids for a batch of actors of the given type, to be built
+     * in parallel. The ids are not alive yet: their columns can be written from
+     * any thread, one id per thread, without touching the totals, until
+     * <i>activate()</i> brings the whole batch to life.
+     *
+     * @param actorType type of every actor of the batch
+     * @param count number of actors in the batch
+     * @return the id of the first of them; the others follow in order
+     */
+    public int reserve(ActorFactory.Type actorType, int count)
+    {
+	ensureCapacity(this.size + count);
+	int first = this.size;
+	Arrays.fill(this.type, first, first + count, (byte) actorType.ordinal());
+	this.size += count;
+	return first;
+    }
+
+    /**
+     * brings a batch reserved through <i>reserve()</i> to life once it is
+     * built, adding it to the totals
+     *
+     * @param first id of the first actor of the batch
+     * @param count number of actors in the batch
+     */
+    public void activate(int first, int count)
+    {
+	for (int id = first; id < first + count; ++id)
+	    setAlive(id, true);
+    }
+
+    /**
+     * grows every column so at least <i>capacity</i> actors fit without further
+     * copying. Call it before allocating a large batch of actors.
+     *
+     * @param capacity number of actors the store must hold
+     */
+    public void ensureCapacity(int capacity)
+    {
+	if (capacity <= this.health.length)
+	    return;
+	int newCapacity = Math.max(capacity, this.health.length + (this.health.length >> 1));
+	this.health = Arrays.copyOf(this.health, newCapacity);
+	this.strength = Arrays.copyOf(this.strength, newCapacity);
+	this.speed = Arrays.copyOf(this.speed, newCapacity);
+	this.x = Arrays.copyOf(this.x, newCapacity);
+	this.y = Arrays.copyOf(this.y, newCapacity);
+	this.type = Arrays.copyOf(this.type, newCapacity);
+	this.alive = Arrays.copyOf(this.alive, newCapacity);
+    }
+
+    /**
+     * @return number of ids handed out so far, dead actors included
+     */
+    public int size()
+    {
+	return this.size;
+    }
+
+    public double getHealth(int id)
+    {
+	return this.health[id];
+    }
+
+    public void setHealth(int id, double health)
+    {
+	if (this.alive[id])
+	    this.totalHealth += health - this.health[id];
+	this.health[id] = health;
+    }
+
+    public double getStrength(int id)
+    {
+	return this.strength[id];
+    }
+
+    public void setStrength(int id, double strength)
+    {
+	if (this.alive[id])
+	    this.strengthByType[this.type[id]] += strength - this.strength[id];
+	this.strength[id] = strength;
+    }
+
+    public double getSpeed(int id)
+    {
+	return this.speed[id];
+    }
+
+    public void setSpeed(int id, double speed)
+    {
+	this.speed[id] = speed;
+    }
+
+    public double getX(int id)
+    {
+	return this.x[id];
+    }
+
+    public double getY(int id)
+    {
+	return this.y[id];
+    }
+
+    public void setLocation(int id, double x, double y)
+    {
+	this.x[id] = x;
+	this.y[id] = y;
+    }
+
+    /**
+     * @param id id of the actor
+     * @return the type the actor was allocated with
+     */
+    public ActorFactory.Type getType(int id)
+    {
+	return TYPES[this.type[id]];
+    }
+
+    public boolean isAlive(int id)
+    {
+	return this.alive[id];
+    }
+
+    public void setAlive(int id, boolean alive)
+    {
+	if (alive == this.alive[id])
+	    return;
+	this.alive[id] = alive;
+	int sign = alive ? 1 : -1;
+	this.aliveCount += sign;
+	this.aliveByType[this.type[id]] += sign;
+	if (this.aliveCount == 0)
+	{ // start again from exact zeros rather than from rounding leftovers
+	    this.totalHealth = 0.0;
+	    Arrays.fill(this.strengthByType, 0.0);
+	} else
+	{
+	    this.totalHealth += sign * this.health[id];
+	    this.strengthByType[this.type[id]] += sign * this.strength[id];
+	}
+    } // end setAlive()
+
+    /**
+     * @return living actors in the store
+     */
+    public int getAliveCount()
+    {
+	return this.aliveCount;
+    }
+
+    /**
+     * @return living actors of <i>actorType</i> in the store
+     */
+    public int getAliveCount(ActorFactory.Type actorType)
+    {
+	return this.aliveByType[actorType.ordinal()];
+    }
+
+    /**
+     * @return health of every living actor, summed
+     */
+    public double getTotalHealth()
+    {
+	return this.totalHealth;
+    }
+
+    /**
+     * @return strength of every living actor of <i>actorType</i>, summed
+     */
+    public double getTotalStrength(ActorFactory.Type actorType)
+    {
+	return this.strengthByType[actorType.ordinal()];
+    }
+
+    /**
+     * Recomputes every total from the columns and compares it with the running
+     * one. Counts must match exactly; sums may differ by the rounding the running
+     * updates pile up, a millionth of the recomputed magnitude.
+     *
+     * @return true when the running totals agree with the columns
+     */
+    public boolean aggregatesMatch()
+    {
+	int count = 0;
+	int[] byType = new int[TYPES.length];
+	double healthSum = 0.0;
+	double healthMagnitude = 0.0;
+	double[] strengthSums = new double[TYPES.length];
+	double strengthMagnitude = 0.0;
+	for (int id = 0; id < this.size; ++id)
+	{
+	    if (!this.alive[id])
+		continue;
+	    ++count;
+	    ++byType[this.type[id]];
+	    healthSum += this.health[id];
+	    healthMagnitude += Math.abs(this.health[id]);
+	    strengthSums[this.type[id]] += this.strength[id];
+	    strengthMagnitude += Math.abs(this.strength[id]);
+	}
+	boolean match = count == this.aliveCount && Arrays.equals(byType, this.aliveByType)
+		&& Math.abs(healthSum - this.totalHealth) <= 1.0e-6 * Math.max(1.0, healthMagnitude);
+	for (int t = 0; t < TYPES.length; ++t)
+	    match &= Math.abs(strengthSums[t] - this.strengthByType[t]) <= 1.0e-6 * Math.max(1.0, strengthMagnitude);
+	return match;
+    } // end aggregatesMatch()
+
+    /**
+     * copies every column of one actor into a fresh id of this store
+     *
+     * @param source store the actor currently lives in
+     * @param sourceId id of the actor in <i>source</i>
+     * @return the id of the copy in this store
+     */
+    public int copyFrom(ActorStore source, int sourceId)
+    {
+	int id = allocate(source.getType(sourceId));
+	setHealth(id, source.health[sourceId]);
+	setStrength(id, source.strength[sourceId]);
+	this.speed[id] = source.speed[sourceId];
+	this.x[id] = source.x[sourceId];
+	this.y[id] = source.y[sourceId];
+	setAlive(id, source.alive[sourceId]);
+	return id;
+    }
+}
@@ -0,0 +1,134 @@
+package actor;
+
+import java.util.HashMap;
+
+import javafx.geometry.Bounds;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+
+/**
+ * <i>AvatarSprites</i> is the flyweight behind the avatar nodes. Each avatar
+ * used to be a shape of its own, sized from the strength of its actor and
+ * carrying a <i>DropShadow</i> in the colour of its army, so every node on
+ * screen ran its own blur each frame. Now each distinct look (type, size
+ * rounded to a whole pixel, army colour) is drawn once, glow included, and
+ * every avatar is an <i>ImageView</i> of the shared image.
+ * <p>
+ * Strengths fall in a narrow range, so a battle needs a few dozen sprites per
+ * army whatever its size. Sprites are drawn on the JavaFX application thread,
+ * the only thread that builds avatars.
+ */
+public final class AvatarSprites
+{
+    /**
+     * radius of the glow drawn around every sprite, the radius of the old
+     * <i>DropShadow</i>, currently:{@value}
+     */
+    public static final double GLOW_RADIUS = 20.0;
+    /** sprites drawn so far, by type, size and army colour */
+    private static final HashMap<Long, Sprite> SPRITES = new HashMap<>();
+
+    /**
+     * one drawn look, and where it sits relative to the location of the actors
+     * that show it
+     */
+    public static final class Sprite
+    {
+	private final Image image;
+	private final double offsetX;
+	private final double offsetY;
+
+	private Sprite(Image image, double offsetX, double offsetY)
+	{
+	    this.image = image;
+	    this.offsetX = offsetX;
+	    this.offsetY = offsetY;
+	}
+
+	public Image getImage()
+	{
+	    return this.image;
+	}
+
+	/**
+	 * @return left edge of the image, glow included, relative to the location
+	 * of the actor; negative, as the glow reaches past the body
+	 */
+	public double getOffsetX()
+	{
+	    return this.offsetX;
+	}
+
+	/**
+	 * @return top edge of the image, glow included, relative to the location
+	 * of the actor
+	 */
+	public double getOffsetY()
+	{
+	    return this.offsetY;
+	}
+    } // end class Sprite
+
+    private AvatarSprites()
+    {
+    }
+
+    /**
+     * gives the sprite of an actor, drawing it the first time that look is asked
+     * for
+     *
+     * @param type type of the actor
+     * @param strength strength of the actor, which sets the size of its body
+     * @param armyColor colour of the glow of its army
+     * @return the shared sprite
+     */
+    public static Sprite get(ActorFactory.Type type, double strength, Color armyColor)
+    {
+	int size = Math.max(1, (int) Math.round(type.getAvatarSize(strength)));
+	long key = (long) type.ordinal() << 48 | (long) size << 32 | toArgb(armyColor) & 0xffffffffL;
+	Sprite sprite = SPRITES.get(key);
+	if (sprite == null)
+	{
+	    sprite = draw(type, size, armyColor);
+	    SPRITES.put(key, sprite);
+	}
+	return sprite;
+    }
+
+    /**
+     * @return number of sprites drawn so far
+     */
+    public static int size()
+    {
+	return SPRITES.size();
+    }
+
+    private static Sprite draw(ActorFactory.Type type, int size, Color armyColor)
+    {
+	Shape body;
+	if (type.isAvatarRound())
+	{
+	    double radius = size / 2.0;
+	    body = new Circle(radius, radius, radius, type.getAvatarColor());
+	} else
+	{
+	    body = new Rectangle(size, size, type.getAvatarColor());
+	}
+	body.setEffect(new DropShadow(GLOW_RADIUS, armyColor));
+	SnapshotParameters parameters = new SnapshotParameters();
+	parameters.setFill(Color.TRANSPARENT);
+	Bounds bounds = body.getBoundsInParent(); // the body and its glow
+	return new Sprite(body.snapshot(parameters, null), bounds.getMinX(), bounds.getMinY());
+    }
+
+    private static int toArgb(Color color)
+    {
+	return (int) Math.round(color.getOpacity() * 255.0) << 24 | (int) Math.round(color.getRed() * 255.0) << 16
+		| (int) Math.round(color.getGreen() * 255.0) << 8 | (int) Math.round(color.getBlue() * 255.0);
+    }
+}
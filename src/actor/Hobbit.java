@@ -1,18 +1,18 @@
 package actor;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import javafx.geometry.Point2D;
-import javafx.scene.Node;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
-import javafx.scene.shape.Shape;
-import util.SingletonRandom;
+import util.BattleRandom;
 import util.Input;
 import army.Army;
 
 public class Hobbit extends Actor
 {
+    /** UID of the first version, which <i>battlefield.ser</i> files carry, currently:{@value} */
+    private static final long serialVersionUID = 3368647213712694193L;
 
     /**
      * 
@@ -39,22 +39,23 @@ public class Hobbit extends Actor
     /** This is the limit stealth an actor should initialized with */
     private final static double MAX_STEALTH = 50.0;
     private final static double MIN_STEALTH = 0.0;
-    private final double MAXSCENEWIDTH = 1000.0;
-    private final double MAXSCENEHEIGHT = 571.0;
-    private final double MINSCENEWIDTH = 0.0;
-    private final double MINSCENEHEIGHT = 0.0;
+    private final static double MAXSCENEWIDTH = 1000.0;
+    private final static double MAXSCENEHEIGHT = 571.0;
+    private final static double MINSCENEWIDTH = 0.0;
+    private final static double MINSCENEHEIGHT = 0.0;
     /**
      * Declaration of stealth variable for Hobbit class
      */
     private double stealth;
-    private Node avatar;
+    /** colour of the avatar of every <i>Hobbit</i> */
+    static final Color AVATAR_COLOR = Color.RED;
 
     /**
      * generating random value for stealth between the limits
      */
     public Hobbit()
     {
-	this.stealth = SingletonRandom.instance.getNormalDistribution(MIN_STEALTH, MAX_STEALTH, 2.0);
+	this.stealth = getRandom().getNormalDistribution(MIN_STEALTH, MAX_STEALTH, 2.0);
     }
 
     // 2-argument constructor
@@ -71,8 +72,31 @@ public class Hobbit extends Actor
 
     public Hobbit(Army armyAllegiance)
     {
-	super(armyAllegiance);
-	this.stealth = SingletonRandom.instance.getNormalDistribution(MIN_STEALTH, MAX_STEALTH, 2.0);
+	this(armyAllegiance, true);
+    }
+
+    /**
+     * @param armyAllegiance army the hobbit belongs to
+     * @param rollAttributes false to leave every attribute at zero, for a hobbit
+     * read back from a saved battlefield
+     */
+    Hobbit(Army armyAllegiance, boolean rollAttributes)
+    {
+	super(armyAllegiance, rollAttributes);
+	if (rollAttributes)
+	    this.stealth = getRandom().getNormalDistribution(MIN_STEALTH, MAX_STEALTH, 2.0);
+    }
+
+    /**
+     * @param armyAllegiance army the hobbit belongs to
+     * @param id id reserved for the hobbit in the store of the army
+     * @param serialNumber serial number reserved for the hobbit
+     * @param random stream of the part of the batch the hobbit is built in
+     */
+    Hobbit(Army armyAllegiance, int id, int serialNumber, BattleRandom random)
+    {
+	super(armyAllegiance, id, serialNumber, random);
+	this.stealth = random.getNormalDistribution(MIN_STEALTH, MAX_STEALTH, 2.0);
     }
 
     /**
@@ -121,50 +145,62 @@ public class Hobbit extends Actor
     }
 
     /**
-     * this abstract method makes the individual actors create an avatar for display
-     * (eg. Hobbit Red Circles)
+     * @return the <i>ActorFactory.Type</i> that builds this actor
      */
     @Override
-    public void createAvatar()
+    public ActorFactory.Type getType()
+    {
+	return ActorFactory.Type.HOBBIT;
+    }
+
+    /**
+     * @param strength strength of a <i>Hobbit</i>
+     * @return width (and height) of its avatar in pixels
+     */
+    static double avatarSize(double strength)
     {
 	double ratioSize;
-	if (this.getStrength() >= 85.0)
+	if (strength >= 85.0)
 	{
 	    ratioSize = 145.0;
-	} else if (this.getStrength() >= 50.0)
+	} else if (strength >= 50.0)
 	{
 	    ratioSize = 130.0;
 	} else
 	{
 	    ratioSize = 80.0;
 	}
-	double constant = 20.0 * (this.getStrength() / ratioSize);
-	this.avatar = new Circle(constant, constant, constant, Color.RED);
-	((Shape) this.avatar).setStrokeWidth(2.0);
+	return 2.0 * 20.0 * (strength / ratioSize); // a circle as wide as twice its radius
     }
 
     /**
-     * this abstract method makes the individual actors display an avatar
+     * this abstract method is created on all actor object classes for actors to
+     * have visiblitly of each other base on their attributes
      * 
-     * @return it returns a node it could be a ImageView if the avatar is a gif
+     * @return
      */
     @Override
-    public Node getAvatar()
+    public boolean isVisible()
     {
-	return this.avatar;
+
+	return getStealth() < ((MIN_STEALTH + MAX_STRENGTH) / 2.0);
     }
 
     /**
-     * this abstract method is created on all actor object classes for actors to
-     * have visiblitly of each other base on their attributes
-     * 
-     * @return
+     * saves <i>stealth</i> in the double of the trait field
      */
     @Override
-    public boolean isVisible()
+    public void writeTraits(ByteBuffer buffer)
     {
+	buffer.put((byte) 0);
+	buffer.putDouble(this.stealth);
+    }
 
-	return getStealth() < ((MIN_STEALTH + MAX_STRENGTH) / 2.0);
+    @Override
+    public void readTraits(ByteBuffer buffer)
+    {
+	buffer.get();
+	setStealth(buffer.getDouble());
     }
 
     /**
@@ -197,12 +233,12 @@ public class Hobbit extends Actor
      * @return this returns a point (x,y) on the simulator
      */
     @Override
-    protected Point2D findNewLocation(Actor opponent)
+    public Point2D findNewLocation(Actor opponent)
     {
-	double ox = opponent.getAvatar().getTranslateX();
-	double oy = opponent.getAvatar().getTranslateY();
-	double ax = this.getAvatar().getTranslateX();
-	double ay = this.getAvatar().getTranslateY();
+	double ox = opponent.getX();
+	double oy = opponent.getY();
+	double ax = this.getX();
+	double ay = this.getY();
 	double dx = ox - ax;
 	double dy = oy - ay;
 	double distanceToOpponent = Math.sqrt(dx * dx + dy * dy);
@@ -212,18 +248,18 @@ public class Hobbit extends Actor
 	}
 	if (distanceToOpponent < 150.0)
 	{
-	    if (ax - dx / 2.0 > this.MAXSCENEWIDTH)
+	    if (ax - dx / 2.0 > MAXSCENEWIDTH)
 	    {
-		return new Point2D(this.MAXSCENEWIDTH, ay - dy);
-	    } else if (ax - dx / 2.0 < this.MINSCENEWIDTH)
+		return new Point2D(MAXSCENEWIDTH, ay - dy);
+	    } else if (ax - dx / 2.0 < MINSCENEWIDTH)
 	    {
-		return new Point2D(this.MINSCENEWIDTH, ay - dy);
-	    } else if (ay - dy / 2.0 > this.MAXSCENEHEIGHT)
+		return new Point2D(MINSCENEWIDTH, ay - dy);
+	    } else if (ay - dy / 2.0 > MAXSCENEHEIGHT)
 	    {
-		return new Point2D(ax - dx, this.MAXSCENEHEIGHT);
-	    } else if (ay - dy / 2.0 < this.MINSCENEHEIGHT)
+		return new Point2D(ax - dx, MAXSCENEHEIGHT);
+	    } else if (ay - dy / 2.0 < MINSCENEHEIGHT)
 	    {
-		return new Point2D(ax - dx, this.MINSCENEHEIGHT);
+		return new Point2D(ax - dx, MINSCENEHEIGHT);
 	    }
 	    return new Point2D(ax - dx / 2.0, ay - dy / 2.0);
 	}
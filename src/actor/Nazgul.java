@@ -1,15 +1,17 @@
 package actor;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
-import javafx.scene.Node;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
+import util.BattleRandom;
 import util.Input;
 import army.Army;
 
 public class Nazgul extends Actor
 {
+    /** UID of the first version, which <i>battlefield.ser</i> files carry, currently:{@value} */
+    private static final long serialVersionUID = -3449644181311940622L;
     /**
      * 
      * Name: Calvin Li Student Number: 040810357
@@ -38,16 +40,17 @@ public class Nazgul extends Actor
     private boolean ringOfPower = false;
     private boolean hellHawks = false;
     private boolean random;
-    private Rectangle avatar;
+    /** colour of the avatar of every <i>Nazgul</i> */
+    static final Color AVATAR_COLOR = Color.GREEN;
 
     /**
      * This is for the boolean instances so that it can be true or false 30% chance
      * 
      * @return
      */
-    private boolean rngRandom()
+    private boolean rngRandom(BattleRandom random)
     {
-	if (Math.random() > 0.7)
+	if (random.nextDouble() > 0.7)
 	    this.random = true;
 	else
 	    this.random = false;
@@ -59,8 +62,8 @@ public class Nazgul extends Actor
      */
     public Nazgul()
     {
-	this.ringOfPower = rngRandom();
-	this.hellHawks = rngRandom();
+	this.ringOfPower = rngRandom(getRandom());
+	this.hellHawks = rngRandom(getRandom());
     }
 
     // 2-argument constructor
@@ -92,9 +95,37 @@ public class Nazgul extends Actor
      */
     public Nazgul(Army armyAllegiance)
     {
-	super(armyAllegiance);
-	this.ringOfPower = rngRandom();
-	this.hellHawks = rngRandom();
+	this(armyAllegiance, true);
+    }
+
+    /**
+     * @param armyAllegiance army the nazgul belongs to
+     * @param rollAttributes false to leave every attribute at zero, for a nazgul
+     * read back from a saved battlefield
+     */
+    Nazgul(Army armyAllegiance, boolean rollAttributes)
+    {
+	super(armyAllegiance, rollAttributes);
+	if (rollAttributes)
+	    rollEquipment(getRandom());
+    }
+
+    /**
+     * @param armyAllegiance army the nazgul belongs to
+     * @param id id reserved for the nazgul in the store of the army
+     * @param serialNumber serial number reserved for the nazgul
+     * @param random stream of the part of the batch the nazgul is built in
+     */
+    Nazgul(Army armyAllegiance, int id, int serialNumber, BattleRandom random)
+    {
+	super(armyAllegiance, id, serialNumber, random);
+	rollEquipment(random);
+    }
+
+    private void rollEquipment(BattleRandom random)
+    {
+	this.ringOfPower = rngRandom(random);
+	this.hellHawks = rngRandom(random);
 	if (this.ringOfPower == true)
 	{
 	    this.setStrength(this.getStrength() + 5.0);
@@ -167,47 +198,62 @@ public class Nazgul extends Actor
     }
 
     /**
-     * this abstract method makes the individual actors create an avatar for display
-     * (eg. Hobbit Red Circles)
+     * @return the <i>ActorFactory.Type</i> that builds this actor
      */
     @Override
-    public void createAvatar()
+    public ActorFactory.Type getType()
+    {
+	return ActorFactory.Type.NAZGUL;
+    }
+
+    /**
+     * @param strength strength of a <i>Nazgul</i>
+     * @return width (and height) of its avatar in pixels
+     */
+    static double avatarSize(double strength)
     {
 	double ratioSize;
-	if (this.getStrength() >= 50.0)
+	if (strength >= 50.0)
 	{
 	    ratioSize = 100.0;
 	} else
 	{
 	    ratioSize = 65.0;
 	}
-	double constant = 20.0 * (this.getStrength() / ratioSize);
-	this.avatar = new Rectangle(constant, constant, Color.GREEN);
-	this.avatar.setStrokeWidth(2.0);
+	return 20.0 * (strength / ratioSize);
     }
 
     /**
-     * this abstract method makes the individual actors display an avatar
+     * this abstract method is created on all actor object classes for actors to
+     * have visiblitly of each other base on their attributes
      * 
-     * @return it returns a node it could be a ImageView if the avatar is a gif
+     * @return
      */
     @Override
-    public Node getAvatar()
+    public boolean isVisible()
     {
-	return this.avatar;
+
+	return !this.hellHawks;
     }
 
     /**
-     * this abstract method is created on all actor object classes for actors to
-     * have visiblitly of each other base on their attributes
-     * 
-     * @return
+     * saves <i>ringOfPower</i> and <i>hellHawks</i> as bits 0 and 1 of the trait
+     * flags
      */
     @Override
-    public boolean isVisible()
+    public void writeTraits(ByteBuffer buffer)
     {
+	buffer.put((byte) ((this.ringOfPower ? 1 : 0) | (this.hellHawks ? 2 : 0)));
+	buffer.putDouble(0.0);
+    }
 
-	return !this.hellHawks;
+    @Override
+    public void readTraits(ByteBuffer buffer)
+    {
+	byte flags = buffer.get();
+	buffer.getDouble();
+	setringOfPower((flags & 1) != 0);
+	setHellHawks((flags & 2) != 0);
     }
 
     /**
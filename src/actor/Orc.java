@@ -1,16 +1,17 @@
 package actor;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
-import javafx.scene.Node;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.Shape;
+import util.BattleRandom;
 import util.Input;
 import army.Army;
 
 public class Orc extends Actor
 {
+    /** UID of the first version, which <i>battlefield.ser</i> files carry, currently:{@value} */
+    private static final long serialVersionUID = 3255936745834322478L;
 
     /**
      * 
@@ -37,16 +38,17 @@ public class Orc extends Actor
     private boolean axe = false;
     private boolean random;
     private boolean fury;
-    private Node avatar;
+    /** colour of the avatar of every <i>Orc</i> */
+    static final Color AVATAR_COLOR = Color.BLUE;
 
     /**
      * This is for the boolean instances so that it can be true or false 30% chance
      * 
      * @return
      */
-    private boolean rngRandom()
+    private boolean rngRandom(BattleRandom random)
     {
-	if (Math.random() > 0.5)
+	if (random.nextDouble() > 0.5)
 	    this.random = true;
 	else
 	    this.random = false;
@@ -58,8 +60,8 @@ public class Orc extends Actor
      */
     public Orc()
     {
-	this.axe = rngRandom();
-	this.fury = rngRandom();
+	this.axe = rngRandom(getRandom());
+	this.fury = rngRandom(getRandom());
     }
 
     // 2-argument constructor
@@ -91,9 +93,37 @@ public class Orc extends Actor
      */
     public Orc(Army armyAllegiance)
     {
-	super(armyAllegiance);
-	this.fury = rngRandom();
-	this.axe = rngRandom();
+	this(armyAllegiance, true);
+    }
+
+    /**
+     * @param armyAllegiance army the orc belongs to
+     * @param rollAttributes false to leave every attribute at zero, for an orc
+     * read back from a saved battlefield
+     */
+    Orc(Army armyAllegiance, boolean rollAttributes)
+    {
+	super(armyAllegiance, rollAttributes);
+	if (rollAttributes)
+	    rollEquipment(getRandom());
+    }
+
+    /**
+     * @param armyAllegiance army the orc belongs to
+     * @param id id reserved for the orc in the store of the army
+     * @param serialNumber serial number reserved for the orc
+     * @param random stream of the part of the batch the orc is built in
+     */
+    Orc(Army armyAllegiance, int id, int serialNumber, BattleRandom random)
+    {
+	super(armyAllegiance, id, serialNumber, random);
+	rollEquipment(random);
+    }
+
+    private void rollEquipment(BattleRandom random)
+    {
+	this.fury = rngRandom(random);
+	this.axe = rngRandom(random);
 	if (this.axe == true)
 	{
 	    this.setStrength(this.getStrength() + 5.0);
@@ -166,47 +196,61 @@ public class Orc extends Actor
     }
 
     /**
-     * this abstract method makes the individual actors create an avatar for display
-     * (eg. Hobbit Red Circles)
+     * @return the <i>ActorFactory.Type</i> that builds this actor
      */
     @Override
-    public void createAvatar()
+    public ActorFactory.Type getType()
+    {
+	return ActorFactory.Type.ORC;
+    }
+
+    /**
+     * @param strength strength of a <i>Orc</i>
+     * @return width (and height) of its avatar in pixels
+     */
+    static double avatarSize(double strength)
     {
 	double ratioSize;
-	if (this.getStrength() >= 50.0)
+	if (strength >= 50.0)
 	{
 	    ratioSize = 100.0;
 	} else
 	{
 	    ratioSize = 65.0;
 	}
-	double constant = 20.0 * (this.getStrength() / ratioSize);
-	this.avatar = new Rectangle(constant, constant, Color.BLUE);
-	((Shape) this.avatar).setStrokeWidth(2.0);
+	return 20.0 * (strength / ratioSize);
     }
 
     /**
-     * this abstract method makes the individual actors display an avatar
+     * this abstract method is created on all actor object classes for actors to
+     * have visiblitly of each other base on their attributes
      * 
-     * @return it returns a node it could be a ImageView if the avatar is a gif
+     * @return
      */
     @Override
-    public Node getAvatar()
+    public boolean isVisible()
     {
-	return this.avatar;
+
+	return true;
     }
 
     /**
-     * this abstract method is created on all actor object classes for actors to
-     * have visiblitly of each other base on their attributes
-     * 
-     * @return
+     * saves <i>axe</i> and <i>fury</i> as bits 0 and 1 of the trait flags
      */
     @Override
-    public boolean isVisible()
+    public void writeTraits(ByteBuffer buffer)
     {
+	buffer.put((byte) ((this.axe ? 1 : 0) | (this.fury ? 2 : 0)));
+	buffer.putDouble(0.0);
+    }
 
-	return true;
+    @Override
+    public void readTraits(ByteBuffer buffer)
+    {
+	byte flags = buffer.get();
+	buffer.getDouble();
+	setAxe((flags & 1) != 0);
+	setFury((flags & 2) != 0);
     }
 
     /**
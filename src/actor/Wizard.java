@@ -1,16 +1,17 @@
 package actor;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
-import javafx.scene.Node;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.Shape;
+import util.BattleRandom;
 import util.Input;
 import army.Army;
 
 public class Wizard extends Actor
 {
+    /** UID of the first version, which <i>battlefield.ser</i> files carry, currently:{@value} */
+    private static final long serialVersionUID = 8924508142396151958L;
     /**
      * 
      * Name: Calvin Li Student Number: 040810357
@@ -37,14 +38,15 @@ public class Wizard extends Actor
      * declaration of variables
      */
     private boolean hasStaff, hasHorse, random;
-    private Node avatar;
+    /** colour of the avatar of every <i>Wizard</i> */
+    static final Color AVATAR_COLOR = Color.YELLOW;
 
     /**
      * This method is used for whether the Wizard actor will have a Staff or Horse
      */
-    private boolean rngRandom()
+    private boolean rngRandom(BattleRandom random)
     {
-	if (Math.random() > 0.7)
+	if (random.nextDouble() > 0.7)
 	    this.random = true;
 	else
 	    this.random = false;
@@ -56,8 +58,8 @@ public class Wizard extends Actor
      */
     public Wizard()
     {
-	this.hasStaff = rngRandom();
-	this.hasHorse = rngRandom();
+	this.hasStaff = rngRandom(getRandom());
+	this.hasHorse = rngRandom(getRandom());
     }
 
     /**
@@ -89,9 +91,37 @@ public class Wizard extends Actor
      */
     public Wizard(Army armyAllegiance)
     {
-	super(armyAllegiance);
-	this.hasStaff = rngRandom();
-	this.hasHorse = rngRandom();
+	this(armyAllegiance, true);
+    }
+
+    /**
+     * @param armyAllegiance army the wizard belongs to
+     * @param rollAttributes false to leave every attribute at zero, for a wizard
+     * read back from a saved battlefield
+     */
+    Wizard(Army armyAllegiance, boolean rollAttributes)
+    {
+	super(armyAllegiance, rollAttributes);
+	if (rollAttributes)
+	    rollEquipment(getRandom());
+    }
+
+    /**
+     * @param armyAllegiance army the wizard belongs to
+     * @param id id reserved for the wizard in the store of the army
+     * @param serialNumber serial number reserved for the wizard
+     * @param random stream of the part of the batch the wizard is built in
+     */
+    Wizard(Army armyAllegiance, int id, int serialNumber, BattleRandom random)
+    {
+	super(armyAllegiance, id, serialNumber, random);
+	rollEquipment(random);
+    }
+
+    private void rollEquipment(BattleRandom random)
+    {
+	this.hasStaff = rngRandom(random);
+	this.hasHorse = rngRandom(random);
 	if (this.hasHorse == true)
 	{
 	    this.setSpeed(this.getSpeed() + 10.0);
@@ -166,48 +196,62 @@ public class Wizard extends Actor
     }
 
     /**
-     * this abstract method makes the individual actors create an avatar for display
-     * (eg. Hobbit Red Circles)
+     * @return the <i>ActorFactory.Type</i> that builds this actor
      */
     @Override
-    public void createAvatar()
+    public ActorFactory.Type getType()
+    {
+	return ActorFactory.Type.WIZARD;
+    }
+
+    /**
+     * @param strength strength of a <i>Wizard</i>
+     * @return width (and height) of its avatar in pixels
+     */
+    static double avatarSize(double strength)
     {
 	double ratioSize;
-	if (this.getStrength() >= 50.0)
+	if (strength >= 50.0)
 	{
 	    ratioSize = 100.0;
 	} else
 	{
 	    ratioSize = 65.0;
 	}
-	double constant = 20.0 * (this.getStrength() / ratioSize);
-	this.avatar = new Rectangle(constant, constant, Color.YELLOW);
-
-	((Shape) this.avatar).setStrokeWidth(2.0);
+	return 20.0 * (strength / ratioSize);
     }
 
     /**
-     * this abstract method makes the individual actors display an avatar
+     * this abstract method is created on all actor object classes for actors to
+     * have visiblitly of each other base on their attributes
      * 
-     * @return it returns a node it could be a ImageView if the avatar is a gif
+     * @return
      */
     @Override
-    public Node getAvatar()
+    public boolean isVisible()
     {
-	return this.avatar;
+
+	return !this.hasStaff;
     }
 
     /**
-     * this abstract method is created on all actor object classes for actors to
-     * have visiblitly of each other base on their attributes
-     * 
-     * @return
+     * saves <i>hasStaff</i> and <i>hasHorse</i> as bits 0 and 1 of the trait
+     * flags
      */
     @Override
-    public boolean isVisible()
+    public void writeTraits(ByteBuffer buffer)
     {
+	buffer.put((byte) ((this.hasStaff ? 1 : 0) | (this.hasHorse ? 2 : 0)));
+	buffer.putDouble(0.0);
+    }
 
-	return !this.hasStaff;
+    @Override
+    public void readTraits(ByteBuffer buffer)
+    {
+	byte flags = buffer.get();
+	buffer.getDouble();
+	setStaff((flags & 1) != 0);
+	setHorse((flags & 2) != 0);
     }
 
     /**
@@ -4,23 +4,28 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javafx.animation.FadeTransition;
-import javafx.animation.ParallelTransition;
-import javafx.animation.TranslateTransition;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.Node;
-import javafx.scene.control.TableView;
-import javafx.scene.control.Tooltip;
 import javafx.scene.effect.DropShadow;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import javafx.util.Duration;
 import simulator.Simulator;
+import util.BattleRandom;
+import engine.BattleEngine;
+import engine.FlightEvents;
 import actor.Actor;
 import actor.ActorFactory;
+import actor.ActorStore;
 
 /**
  * <i>Army</i> class is used to create armies with arrays of <i>Actor</i>
@@ -32,9 +37,31 @@ import actor.ActorFactory;
 public class Army
 {
     private final double ARMYGROUPRATIO = 35.0;
+    /** side of one cell of the <i>SpatialGrid</i>, currently:{@value} */
+    static final double GRID_CELL_SIZE = 20.0;
+    /**
+     * below this many actors a plain scan is cheaper than walking the grid,
+     * currently:{@value}
+     */
+    private static final int LINEAR_SCAN_LIMIT = 32;
+    /**
+     * list size per dead actor above which <i>dropDeadActors()</i> removes them
+     * one by one rather than in one pass, currently:{@value}
+     */
+    private static final int SINGLE_REMOVAL_RATIO = 1024;
+    /** actors built by one task of a populate batch, currently:{@value} */
+    private static final int POPULATE_CHUNK = 4096;
     private static final String FONT_NAME = "Copperplate Gothic Bold";
-    private static final Font NOTIFICATION_FONT_SMALL = new Font(FONT_NAME, 25.0);
-    private static final Font NOTIFICATION_FONT_LARGE = new Font(FONT_NAME, 45.0);
+
+    /**
+     * Fonts can only be built once the JavaFX toolkit is running, so they are kept
+     * in a holder class that is not loaded until the first notification is shown.
+     * Headless armies never touch it.
+     */
+    private static final class NotificationFonts
+    {
+	private static final Font LARGE = new Font(FONT_NAME, 45.0);
+    }
     // INSTANCE FIELDS
     /**
      * <i>name</i> is the instance field used to give a name to the army that is
@@ -46,10 +73,39 @@ public class Army
      * store various <i>Actor</i> subclass objects.
      */
     private ObservableList<Actor> collectionActors = FXCollections.observableList(new ArrayList<>());
+    /**
+     * actors that died but are still in <i>collectionActors</i>; they leave it
+     * together at the next <i>dropDeadActors()</i>
+     */
+    private final ArrayList<Actor> deadInCollection = new ArrayList<>();
+    /** the living actors while <i>dropDeadActors()</i> runs, kept to reuse its array */
+    private final ArrayList<Actor> survivors = new ArrayList<>();
+    /**
+     * columns holding the state of every <i>Actor</i> of this army; replaced
+     * when the army is cleared
+     */
+    private ActorStore store = new ActorStore();
+    /**
+     * stream every random choice made while building this army's actors is drawn
+     * from; seed it through <i>setRandom()</i> to reproduce a battle
+     */
+    private BattleRandom random = new BattleRandom();
     private Simulator simulator;
     private Color color;
     private DropShadow dropShadow;
     private Army opposingArmy;
+    /** roster of the battle this army is a faction of, or null */
+    private Factions factions;
+    /** position of this army in <i>factions</i> */
+    private int factionIndex;
+    /**
+     * index of <i>collectionActors</i> by location, kept up to date as actors
+     * move, join and die: a grid of this army alone until it joins a battle,
+     * then the grid the factions of the battle share, in which its actors are
+     * those of faction <i>factionIndex</i>
+     */
+    private SpatialGrid grid = new SpatialGrid(BattleEngine.BATTLEFIELD_WIDTH, BattleEngine.BATTLEFIELD_HEIGHT,
+	    GRID_CELL_SIZE);
 
     // CONSTRUCTOR
     /**
@@ -58,7 +114,8 @@ public class Army
      * 
      * @param name Accepts a string input from the user to give the <i>Army</i> a
      * name.
-     * @param simulator
+     * @param simulator the battlefield the avatars are drawn on, or null for a
+     * headless <i>Army</i>
      */
     public Army(String name, Simulator simulator, Color color)
     {
@@ -70,7 +127,63 @@ public class Army
     }
 
     /**
-     * this gives the collection of actors
+     * Headless <i>Army</i> constructor. The <i>Army</i> is not attached to a
+     * <i>Simulator</i>, so no avatars or notifications are ever created and it
+     * can be driven by a <i>BattleEngine</i> on a machine without a display.
+     * 
+     * @param name name of the <i>Army</i>
+     * @param color colour used for the <i>Army</i> if it is ever rendered
+     */
+    public Army(String name, Color color)
+    {
+	this(name, null, color);
+    }
+
+    /**
+     * gives the columns the actors of this army keep their state in
+     * 
+     * @return the <i>ActorStore</i> of this army
+     */
+    public ActorStore getStore()
+    {
+	return this.store;
+    }
+
+    /**
+     * gives the random stream of this army. It is meant for the thread that
+     * builds the army; the engine hands its workers streams of their own.
+     * 
+     * @return the stream of this army
+     */
+    public BattleRandom getRandom()
+    {
+	return this.random;
+    }
+
+    /**
+     * replaces the random stream of this army, typically with a split of the
+     * stream of the battle
+     * 
+     * @param random the new stream
+     */
+    public void setRandom(BattleRandom random)
+    {
+	this.random = random;
+    }
+
+    /**
+     * tells whether this <i>Army</i> has no <i>Simulator</i> to draw on
+     * 
+     * @return true when the <i>Army</i> runs without a display
+     */
+    public boolean isHeadless()
+    {
+	return this.simulator == null;
+    }
+
+    /**
+     * this gives the collection of actors. Actors that die during a tick stay in
+     * it until the tick ends and the engine calls <i>dropDeadActors()</i>.
      * 
      * @return
      */
@@ -83,52 +196,162 @@ public class Army
     /**
      * The <i>populate</i> method is used to fill up the <i>Army</i> object that is
      * created. It takes two parameters <i>type</i> and <i>numToAdd</i>.
+     * <p>
+     * The actors are built as one batch: their ids and serial numbers are
+     * reserved up front, the actors are built in chunks of
+     * {@value #POPULATE_CHUNK} on the common <i>ForkJoinPool</i>, each chunk
+     * drawing from a stream derived from the stream of this army, and the
+     * batch joins the army in a single change of the actor list. The caller
+     * only waits; a given seed fills the army the same way on any number of
+     * threads.
      * 
      * @param type This is used to declare what type of <i>Actor</i> subclass object
      * is being used.
      * @param numToAdd This is used to declare how many instances are to be created
      * to fill up the ArrayList.
      */
-    @SuppressWarnings("static-access")
     public void populate(ActorFactory.Type type, int numToAdd)
     {
-	for (int i = 0; i < numToAdd; ++i)
+	if (numToAdd <= 0)
+	    return;
+	double battlefieldWidth = BattleEngine.BATTLEFIELD_WIDTH;
+	double battlefieldHeight = BattleEngine.BATTLEFIELD_HEIGHT;
+	if (!isHeadless())
 	{
-	    Actor actor = type.create(this);
-	    actor.createAvatar();
-	    Node avatar = actor.getAvatar();
-	    double standDeviX;
-	    double standDeviY;
-	    if (type.equals(type.HOBBIT) || type == type.WIZARD)
-	    {
-		standDeviX = 25.0 / 11.0;
-		standDeviY = 571.0 / 160.0;
-		double newX = this.simulator.getScene().getWidth() / standDeviX + (this.ARMYGROUPRATIO * Math.random());
-		double newY = this.simulator.getScene().getHeight() / standDeviY
-			+ (this.ARMYGROUPRATIO * Math.random());
-		avatar.setTranslateX(newX);
-		avatar.setTranslateY(newY);
-		avatar.setEffect(this.dropShadow);
-		this.simulator.getChildren().add(actor.getAvatar());
-		this.collectionActors.add(actor); // send "this" so that Actor object can capture its allegiance
-		Tooltip.install(avatar, new Tooltip(actor.toString()));
-	    } else
+	    battlefieldWidth = this.simulator.getScene().getWidth();
+	    battlefieldHeight = this.simulator.getScene().getHeight();
+	}
+	double standDeviX;
+	double standDeviY;
+	if (type == ActorFactory.Type.HOBBIT || type == ActorFactory.Type.WIZARD)
+	{
+	    standDeviX = 25.0 / 11.0;
+	    standDeviY = 571.0 / 160.0;
+	} else
+	{
+	    standDeviX = 10.0 / 7.0; // 700
+	    standDeviY = 571.0 / 340.0; // 340
+	}
+	double originX = battlefieldWidth / standDeviX;
+	double originY = battlefieldHeight / standDeviY;
+	Actor[] actors = new Actor[numToAdd];
+	if (type == ActorFactory.Type.RANDOM)
+	{ // every actor picks its own type, so no run of ids can be reserved for them
+	    this.store.ensureCapacity(this.store.size() + numToAdd);
+	    for (int i = 0; i < numToAdd; ++i)
 	    {
-		standDeviX = 10.0 / 7.0;
-		standDeviY = 571.0 / 340.0;
-		double newX = this.simulator.getScene().getWidth() / standDeviX + (this.ARMYGROUPRATIO * Math.random());// 700
-		double newY = this.simulator.getScene().getHeight() / standDeviY
-			+ (this.ARMYGROUPRATIO * Math.random());// 340
-		avatar.setTranslateX(newX);
-		avatar.setTranslateY(newY);
-		avatar.setEffect(this.dropShadow);
-		this.simulator.getChildren().add(actor.getAvatar());
-		this.collectionActors.add(actor); // send "this" so that Actor object can capture its allegiance
-		Tooltip.install(avatar, new Tooltip(actor.toString()));
+		actors[i] = type.create(this);
+		this.store.setLocation(actors[i].getId(), originX + this.ARMYGROUPRATIO * this.random.nextDouble(),
+			originY + this.ARMYGROUPRATIO * this.random.nextDouble());
 	    }
-	} // end for
+	} else
+	{
+	    int firstId = this.store.reserve(type, numToAdd);
+	    int firstSerial = Actor.reserveSerialNumbers(numToAdd);
+	    ForkJoinPool.commonPool().invoke(new PopulateTask(type, actors, firstId, firstSerial, this.random.split(),
+		    originX, originY, 0, (numToAdd + POPULATE_CHUNK - 1) / POPULATE_CHUNK));
+	    this.store.activate(firstId, numToAdd);
+	}
+	FlightEvents.SpatialIndexRebuild event = FlightEvents.spatialIndexRebuild();
+	if (event != null)
+	    event.begin();
+	this.collectionActors.addAll(Arrays.asList(actors)); // one change event for the whole batch
+	for (Actor actor : actors)
+	{
+	    this.grid.insert(actor);
+	}
+	if (this.factions != null)
+	    this.factions.actorsJoined(this, actors.length);
+	if (event != null && event.shouldCommit())
+	{
+	    event.set(this.name, numToAdd, "populate");
+	    event.commit();
+	}
     } // end populate()
 
+    /**
+     * <i>PopulateTask</i> builds a run of chunks of a populate batch, split in
+     * halves until a single chunk is left. Every actor goes into its own slot
+     * of the batch and its own reserved id, so the tasks share nothing they
+     * write; the <i>SpatialGrid</i> is only filled once they are all done.
+     */
+    @SuppressWarnings("serial")
+    private class PopulateTask extends RecursiveAction
+    {
+	private final ActorFactory.Type type;
+	private final Actor[] actors;
+	private final int firstId;
+	private final int firstSerial;
+	/** stream of the batch; every chunk derives its own from it */
+	private final BattleRandom random;
+	private final double originX;
+	private final double originY;
+	private final int fromChunk;
+	private final int toChunk;
+
+	private PopulateTask(ActorFactory.Type type, Actor[] actors, int firstId, int firstSerial,
+		BattleRandom random, double originX, double originY, int fromChunk, int toChunk)
+	{
+	    this.type = type;
+	    this.actors = actors;
+	    this.firstId = firstId;
+	    this.firstSerial = firstSerial;
+	    this.random = random;
+	    this.originX = originX;
+	    this.originY = originY;
+	    this.fromChunk = fromChunk;
+	    this.toChunk = toChunk;
+	}
+
+	@Override
+	protected void compute()
+	{
+	    if (this.toChunk - this.fromChunk > 1)
+	    {
+		int middle = (this.fromChunk + this.toChunk) >>> 1;
+		invokeAll(split(this.fromChunk, middle), split(middle, this.toChunk));
+		return;
+	    }
+	    BattleRandom chunkRandom = this.random.derive(this.fromChunk, 0L);
+	    int to = Math.min(this.actors.length, (this.fromChunk + 1) * POPULATE_CHUNK);
+	    for (int i = this.fromChunk * POPULATE_CHUNK; i < to; ++i)
+	    {
+		Actor actor = this.type.create(Army.this, this.firstId + i, this.firstSerial + i, chunkRandom);
+		// straight into the store: the grid is not thread-safe, and is filled afterwards
+		store.setLocation(actor.getId(), this.originX + ARMYGROUPRATIO * chunkRandom.nextDouble(),
+			this.originY + ARMYGROUPRATIO * chunkRandom.nextDouble());
+		this.actors[i] = actor;
+	    }
+	}
+
+	private PopulateTask split(int fromChunk, int toChunk)
+	{
+	    return new PopulateTask(this.type, this.actors, this.firstId, this.firstSerial, this.random,
+		    this.originX, this.originY, fromChunk, toChunk);
+	}
+    } // end class PopulateTask
+
+    /**
+     * Returns the avatar of an actor of this army, building it the first time
+     * the actor comes into view, so actors that are never on screen cost no
+     * nodes. The glow of the army is part of the shared sprite the avatar
+     * shows, and the text shown on hover is built by the <i>Simulator</i> when
+     * it is needed, so the avatar is a bare <i>ImageView</i>. Putting it in the
+     * scene graph is up to the <i>Simulator</i>.
+     * 
+     * @param actor actor of this army
+     * @return the avatar, or null for a headless army, which has nowhere to show
+     * it
+     */
+    public Node getAvatar(Actor actor)
+    {
+	if (isHeadless())
+	    return null;
+	if (actor.getAvatar() == null)
+	    actor.createAvatar();
+	return actor.getAvatar();
+    }
+
     // METHOD TO RETURN AN INDIVIDUAL ACTOR
     /**
      * The <i>displayIndividualActor</i> method is used to return a specific
@@ -169,55 +392,146 @@ public class Army
      */
     public int size()
     {
-	return this.collectionActors.size();
+	return this.collectionActors.size() - this.deadInCollection.size(); // safe to call from any thread
     }
 
-    // METHOD USED TO EDIT THE CONTENTS OF AN ARMY
     /**
-     * This method is used to make changes to an existing <i>Actor</i> subclass
-     * object in the Army. It takes one parameter <i>indexOfActorToEdit</i>.
-     * 
-     * @param indexOfActorToEdit This is used to look up the <i>Actor</i> in the
-     * ArrayList using the index.
+     * @return living actors of this army, counted as they join and die
      */
-    public void edit(int indexOfActorToEdit)
+    public int getAliveCount()
     {
-	this.collectionActors.get(indexOfActorToEdit).inputAllFields();
+	return this.store.getAliveCount();
     }
 
     /**
-     * help with start moving actors
+     * @return living actors of <i>type</i> in this army
      */
-    public void startMoving()
+    public int getAliveCount(ActorFactory.Type type)
     {
-	for (Actor actor : this.collectionActors)
-	    actor.startMoving();
+	return this.store.getAliveCount(type);
+    }
 
+    /**
+     * @return health of every living actor of this army, summed
+     */
+    public double getTotalHealth()
+    {
+	return this.store.getTotalHealth();
     }
 
-    public void clearScreen()
+    /**
+     * @return mean health of the living actors of this army, 0.0 when there are
+     * none
+     */
+    public double getMeanHealth()
     {
-	final ObservableList<Node> listJavaFXNodesOnBattlefield = simulator.getChildren(); // creating as a convenience
+	int alive = this.store.getAliveCount();
+	return alive == 0 ? 0.0 : this.store.getTotalHealth() / alive;
+    }
 
-	for (Actor actor : this.collectionActors)
-	{
-	    actor.getAvatar().setVisible(false);
-	    listJavaFXNodesOnBattlefield.remove(actor.getAvatar());
-	}
-	while (this.collectionActors.size() > 0)
-	{
-	    this.collectionActors.remove(0);
-	}
+    /**
+     * @return strength of every living actor of <i>type</i> in this army, summed
+     */
+    public double getTotalStrength(ActorFactory.Type type)
+    {
+	return this.store.getTotalStrength(type);
     }
 
     /**
-     * help with stop moving actors
+     * @return mean horizontal location of the actors on the battlefield
      */
-    public void suspendMoving()
+    public double getCentroidX()
     {
-	for (Actor actor : this.collectionActors)
-	    actor.suspendMoving();
+	return this.grid.getCentroidX(this.factionIndex);
+    }
 
+    /**
+     * @return mean vertical location of the actors on the battlefield
+     */
+    public double getCentroidY()
+    {
+	return this.grid.getCentroidY(this.factionIndex);
+    }
+
+    /**
+     * @return left edge of the box around the actors on the battlefield
+     */
+    public double getMinX()
+    {
+	return this.grid.getMinX(this.factionIndex);
+    }
+
+    /**
+     * @return top edge of the box around the actors on the battlefield
+     */
+    public double getMinY()
+    {
+	return this.grid.getMinY(this.factionIndex);
+    }
+
+    /**
+     * @return right edge of the box around the actors on the battlefield
+     */
+    public double getMaxX()
+    {
+	return this.grid.getMaxX(this.factionIndex);
+    }
+
+    /**
+     * @return bottom edge of the box around the actors on the battlefield
+     */
+    public double getMaxY()
+    {
+	return this.grid.getMaxY(this.factionIndex);
+    }
+
+    /**
+     * Recomputes every army-wide aggregate the slow way and compares it with the
+     * running one. Meant for assertions and checks; it walks the whole army.
+     * 
+     * @return true when the running aggregates are right
+     */
+    public boolean aggregatesMatch()
+    {
+	return this.store.aggregatesMatch() && this.grid.aggregatesMatch(this.factionIndex) && this.store.getAliveCount() == size()
+		&& (this.factions == null || this.factions.getLiveCount(this) == size());
+    }
+
+    // METHOD USED TO EDIT THE CONTENTS OF AN ARMY
+    /**
+     * This method is used to make changes to an existing <i>Actor</i> subclass
+     * object in the Army. It takes one parameter <i>indexOfActorToEdit</i>.
+     * 
+     * @param indexOfActorToEdit This is used to look up the <i>Actor</i> in the
+     * ArrayList using the index.
+     */
+    public void edit(int indexOfActorToEdit)
+    {
+	this.collectionActors.get(indexOfActorToEdit).inputAllFields();
+    }
+
+    /**
+     * empties this army in one go: the avatars that are in the scene graph
+     * leave it in a single change, the actor list is cleared in a single change
+     * and the columns are dropped with the old <i>ActorStore</i>
+     */
+    public void clearScreen()
+    {
+	if (!isHeadless())
+	{
+	    HashSet<Node> avatars = new HashSet<>();
+	    for (Actor actor : this.collectionActors)
+	    {
+		if (actor.getAvatar() != null) // otherwise never shown, or drawn onto the canvas
+		    avatars.add(actor.getAvatar());
+	    }
+	    if (!avatars.isEmpty())
+		this.simulator.getChildren().removeAll(avatars);
+	}
+	clearGrid();
+	this.collectionActors.clear();
+	this.deadInCollection.clear();
+	this.store = new ActorStore(); // actors still referenced elsewhere keep the old columns
     }
 
     /**
@@ -231,37 +545,83 @@ public class Army
     }
 
     /**
-     * creates a table to display actors on the screen
-     * 
-     * @return
+     * @return colour of this army
      */
-    public Node getTableViewOfActors()
+    public Color getColor()
     {
-	TableView<Actor> tableView = Actor.createTable();
-	tableView.setItems(this.collectionActors);
-	return tableView;
+	return this.color;
     }
 
     /**
-     * set an opposing army for different armyAllegiance
+     * set an opposing army for different armyAllegiance. The two armies become
+     * the two factions of a battle of their own (see <i>Factions</i>), unless
+     * they already are.
      * 
      * @param opposingArmy
      */
     public void setOpposingArmy(Army opposingArmy)
     {
-	this.opposingArmy = opposingArmy;
+	Factions.of(this, opposingArmy);
     }
 
     /**
      * set an opposing army for different armyAllegiance
      * 
-     * @param opposingArmy
+     * @return the other army of a battle of two, or null in a battle of more
+     * factions
      */
     public Army getOpposingArmy()
     {
 	return this.opposingArmy;
     }
 
+    /**
+     * @return roster of the battle this army is a faction of, or null
+     */
+    public Factions getFactions()
+    {
+	return this.factions;
+    }
+
+    /**
+     * @return position of this army in the roster of its battle
+     */
+    public int getFactionIndex()
+    {
+	return this.factionIndex;
+    }
+
+    /**
+     * makes this army a faction of a battle, leaving the battle it was in
+     * 
+     * @param factions roster of the battle
+     * @param factionIndex position of this army in it
+     */
+    void joinFactions(Factions factions, int factionIndex)
+    {
+	dropDeadActors();
+	clearGrid();
+	this.factions = factions;
+	this.factionIndex = factionIndex;
+	this.opposingArmy = factions.size() == 2 ? factions.get(1 - factionIndex) : null;
+	this.grid = factions.getGrid();
+	for (Actor actor : this.collectionActors)
+	    this.grid.insert(actor);
+	factions.actorsJoined(this, this.collectionActors.size());
+    }
+
+    /**
+     * takes every actor of this army out of its grid, leaving the actors of
+     * other factions in a shared one
+     */
+    private void clearGrid()
+    {
+	if (this.factions != null)
+	    this.factions.armyCleared(this);
+	else
+	    this.grid.clear();
+    }
+
     /**
      * help with saving data from actors
      * 
@@ -291,34 +651,91 @@ public class Army
      */
     public void deserialize(ObjectInputStream in) throws IOException, ClassNotFoundException
     {
-	this.collectionActors.clear();
-	this.name = (String) in.readObject();
-	this.color = new Color(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
-	this.dropShadow = new DropShadow(20.0, this.color);
+	String name = (String) in.readObject();
+	Color color = new Color(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
 	int size = in.readInt();
+	reset(name, color, size);
+	ArrayList<Actor> actors = new ArrayList<>(size);
 	for (int i = 0; i < size; ++i)
 	{
 	    Actor actor = (Actor) in.readObject();
 	    actor.setArmyAllegiance(this);
-	    actor.getAvatar().setEffect(this.dropShadow);
-	    this.simulator.getChildren().add(actor.getAvatar());
-	    this.collectionActors.add(actor);
+	    actors.add(actor);
 	}
+	addRestored(actors);
     } // end deserialize() to support serialization
 
     /**
-     * use for finding nearest opposing actor
+     * empties this army before it is read back from a saved battlefield
+     * 
+     * @param name name of the saved army
+     * @param color colour of the saved army
+     * @param capacity number of actors about to be read
+     */
+    void reset(String name, Color color, int capacity)
+    {
+	clearGrid();
+	this.collectionActors.clear();
+	this.deadInCollection.clear();
+	this.store = new ActorStore(capacity);
+	this.name = name;
+	this.color = color;
+	this.dropShadow = new DropShadow(20.0, color);
+    }
+
+    /**
+     * adds actors read back from a saved battlefield, whose state already lives
+     * in the <i>ActorStore</i> of this army
+     * 
+     * @param actors the restored actors, in their saved order
+     */
+    void addRestored(List<Actor> actors)
+    {
+	FlightEvents.SpatialIndexRebuild event = FlightEvents.spatialIndexRebuild();
+	if (event != null)
+	    event.begin();
+	this.collectionActors.addAll(actors); // one change event for the whole army
+	for (Actor actor : actors)
+	{
+	    this.grid.insert(actor);
+	}
+	if (this.factions != null)
+	    this.factions.actorsJoined(this, actors.size());
+	if (event != null && event.shouldCommit())
+	{
+	    event.set(this.name, actors.size(), "restore");
+	    event.commit();
+	}
+    }
+
+    /**
+     * use for finding nearest opposing actor. Small armies are scanned directly,
+     * larger ones are searched through the <i>SpatialGrid</i>.
      * 
      * @param actorToMove
-     * @return
+     * @return the nearest visible actor of this army, or null if there is none
      */
     public Actor findNearestActor(Actor actorToMove)
+    {
+	if (size() <= LINEAR_SCAN_LIMIT)
+	    return findNearestActorByScan(actorToMove);
+	return this.grid.findNearest(actorToMove, 1 << this.factionIndex);
+    } // end of findNearestActor()
+
+    /**
+     * finds the nearest opposing actor by measuring the distance to every actor
+     * in the army. Kept as the reference the grid search is measured against.
+     * 
+     * @param actorToMove
+     * @return the nearest visible actor of this army, or null if there is none
+     */
+    public Actor findNearestActorByScan(Actor actorToMove)
     {
 	Actor nearest = null;
 	double distanceToClosest = Double.MAX_VALUE;
 	for (Actor opponent : this.collectionActors)
 	{
-	    if (opponent.isVisible())
+	    if (opponent.isVisible() && opponent.isAlive()) // the dead may still wait in the list
 	    {
 		double currentDistance = actorToMove.distanceTo(opponent);
 		if (currentDistance < distanceToClosest)
@@ -329,16 +746,88 @@ public class Army
 	    } // end if (isVisible)
 	} // end for (collectionActors)
 	return nearest;
-    } // end of findNearestActor()
+    } // end of findNearestActorByScan()
+
+    /**
+     * finds the actors of this army located inside a rectangle, such as the part
+     * of the battlefield a camera shows, through the spatial index; actors far
+     * from the rectangle are never looked at
+     * 
+     * @param minX left edge of the rectangle
+     * @param minY top edge of the rectangle
+     * @param maxX right edge of the rectangle
+     * @param maxY bottom edge of the rectangle
+     * @param out list the actors are added to
+     * @return number of actors added
+     */
+    public int collectActorsWithin(double minX, double minY, double maxX, double maxY, List<Actor> out)
+    {
+	return this.grid.collectWithin(minX, minY, maxX, maxY, 1 << this.factionIndex, out);
+    }
+
+    /**
+     * keeps the spatial index in step when one of this army's actors moves. Called
+     * by <i>Actor.setLocation()</i>.
+     * 
+     * @param actor the actor that moved
+     * @param oldX horizontal location before the move
+     * @param oldY vertical location before the move
+     */
+    public void actorMoved(Actor actor, double oldX, double oldY)
+    {
+	this.grid.move(actor, oldX, oldY);
+    }
+
+    /**
+     * Takes every actor that died since the last call out of the actor list.
+     * A handful go one by one; more than one in
+     * {@value #SINGLE_REMOVAL_RATIO} of the list go in a single pass and a
+     * single change event, as each removal on its own searches and shifts the
+     * whole list. Whoever kills actors calls it once they are done, the engine at
+     * the end of every tick, so a battle pays for one pass per tick rather than a
+     * search and a shift per death. Like the deaths themselves, it must not run
+     * while another thread reads the army.
+     */
+    public void dropDeadActors()
+    {
+	int dead = this.deadInCollection.size();
+	if (dead == 0)
+	    return;
+	if (dead <= this.collectionActors.size() / SINGLE_REMOVAL_RATIO)
+	{
+	    for (int i = 0; i < dead; ++i)
+		this.collectionActors.remove(this.deadInCollection.get(i));
+	    this.deadInCollection.clear();
+	    return;
+	}
+	for (int i = 0; i < this.collectionActors.size(); ++i)
+	{
+	    Actor actor = this.collectionActors.get(i);
+	    if (actor.isAlive())
+		this.survivors.add(actor);
+	}
+	this.collectionActors.setAll(this.survivors); // removeAll() would still shift the list once per death
+	this.survivors.clear();
+	this.deadInCollection.clear();
+    }
 
     /**
      * this is use when actors drop below 1 health so they can get removed and
-     * displays their death on screen
+     * displays their death on screen. The actor leaves the spatial index and
+     * <i>size()</i> at once, and the actor list at the next
+     * <i>dropDeadActors()</i>.
      * 
      * @param nowDeadActor
      */
     public void removeNowDeadActor(Actor nowDeadActor)
     {
+	boolean decided = grid.remove(nowDeadActor) && this.factions != null && this.factions.actorDied(nowDeadActor);
+	nowDeadActor.markDead();
+	if (isHeadless())
+	{ // nothing to draw, just take the Actor out of the fight
+	    deadInCollection.add(nowDeadActor);
+	    return;
+	}
 	final ObservableList<Node> listJavaFXNodesOnBattlefield = simulator.getChildren(); // creating as a convenience
 	// variable, since the
 	// removeNowDeadActor()
@@ -346,43 +835,27 @@ public class Army
 	// many Node objects in the
 	// simulator collection of
 	// Node objects
-	// START: Create Notification message about the nowDeadActor: Create, then add
-	// two Transition Animations, packing in a ParallelTransition
-	{ // setup Stack Frame to allow re-use of variable identifiers "tt", "ft" and "pt"
-	    Text message = new Text(120.0, 120.0, "Dead: " + nowDeadActor.getName());
-	    message.setFont(NOTIFICATION_FONT_SMALL);
-	    message.setStroke(color);
-	    final Duration duration = Duration.seconds(3.0);
-	    FadeTransition ft = new FadeTransition(duration);
-	    ft.setToValue(0.0); // no need to associate with the Text (message) here, that will be done in the
-	    // ParallelTransition
-	    TranslateTransition tt = new TranslateTransition(duration);
-	    tt.setByY(200.0); // no need to associate with the Text (message) here, that will be done in the
-	    // ParallelTransition
-	    ParallelTransition pt = new ParallelTransition(message, ft, tt);
-	    pt.setOnFinished(event -> listJavaFXNodesOnBattlefield.remove(message));
-	    pt.play(); // couple both Transitions in the ParallelTransition and associate with Text
-	    listJavaFXNodesOnBattlefield.add(message); // it will play() and after playing the code in the
-	    // setOnFinished() method will called to remove the temporay
-	    // message from the scenegraph.
-	}
-	// END: Create Notification message about the nowDeadActor: Create, then add two
-	// Transition Animations, packing in a ParallelTransition
+	simulator.getNotifications().reportDeath(nowDeadActor); // counted now, shown with the other casualties of
+	// the moment
 
-	collectionActors.remove(nowDeadActor); // removes nowDeadActor from the collection of active Actor objects that
-	// are part of this army.
+	deadInCollection.add(nowDeadActor); // leaves the collection of active Actor objects that are part of this
+	// army at the next dropDeadActors()
 	listJavaFXNodesOnBattlefield.remove(nowDeadActor.getAvatar()); // removes the avatar from the screnegraph (the
 	// Node object). The actor will disappear from
 	// the screen.
 
 	// START: Create Final Announcement of Winning Army
-	if (collectionActors.size() == 0)
-	{ // Army has been wiped out, since no Actor objects remain in the collection.
-	  // Therefore . . . the opposing Army wins.
-	    Text winner = new Text(205.0, 300.0, "Winner: " + opposingArmy.getName());
-	    winner.setFont(NOTIFICATION_FONT_LARGE);
-	    winner.setStroke(opposingArmy.color);
-	    winner.setEffect(opposingArmy.dropShadow);
+	List<Army> survivors = decided ? this.factions.getSurvivors() : null;
+	if (survivors != null && !survivors.isEmpty())
+	{ // no army left standing has an enemy left standing, counted per faction.
+	  // Therefore . . . the survivors, one army or a whole alliance, win.
+	    StringBuilder names = new StringBuilder(survivors.get(0).getName());
+	    for (int i = 1; i < survivors.size(); ++i)
+		names.append(" & ").append(survivors.get(i).getName());
+	    Text winner = new Text(205.0, 300.0, "Winner: " + names);
+	    winner.setFont(NotificationFonts.LARGE);
+	    winner.setStroke(survivors.get(0).color);
+	    winner.setEffect(survivors.get(0).dropShadow);
 	    final Duration duration = Duration.seconds(1.0);
 	    FadeTransition ft = new FadeTransition(duration, winner);
 	    ft.setToValue(0.2);
@@ -0,0 +1,370 @@
+package army;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.paint.Color;
+import actor.Actor;
+import actor.ActorFactory;
+import actor.ActorStore;
+import engine.FlightEvents;
+
+/**
+ * <i>BattlefieldFile</i> saves and restores armies in a compact, versioned
+ * binary format instead of Java serialization. Nothing is written per class or
+ * per object, only the values themselves, so a million actors are saved and
+ * restored in well under a second.
+ * <p>
+ * All values are little-endian. A file holds:
+ * <ul>
+ * <li>a header: <i>MAGIC</i> (int), <i>VERSION</i> (short), number of armies
+ * (short)</li>
+ * <li>per army: its name, its colour as four doubles (red, green, blue,
+ * opacity), a table of the actor names that differ from their default, the
+ * number of actors, then one record of <i>RECORD_SIZE</i> bytes per actor</li>
+ * </ul>
+ * Strings are an int byte count followed by UTF-8 bytes. An actor record is:
+ * type ordinal (byte), three bytes of padding, index into the name table or
+ * -1 for the default name (int), health, strength, speed, x and y (doubles),
+ * then the <i>Actor.TRAITS_SIZE</i> bytes of subclass traits and padding up to
+ * <i>RECORD_SIZE</i>.
+ */
+public final class BattlefieldFile
+{
+    /** first four bytes of every battlefield file ("MEBF"), currently:{@value} */
+    public static final int MAGIC = 0x4D454246;
+    /** version of the format written by this class, currently:{@value} */
+    public static final short VERSION = 1;
+    /** bytes of one actor record, currently:{@value} */
+    public static final int RECORD_SIZE = 64;
+    /** size of the direct buffer between the file and the armies, currently:{@value} */
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int DEFAULT_NAME = -1;
+    private static final ActorFactory.Type[] TYPES = ActorFactory.Type.values();
+
+    private BattlefieldFile()
+    {
+    }
+
+    /**
+     * saves the armies, in order, replacing whatever <i>path</i> held before
+     *
+     * @param path file to write
+     * @param armies armies to save
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, Army... armies) throws IOException
+    {
+	FlightEvents.Persistence event = FlightEvents.persistence();
+	if (event != null)
+	    event.begin();
+	try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+		StandardOpenOption.TRUNCATE_EXISTING))
+	{
+	    write(channel, armies);
+	    recordPersistence(event, "save", path, channel, armies);
+	}
+    } // end write()
+
+    /**
+     * saves the armies, in order, at the current position of <i>channel</i>, for
+     * files that embed a battlefield among other data
+     *
+     * @param channel channel to write to; left positioned after the battlefield
+     * @param armies armies to save
+     * @throws IOException if the channel cannot be written
+     */
+    public static void write(FileChannel channel, Army... armies) throws IOException
+    {
+	Output out = new Output(channel);
+	out.require(8);
+	out.buffer.putInt(MAGIC);
+	out.buffer.putShort(VERSION);
+	out.buffer.putShort((short) armies.length);
+	for (Army army : armies)
+	    writeArmy(out, army);
+	out.flush();
+    }
+
+    /**
+     * commits a <i>Persistence</i> event begun before <i>channel</i> was opened,
+     * if there were flight recorder events to begin one
+     */
+    static void recordPersistence(FlightEvents.Persistence event, String operation, Path path, FileChannel channel,
+	    Army... armies) throws IOException
+    {
+	if (event != null && event.shouldCommit())
+	{
+	    int actors = 0;
+	    for (Army army : armies)
+		actors += army.size();
+	    event.set(operation, path.toString(), armies.length, actors, channel.size());
+	    event.commit();
+	}
+    }
+
+    /**
+     * restores the armies, in order, from a file written by <i>write()</i>; each
+     * army is emptied first and takes the name and colour that were saved
+     *
+     * @param path file to read
+     * @param armies armies to restore into; as many as the file holds
+     * @throws IOException if the file cannot be read, is not a battlefield file,
+     * was written by a newer version or holds a different number of armies
+     */
+    public static void read(Path path, Army... armies) throws IOException
+    {
+	FlightEvents.Persistence event = FlightEvents.persistence();
+	if (event != null)
+	    event.begin();
+	try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+	{
+	    read(channel, armies);
+	    recordPersistence(event, "restore", path, channel, armies);
+	} catch (IOException e)
+	{
+	    throw new IOException(path + ": " + e.getMessage(), e);
+	}
+    } // end read()
+
+    /**
+     * restores the armies from a battlefield starting at the current position of
+     * <i>channel</i>. The channel is read ahead, so its position afterwards is
+     * unspecified.
+     *
+     * @param channel channel to read from
+     * @param armies armies to restore into; as many as the battlefield holds
+     * @throws IOException if the channel cannot be read or holds no battlefield
+     * this version can read
+     */
+    public static void read(FileChannel channel, Army... armies) throws IOException
+    {
+	Input in = new Input(channel);
+	in.require(8);
+	if (in.buffer.getInt() != MAGIC)
+	    throw new IOException("not a battlefield file");
+	short version = in.buffer.getShort();
+	if (version < 1 || version > VERSION)
+	    throw new IOException("unsupported version " + version);
+	int armyCount = in.buffer.getShort();
+	if (armyCount != armies.length)
+	    throw new IOException("holds " + armyCount + " armies, not " + armies.length);
+	for (Army army : armies)
+	    readArmy(in, army);
+    } // end read()
+
+    private static void writeArmy(Output out, Army army) throws IOException
+    {
+	SavedActors actors = new SavedActors(army);
+	out.putString(army.getName());
+	Color color = army.getColor();
+	out.require(32);
+	out.buffer.putDouble(color.getRed());
+	out.buffer.putDouble(color.getGreen());
+	out.buffer.putDouble(color.getBlue());
+	out.buffer.putDouble(color.getOpacity());
+	out.require(4);
+	out.buffer.putInt(actors.names.size());
+	for (String name : actors.names)
+	    out.putString(name);
+	out.require(4);
+	out.buffer.putInt(actors.list.size());
+	for (int i = 0; i < actors.list.size(); ++i)
+	{
+	    Actor actor = actors.list.get(i);
+	    out.require(RECORD_SIZE);
+	    ByteBuffer buffer = out.buffer;
+	    int end = buffer.position() + RECORD_SIZE;
+	    buffer.put((byte) actor.getType().ordinal());
+	    buffer.put((byte) 0).put((byte) 0).put((byte) 0);
+	    buffer.putInt(actors.nameIds[i]);
+	    buffer.putDouble(actor.getHealth());
+	    buffer.putDouble(actor.getStrength());
+	    buffer.putDouble(actor.getSpeed());
+	    buffer.putDouble(actor.getX());
+	    buffer.putDouble(actor.getY());
+	    actor.writeTraits(buffer);
+	    while (buffer.position() < end)
+		buffer.put((byte) 0);
+	} // end for
+    } // end writeArmy()
+
+    private static void readArmy(Input in, Army army) throws IOException
+    {
+	String name = in.getString();
+	in.require(32);
+	Color color = new Color(in.buffer.getDouble(), in.buffer.getDouble(), in.buffer.getDouble(),
+		in.buffer.getDouble());
+	in.require(4);
+	int nameCount = in.buffer.getInt();
+	if (nameCount < 0)
+	    throw new IOException("negative number of names in army " + name);
+	String[] names = new String[nameCount];
+	for (int i = 0; i < names.length; ++i)
+	    names[i] = in.getString();
+	in.require(4);
+	int actorCount = in.buffer.getInt();
+	if (actorCount < 0)
+	    throw new IOException("negative number of actors in army " + name);
+	army.reset(name, color, actorCount);
+	ActorStore store = army.getStore();
+	List<Actor> actors = new ArrayList<>(actorCount);
+	for (int i = 0; i < actorCount; ++i)
+	{
+	    in.require(RECORD_SIZE);
+	    ByteBuffer buffer = in.buffer;
+	    int end = buffer.position() + RECORD_SIZE;
+	    int type = buffer.get();
+	    if (type < 0 || type >= TYPES.length || TYPES[type] == ActorFactory.Type.RANDOM)
+		throw new IOException("unknown actor type " + type + " in army " + name);
+	    buffer.position(buffer.position() + 3);
+	    int nameId = buffer.getInt();
+	    if (nameId < DEFAULT_NAME || nameId >= names.length)
+		throw new IOException("unknown name " + nameId + " in army " + name);
+	    Actor actor = TYPES[type].restore(army);
+	    int id = actor.getId();
+	    store.setHealth(id, buffer.getDouble());
+	    store.setStrength(id, buffer.getDouble());
+	    store.setSpeed(id, buffer.getDouble());
+	    store.setLocation(id, buffer.getDouble(), buffer.getDouble());
+	    actor.readTraits(buffer);
+	    if (nameId != DEFAULT_NAME)
+		actor.setName(names[nameId]);
+	    buffer.position(end);
+	    actors.add(actor);
+	} // end for
+	army.addRestored(actors);
+    } // end readArmy()
+
+    /**
+     * the actors of an army together with the table of names that differ from
+     * their default; default names are rebuilt from fresh serial numbers on
+     * restore instead of taking up space in the file
+     */
+    private static final class SavedActors
+    {
+	private final List<Actor> list;
+	private final List<String> names = new ArrayList<>();
+	private final int[] nameIds;
+
+	private SavedActors(Army army)
+	{
+	    this.list = army.getCollectionActors();
+	    this.nameIds = new int[this.list.size()];
+	    Map<String, Integer> nameTable = new HashMap<>();
+	    for (int i = 0; i < this.nameIds.length; ++i)
+	    {
+		Actor actor = this.list.get(i);
+		if (actor.hasDefaultName())
+		{
+		    this.nameIds[i] = DEFAULT_NAME;
+		    continue;
+		}
+		Integer nameId = nameTable.get(actor.getName());
+		if (nameId == null)
+		{
+		    nameId = this.names.size();
+		    nameTable.put(actor.getName(), nameId);
+		    this.names.add(actor.getName());
+		}
+		this.nameIds[i] = nameId;
+	    }
+	}
+    } // end class SavedActors
+
+    /**
+     * direct buffer in front of a channel being written
+     */
+    private static final class Output
+    {
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+	private Output(FileChannel channel)
+	{
+	    this.channel = channel;
+	}
+
+	/**
+	 * makes room for at least <i>bytes</i> more bytes, writing out what the
+	 * buffer holds if necessary
+	 */
+	private void require(int bytes) throws IOException
+	{
+	    if (this.buffer.remaining() < bytes)
+		flush();
+	}
+
+	private void flush() throws IOException
+	{
+	    this.buffer.flip();
+	    while (this.buffer.hasRemaining())
+		this.channel.write(this.buffer);
+	    this.buffer.clear();
+	}
+
+	private void putString(String value) throws IOException
+	{
+	    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+	    if (bytes.length > BUFFER_SIZE - 4)
+		throw new IOException("name too long to save: " + bytes.length + " bytes");
+	    require(4 + bytes.length);
+	    this.buffer.putInt(bytes.length);
+	    this.buffer.put(bytes);
+	}
+    } // end class Output
+
+    /**
+     * direct buffer behind a channel being read
+     */
+    private static final class Input
+    {
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+	private Input(FileChannel channel)
+	{
+	    this.channel = channel;
+	    this.buffer.limit(0);
+	}
+
+	/**
+	 * makes sure at least <i>bytes</i> more bytes can be read from the buffer,
+	 * reading from the channel if necessary
+	 */
+	private void require(int bytes) throws IOException
+	{
+	    if (this.buffer.remaining() >= bytes)
+		return;
+	    this.buffer.compact();
+	    while (this.buffer.position() < bytes)
+	    {
+		if (this.channel.read(this.buffer) < 0)
+		    throw new EOFException("battlefield file ends in the middle of a record");
+	    }
+	    this.buffer.flip();
+	}
+
+	private String getString() throws IOException
+	{
+	    require(4);
+	    int length = this.buffer.getInt();
+	    if (length < 0 || length > BUFFER_SIZE - 4)
+		throw new IOException("corrupt name length " + length);
+	    require(length);
+	    byte[] bytes = new byte[length];
+	    this.buffer.get(bytes);
+	    return new String(bytes, StandardCharsets.UTF_8);
+	}
+    } // end class Input
+}
@@ -0,0 +1,589 @@
+package army;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.paint.Color;
+import actor.Actor;
+import actor.ActorFactory;
+import actor.ActorStore;
+import engine.FlightEvents;
+
+/**
+ * <i>BattlefieldSnapshot</i> is a memory-mapped, column-oriented save of
+ * battlefields with millions of actors. Opening one copies nothing onto the
+ * heap: each attribute of each army is a column mapped straight from the file,
+ * and the operating system faults its pages in when they are first read. Only
+ * the actors that are actually visited or rendered are materialized as
+ * <i>Actor</i> objects, through <i>Section.materialize()</i> or
+ * <i>Section.materializeWithin()</i>.
+ * <p>
+ * <b>Not supported:</b> running the headless engine on the mapped columns.
+ * The engine reads and writes the <i>ActorStore</i> of each army, on the
+ * heap, and builds a unit for every <i>Actor</i>. So before a battle starts,
+ * or the armies are saved again, every actor of the snapshot is materialized
+ * with <i>Section.materializeAll()</i>, and the whole cost of a full restore
+ * is paid then. The mapping only saves time and heap for a battlefield that
+ * is opened and looked around but not fought, or not yet.
+ * <p>
+ * All values are little-endian. A file holds a header (<i>MAGIC</i> as an int,
+ * <i>VERSION</i> and the number of armies as shorts) followed by one section
+ * per army: its name, its colour as four doubles, its table of actor names
+ * that differ from their default, its number of actors and then, each padded
+ * to a multiple of eight bytes, the columns type (byte), trait flags (byte),
+ * name index (int, -1 for the default name), health, strength, speed, x, y and
+ * trait value (doubles). Strings are an int byte count followed by UTF-8
+ * bytes. The trait flags and value are the two halves of
+ * <i>Actor.writeTraits()</i>.
+ * <p>
+ * A mapping is only released when it is garbage collected, so a snapshot file
+ * stays open on some platforms for a while after <i>close()</i>.
+ */
+public final class BattlefieldSnapshot implements Closeable
+{
+    /** first four bytes of every snapshot file ("MESN"), currently:{@value} */
+    public static final int MAGIC = 0x4D45534E;
+    /** version of the format written by this class, currently:{@value} */
+    public static final short VERSION = 1;
+    private static final int DEFAULT_NAME = -1;
+    private static final ActorFactory.Type[] TYPES = ActorFactory.Type.values();
+
+    private final FileChannel channel;
+    private final List<Section> sections;
+
+    /**
+     * one army of a snapshot, read column by column from the mapping
+     */
+    public static final class Section
+    {
+	private final String name;
+	private final Color color;
+	private final String[] names;
+	private final int size;
+	private final ByteBuffer types;
+	private final ByteBuffer traitFlags;
+	private final IntBuffer nameIds;
+	private final DoubleBuffer health;
+	private final DoubleBuffer strength;
+	private final DoubleBuffer speed;
+	private final DoubleBuffer x;
+	private final DoubleBuffer y;
+	private final DoubleBuffer traitValues;
+	/** actors built so far, by index in the section */
+	private final Map<Integer, Actor> materialized = new HashMap<>();
+	private final ByteBuffer traits = ByteBuffer.allocate(Actor.TRAITS_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private Army army;
+
+	private Section(String name, Color color, String[] names, int size, MappedColumns columns)
+	{
+	    this.name = name;
+	    this.color = color;
+	    this.names = names;
+	    this.size = size;
+	    this.types = columns.types;
+	    this.traitFlags = columns.traitFlags;
+	    this.nameIds = columns.nameIds;
+	    this.health = columns.doubles[0];
+	    this.strength = columns.doubles[1];
+	    this.speed = columns.doubles[2];
+	    this.x = columns.doubles[3];
+	    this.y = columns.doubles[4];
+	    this.traitValues = columns.doubles[5];
+	}
+
+	public String getName()
+	{
+	    return this.name;
+	}
+
+	public Color getColor()
+	{
+	    return this.color;
+	}
+
+	/**
+	 * @return number of actors saved in this section
+	 */
+	public int size()
+	{
+	    return this.size;
+	}
+
+	/**
+	 * @return number of actors materialized so far
+	 */
+	public int getMaterializedCount()
+	{
+	    return this.materialized.size();
+	}
+
+	/**
+	 * @return true once every actor of this section is materialized
+	 */
+	public boolean isMaterialized()
+	{
+	    return this.materialized.size() == this.size;
+	}
+
+	public ActorFactory.Type getType(int index)
+	{
+	    return TYPES[this.types.get(index)];
+	}
+
+	public double getHealth(int index)
+	{
+	    return this.health.get(index);
+	}
+
+	public double getStrength(int index)
+	{
+	    return this.strength.get(index);
+	}
+
+	public double getSpeed(int index)
+	{
+	    return this.speed.get(index);
+	}
+
+	public double getX(int index)
+	{
+	    return this.x.get(index);
+	}
+
+	public double getY(int index)
+	{
+	    return this.y.get(index);
+	}
+
+	/**
+	 * empties <i>army</i>, gives it the saved name and colour and makes it the
+	 * army that materialized actors join
+	 *
+	 * @param army army to fill from this section
+	 */
+	public void attach(Army army)
+	{
+	    army.reset(this.name, this.color, ActorStore.DEFAULT_CAPACITY);
+	    this.army = army;
+	    this.materialized.clear();
+	}
+
+	/**
+	 * builds the <i>Actor</i> saved at <i>index</i> and adds it to the attached
+	 * army, or returns the one built before. Not thread-safe.
+	 *
+	 * @param index index of the actor in this section
+	 * @return the materialized actor
+	 */
+	public Actor materialize(int index)
+	{
+	    Actor actor = this.materialized.get(index);
+	    if (actor == null)
+	    {
+		actor = build(index);
+		this.army.addRestored(Collections.singletonList(actor));
+	    }
+	    return actor;
+	}
+
+	/**
+	 * materializes every actor saved inside a rectangle, such as the visible part
+	 * of the battlefield. Only the x and y columns are scanned, so the pages of
+	 * the other columns are faulted in for the actors inside alone.
+	 *
+	 * @return number of actors inside the rectangle
+	 */
+	public int materializeWithin(double minX, double minY, double maxX, double maxY)
+	{
+	    List<Actor> added = new ArrayList<>();
+	    int inside = 0;
+	    for (int i = 0; i < this.size; ++i)
+	    {
+		double actorX = this.x.get(i);
+		double actorY = this.y.get(i);
+		if (actorX < minX || actorX > maxX || actorY < minY || actorY > maxY)
+		    continue;
+		++inside;
+		if (!this.materialized.containsKey(i))
+		    added.add(build(i));
+	    }
+	    this.army.addRestored(added);
+	    return inside;
+	} // end materializeWithin()
+
+	/**
+	 * materializes every actor not materialized yet, so the attached army holds
+	 * the whole section and the snapshot can be closed. Needed before a battle,
+	 * as the engine cannot run on the mapped columns.
+	 *
+	 * @return number of actors materialized by this call
+	 */
+	public int materializeAll()
+	{
+	    List<Actor> added = new ArrayList<>(this.size - this.materialized.size());
+	    for (int i = 0; i < this.size; ++i)
+	    {
+		if (!this.materialized.containsKey(i))
+		    added.add(build(i));
+	    }
+	    this.army.addRestored(added);
+	    return added.size();
+	}
+
+	private Actor build(int index)
+	{
+	    if (this.army == null)
+		throw new IllegalStateException("attach an army before materializing actors");
+	    Actor actor = getType(index).restore(this.army);
+	    ActorStore store = this.army.getStore();
+	    int id = actor.getId();
+	    store.setHealth(id, this.health.get(index));
+	    store.setStrength(id, this.strength.get(index));
+	    store.setSpeed(id, this.speed.get(index));
+	    store.setLocation(id, this.x.get(index), this.y.get(index));
+	    this.traits.clear();
+	    this.traits.put(this.traitFlags.get(index)).putDouble(this.traitValues.get(index)).flip();
+	    actor.readTraits(this.traits);
+	    int nameId = this.nameIds.get(index);
+	    if (nameId != DEFAULT_NAME)
+		actor.setName(this.names[nameId]);
+	    this.materialized.put(index, actor);
+	    return actor;
+	}
+    } // end class Section
+
+    private BattlefieldSnapshot(FileChannel channel, List<Section> sections)
+    {
+	this.channel = channel;
+	this.sections = sections;
+    }
+
+    /**
+     * Saves the armies, in order, through a writable mapping of a temporary file
+     * that then replaces <i>path</i> in one move. A snapshot still mapped from
+     * <i>path</i> keeps reading the old file rather than pages cut off under it.
+     *
+     * @param path file to write; replaced if it exists
+     * @param armies armies to save
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, Army... armies) throws IOException
+    {
+	FlightEvents.Persistence event = FlightEvents.persistence();
+	if (event != null)
+	    event.begin();
+	Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+	try
+	{
+	    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+		    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+	    {
+		ByteBuffer header = newBuffer(8);
+		header.putInt(MAGIC).putShort(VERSION).putShort((short) armies.length).flip();
+		long position = writeFully(channel, header, 0L);
+		for (Army army : armies)
+		    position = writeSection(channel, army, position);
+		BattlefieldFile.recordPersistence(event, "snapshot save", path, channel, armies);
+	    }
+	    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	} finally
+	{
+	    Files.deleteIfExists(temporary); // only still there when the write failed
+	}
+    } // end write()
+
+    /**
+     * maps a snapshot written by <i>write()</i>; nothing but the small army
+     * headers is read until columns are accessed
+     *
+     * @param path file to open
+     * @return the open snapshot
+     * @throws IOException if the file cannot be read, is not a snapshot or was
+     * written by a newer version
+     */
+    public static BattlefieldSnapshot open(Path path) throws IOException
+    {
+	FlightEvents.Persistence event = FlightEvents.persistence();
+	if (event != null)
+	    event.begin();
+	FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+	try
+	{
+	    ByteBuffer header = readFully(channel, 0L, 8);
+	    if (header.getInt() != MAGIC)
+		throw new IOException(path + " is not a battlefield snapshot");
+	    short version = header.getShort();
+	    if (version < 1 || version > VERSION)
+		throw new IOException(path + " has unsupported version " + version);
+	    int armyCount = header.getShort();
+	    List<Section> sections = new ArrayList<>(armyCount);
+	    long position = 8L;
+	    for (int i = 0; i < armyCount; ++i)
+	    {
+		SectionReader reader = new SectionReader(channel, position);
+		sections.add(reader.section);
+		position = reader.end;
+	    }
+	    if (event != null && event.shouldCommit())
+	    {
+		int actors = 0;
+		for (Section section : sections)
+		    actors += section.size();
+		event.set("snapshot open", path.toString(), armyCount, actors, channel.size());
+		event.commit();
+	    }
+	    return new BattlefieldSnapshot(channel, sections);
+	} catch (IOException | RuntimeException e)
+	{
+	    channel.close();
+	    throw e;
+	}
+    } // end open()
+
+    /**
+     * @return number of armies in the snapshot
+     */
+    public int getArmyCount()
+    {
+	return this.sections.size();
+    }
+
+    /**
+     * @param index index of the army, in the order it was saved
+     * @return the section of that army
+     */
+    public Section getArmy(int index)
+    {
+	return this.sections.get(index);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+	this.channel.close();
+    }
+
+    private static long writeSection(FileChannel channel, Army army, long position) throws IOException
+    {
+	List<Actor> actors = army.getCollectionActors();
+	int size = actors.size();
+	List<String> names = new ArrayList<>();
+	Map<String, Integer> nameTable = new HashMap<>();
+	int[] nameIds = new int[size];
+	for (int i = 0; i < size; ++i)
+	{
+	    Actor actor = actors.get(i);
+	    nameIds[i] = DEFAULT_NAME;
+	    if (!actor.hasDefaultName())
+	    {
+		Integer nameId = nameTable.get(actor.getName());
+		if (nameId == null)
+		{
+		    nameId = names.size();
+		    nameTable.put(actor.getName(), nameId);
+		    names.add(actor.getName());
+		}
+		nameIds[i] = nameId;
+	    }
+	} // end for
+
+	List<byte[]> strings = new ArrayList<>();
+	strings.add(army.getName().getBytes(StandardCharsets.UTF_8));
+	for (String name : names)
+	    strings.add(name.getBytes(StandardCharsets.UTF_8));
+	int headerSize = 32 + 4 + 4;
+	for (byte[] string : strings)
+	    headerSize += 4 + string.length;
+	ByteBuffer header = newBuffer(headerSize);
+	putString(header, strings.get(0));
+	Color color = army.getColor();
+	header.putDouble(color.getRed()).putDouble(color.getGreen()).putDouble(color.getBlue())
+		.putDouble(color.getOpacity());
+	header.putInt(names.size());
+	for (int i = 1; i < strings.size(); ++i)
+	    putString(header, strings.get(i));
+	header.putInt(size).flip();
+	position = align(writeFully(channel, header, position));
+
+	MappedColumns columns = new MappedColumns(channel, FileChannel.MapMode.READ_WRITE, position, size);
+	ByteBuffer traits = newBuffer(Actor.TRAITS_SIZE);
+	for (int i = 0; i < size; ++i)
+	{
+	    Actor actor = actors.get(i);
+	    columns.types.put(i, (byte) actor.getType().ordinal());
+	    columns.nameIds.put(i, nameIds[i]);
+	    columns.doubles[0].put(i, actor.getHealth());
+	    columns.doubles[1].put(i, actor.getStrength());
+	    columns.doubles[2].put(i, actor.getSpeed());
+	    columns.doubles[3].put(i, actor.getX());
+	    columns.doubles[4].put(i, actor.getY());
+	    traits.clear();
+	    actor.writeTraits(traits);
+	    columns.traitFlags.put(i, traits.get(0));
+	    columns.doubles[5].put(i, traits.getDouble(1));
+	} // end for
+	columns.force();
+	return columns.end;
+    } // end writeSection()
+
+    /**
+     * parses the header of one army and maps its columns
+     */
+    private static final class SectionReader
+    {
+	private final Section section;
+	private final long end;
+
+	private SectionReader(FileChannel channel, long position) throws IOException
+	{
+	    String name = readString(channel, position);
+	    position += 4 + name.getBytes(StandardCharsets.UTF_8).length;
+	    ByteBuffer fields = readFully(channel, position, 36);
+	    Color color = new Color(fields.getDouble(), fields.getDouble(), fields.getDouble(), fields.getDouble());
+	    int nameCount = fields.getInt();
+	    if (nameCount < 0)
+		throw new IOException("negative number of names in army " + name);
+	    position += 36;
+	    String[] names = new String[nameCount];
+	    for (int i = 0; i < nameCount; ++i)
+	    {
+		names[i] = readString(channel, position);
+		position += 4 + names[i].getBytes(StandardCharsets.UTF_8).length;
+	    }
+	    int size = readFully(channel, position, 4).getInt();
+	    if (size < 0)
+		throw new IOException("negative number of actors in army " + name);
+	    position = align(position + 4);
+	    MappedColumns columns = new MappedColumns(channel, FileChannel.MapMode.READ_ONLY, position, size);
+	    if (columns.end > channel.size())
+		throw new EOFException("snapshot ends in the middle of army " + name);
+	    for (int i = 0; i < size; ++i)
+	    { // one byte an actor, read once so that getType() can trust it
+		int type = columns.types.get(i);
+		if (type < 0 || type >= TYPES.length)
+		    throw new IOException("unknown actor type " + type + " at " + i + " in army " + name);
+	    }
+	    this.section = new Section(name, color, names, size, columns);
+	    this.end = columns.end;
+	}
+    } // end class SectionReader
+
+    /**
+     * the columns of one army, each mapped on its own so no single mapping comes
+     * near the 2 GB limit of a <i>MappedByteBuffer</i>
+     */
+    private static final class MappedColumns
+    {
+	private static final int DOUBLE_COLUMNS = 6;
+
+	private final List<MappedByteBuffer> mappings = new ArrayList<>();
+	private final ByteBuffer types;
+	private final ByteBuffer traitFlags;
+	private final IntBuffer nameIds;
+	/** health, strength, speed, x, y and trait value */
+	private final DoubleBuffer[] doubles = new DoubleBuffer[DOUBLE_COLUMNS];
+	private final long end;
+
+	private MappedColumns(FileChannel channel, FileChannel.MapMode mode, long position, int size)
+		throws IOException
+	{
+	    this.types = map(channel, mode, position, size);
+	    position = align(position + size);
+	    this.traitFlags = map(channel, mode, position, size);
+	    position = align(position + size);
+	    this.nameIds = map(channel, mode, position, 4L * size).asIntBuffer();
+	    position = align(position + 4L * size);
+	    for (int i = 0; i < DOUBLE_COLUMNS; ++i)
+	    {
+		this.doubles[i] = map(channel, mode, position, 8L * size).asDoubleBuffer();
+		position += 8L * size;
+	    }
+	    this.end = position;
+	}
+
+	private ByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long length)
+		throws IOException
+	{
+	    if (mode == FileChannel.MapMode.READ_ONLY && position + length > channel.size())
+		throw new EOFException("snapshot ends in the middle of a column");
+	    MappedByteBuffer mapping = channel.map(mode, position, length);
+	    this.mappings.add(mapping);
+	    mapping.order(ByteOrder.LITTLE_ENDIAN);
+	    return mapping;
+	}
+
+	/**
+	 * writes every dirty page of a writable mapping back to the file
+	 */
+	private void force()
+	{
+	    for (MappedByteBuffer mapping : this.mappings)
+		mapping.force();
+	}
+    } // end class MappedColumns
+
+    private static ByteBuffer newBuffer(int capacity)
+    {
+	return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes)
+    {
+	buffer.putInt(bytes.length);
+	buffer.put(bytes);
+    }
+
+    private static String readString(FileChannel channel, long position) throws IOException
+    {
+	int length = readFully(channel, position, 4).getInt();
+	if (length < 0 || position + 4 + length > channel.size())
+	    throw new IOException("corrupt string length " + length);
+	ByteBuffer bytes = readFully(channel, position + 4, length);
+	return new String(bytes.array(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+	while (buffer.hasRemaining())
+	    position += channel.write(buffer, position);
+	return position;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException
+    {
+	ByteBuffer buffer = newBuffer(length);
+	while (buffer.hasRemaining())
+	{
+	    int read = channel.read(buffer, position + buffer.position());
+	    if (read < 0)
+		throw new EOFException("snapshot ends in the middle of an army header");
+	}
+	buffer.flip();
+	return buffer;
+    }
+
+    /**
+     * @return <i>position</i> rounded up to a multiple of eight bytes
+     */
+    private static long align(long position)
+    {
+	return (position + 7L) & ~7L;
+    }
+}
@@ -0,0 +1,111 @@
+package army;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import actor.ActorFactory;
+
+/**
+ * <i>Composition</i> describes what each side of a battle is made of: how many
+ * actors of each <i>ActorFactory.Type</i> join the Forces of Light and the
+ * Forces of Darkness, in the order they are populated. The same composition
+ * can fill the armies on screen or thousands of headless batch battles.
+ */
+public final class Composition
+{
+    /**
+     * one call to <i>Army.populate()</i>
+     */
+    private static final class Entry
+    {
+	private final ActorFactory.Type type;
+	private final int count;
+
+	private Entry(ActorFactory.Type type, int count)
+	{
+	    this.type = type;
+	    this.count = count;
+	}
+    }
+
+    private final ArrayList<Entry> forcesOfLight = new ArrayList<>();
+    private final ArrayList<Entry> forcesOfDarkness = new ArrayList<>();
+
+    /**
+     * the battle the <i>Simulator</i> has always shown: 2 hobbits and 8 wizards
+     * against 4 Nazgul and 4 orcs
+     * 
+     * @return a new <i>Composition</i> for that battle
+     */
+    public static Composition standard()
+    {
+	return new Composition().addToForcesOfLight(ActorFactory.Type.HOBBIT, 2)
+		.addToForcesOfLight(ActorFactory.Type.WIZARD, 8).addToForcesOfDarkness(ActorFactory.Type.NAZGUL, 4)
+		.addToForcesOfDarkness(ActorFactory.Type.ORC, 4);
+    }
+
+    /**
+     * @param type type of actor to add
+     * @param count how many to add
+     * @return this <i>Composition</i>, so calls can be chained
+     */
+    public Composition addToForcesOfLight(ActorFactory.Type type, int count)
+    {
+	this.forcesOfLight.add(new Entry(type, count));
+	return this;
+    }
+
+    /**
+     * @param type type of actor to add
+     * @param count how many to add
+     * @return this <i>Composition</i>, so calls can be chained
+     */
+    public Composition addToForcesOfDarkness(ActorFactory.Type type, int count)
+    {
+	this.forcesOfDarkness.add(new Entry(type, count));
+	return this;
+    }
+
+    /**
+     * @return number of actors on both sides together
+     */
+    public int size()
+    {
+	int size = 0;
+	for (Entry entry : this.forcesOfLight)
+	    size += entry.count;
+	for (Entry entry : this.forcesOfDarkness)
+	    size += entry.count;
+	return size;
+    }
+
+    /**
+     * fills both armies, in the order the entries were added
+     * 
+     * @param lightArmy army that receives the Forces of Light
+     * @param darkArmy army that receives the Forces of Darkness
+     */
+    public void populate(Army lightArmy, Army darkArmy)
+    {
+	for (Entry entry : this.forcesOfLight)
+	    lightArmy.populate(entry.type, entry.count);
+	for (Entry entry : this.forcesOfDarkness)
+	    darkArmy.populate(entry.type, entry.count);
+    }
+
+    /**
+     * fills the armies of a battle of more than two factions: the armies at even
+     * positions receive the Forces of Light, those at odd positions the Forces
+     * of Darkness
+     * 
+     * @param armies armies to fill, in faction order
+     */
+    public void populate(List<Army> armies)
+    {
+	for (int i = 0; i < armies.size(); ++i)
+	{
+	    for (Entry entry : i % 2 == 0 ? this.forcesOfLight : this.forcesOfDarkness)
+		armies.get(i).populate(entry.type, entry.count);
+	}
+    }
+}
@@ -0,0 +1,301 @@
+package army;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import actor.Actor;
+import engine.BattleEngine;
+
+/**
+ * <i>Factions</i> is the roster of a battle between two or more armies, at
+ * most {@value #MAX_FACTIONS}, and says who is hostile to whom. Every army is a
+ * faction of its own; allies are factions that leave each other alone. At
+ * first every faction is hostile to every other one.
+ * <p>
+ * The armies of a roster share one <i>SpatialGrid</i> that knows which
+ * factions have actors in each of its cells, so the nearest enemy of an actor
+ * is found in a single search that passes over cells holding only friends,
+ * however many hostile armies there are. It is the only spatial index of
+ * those armies; each keeps its actors in it as its own faction for as long as
+ * it is in the roster. The roster also keeps the live
+ * actors of every faction and a bit for each faction that still has any, so
+ * telling whether the battle is decided takes a few bit operations rather
+ * than a look at the armies.
+ * <p>
+ * An army belongs to one roster at a time; building a new roster with it takes
+ * it out of the old one. <i>Army.setOpposingArmy()</i> builds a roster of two.
+ */
+public final class Factions
+{
+    /** most armies one roster can hold, one bit each, currently:{@value} */
+    public static final int MAX_FACTIONS = 16;
+
+    private final Army[] armies;
+    /** bits of the factions each faction fights */
+    private final int[] hostileTo;
+    /** actors each faction has left */
+    private final int[] liveCounts;
+    /** bits of the factions that have actors left */
+    private int liveFactions;
+    /** change count of the grid when hostilities last changed */
+    private long hostilitiesChanged;
+    /** the actors of every army of the roster, told apart by faction */
+    private final SpatialGrid grid = new SpatialGrid(BattleEngine.BATTLEFIELD_WIDTH, BattleEngine.BATTLEFIELD_HEIGHT,
+	    Army.GRID_CELL_SIZE, true);
+
+    /**
+     * builds a roster in which every army fights every other one
+     *
+     * @param armies the armies, from 2 to {@value #MAX_FACTIONS} of them; their
+     * order is the order of their factions
+     */
+    public Factions(Army... armies)
+    {
+	if (armies.length < 2 || armies.length > MAX_FACTIONS)
+	    throw new IllegalArgumentException(
+		    "a battle needs 2 to " + MAX_FACTIONS + " factions, not " + armies.length);
+	if (armies.length != new HashSet<>(Arrays.asList(armies)).size())
+	    throw new IllegalArgumentException("an army can only be one faction of a battle");
+	this.armies = armies.clone();
+	this.hostileTo = new int[armies.length];
+	this.liveCounts = new int[armies.length];
+	int everyFaction = (1 << armies.length) - 1;
+	for (int i = 0; i < armies.length; ++i)
+	{
+	    this.hostileTo[i] = everyFaction & ~(1 << i);
+	    armies[i].joinFactions(this, i);
+	}
+    }
+
+    /**
+     * @param first one army
+     * @param second another army
+     * @return the roster <i>first</i> and <i>second</i> share when it holds just
+     * the two of them, otherwise a new roster of the two
+     */
+    public static Factions of(Army first, Army second)
+    {
+	Factions factions = first.getFactions();
+	if (factions != null && factions.size() == 2 && factions == second.getFactions())
+	    return factions;
+	return new Factions(first, second);
+    }
+
+    /**
+     * @return number of factions in the battle
+     */
+    public int size()
+    {
+	return this.armies.length;
+    }
+
+    /**
+     * @param faction position of the faction in the roster
+     * @return the army of that faction
+     */
+    public Army get(int faction)
+    {
+	return this.armies[faction];
+    }
+
+    /**
+     * @return every army of the roster, in faction order
+     */
+    public List<Army> getArmies()
+    {
+	return Collections.unmodifiableList(Arrays.asList(this.armies));
+    }
+
+    /**
+     * makes two factions allies, who never target each other, or enemies again.
+     * Takes effect at once, even in the middle of a battle: every unit looks
+     * for its target again at its next decision.
+     *
+     * @param first one army of the roster
+     * @param second another army of the roster
+     * @param allied true to make them allies, false to make them enemies
+     */
+    public void setAllied(Army first, Army second, boolean allied)
+    {
+	int a = indexOf(first);
+	int b = indexOf(second);
+	if (a == b || allied == ((this.hostileTo[a] & 1 << b) == 0))
+	    return;
+	this.hostilitiesChanged = this.grid.countChange(); // friends may be targets and enemies unnoticed
+	if (allied)
+	{
+	    this.hostileTo[a] &= ~(1 << b);
+	    this.hostileTo[b] &= ~(1 << a);
+	} else
+	{
+	    this.hostileTo[a] |= 1 << b;
+	    this.hostileTo[b] |= 1 << a;
+	}
+    }
+
+    /**
+     * @return true when the two armies fight each other
+     */
+    public boolean isHostile(Army first, Army second)
+    {
+	return (this.hostileTo[indexOf(first)] & 1 << indexOf(second)) != 0;
+    }
+
+    /**
+     * @param army an army of the roster
+     * @return actors the army has left
+     */
+    public int getLiveCount(Army army)
+    {
+	return this.liveCounts[indexOf(army)];
+    }
+
+    /**
+     * A battle is decided once no two factions that still have actors are
+     * hostile, whether one army is left or a whole alliance.
+     *
+     * @return true when nobody left standing has an enemy left standing
+     */
+    public boolean isDecided()
+    {
+	for (int live = this.liveFactions; live != 0; live &= live - 1)
+	{
+	    if ((this.hostileTo[Integer.numberOfTrailingZeros(live)] & this.liveFactions) != 0)
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * @return the armies that still have actors, in faction order
+     */
+    public List<Army> getSurvivors()
+    {
+	ArrayList<Army> survivors = new ArrayList<>(Integer.bitCount(this.liveFactions));
+	for (int live = this.liveFactions; live != 0; live &= live - 1)
+	    survivors.add(this.armies[Integer.numberOfTrailingZeros(live)]);
+	return survivors;
+    }
+
+    /**
+     * @return the one army left standing once the battle is decided, or null
+     * while it is not, when an alliance of several armies won, or when nobody
+     * is left
+     */
+    public Army getWinner()
+    {
+	if (Integer.bitCount(this.liveFactions) != 1 || !isDecided())
+	    return null;
+	return this.armies[Integer.numberOfTrailingZeros(this.liveFactions)];
+    }
+
+    /**
+     * Finds the visible actor closest to <i>actorToMove</i> among the actors of
+     * every faction hostile to its own, in one search of the shared grid. With a
+     * single hostile faction, as in every battle of two, the army of that
+     * faction is searched instead, so a small one is scanned directly.
+     *
+     * @param actorToMove an actor of an army of the roster
+     * @return the nearest visible enemy, or null when there is none
+     */
+    public Actor findNearestEnemy(Actor actorToMove)
+    {
+	int enemies = enemiesOf(actorToMove);
+	if (Integer.bitCount(enemies) == 1)
+	    return this.armies[Integer.numberOfTrailingZeros(enemies)].findNearestActor(actorToMove);
+	return this.grid.findNearest(actorToMove, enemies);
+    }
+
+    /**
+     * @return a stamp of how far the actors of the roster have moved, and their
+     * alliances changed, so far, for <i>isClearOfEnemiesWithin()</i>
+     */
+    public long getChangeCount()
+    {
+	return this.grid.getChangeCount();
+    }
+
+    /**
+     * tells whether none of the visible enemies of an actor that joined or moved
+     * since <i>getChangeCount()</i> returned <i>since</i> is within
+     * <i>radius</i> of it. Only the cells of the shared grid where something
+     * changed, and that hold enemies, are looked into. Nothing counts as clear
+     * once alliances changed after <i>since</i>.
+     *
+     * @param actor an actor of an army of the roster
+     * @param radius distance from the actor that matters
+     * @param since an earlier result of <i>getChangeCount()</i>
+     * @return true when no such enemy is within <i>radius</i>
+     */
+    public boolean isClearOfEnemiesWithin(Actor actor, double radius, long since)
+    {
+	return since >= this.hostilitiesChanged
+		&& this.grid.isClearWithin(actor.getX(), actor.getY(), radius, since, enemiesOf(actor));
+    }
+
+    /**
+     * @return the grid the armies of the roster file their actors in
+     */
+    SpatialGrid getGrid()
+    {
+	return this.grid;
+    }
+
+    /**
+     * counts the actors that just joined an army of the roster, which the army
+     * filed in the shared grid
+     */
+    void actorsJoined(Army army, int count)
+    {
+	addLive(army.getFactionIndex(), count);
+    }
+
+    /**
+     * counts an actor of an army of the roster that died and left the shared
+     * grid
+     *
+     * @return true when this death decided the battle
+     */
+    boolean actorDied(Actor actor)
+    {
+	boolean decided = isDecided();
+	addLive(actor.getArmyAllegiance().getFactionIndex(), -1);
+	return !decided && isDecided();
+    }
+
+    /**
+     * takes every actor of an army out of the battle, before the army is
+     * emptied or leaves the roster
+     */
+    void armyCleared(Army army)
+    {
+	for (Actor actor : army.getCollectionActors())
+	    this.grid.remove(actor);
+	int faction = army.getFactionIndex();
+	addLive(faction, -this.liveCounts[faction]);
+    }
+
+    private void addLive(int faction, int delta)
+    {
+	this.liveCounts[faction] += delta;
+	if (this.liveCounts[faction] > 0)
+	    this.liveFactions |= 1 << faction;
+	else
+	    this.liveFactions &= ~(1 << faction);
+    }
+
+    private int enemiesOf(Actor actor)
+    {
+	return this.hostileTo[actor.getArmyAllegiance().getFactionIndex()];
+    }
+
+    private int indexOf(Army army)
+    {
+	if (army.getFactions() != this)
+	    throw new IllegalArgumentException(army.getName() + " is not a faction of this battle");
+	return army.getFactionIndex();
+    }
+}
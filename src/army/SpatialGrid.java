@@ -0,0 +1,754 @@
+package army;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import actor.Actor;
+
+/**
+ * <i>SpatialGrid</i> is a uniform grid of square cells laid over the
+ * battlefield. Every <i>Actor</i> of an <i>Army</i> is filed under the cell
+ * that contains its location, so the nearest actor to a point can be found by
+ * looking at the cells around that point, ring by ring, instead of measuring
+ * the distance to every actor in the <i>Army</i>.
+ * <p>
+ * Locations outside the battlefield are clamped into the edge cells. That
+ * keeps the ring search correct, since a clamped actor is never closer than
+ * the cell it was filed under.
+ * <p>
+ * Since every actor passes through the grid as it joins, moves and leaves, the
+ * grid also keeps, for every faction, the sum of their locations, for the
+ * centroid, and how many actors each column and row of cells holds. The
+ * bounding box is kept exact as actors spread out; when an actor on its edge
+ * moves in or leaves, the box is found again from the outermost occupied
+ * columns and rows alone.
+ * <p>
+ * Every cell also remembers when an actor last arrived in it or moved inside
+ * it, counted in changes to the grid, so a searcher can tell whether any actor
+ * may have come nearer to it since it last looked.
+ * <p>
+ * A grid shared by the armies of a battle of <i>Factions</i> also keeps which
+ * factions have actors in each cell, as a bit mask, so a search for the
+ * nearest enemy passes over cells that hold only friends with a single test.
+ * It is the only index of those armies: the searches and aggregates of one
+ * army are those of its faction. A grid that is not shared holds one army
+ * that is in no battle yet, as faction 0.
+ */
+class SpatialGrid
+{
+    /** bits of every faction, for searches that take any actor, currently:{@value} */
+    static final int ALL_FACTIONS = -1;
+
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final ArrayList<ArrayList<Actor>> cells;
+    /** true when the actors of several armies share the grid, told apart by faction */
+    private final boolean shared;
+    /**
+     * cell each actor id is filed under, plus one; 0 for ids not in the grid. A
+     * shared grid has one table per faction, as ids are only unique within an
+     * army.
+     */
+    private int[][] cellOfIds = { new int[16] };
+    /** actors of each faction in each cell; only in a shared grid */
+    private final int[] factionCounts;
+    /** bit of every faction with actors in each cell; only in a shared grid */
+    private final int[] cellFactions;
+    /** count, location sums and bounding box of the actors of each faction */
+    private final Extent[] extents;
+    /** arrivals and moves of actors since the grid was built */
+    private long changeCount;
+    /** value of <i>changeCount</i> at the latest arrival or move in each cell */
+    private final long[] cellChanges;
+
+    /**
+     * @param width width of the area covered by the grid
+     * @param height height of the area covered by the grid
+     * @param cellSize length of the side of one cell
+     */
+    SpatialGrid(double width, double height, double cellSize)
+    {
+	this(width, height, cellSize, false);
+    }
+
+    /**
+     * @param width width of the area covered by the grid
+     * @param height height of the area covered by the grid
+     * @param cellSize length of the side of one cell
+     * @param shared true for a grid the armies of a battle of <i>Factions</i>
+     * share, which keeps the factions of every cell
+     */
+    SpatialGrid(double width, double height, double cellSize, boolean shared)
+    {
+	this.cellSize = cellSize;
+	this.shared = shared;
+	this.columns = Math.max(1, (int) Math.ceil(width / cellSize));
+	this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+	this.cells = new ArrayList<>(this.columns * this.rows);
+	for (int i = 0; i < this.columns * this.rows; ++i)
+	    this.cells.add(new ArrayList<>());
+	this.extents = new Extent[shared ? Factions.MAX_FACTIONS : 1];
+	for (int i = 0; i < this.extents.length; ++i)
+	    this.extents[i] = new Extent(i);
+	this.cellChanges = new long[this.columns * this.rows];
+	this.factionCounts = shared ? new int[this.columns * this.rows * Factions.MAX_FACTIONS] : null;
+	this.cellFactions = shared ? new int[this.columns * this.rows] : null;
+	if (shared)
+	    this.cellOfIds = new int[Factions.MAX_FACTIONS][16];
+    }
+
+    /**
+     * @return number of actors of a faction in the grid; in a grid that is not
+     * shared, of any faction
+     */
+    int size(int faction)
+    {
+	return extentOf(faction).size;
+    }
+
+    /**
+     * files an actor under the cell of its current location
+     */
+    void insert(Actor actor)
+    {
+	int id = actor.getId();
+	int faction = factionOf(actor);
+	int[] cellOfId = this.cellOfIds[faction];
+	if (id >= cellOfId.length)
+	    this.cellOfIds[faction] = cellOfId = Arrays.copyOf(cellOfId, Math.max(id + 1, cellOfId.length * 2));
+	double x = actor.getX();
+	double y = actor.getY();
+	int cell = cellIndex(x, y);
+	this.cells.get(cell).add(actor);
+	cellOfId[id] = cell + 1;
+	count(cell, faction, 1);
+	this.cellChanges[cell] = ++this.changeCount;
+	this.extents[faction].add(x, y);
+    }
+
+    /**
+     * takes an actor out of the grid; it must not have moved since it was last
+     * inserted or moved
+     *
+     * @return true when the actor was in the grid
+     */
+    boolean remove(Actor actor)
+    {
+	int cell = cellOf(actor);
+	if (cell < 0 || !removeFromCell(cell, actor))
+	    return false;
+	int faction = factionOf(actor);
+	this.cellOfIds[faction][actor.getId()] = 0;
+	count(cell, faction, -1);
+	this.extents[faction].remove(actor.getX(), actor.getY());
+	return true;
+    } // end remove()
+
+    /**
+     * refiles an actor that moved from <i>(oldX, oldY)</i> to its current
+     * location. Actors that were never inserted are ignored.
+     */
+    void move(Actor actor, double oldX, double oldY)
+    {
+	int oldCell = cellOf(actor);
+	if (oldCell < 0)
+	    return;
+	double x = actor.getX();
+	double y = actor.getY();
+	int faction = factionOf(actor);
+	this.extents[faction].move(oldX, oldY, x, y);
+	int newCell = cellIndex(x, y);
+	if (oldCell != newCell && removeFromCell(oldCell, actor))
+	{
+	    this.cells.get(newCell).add(actor);
+	    this.cellOfIds[faction][actor.getId()] = newCell + 1;
+	    count(oldCell, faction, -1);
+	    count(newCell, faction, 1);
+	}
+	if (x != oldX || y != oldY)
+	    this.cellChanges[newCell] = ++this.changeCount;
+    } // end move()
+
+    /**
+     * @return arrivals and moves of actors so far; only ever grows
+     */
+    long getChangeCount()
+    {
+	return this.changeCount;
+    }
+
+    /**
+     * counts a change that is not an arrival or a move, such as an alliance
+     * made or broken, so that every earlier count is out of date
+     *
+     * @return the new change count
+     */
+    long countChange()
+    {
+	return ++this.changeCount;
+    }
+
+    /**
+     * Tells whether no visible actor is within <i>radius</i> of a point, looking
+     * only at the cells the circle touches in which an actor arrived or moved
+     * since <i>getChangeCount()</i> returned <i>since</i>; the caller knows the
+     * other cells held no such actor then. Edge cells reach out to include the
+     * actors clamped into them.
+     *
+     * @param factions bits of the factions whose actors count; in a grid that is
+     * not shared, any value but 0
+     * @return true when no visible actor that arrived or moved since then is
+     * within <i>radius</i> of <i>(x, y)</i>
+     */
+    boolean isClearWithin(double x, double y, double radius, long since, int factions)
+    {
+	if (radius < 0.0)
+	    return true;
+	int fromColumn = column(x - radius);
+	int toColumn = column(x + radius);
+	int fromRow = row(y - radius);
+	int toRow = row(y + radius);
+	for (int row = fromRow; row <= toRow; ++row)
+	{
+	    for (int column = fromColumn; column <= toColumn; ++column)
+	    {
+		int cell = row * this.columns + column;
+		if (this.cellChanges[cell] > since && holds(cell, factions) && touches(column, row, x, y, radius)
+			&& !isClearWithin(this.cells.get(cell), x, y, radius, factions))
+		    return false;
+	    }
+	}
+	return true;
+    } // end isClearWithin()
+
+    private boolean isClearWithin(ArrayList<Actor> cell, double x, double y, double radius, int factions)
+    {
+	for (int i = 0; i < cell.size(); ++i)
+	{
+	    Actor actor = cell.get(i);
+	    double deltaX = actor.getX() - x;
+	    double deltaY = actor.getY() - y;
+	    if (deltaX * deltaX + deltaY * deltaY < radius * radius && isOf(actor, factions) && actor.isVisible())
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * empties every cell
+     */
+    void clear()
+    {
+	for (ArrayList<Actor> cell : this.cells)
+	    cell.clear();
+	for (int[] cellOfId : this.cellOfIds)
+	    Arrays.fill(cellOfId, 0);
+	if (this.shared)
+	{
+	    Arrays.fill(this.factionCounts, 0);
+	    Arrays.fill(this.cellFactions, 0);
+	}
+	for (Extent extent : this.extents)
+	    extent.clear();
+    }
+
+    /**
+     * @return mean horizontal location of the actors of a faction, 0.0 when it
+     * has none
+     */
+    double getCentroidX(int faction)
+    {
+	Extent extent = extentOf(faction);
+	return extent.size == 0 ? 0.0 : extent.sumX / extent.size;
+    }
+
+    /**
+     * @return mean vertical location of the actors of a faction, 0.0 when it has
+     * none
+     */
+    double getCentroidY(int faction)
+    {
+	Extent extent = extentOf(faction);
+	return extent.size == 0 ? 0.0 : extent.sumY / extent.size;
+    }
+
+    /**
+     * @return smallest horizontal location of a faction, 0.0 when it has none
+     */
+    double getMinX(int faction)
+    {
+	return extentOf(faction).refreshBounds().minX;
+    }
+
+    /**
+     * @return smallest vertical location of a faction, 0.0 when it has none
+     */
+    double getMinY(int faction)
+    {
+	return extentOf(faction).refreshBounds().minY;
+    }
+
+    /**
+     * @return largest horizontal location of a faction, 0.0 when it has none
+     */
+    double getMaxX(int faction)
+    {
+	return extentOf(faction).refreshBounds().maxX;
+    }
+
+    /**
+     * @return largest vertical location of a faction, 0.0 when it has none
+     */
+    double getMaxY(int faction)
+    {
+	return extentOf(faction).refreshBounds().maxY;
+    }
+
+    /**
+     * Recomputes the count, location sums and bounding box of a faction from the
+     * cells and compares them with the running ones; sums may differ by a
+     * millionth of their recomputed magnitude.
+     *
+     * @return true when the running aggregates agree with the cells
+     */
+    boolean aggregatesMatch(int faction)
+    {
+	Extent extent = extentOf(faction);
+	int count = 0;
+	double recomputedX = 0.0;
+	double recomputedY = 0.0;
+	double magnitude = 0.0;
+	double lowX = Double.POSITIVE_INFINITY;
+	double lowY = Double.POSITIVE_INFINITY;
+	double highX = Double.NEGATIVE_INFINITY;
+	double highY = Double.NEGATIVE_INFINITY;
+	for (ArrayList<Actor> cell : this.cells)
+	{
+	    for (Actor actor : cell)
+	    {
+		if (!isOf(actor, 1 << faction))
+		    continue;
+		double x = actor.getX();
+		double y = actor.getY();
+		++count;
+		recomputedX += x;
+		recomputedY += y;
+		magnitude += Math.abs(x) + Math.abs(y);
+		lowX = Math.min(lowX, x);
+		lowY = Math.min(lowY, y);
+		highX = Math.max(highX, x);
+		highY = Math.max(highY, y);
+	    }
+	}
+	double tolerance = 1.0e-6 * Math.max(1.0, magnitude);
+	boolean match = count == extent.size && Math.abs(recomputedX - extent.sumX) <= tolerance
+		&& Math.abs(recomputedY - extent.sumY) <= tolerance;
+	if (count > 0)
+	{
+	    extent.refreshBounds();
+	    match &= lowX == extent.minX && lowY == extent.minY && highX == extent.maxX && highY == extent.maxY;
+	}
+	return match;
+    } // end aggregatesMatch()
+
+    /**
+     * Finds the visible actor closest to <i>actorToMove</i>. Cells are searched
+     * in rings of growing distance from the cell of <i>actorToMove</i>; the
+     * search ends as soon as no actor in the next ring can be closer than the
+     * best one found so far.
+     *
+     * @param actorToMove the actor looking for an opponent
+     * @return the nearest visible actor, or null when there is none
+     */
+    Actor findNearest(Actor actorToMove)
+    {
+	return findNearest(actorToMove, ALL_FACTIONS);
+    }
+
+    /**
+     * Finds the visible actor closest to <i>actorToMove</i> among the actors of
+     * some of the factions sharing the grid, searching ring by ring like
+     * <i>findNearest(Actor)</i>; cells without any actor of those factions are
+     * passed over unopened.
+     *
+     * @param actorToMove the actor looking for an opponent
+     * @param factions bits of the factions whose actors count
+     * @return the nearest visible actor of those factions, or null when there is
+     * none
+     */
+    Actor findNearest(Actor actorToMove, int factions)
+    {
+	double x = actorToMove.getX();
+	double y = actorToMove.getY();
+	int column = column(x);
+	int row = row(y);
+	int lastRing = Math.max(Math.max(column, this.columns - 1 - column), Math.max(row, this.rows - 1 - row));
+	Nearest nearest = new Nearest(x, y, factions);
+	for (int ring = 0; ring <= lastRing; ++ring)
+	{
+	    // every actor in this ring is at least (ring - 1) whole cells away
+	    double ringDistance = (ring - 1) * this.cellSize;
+	    if (nearest.actor != null && nearest.distanceSquared <= ringDistance * ringDistance)
+		break;
+	    if (ring == 0)
+	    {
+		scanCell(nearest, column, row);
+		continue;
+	    }
+	    for (int dx = -ring; dx <= ring; ++dx)
+	    {
+		scanCell(nearest, column + dx, row - ring);
+		scanCell(nearest, column + dx, row + ring);
+	    }
+	    for (int dy = -ring + 1; dy <= ring - 1; ++dy)
+	    {
+		scanCell(nearest, column - ring, row + dy);
+		scanCell(nearest, column + ring, row + dy);
+	    }
+	} // end for (ring)
+	return nearest.actor;
+    } // end findNearest()
+
+    /**
+     * Adds every actor of some factions located inside a rectangle to
+     * <i>out</i>, looking only at the cells the rectangle overlaps that hold
+     * any of them. The edge cells also hold actors clamped in from outside the
+     * battlefield, so every location is still checked.
+     *
+     * @param factions bits of the factions whose actors count; in a grid that is
+     * not shared, any value
+     * @return number of actors added
+     */
+    int collectWithin(double minX, double minY, double maxX, double maxY, int factions, List<Actor> out)
+    {
+	int added = 0;
+	int lastColumn = column(maxX);
+	int lastRow = row(maxY);
+	for (int row = row(minY); row <= lastRow; ++row)
+	{
+	    for (int column = column(minX); column <= lastColumn; ++column)
+	    {
+		int cellIndex = row * this.columns + column;
+		if (!holds(cellIndex, factions))
+		    continue;
+		ArrayList<Actor> cell = this.cells.get(cellIndex);
+		for (int i = 0; i < cell.size(); ++i)
+		{
+		    Actor actor = cell.get(i);
+		    double x = actor.getX();
+		    double y = actor.getY();
+		    if (x >= minX && x <= maxX && y >= minY && y <= maxY && isOf(actor, factions))
+		    {
+			out.add(actor);
+			++added;
+		    }
+		}
+	    }
+	} // end for (row)
+	return added;
+    } // end collectWithin()
+
+    private void scanCell(Nearest nearest, int column, int row)
+    {
+	if (column >= 0 && column < this.columns && row >= 0 && row < this.rows
+		&& holds(row * this.columns + column, nearest.factions))
+	    nearest.scan(this.cells.get(row * this.columns + column));
+    }
+
+    /**
+     * @return the cell <i>actor</i> is filed under, or -1 when it is not in the
+     * grid
+     */
+    private int cellOf(Actor actor)
+    {
+	int id = actor.getId();
+	int[] cellOfId = this.cellOfIds[factionOf(actor)];
+	return id < cellOfId.length ? cellOfId[id] - 1 : -1;
+    }
+
+    private void count(int cell, int faction, int delta)
+    {
+	this.extents[faction].columnCounts[cell % this.columns] += delta;
+	this.extents[faction].rowCounts[cell / this.columns] += delta;
+	if (this.shared)
+	{
+	    int slot = cell * Factions.MAX_FACTIONS + faction;
+	    this.factionCounts[slot] += delta;
+	    if (this.factionCounts[slot] == 0)
+		this.cellFactions[cell] &= ~(1 << faction);
+	    else
+		this.cellFactions[cell] |= 1 << faction;
+	}
+    }
+
+    /**
+     * @return aggregates of a faction in a shared grid, of every actor in any
+     * other
+     */
+    private Extent extentOf(int faction)
+    {
+	return this.extents[this.shared ? faction : 0];
+    }
+
+    /**
+     * @return faction of an actor in a shared grid, 0 in any other
+     */
+    private int factionOf(Actor actor)
+    {
+	return this.shared ? actor.getArmyAllegiance().getFactionIndex() : 0;
+    }
+
+    /**
+     * @return true when a cell may hold actors of <i>factions</i>; always in a
+     * grid that is not shared
+     */
+    private boolean holds(int cell, int factions)
+    {
+	return !this.shared || (this.cellFactions[cell] & factions) != 0;
+    }
+
+    /**
+     * @return true when an actor belongs to one of <i>factions</i>; always in a
+     * grid that is not shared
+     */
+    private boolean isOf(Actor actor, int factions)
+    {
+	return !this.shared || (1 << factionOf(actor) & factions) != 0;
+    }
+
+    /**
+     * running count, location sums and bounding box of the actors of one
+     * faction, with how many of them each column and row of cells holds
+     */
+    private final class Extent
+    {
+	/** bit of the faction, to tell its actors apart in a shared grid */
+	private final int bit;
+	private final int[] columnCounts = new int[SpatialGrid.this.columns];
+	private final int[] rowCounts = new int[SpatialGrid.this.rows];
+	private int size;
+	private double sumX;
+	private double sumY;
+	/** true when the bounding box below has to be found again */
+	private boolean boundsStale = true;
+	private double minX;
+	private double minY;
+	private double maxX;
+	private double maxY;
+
+	private Extent(int faction)
+	{
+	    this.bit = 1 << faction;
+	}
+
+	private void add(double x, double y)
+	{
+	    this.sumX += x;
+	    this.sumY += y;
+	    if (!this.boundsStale)
+		extendBounds(x, y);
+	    ++this.size;
+	}
+
+	private void remove(double x, double y)
+	{
+	    --this.size;
+	    if (this.size == 0)
+	    { // start again from exact zeros rather than from rounding leftovers
+		this.sumX = 0.0;
+		this.sumY = 0.0;
+	    } else
+	    {
+		this.sumX -= x;
+		this.sumY -= y;
+	    }
+	    if (onBounds(x, y))
+		this.boundsStale = true;
+	}
+
+	private void move(double oldX, double oldY, double x, double y)
+	{
+	    this.sumX += x - oldX;
+	    this.sumY += y - oldY;
+	    if (onBounds(oldX, oldY))
+		this.boundsStale = true;
+	    else if (!this.boundsStale)
+		extendBounds(x, y);
+	}
+
+	private void clear()
+	{
+	    Arrays.fill(this.columnCounts, 0);
+	    Arrays.fill(this.rowCounts, 0);
+	    this.size = 0;
+	    this.sumX = 0.0;
+	    this.sumY = 0.0;
+	    this.boundsStale = true;
+	}
+
+	private boolean onBounds(double x, double y)
+	{
+	    return x == this.minX || x == this.maxX || y == this.minY || y == this.maxY;
+	}
+
+	private void extendBounds(double x, double y)
+	{
+	    if (this.size == 0)
+	    {
+		this.minX = this.maxX = x;
+		this.minY = this.maxY = y;
+		return;
+	    }
+	    this.minX = Math.min(this.minX, x);
+	    this.minY = Math.min(this.minY, y);
+	    this.maxX = Math.max(this.maxX, x);
+	    this.maxY = Math.max(this.maxY, y);
+	}
+
+	/**
+	 * Finds the bounding box again after an actor on its edge moved in or left.
+	 * Clamping files every actor beyond an occupied edge column or row into that
+	 * column or row, so the extremes are among the actors of the outermost
+	 * occupied ones and nothing else is looked at.
+	 *
+	 * @return this extent, its box up to date
+	 */
+	private Extent refreshBounds()
+	{
+	    if (!this.boundsStale)
+		return this;
+	    this.boundsStale = false;
+	    if (this.size == 0)
+	    {
+		this.minX = this.minY = this.maxX = this.maxY = 0.0;
+		return this;
+	    }
+	    int columns = SpatialGrid.this.columns;
+	    int rows = SpatialGrid.this.rows;
+	    int firstColumn = 0;
+	    while (this.columnCounts[firstColumn] == 0)
+		++firstColumn;
+	    int lastColumn = columns - 1;
+	    while (this.columnCounts[lastColumn] == 0)
+		--lastColumn;
+	    int firstRow = 0;
+	    while (this.rowCounts[firstRow] == 0)
+		++firstRow;
+	    int lastRow = rows - 1;
+	    while (this.rowCounts[lastRow] == 0)
+		--lastRow;
+	    this.minX = this.minY = Double.POSITIVE_INFINITY;
+	    this.maxX = this.maxY = Double.NEGATIVE_INFINITY;
+	    for (int row = 0; row < rows; ++row)
+	    {
+		for (Actor actor : cells.get(row * columns + firstColumn))
+		{
+		    if (isOf(actor, this.bit))
+			this.minX = Math.min(this.minX, actor.getX());
+		}
+		for (Actor actor : cells.get(row * columns + lastColumn))
+		{
+		    if (isOf(actor, this.bit))
+			this.maxX = Math.max(this.maxX, actor.getX());
+		}
+	    }
+	    for (int column = 0; column < columns; ++column)
+	    {
+		for (Actor actor : cells.get(firstRow * columns + column))
+		{
+		    if (isOf(actor, this.bit))
+			this.minY = Math.min(this.minY, actor.getY());
+		}
+		for (Actor actor : cells.get(lastRow * columns + column))
+		{
+		    if (isOf(actor, this.bit))
+			this.maxY = Math.max(this.maxY, actor.getY());
+		}
+	    }
+	    return this;
+	} // end refreshBounds()
+    } // end class Extent
+
+    private boolean removeFromCell(int cellIndex, Actor actor)
+    {
+	ArrayList<Actor> cell = this.cells.get(cellIndex);
+	int slot = cell.indexOf(actor);
+	if (slot < 0)
+	    return false;
+	// order within a cell does not matter, so fill the hole with the last actor
+	cell.set(slot, cell.get(cell.size() - 1));
+	cell.remove(cell.size() - 1);
+	return true;
+    }
+
+    private int cellIndex(double x, double y)
+    {
+	return row(y) * this.columns + column(x);
+    }
+
+    /**
+     * @return true when a circle overlaps a cell, the edge cells taken as
+     * reaching out without end
+     */
+    private boolean touches(int column, int row, double x, double y, double radius)
+    {
+	double left = column == 0 ? Double.NEGATIVE_INFINITY : column * this.cellSize;
+	double right = column == this.columns - 1 ? Double.POSITIVE_INFINITY : (column + 1) * this.cellSize;
+	double top = row == 0 ? Double.NEGATIVE_INFINITY : row * this.cellSize;
+	double bottom = row == this.rows - 1 ? Double.POSITIVE_INFINITY : (row + 1) * this.cellSize;
+	double deltaX = x - Math.max(left, Math.min(x, right));
+	double deltaY = y - Math.max(top, Math.min(y, bottom));
+	return deltaX * deltaX + deltaY * deltaY <= radius * radius;
+    }
+
+    private int column(double x)
+    {
+	return Math.min(this.columns - 1, Math.max(0, (int) Math.floor(x / this.cellSize)));
+    }
+
+    private int row(double y)
+    {
+	return Math.min(this.rows - 1, Math.max(0, (int) Math.floor(y / this.cellSize)));
+    }
+
+    /**
+     * running best candidate of one nearest-actor search
+     */
+    private final class Nearest
+    {
+	private final double x;
+	private final double y;
+	/** bits of the factions whose actors count */
+	private final int factions;
+	private Actor actor;
+	private double distanceSquared = Double.MAX_VALUE;
+
+	private Nearest(double x, double y, int factions)
+	{
+	    this.x = x;
+	    this.y = y;
+	    this.factions = factions;
+	}
+
+	private void scan(ArrayList<Actor> cell)
+	{
+	    for (int i = 0; i < cell.size(); ++i)
+	    {
+		Actor candidate = cell.get(i);
+		if (isOf(candidate, this.factions) && candidate.isVisible())
+		{
+		    double deltaX = candidate.getX() - this.x;
+		    double deltaY = candidate.getY() - this.y;
+		    double currentDistance = deltaX * deltaX + deltaY * deltaY;
+		    if (currentDistance < this.distanceSquared)
+		    {
+			this.distanceSquared = currentDistance;
+			this.actor = candidate;
+		    }
+		} // end if (isVisible)
+	    }
+	}
+    } // end class Nearest
+}
@@ -0,0 +1,244 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * <i>ActorAgents</i> runs the parallel phases of the ticks of a
+ * <i>BattleEngine</i> the agent way, as an alternative to fork/join over
+ * partitions: every unit has a thread of its own, looping over the ticks of
+ * the battle much as <i>Actor.startMoving()</i> once chained its own
+ * transitions. In each tick an agent works out its move, waits at the tick
+ * barrier for every other agent, stores its move and waits again; the engine
+ * thread then merges the writes in unit order as usual, so a seed gives the
+ * same battle as the fork/join engine would with partitions of one unit; its
+ * partitions of <i>PARTITION_SIZE</i> make it a different battle.
+ * <p>
+ * The barrier is a tree of <i>Phaser</i>s, {@value #TIER_SIZE} agents to a
+ * leaf, as one <i>Phaser</i> holds at most 65535 parties and would have every
+ * agent contend on a single counter. An agent whose actor died leaves the
+ * barrier at the start of the next tick and ends its loop.
+ * <p>
+ * Agents are meant for virtual threads, which only exist from Java 21 on;
+ * <i>virtualThreads()</i> finds them through reflection so the simulator still
+ * builds and runs on Java 8. Platform threads work too, but only for battles
+ * of a few thousand actors.
+ * <p>
+ * With <code>-D{@value #PINNING_MONITOR_PROPERTY}=true</code>, agents on
+ * virtual threads also start the experimental <i>CarrierPinningMonitor</i>,
+ * which needs Java 21 and is built from its own <i>jdk21</i> source folder.
+ * It is loaded through reflection and left out when it is not there.
+ */
+public final class ActorAgents
+{
+    /** agents per leaf of the barrier tree, currently:{@value} */
+    public static final int TIER_SIZE = 256;
+    /** system property that turns the pinning monitor on, currently:{@value} */
+    public static final String PINNING_MONITOR_PROPERTY = "engine.pinningMonitor";
+    /** Thread.ofVirtual().factory(), or null on a runtime without virtual threads */
+    private static final ThreadFactory VIRTUAL_THREADS = findVirtualThreads();
+    /** monitor class, loaded only if present, currently:{@value} */
+    private static final String PINNING_MONITOR_CLASS = "engine.CarrierPinningMonitor";
+
+    /** the engine thread is the one party registered here directly */
+    private final Phaser root = new Phaser(1);
+    /** leaf of the barrier tree new agents register with */
+    private Phaser tier;
+    /** phases of the tick being run; published to the agents by the barrier */
+    private Consumer<Partition> readPhase;
+    private Consumer<Partition> movePhase;
+    private boolean stopping;
+    /** first exception thrown by an agent, rethrown on the engine thread */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    /** the <i>CarrierPinningMonitor</i> watching the agents, or null */
+    private final AutoCloseable pinningMonitor;
+
+    /**
+     * one unit run as a loop of its own
+     */
+    private final class Agent implements Runnable
+    {
+	private final Unit unit;
+	private final Phaser tier;
+
+	private Agent(Unit unit, Phaser tier)
+	{
+	    this.unit = unit;
+	    this.tier = tier;
+	}
+
+	@Override
+	public void run()
+	{
+	    while (true)
+	    {
+		this.tier.arriveAndAwaitAdvance(); // the engine opens the tick
+		if (stopping || this.unit.dead)
+		{
+		    this.tier.arriveAndDeregister();
+		    return;
+		}
+		runPhase(readPhase, this.unit.partition);
+		this.tier.arriveAndAwaitAdvance(); // every agent has read
+		runPhase(movePhase, this.unit.partition);
+		this.tier.arriveAndAwaitAdvance(); // every agent has moved
+	    }
+	} // end run()
+    } // end class Agent
+
+    /**
+     * starts one agent for each unit
+     *
+     * @param units units of the battle, in engine order
+     * @param threads builds the thread of each agent
+     */
+    ActorAgents(List<Unit> units, ThreadFactory threads)
+    {
+	this.pinningMonitor = threads == VIRTUAL_THREADS && Boolean.getBoolean(PINNING_MONITOR_PROPERTY)
+		? startPinningMonitor()
+		: null;
+	ArrayList<Agent> agents = new ArrayList<>(units.size());
+	for (int i = 0; i < units.size(); ++i)
+	{
+	    if (i % TIER_SIZE == 0)
+		this.tier = new Phaser(this.root);
+	    this.tier.register(); // before any agent runs, so the first tick waits for all of them
+	    agents.add(new Agent(units.get(i), this.tier));
+	}
+	for (Agent agent : agents)
+	    threads.newThread(agent).start();
+    }
+
+    /**
+     * runs the read phase and then the move phase of one tick on every agent,
+     * and returns once all of them are done
+     */
+    void runTick(Consumer<Partition> readPhase, Consumer<Partition> movePhase)
+    {
+	this.readPhase = readPhase;
+	this.movePhase = movePhase;
+	this.root.arriveAndAwaitAdvance(); // open the tick
+	this.root.arriveAndAwaitAdvance(); // wait for the reads
+	this.root.arriveAndAwaitAdvance(); // wait for the moves
+	Throwable thrown = this.failure.get();
+	if (thrown != null)
+	{
+	    close();
+	    throw new IllegalStateException("an actor agent failed", thrown);
+	}
+    }
+
+    /**
+     * lets every agent finish its loop; the threads end on their own
+     */
+    void close()
+    {
+	if (this.stopping)
+	    return;
+	this.stopping = true;
+	this.root.arriveAndDeregister(); // opens one last tick, which every agent leaves at once
+	if (this.pinningMonitor != null)
+	{
+	    try
+	    {
+		this.pinningMonitor.close();
+	    } catch (Exception e)
+	    {
+		e.printStackTrace(); // the agents are done either way
+	    }
+	}
+    }
+
+    /**
+     * @return what the pinning monitor saw so far, or null when there is none
+     */
+    String getPinningReport()
+    {
+	return this.pinningMonitor != null ? this.pinningMonitor.toString() : null;
+    }
+
+    private void runPhase(Consumer<Partition> phase, Partition partition)
+    {
+	if (this.failure.get() != null)
+	    return; // the tick is lost anyway; just keep the barrier moving
+	try
+	{
+	    phase.accept(partition);
+	} catch (RuntimeException | Error e)
+	{
+	    this.failure.compareAndSet(null, e);
+	}
+    }
+
+    /**
+     * @return a factory of virtual threads, or null before Java 21
+     */
+    public static ThreadFactory virtualThreads()
+    {
+	return VIRTUAL_THREADS;
+    }
+
+    /**
+     * @return a factory of daemon platform threads, for runtimes without virtual
+     * threads
+     */
+    public static ThreadFactory platformThreads()
+    {
+	AtomicInteger count = new AtomicInteger();
+	return runnable -> {
+	    Thread thread = new Thread(runnable, "actor-agent-" + count.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	};
+    }
+
+    /**
+     * @return virtual threads when the runtime has them, platform threads
+     * otherwise
+     */
+    public static ThreadFactory defaultThreads()
+    {
+	return VIRTUAL_THREADS != null ? VIRTUAL_THREADS : platformThreads();
+    }
+
+    /**
+     * CarrierPinningMonitor.start(), called through reflection since the monitor
+     * is built apart, for Java 21
+     *
+     * @return the monitor, or null when it was left out of the build or cannot
+     * run here
+     */
+    private static AutoCloseable startPinningMonitor()
+    {
+	try
+	{
+	    return (AutoCloseable) Class.forName(PINNING_MONITOR_CLASS).getMethod("start").invoke(null);
+	} catch (ReflectiveOperationException | LinkageError e)
+	{
+	    System.err.println("no carrier pinning monitor: " + e);
+	    return null;
+	}
+    }
+
+    /**
+     * Thread.ofVirtual().factory(), called through reflection since the code is
+     * compiled for Java 8
+     */
+    private static ThreadFactory findVirtualThreads()
+    {
+	try
+	{
+	    Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+	    Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+	    return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+	} catch (ReflectiveOperationException | RuntimeException e)
+	{
+	    return null; // before Java 21, or with virtual threads left to preview
+	}
+    }
+}
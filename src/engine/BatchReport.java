@@ -0,0 +1,205 @@
+package engine;
+
+import actor.ActorFactory;
+
+/**
+ * <i>BatchReport</i> summarises a Monte Carlo batch of headless battles: how
+ * often each side won, how long the battles lasted and how many actors of each
+ * <i>ActorFactory.Type</i> survived, each with a 95% confidence interval.
+ * Results are added in battle order, so the same seed always gives the same
+ * report however many threads ran the battles.
+ */
+public final class BatchReport
+{
+    /** z-score of a two-sided 95% confidence interval, currently:{@value} */
+    public static final double Z_95 = 1.959963984540054;
+
+    /**
+     * <i>Statistic</i> keeps the running mean and variance of a series of values
+     * (Welford's method), so a batch of any size is summarised in constant
+     * memory.
+     */
+    public static final class Statistic
+    {
+	private long count;
+	private double mean;
+	private double sumOfSquares;
+
+	/**
+	 * @param value the next value of the series
+	 */
+	void add(double value)
+	{
+	    ++this.count;
+	    double delta = value - this.mean;
+	    this.mean += delta / this.count;
+	    this.sumOfSquares += delta * (value - this.mean);
+	}
+
+	public long getCount()
+	{
+	    return this.count;
+	}
+
+	public double getMean()
+	{
+	    return this.mean;
+	}
+
+	/**
+	 * @return the sample standard deviation, 0.0 for fewer than two values
+	 */
+	public double getStandardDeviation()
+	{
+	    return this.count < 2 ? 0.0 : Math.sqrt(this.sumOfSquares / (this.count - 1));
+	}
+
+	/**
+	 * @return half the width of the 95% confidence interval of the mean
+	 */
+	public double getHalfWidth95()
+	{
+	    return this.count < 2 ? 0.0 : Z_95 * getStandardDeviation() / Math.sqrt(this.count);
+	}
+
+	@Override
+	public String toString()
+	{
+	    return String.format("%.3f +/- %.3f", getMean(), getHalfWidth95());
+	}
+    } // end class Statistic
+
+    private final int battles;
+    private int forcesOfLightWins;
+    private int forcesOfDarknessWins;
+    private final Statistic duration = new Statistic();
+    private final Statistic[] survivors = new Statistic[ActorFactory.numTypes];
+    private long wallClockNanos;
+
+    /**
+     * @param battles number of battles the report will cover
+     */
+    BatchReport(int battles)
+    {
+	this.battles = battles;
+	for (int i = 0; i < this.survivors.length; ++i)
+	    this.survivors[i] = new Statistic();
+    }
+
+    /**
+     * adds the outcome of one battle
+     *
+     * @param winner 1 when the Forces of Light won, -1 when the Forces of Darkness
+     * won, 0 when the battle was undecided
+     * @param duration simulated seconds the battle took
+     * @param survivorsByType surviving actors of each type, indexed by ordinal
+     */
+    void add(int winner, double duration, int[] survivorsByType)
+    {
+	if (winner > 0)
+	    ++this.forcesOfLightWins;
+	else if (winner < 0)
+	    ++this.forcesOfDarknessWins;
+	this.duration.add(duration);
+	for (int i = 0; i < survivorsByType.length; ++i)
+	    this.survivors[i].add(survivorsByType[i]);
+    }
+
+    void setWallClockNanos(long wallClockNanos)
+    {
+	this.wallClockNanos = wallClockNanos;
+    }
+
+    public int getBattles()
+    {
+	return this.battles;
+    }
+
+    public int getForcesOfLightWins()
+    {
+	return this.forcesOfLightWins;
+    }
+
+    public int getForcesOfDarknessWins()
+    {
+	return this.forcesOfDarknessWins;
+    }
+
+    /**
+     * @return battles that ended without a winner (stalled or timed out)
+     */
+    public int getDraws()
+    {
+	return this.battles - this.forcesOfLightWins - this.forcesOfDarknessWins;
+    }
+
+    /**
+     * @return share of battles won by the Forces of Light
+     */
+    public double getWinProbability()
+    {
+	return this.battles == 0 ? 0.0 : (double) this.forcesOfLightWins / this.battles;
+    }
+
+    /**
+     * Wilson score interval of the win probability of the Forces of Light. It
+     * stays inside [0, 1] and behaves well even when one side almost always wins.
+     *
+     * @return lower and upper bound of the 95% confidence interval
+     */
+    public double[] getWinProbabilityInterval95()
+    {
+	if (this.battles == 0)
+	    return new double[] { 0.0, 1.0 };
+	double n = this.battles;
+	double p = getWinProbability();
+	double z2 = Z_95 * Z_95;
+	double centre = (p + z2 / (2.0 * n)) / (1.0 + z2 / n);
+	double halfWidth = Z_95 * Math.sqrt(p * (1.0 - p) / n + z2 / (4.0 * n * n)) / (1.0 + z2 / n);
+	return new double[] { Math.max(0.0, centre - halfWidth), Math.min(1.0, centre + halfWidth) };
+    }
+
+    /**
+     * @return simulated seconds per battle
+     */
+    public Statistic getDuration()
+    {
+	return this.duration;
+    }
+
+    /**
+     * @param type type of actor
+     * @return survivors of that type per battle, both sides counted
+     */
+    public Statistic getSurvivors(ActorFactory.Type type)
+    {
+	return this.survivors[type.ordinal()];
+    }
+
+    /**
+     * @return battles run per minute of wall-clock time
+     */
+    public double getBattlesPerMinute()
+    {
+	return this.wallClockNanos == 0L ? 0.0 : this.battles * 60.0e9 / this.wallClockNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+	double[] interval = getWinProbabilityInterval95();
+	StringBuilder report = new StringBuilder();
+	report.append(String.format("Battles:            %d (%.0f per minute)%n", this.battles, getBattlesPerMinute()));
+	report.append(String.format("Forces of Light:    %d wins, P(win) = %.4f  95%% CI [%.4f, %.4f]%n",
+		this.forcesOfLightWins, getWinProbability(), interval[0], interval[1]));
+	report.append(String.format("Forces of Darkness: %d wins%n", this.forcesOfDarknessWins));
+	report.append(String.format("Undecided:          %d%n", getDraws()));
+	report.append(String.format("Duration (s):       %s%n", this.duration));
+	for (ActorFactory.Type type : ActorFactory.Type.values())
+	{
+	    if (type != ActorFactory.Type.RANDOM)
+		report.append(String.format("Surviving %-9s %s%n", type + ":", getSurvivors(type)));
+	}
+	return report.toString();
+    }
+}
@@ -0,0 +1,167 @@
+package engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javafx.scene.paint.Color;
+import actor.ActorFactory;
+import army.Army;
+import army.Composition;
+import util.BattleRandom;
+
+/**
+ * <i>BatchRunner</i> evaluates an army <i>Composition</i> statistically: it runs
+ * many seeded headless battles across all cores and summarises them in a
+ * <i>BatchReport</i>.
+ * <p>
+ * Battle <i>i</i> is seeded from the batch seed and <i>i</i> alone, and each
+ * battle runs on one worker, so a batch seed reproduces every battle and the
+ * report does not depend on the number of threads.
+ * <p>
+ * From the command line:
+ * <code>java engine.BatchRunner [battles] [seed] [maxSeconds]</code>
+ */
+public class BatchRunner
+{
+    /** Simulated seconds after which a battle counts as undecided, currently:{@value} */
+    public static final double DEFAULT_MAX_BATTLE_TIME = 600.0;
+    /** Battles one task runs before it stops splitting, currently:{@value} */
+    private static final int BATTLES_PER_TASK = 16;
+
+    private final Composition composition;
+    private final ForkJoinPool pool;
+    private double maxBattleTime = DEFAULT_MAX_BATTLE_TIME;
+
+    /**
+     * outcome of one battle, kept until the report is assembled in order
+     */
+    private static final class Outcome
+    {
+	private int winner;
+	private double duration;
+	private final int[] survivorsByType = new int[ActorFactory.numTypes];
+    }
+
+    /**
+     * @param composition the armies every battle starts with
+     */
+    public BatchRunner(Composition composition)
+    {
+	this(composition, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param composition the armies every battle starts with
+     * @param pool workers the battles are spread over
+     */
+    public BatchRunner(Composition composition, ForkJoinPool pool)
+    {
+	this.composition = composition;
+	this.pool = pool;
+    }
+
+    /**
+     * @param maxBattleTime simulated seconds after which a battle is abandoned
+     */
+    public void setMaxBattleTime(double maxBattleTime)
+    {
+	this.maxBattleTime = maxBattleTime;
+    }
+
+    /**
+     * Runs <i>battles</i> battles and summarises them.
+     *
+     * @param battles number of battles to run
+     * @param seed seed of the batch
+     * @return the summary of all battles
+     */
+    public BatchReport run(int battles, long seed)
+    {
+	BattleRandom batchRandom = new BattleRandom(seed);
+	Outcome[] outcomes = new Outcome[battles];
+	long start = System.nanoTime();
+	if (battles > 0)
+	    this.pool.invoke(new BattleTask(batchRandom, outcomes, 0, battles));
+	BatchReport report = new BatchReport(battles);
+	for (Outcome outcome : outcomes)
+	    report.add(outcome.winner, outcome.duration, outcome.survivorsByType);
+	report.setWallClockNanos(System.nanoTime() - start);
+	return report;
+    } // end run()
+
+    /**
+     * <i>BattleTask</i> splits a range of battles in halves until a task holds
+     * at most {@value #BATTLES_PER_TASK} battles, then runs them one after the
+     * other.
+     */
+    @SuppressWarnings("serial")
+    private class BattleTask extends RecursiveAction
+    {
+	private final BattleRandom batchRandom;
+	private final Outcome[] outcomes;
+	private final int from;
+	private final int to;
+
+	private BattleTask(BattleRandom batchRandom, Outcome[] outcomes, int from, int to)
+	{
+	    this.batchRandom = batchRandom;
+	    this.outcomes = outcomes;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override
+	protected void compute()
+	{
+	    if (this.to - this.from <= BATTLES_PER_TASK)
+	    {
+		for (int i = this.from; i < this.to; ++i)
+		    this.outcomes[i] = runBattle(this.batchRandom.derive(i, 0L));
+		return;
+	    }
+	    int middle = (this.from + this.to) >>> 1;
+	    invokeAll(new BattleTask(this.batchRandom, this.outcomes, this.from, middle),
+		    new BattleTask(this.batchRandom, this.outcomes, middle, this.to));
+	}
+    } // end class BattleTask
+
+    /**
+     * builds two headless armies from the composition and fights them out
+     */
+    private Outcome runBattle(BattleRandom battleRandom)
+    {
+	Army forcesOfLight = new Army("Forces of Light", Color.AQUA);
+	Army forcesOfDarkness = new Army("Forces of Darkness", Color.RED);
+	forcesOfLight.setOpposingArmy(forcesOfDarkness);
+	forcesOfDarkness.setOpposingArmy(forcesOfLight);
+	forcesOfLight.setRandom(battleRandom.split());
+	forcesOfDarkness.setRandom(battleRandom.split());
+	this.composition.populate(forcesOfLight, forcesOfDarkness);
+
+	BattleEngine engine = new BattleEngine(forcesOfLight, forcesOfDarkness, this.pool, battleRandom.split());
+	Outcome outcome = new Outcome();
+	outcome.duration = engine.run(this.maxBattleTime);
+	Army winner = engine.getWinner();
+	outcome.winner = winner == forcesOfLight ? 1 : winner == forcesOfDarkness ? -1 : 0;
+	for (ActorFactory.Type type : ActorFactory.Type.values())
+	    outcome.survivorsByType[type.ordinal()] = forcesOfLight.getAliveCount(type)
+		    + forcesOfDarkness.getAliveCount(type);
+	return outcome;
+    }
+
+    /**
+     * runs a batch of the standard <i>Simulator</i> battle and prints the report
+     *
+     * @param args number of battles (default 10000), seed (default 1) and
+     * simulated seconds after which a battle is abandoned
+     */
+    public static void main(String[] args)
+    {
+	int battles = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+	long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+	BatchRunner runner = new BatchRunner(Composition.standard());
+	if (args.length > 2)
+	    runner.setMaxBattleTime(Double.parseDouble(args[2]));
+	System.out.print(runner.run(battles, seed));
+    }
+}
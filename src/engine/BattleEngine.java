@@ -0,0 +1,942 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+import javafx.geometry.Point2D;
+import actor.Actor;
+import army.Army;
+import army.Factions;
+import util.BattleRandom;
+
+/**
+ * <i>BattleEngine</i> advances a battle between two <i>Army</i> objects, or
+ * between all the factions of a <i>Factions</i> roster, in fixed time steps,
+ * without any JavaFX animation. It owns the location and
+ * health of every <i>Actor</i>: each tick it applies the same rules that used
+ * to run inside the transition callbacks of <i>Actor.startMoving()</i> (find
+ * the nearest visible enemy, fight it when within range, otherwise walk to
+ * the location picked by <i>findNewLocation()</i>).
+ * <p>
+ * Because time is only advanced through <i>step()</i>, a battle can be run as
+ * fast as the CPU allows on a machine with no display. The <i>Simulator</i>
+ * calls <i>advance()</i> once per pulse and then simply draws the state.
+ * <p>
+ * Each tick is split into fixed partitions of {@value #PARTITION_SIZE} units
+ * that run on a <i>ForkJoinPool</i> in two phases. The read phase picks
+ * targets, rolls damage and works out where every unit goes, while nothing
+ * shared changes. The write phase then moves the units and deals the damage,
+ * merging the partitions in order, so the result is the same bit for bit
+ * whatever the number of threads.
+ * <p>
+ * All randomness in a tick comes from a stream derived from the battle seed,
+ * the tick number and the partition index, so a given seed replays the battle
+ * exactly and no two workers ever draw from the same stream.
+ * <p>
+ * A unit keeps the opponent it found until that opponent dies, turns
+ * invisible, or another opponent may have come more than
+ * {@value #TARGET_HYSTERESIS} nearer, so most decisions skip the
+ * nearest-opponent search altogether (see <i>findTarget()</i>).
+ * <p>
+ * On a <i>TerrainMap</i> actors walk slower through costly ground, and a walk
+ * towards an opponent in another region of the map follows the flow field into
+ * that region instead of a straight line (see <i>followTerrain()</i>).
+ * <p>
+ * An engine can instead run every unit as an agent of its own (see
+ * <i>ActorAgents</i>), each in a partition of one unit and on a thread of its
+ * own, to compare that way of running a battle against the partitions.
+ */
+public class BattleEngine
+{
+    /** Width of the battlefield used by headless armies, currently:{@value} */
+    public static final double BATTLEFIELD_WIDTH = 1000.0;
+    /** Height of the battlefield used by headless armies, currently:{@value} */
+    public static final double BATTLEFIELD_HEIGHT = 571.0;
+    /** Length of one engine tick in seconds, currently:{@value} */
+    public static final double TIME_STEP = 1.0 / 60.0;
+    /** Distance under which two actors fight instead of moving, currently:{@value} */
+    public static final double COMBAT_RANGE = 4.0;
+    /** Seconds taken by one combat round (the old rotation), currently:{@value} */
+    public static final double COMBAT_ROUND_DURATION = 0.5;
+    /**
+     * Longest stretch of real time a single call to <i>advance()</i> will catch
+     * up on, so a stalled window does not make the engine spiral, currently:{@value}
+     */
+    public static final double MAX_FRAME_TIME = 0.25;
+    /**
+     * Simulated seconds without any actor moving, losing health or dying after
+     * which the battle counts as stalled, currently:{@value}
+     */
+    public static final double STALL_TIMEOUT = 10.0;
+    /** Number of units in one partition of a tick, currently:{@value} */
+    public static final int PARTITION_SIZE = 256;
+    /**
+     * How much nearer than the cached target another opponent may be before a
+     * unit searches again, currently:{@value}
+     */
+    public static final double TARGET_HYSTERESIS = 2.0 * COMBAT_RANGE;
+
+    /** who fights whom, and who is left */
+    private final Factions factions;
+    /** armies of the battle, the Forces of Light and of Darkness first in a battle of two */
+    private final Army[] armies;
+    /** every actor still taking part in the battle, in a stable order */
+    private final ArrayList<Unit> units = new ArrayList<>();
+    /** partitions of the current tick, reused from tick to tick */
+    private final ArrayList<Partition> partitions = new ArrayList<>();
+    private final ForkJoinPool pool;
+    /** runs the units as agents instead of the partitions on the pool, or null */
+    private final ActorAgents agents;
+    /** units in one partition: <i>PARTITION_SIZE</i>, or 1 for agents */
+    private final int partitionSize;
+    /** stream of the battle the per-partition streams are derived from */
+    private final BattleRandom random;
+    /** real time handed to <i>advance()</i> that has not yet filled a whole tick */
+    private double accumulator;
+    private double elapsedTime;
+    private long tickCount;
+    /** simulated time of the last tick in which anything changed */
+    private double lastProgressTime;
+    /** journal every change is appended to, or null */
+    private BattleJournal journal;
+    /** events of every tick are submitted to it, or null */
+    private BattleEventPublisher publisher;
+    /** events of the tick being run, submitted as one batch at its end */
+    private final ArrayList<BattleEvent> tickEvents = new ArrayList<>();
+    /** true for every army <i>ArmyDefeated</i> has been published for */
+    private final boolean[] defeatPublished;
+    /** told about the end of every tick */
+    private final ArrayList<TickListener> tickListeners = new ArrayList<>();
+    /** records every tick, or null */
+    private SimulationMetrics metrics;
+    /** true once the first tick of this engine has run */
+    private boolean started;
+    /** true once the end of the battle has been recorded */
+    private boolean ended;
+    /** true when units keep their target between decisions, see <i>findTarget()</i> */
+    private boolean targetCaching = true;
+    /** ground the units walk on, or null for open ground everywhere */
+    private TerrainMap terrain;
+
+    /**
+     * Builds an engine for the actors currently in both armies that runs its
+     * partitions on the common <i>ForkJoinPool</i>.
+     *
+     * @param forcesOfLight first army
+     * @param forcesOfDarkness second army
+     */
+    public BattleEngine(Army forcesOfLight, Army forcesOfDarkness)
+    {
+	this(forcesOfLight, forcesOfDarkness, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds an engine for the actors currently in both armies. Actors added to
+     * an army afterwards are not picked up; build a new engine instead.
+     *
+     * @param forcesOfLight first army
+     * @param forcesOfDarkness second army
+     * @param pool workers that run the partitions of each tick
+     */
+    public BattleEngine(Army forcesOfLight, Army forcesOfDarkness, ForkJoinPool pool)
+    {
+	this(forcesOfLight, forcesOfDarkness, pool, forcesOfLight.getRandom().split());
+    }
+
+    /**
+     * Builds an engine for the actors currently in both armies. Actors added to
+     * an army afterwards are not picked up; build a new engine instead.
+     *
+     * @param forcesOfLight first army
+     * @param forcesOfDarkness second army
+     * @param pool workers that run the partitions of each tick
+     * @param random stream of the battle; the same seed gives the same battle
+     */
+    public BattleEngine(Army forcesOfLight, Army forcesOfDarkness, ForkJoinPool pool, BattleRandom random)
+    {
+	this(Factions.of(forcesOfLight, forcesOfDarkness), new Army[] { forcesOfLight, forcesOfDarkness }, pool, null,
+		random);
+    }
+
+    /**
+     * Builds an engine for a battle between every faction of a roster, with the
+     * actors currently in their armies. Journals and replays only hold battles
+     * of two armies.
+     *
+     * @param factions roster of the battle; alliances can still change between
+     * ticks
+     * @param pool workers that run the partitions of each tick
+     * @param random stream of the battle; the same seed gives the same battle
+     */
+    public BattleEngine(Factions factions, ForkJoinPool pool, BattleRandom random)
+    {
+	this(factions, factions.getArmies().toArray(new Army[0]), pool, null, random);
+    }
+
+    /**
+     * Builds an engine for the actors currently in both armies that runs every
+     * actor as an agent of its own, on a thread from <i>agentThreads</i>. The
+     * agents start at once and wait for the first tick; <i>close()</i> ends
+     * them.
+     * <p>
+     * Each agent is a partition of one unit, and the random stream of a
+     * partition is derived from the tick and the partition's index. So a seed
+     * only gives the same battle as the fork/join engine would give with
+     * partitions of one unit. The fork/join constructors always cut partitions
+     * of <i>PARTITION_SIZE</i> units, so with the same seed they fight a
+     * different battle: the two can be compared on speed, not on outcome.
+     *
+     * @param forcesOfLight first army
+     * @param forcesOfDarkness second army
+     * @param agentThreads builds the thread of each agent, typically
+     * <i>ActorAgents.defaultThreads()</i>
+     * @param random stream of the battle; the same seed gives the same battle in
+     * agent mode
+     */
+    public BattleEngine(Army forcesOfLight, Army forcesOfDarkness, ThreadFactory agentThreads, BattleRandom random)
+    {
+	this(Factions.of(forcesOfLight, forcesOfDarkness), new Army[] { forcesOfLight, forcesOfDarkness }, null,
+		agentThreads, random);
+    }
+
+    private BattleEngine(Factions factions, Army[] armies, ForkJoinPool pool, ThreadFactory agentThreads,
+	    BattleRandom random)
+    {
+	this.pool = pool;
+	this.random = random;
+	this.factions = factions;
+	this.armies = armies;
+	this.defeatPublished = new boolean[armies.length];
+	for (Army army : armies)
+	{
+	    for (Actor actor : army.getCollectionActors())
+		this.units.add(new Unit(actor));
+	}
+	this.partitionSize = agentThreads != null ? 1 : PARTITION_SIZE;
+	this.agents = agentThreads != null ? new ActorAgents(this.units, agentThreads) : null;
+    }
+
+    /**
+     * Advances the battle by exactly one tick of <i>dt</i> seconds. Every living
+     * actor is advanced once, against the state the battle was in at the start
+     * of the tick.
+     *
+     * @param dt length of the tick in seconds
+     */
+    public void step(double dt)
+    {
+	FlightEvents.Tick tickEvent = FlightEvents.tick();
+	if (tickEvent != null)
+	    tickEvent.begin();
+	long start = this.metrics != null ? System.nanoTime() : 0L;
+	if (!this.started)
+	    recordStart();
+	int unitCount = this.units.size();
+	int partitionCount = preparePartitions();
+	if (this.agents != null)
+	    this.agents.runTick(partition -> readPhase(partition, dt), this::moveUnits);
+	else
+	{
+	    runPartitions(partitionCount, partition -> readPhase(partition, dt));
+	    runPartitions(partitionCount, this::moveUnits);
+	}
+	boolean progressed = false;
+	boolean publishing = this.publisher != null && this.publisher.hasSubscribers();
+	for (int i = 0; i < partitionCount; ++i)
+	    progressed |= mergeWrites(this.partitions.get(i), publishing);
+	this.units.removeIf(unit -> unit.dead);
+	for (Army army : this.armies)
+	    army.dropDeadActors(); // the merge only marked the dead, they leave the lists here in one pass
+	if (publishing)
+	    publishDefeats();
+	this.elapsedTime += dt;
+	if (progressed)
+	    this.lastProgressTime = this.elapsedTime;
+	++this.tickCount;
+	if (publishing)
+	{
+	    this.publisher.submit(this.tickEvents);
+	    this.tickEvents.clear();
+	}
+	if (this.journal != null)
+	    this.journal.endTick(this.tickCount, this.elapsedTime);
+	for (int i = 0; i < this.tickListeners.size(); ++i)
+	    this.tickListeners.get(i).tickEnded(this);
+	assert aggregatesMatch() : "running army aggregates drifted from the actors at tick " + this.tickCount;
+	if (!this.ended && isBattleOver())
+	    recordEnd();
+	if (this.metrics != null || tickEvent != null && tickEvent.shouldCommit())
+	    recordTick(tickEvent, partitionCount, unitCount, start);
+    }
+
+    /**
+     * Feeds real (wall-clock) time into the engine and runs as many fixed
+     * <i>TIME_STEP</i> ticks as fit into it. Left-over time is kept for the next
+     * call, so the simulation stays independent of the frame rate.
+     *
+     * @param realSeconds seconds that passed since the previous call
+     * @return the number of ticks that were run
+     */
+    public int advance(double realSeconds)
+    {
+	this.accumulator += Math.min(realSeconds, MAX_FRAME_TIME);
+	int ticks = 0;
+	while (this.accumulator >= TIME_STEP)
+	{
+	    step(TIME_STEP);
+	    this.accumulator -= TIME_STEP;
+	    ++ticks;
+	}
+	return ticks;
+    }
+
+    /**
+     * Runs the battle headless, as fast as possible, until one army has been
+     * wiped out, the battle has stalled or <i>maxSeconds</i> of simulated time
+     * have passed.
+     *
+     * @param maxSeconds simulated time after which the battle is abandoned
+     * @return the simulated time the battle took
+     */
+    public double run(double maxSeconds)
+    {
+	while (!isBattleOver() && !isStalled() && this.elapsedTime < maxSeconds)
+	    step(TIME_STEP);
+	return this.elapsedTime;
+    }
+
+    /**
+     * ends the agents of an engine that runs its units as agents; an engine on
+     * a pool has nothing to end. No tick may be run afterwards.
+     */
+    public void close()
+    {
+	if (this.agents != null)
+	    this.agents.close();
+    }
+
+    /**
+     * @return true when every unit runs as an agent of its own
+     */
+    public boolean isAgentMode()
+    {
+	return this.agents != null;
+    }
+
+    /**
+     * @return the carrier-thread pinning the agents ran into so far, as the
+     * experimental <i>CarrierPinningMonitor</i> reports it, or null unless the
+     * units run as agents on virtual threads with the monitor turned on
+     */
+    public String getPinningReport()
+    {
+	return this.agents != null ? this.agents.getPinningReport() : null;
+    }
+
+    /**
+     * @return true once no army left standing has an enemy left standing, which
+     * in a battle of two is once one army has no actors left
+     */
+    public boolean isBattleOver()
+    {
+	return this.factions.isDecided();
+    }
+
+    /**
+     * A battle stalls when for <i>STALL_TIMEOUT</i> seconds no actor has moved,
+     * lost health or died, for example when every survivor on one side is
+     * invisible or the last hobbits stand too far away to flee. Running it
+     * further would not change the outcome.
+     *
+     * @return true when nothing has changed for <i>STALL_TIMEOUT</i> seconds
+     */
+    public boolean isStalled()
+    {
+	return this.elapsedTime - this.lastProgressTime >= STALL_TIMEOUT;
+    }
+
+    /**
+     * Appends every change of every following tick to <i>journal</i>, so the
+     * battle can be recovered after a crash.
+     *
+     * @param journal the journal, or null to stop journaling
+     */
+    public void setJournal(BattleJournal journal)
+    {
+	this.journal = journal;
+    }
+
+    /**
+     * Submits the <i>BattleEvent</i>s of every following tick to
+     * <i>publisher</i>. Events are only built while it has subscribers, and
+     * submitting never waits for them.
+     *
+     * @param publisher the publisher, or null to stop publishing
+     */
+    public void setEventPublisher(BattleEventPublisher publisher)
+    {
+	this.publisher = publisher;
+    }
+
+    /**
+     * Records the duration, nearest-opponent searches, target cache hits, combat
+     * rounds and deaths of every following tick in <i>metrics</i>.
+     *
+     * @param metrics the metrics, or null to stop recording
+     */
+    public void setMetrics(SimulationMetrics metrics)
+    {
+	this.metrics = metrics;
+    }
+
+    /**
+     * Lets units keep their target between decisions, the default, or makes
+     * every decision search for the nearest opponent again, as the simulator
+     * first did. Either way a seed gives the same battle every time, but not the
+     * same battle with caching as without.
+     *
+     * @param targetCaching true to keep targets between decisions
+     */
+    public void setTargetCaching(boolean targetCaching)
+    {
+	this.targetCaching = targetCaching;
+	if (!targetCaching)
+	    for (Unit unit : this.units)
+		unit.target = null;
+    }
+
+    /**
+     * @return true when units keep their target between decisions
+     */
+    public boolean isTargetCaching()
+    {
+	return this.targetCaching;
+    }
+
+    /**
+     * Lets the units walk on a terrain: slower through costly cells, and around
+     * them on the way to an opponent in another region. A seed gives the same
+     * battle every time on the same terrain, but not on another one.
+     *
+     * @param terrain ground of the battlefield, or null for open ground
+     * everywhere, the default
+     */
+    public void setTerrain(TerrainMap terrain)
+    {
+	this.terrain = terrain;
+	for (Unit unit : this.units)
+	    unit.flowField = null;
+    }
+
+    /**
+     * @return the ground the units walk on, or null for open ground
+     */
+    public TerrainMap getTerrain()
+    {
+	return this.terrain;
+    }
+
+    /**
+     * @param listener told about the end of every following tick
+     */
+    public void addTickListener(TickListener listener)
+    {
+	this.tickListeners.add(listener);
+    }
+
+    /**
+     * @param listener listener to stop telling
+     */
+    public void removeTickListener(TickListener listener)
+    {
+	this.tickListeners.remove(listener);
+    }
+
+    /**
+     * Sets the clock of an engine built for a battle that already ran, such as
+     * one restored by <i>BattleJournal.recover()</i>, so tick numbers, and the
+     * random streams derived from them, carry on where the battle stopped.
+     *
+     * @param tickCount ticks the battle has run
+     * @param elapsedTime simulated seconds the battle has run
+     */
+    public void setClock(long tickCount, double elapsedTime)
+    {
+	this.tickCount = tickCount;
+	this.elapsedTime = elapsedTime;
+	this.lastProgressTime = elapsedTime;
+    }
+
+    /**
+     * @return the army still standing, or null while the battle is undecided or
+     * when an alliance of several armies won it
+     */
+    public Army getWinner()
+    {
+	return this.factions.getWinner();
+    }
+
+    /**
+     * @return the roster of the battle
+     */
+    public Factions getFactions()
+    {
+	return this.factions;
+    }
+
+    public Army getForcesOfLight()
+    {
+	return this.armies[0];
+    }
+
+    public Army getForcesOfDarkness()
+    {
+	return this.armies[1];
+    }
+
+    /**
+     * @return the stream of the battle; its seed and the armies as they were
+     * before the first tick are all it takes to replay the battle
+     */
+    public BattleRandom getRandom()
+    {
+	return this.random;
+    }
+
+    /**
+     * @return simulated seconds since the engine was built
+     */
+    public double getElapsedTime()
+    {
+	return this.elapsedTime;
+    }
+
+    /**
+     * @return number of ticks run since the engine was built
+     */
+    public long getTickCount()
+    {
+	return this.tickCount;
+    }
+
+    /**
+     * slices the units into partitions of <i>PARTITION_SIZE</i>, or of one unit
+     * each for agents, telling every agent which is its own
+     *
+     * @return the number of partitions in use this tick
+     */
+    private int preparePartitions()
+    {
+	int partitionCount = (this.units.size() + this.partitionSize - 1) / this.partitionSize;
+	while (this.partitions.size() < partitionCount)
+	    this.partitions.add(new Partition());
+	for (int i = 0; i < partitionCount; ++i)
+	{
+	    Partition partition = this.partitions.get(i);
+	    partition.reset(i, i * this.partitionSize, Math.min(this.units.size(), (i + 1) * this.partitionSize),
+		    this.random.derive(this.tickCount, i));
+	    if (this.agents != null)
+		this.units.get(i).partition = partition;
+	}
+	return partitionCount;
+    }
+
+    /**
+     * runs one phase over every partition, on the pool when there is more than
+     * one partition, and returns once all of them are done
+     */
+    private void runPartitions(int partitionCount, Consumer<Partition> phase)
+    {
+	if (partitionCount == 1)
+	    phase.accept(this.partitions.get(0));
+	else if (partitionCount > 1)
+	    this.pool.invoke(new PartitionTask(phase, 0, partitionCount));
+    }
+
+    /**
+     * <i>PartitionTask</i> splits a range of partitions in halves until each
+     * task runs a single partition.
+     */
+    @SuppressWarnings("serial")
+    private class PartitionTask extends RecursiveAction
+    {
+	private final Consumer<Partition> phase;
+	private final int from;
+	private final int to;
+
+	private PartitionTask(Consumer<Partition> phase, int from, int to)
+	{
+	    this.phase = phase;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override
+	protected void compute()
+	{
+	    if (this.to - this.from == 1)
+	    {
+		this.phase.accept(partitions.get(this.from));
+		return;
+	    }
+	    int middle = (this.from + this.to) >>> 1;
+	    invokeAll(new PartitionTask(this.phase, this.from, middle), new PartitionTask(this.phase, middle, this.to));
+	}
+    } // end class PartitionTask
+
+    /**
+     * READ PHASE: works out the intent of every unit of the partition. Only the
+     * units of this partition and the partition's own buffers are written.
+     */
+    private void readPhase(Partition partition, double dt)
+    {
+	FlightEvents.PartitionPhase event = FlightEvents.partitionPhase();
+	if (event != null)
+	    event.begin();
+	for (int i = partition.from; i < partition.to; ++i)
+	{
+	    Unit unit = this.units.get(i);
+	    unit.moved = false;
+	    unit.dying = false;
+	    if (!unit.dead)
+		readUnit(unit, partition, dt);
+	}
+	recordPhase(event, "read", partition);
+    }
+
+    /**
+     * Spends <i>dt</i> seconds of one unit's time: first on any pending delay,
+     * then on walking, and once it is free again the unit decides what to do
+     * next.
+     */
+    private void readUnit(Unit unit, Partition partition, double dt)
+    {
+	if (unit.delayRemaining > 0.0)
+	{
+	    unit.delayRemaining -= dt;
+	    if (unit.delayRemaining > 0.0)
+		return;
+	    dt = -unit.delayRemaining;
+	    unit.delayRemaining = 0.0;
+	}
+	if (unit.moving)
+	{
+	    Actor actor = unit.actor;
+	    double deltaX = unit.destinationX - actor.getX();
+	    double deltaY = unit.destinationY - actor.getY();
+	    double remaining = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+	    double stride = actor.getSpeed() * dt;
+	    if (this.terrain != null)
+		stride /= this.terrain.getCost(actor.getX(), actor.getY());
+	    unit.moved = true;
+	    partition.movers.add(unit);
+	    partition.progressed |= remaining > 0.0;
+	    if (stride < remaining)
+	    {
+		unit.nextX = actor.getX() + deltaX * stride / remaining;
+		unit.nextY = actor.getY() + deltaY * stride / remaining;
+	    } else
+	    { // arrived: decide again next tick, from the destination
+		unit.nextX = unit.destinationX;
+		unit.nextY = unit.destinationY;
+		unit.moving = false;
+	    }
+	    return;
+	}
+	decide(unit, partition);
+    }
+
+    /**
+     * The rules from the old <i>Actor.startMoving()</i>: do nothing when there
+     * is no visible opponent, leave the battle when out of health, fight when in
+     * range, otherwise set off towards a new location after a short delay.
+     * Damage is only rolled here; the write phase deals it.
+     */
+    private void decide(Unit unit, Partition partition)
+    {
+	Actor actor = unit.actor;
+	Actor opponent = findTarget(unit, partition);
+	if (opponent == null)
+	{
+	    return;
+	}
+	if (actor.getHealth() <= 0.0)
+	{
+	    unit.dying = true;
+	    partition.dying.add(unit);
+	    partition.progressed = true;
+	    return;
+	}
+	if (actor.distanceTo(opponent) < COMBAT_RANGE)
+	{ // same rolls, in the same order, as Actor.combatRound()
+	    double damageDef = opponent.rollDamage(partition.random);
+	    double damageOpp = actor.rollDamage(partition.random);
+	    partition.addHit(actor, damageDef);
+	    partition.addHit(opponent, damageOpp);
+	    unit.delayRemaining = COMBAT_ROUND_DURATION;
+	} else
+	{
+	    Point2D newLocation = actor.findNewLocation(opponent);
+	    if (this.terrain != null)
+		newLocation = followTerrain(unit, opponent, newLocation);
+	    unit.destinationX = newLocation.getX();
+	    unit.destinationY = newLocation.getY();
+	    unit.moving = true;
+	    unit.delayRemaining = 1.0 / actor.getSpeed();
+	}
+    }
+
+    /**
+     * Gives the opponent a unit acts against: its cached target when that is
+     * still good enough, otherwise the nearest visible opponent, which becomes
+     * the new target.
+     * <p>
+     * When the target was found no other visible opponent was nearer. Those that
+     * have stood still since are still no nearer than that distance less the
+     * way the actor itself has come, and those that moved are seen in the
+     * spatial index of their army. The target is kept as long as neither can
+     * have brought an opponent more than <i>TARGET_HYSTERESIS</i> nearer than
+     * the target itself, which is always the case while the two are fighting.
+     * A change of alliances drops every cached target.
+     */
+    private Actor findTarget(Unit unit, Partition partition)
+    {
+	Actor actor = unit.actor;
+	Actor target = unit.target;
+	if (target != null && this.targetCaching && target.isAlive() && target.isVisible()
+		&& this.factions.isHostile(actor.getArmyAllegiance(), target.getArmyAllegiance()))
+	{
+	    double deltaX = actor.getX() - unit.targetFromX;
+	    double deltaY = actor.getY() - unit.targetFromY;
+	    double radius = actor.distanceTo(target) - TARGET_HYSTERESIS; // nearer than this would be too near
+	    if (radius <= unit.targetDistance - Math.sqrt(deltaX * deltaX + deltaY * deltaY)
+		    && this.factions.isClearOfEnemiesWithin(actor, radius, unit.targetChanges))
+	    {
+		++partition.targetCacheHits;
+		return target;
+	    }
+	}
+	target = this.factions.findNearestEnemy(actor);
+	++partition.nearestQueries;
+	if (this.targetCaching)
+	{
+	    unit.target = target;
+	    if (target != null)
+	    {
+		unit.targetDistance = actor.distanceTo(target);
+		unit.targetFromX = actor.getX();
+		unit.targetFromY = actor.getY();
+		unit.targetChanges = this.factions.getChangeCount();
+	    }
+	}
+	return target;
+    } // end findTarget()
+
+    /**
+     * Turns the straight walk to <i>newLocation</i> into a walk about as long
+     * along the flow field into the region of the opponent, from cell centre to
+     * cell centre, so the unit goes around costly ground rather than through
+     * it. A unit keeps its field as long as its opponents stay in the same
+     * region, and only asks the terrain for another one once they leave it.
+     * Within the region of the opponent, or when not even one step fits into
+     * the walk, the unit walks straight.
+     */
+    private Point2D followTerrain(Unit unit, Actor opponent, Point2D newLocation)
+    {
+	Actor actor = unit.actor;
+	TerrainMap terrain = this.terrain;
+	double budget = newLocation.distance(actor.getX(), actor.getY());
+	int start = terrain.cellOf(actor.getX(), actor.getY());
+	int goal = terrain.regionOf(terrain.cellOf(opponent.getX(), opponent.getY()));
+	if (budget == 0.0 || terrain.regionOf(start) == goal)
+	    return newLocation;
+	FlowField field = unit.flowField;
+	if (field == null || field.getRegion() != goal)
+	{
+	    field = terrain.getFlowField(opponent.getX(), opponent.getY());
+	    unit.flowField = field;
+	}
+	int reached = start;
+	double walked = 0.0;
+	while (terrain.regionOf(reached) != goal)
+	{
+	    int next = field.next(reached);
+	    double step = Math.hypot(terrain.centerX(next) - terrain.centerX(reached),
+		    terrain.centerY(next) - terrain.centerY(reached));
+	    if (next == reached || walked + step > budget)
+		break;
+	    walked += step;
+	    reached = next;
+	}
+	if (reached == start)
+	    return newLocation;
+	return new Point2D(terrain.centerX(reached), terrain.centerY(reached));
+    } // end followTerrain()
+
+    /**
+     * WRITE PHASE, parallel part: stores the new location of every unit of the
+     * partition that moved. Each unit owns its own slot of the columns, so
+     * partitions never write the same memory.
+     */
+    private void moveUnits(Partition partition)
+    {
+	FlightEvents.PartitionPhase event = FlightEvents.partitionPhase();
+	if (event != null)
+	    event.begin();
+	for (Unit unit : partition.movers)
+	{
+	    Actor actor = unit.actor;
+	    unit.previousX = actor.getX();
+	    unit.previousY = actor.getY();
+	    actor.getStore().setLocation(actor.getId(), unit.nextX, unit.nextY);
+	}
+	recordPhase(event, "move", partition);
+    }
+
+    /**
+     * WRITE PHASE, in partition order: refiles moved actors in the spatial index
+     * of their army, deals the damage rolled in the read phase and takes out the
+     * actors that ran out of health.
+     *
+     * @param publishing true when events are to be submitted to the publisher
+     * @return true when the partition changed anything in the battle
+     */
+    private boolean mergeWrites(Partition partition, boolean publishing)
+    {
+	FlightEvents.PartitionPhase event = FlightEvents.partitionPhase();
+	if (event != null)
+	    event.begin();
+	long tick = this.tickCount + 1L;
+	for (Unit unit : partition.movers)
+	{
+	    unit.actor.getArmyAllegiance().actorMoved(unit.actor, unit.previousX, unit.previousY);
+	    if (unit.previousX != unit.nextX || unit.previousY != unit.nextY)
+	    {
+		if (this.journal != null)
+		    this.journal.recordMove(unit.actor);
+		if (publishing)
+		    this.tickEvents.add(new BattleEvent.ActorMoved(tick, unit.actor, unit.previousX, unit.previousY));
+	    }
+	}
+	FlightEvents.CombatRounds combat = FlightEvents.combatRounds();
+	if (combat != null)
+	    combat.begin();
+	boolean progressed = partition.applyHits(this.journal) | partition.progressed;
+	if (combat != null && combat.shouldCommit())
+	{
+	    combat.set(tick, partition.index, partition.getRoundCount());
+	    combat.commit();
+	}
+	if (publishing)
+	    partition.addRounds(this.tickEvents, tick);
+	for (Unit unit : partition.dying)
+	{
+	    unit.dead = true;
+	    if (this.journal != null)
+		this.journal.recordDeath(unit.actor);
+	    Army army = unit.actor.getArmyAllegiance();
+	    army.removeNowDeadActor(unit.actor);
+	    if (publishing)
+		this.tickEvents.add(new BattleEvent.ActorDied(tick, unit.actor, army));
+	}
+	recordPhase(event, "merge", partition);
+	return progressed;
+    }
+
+    /**
+     * sums what the partitions of the tick counted and hands it to the metrics
+     * and to the flight recorder, whichever wants it; <i>tickEvent</i> is null
+     * when there are no flight recorder events
+     */
+    private void recordTick(FlightEvents.Tick tickEvent, int partitionCount, int unitCount, long start)
+    {
+	int nearestQueries = 0;
+	int targetCacheHits = 0;
+	int combatRounds = 0;
+	int deaths = 0;
+	for (int i = 0; i < partitionCount; ++i)
+	{
+	    Partition partition = this.partitions.get(i);
+	    nearestQueries += partition.nearestQueries;
+	    targetCacheHits += partition.targetCacheHits;
+	    combatRounds += partition.getRoundCount();
+	    deaths += partition.dying.size();
+	}
+	if (this.metrics != null)
+	    this.metrics.recordTick(System.nanoTime() - start, nearestQueries, targetCacheHits, combatRounds, deaths);
+	if (tickEvent != null && tickEvent.shouldCommit())
+	{
+	    tickEvent.set(this.tickCount, unitCount, partitionCount, nearestQueries, targetCacheHits, combatRounds,
+		    deaths);
+	    tickEvent.commit();
+	}
+    } // end recordTick()
+
+    private void recordStart()
+    {
+	this.started = true;
+	FlightEvents.BattleStarted event = FlightEvents.battleStarted();
+	if (event != null && event.shouldCommit())
+	{
+	    event.set(this.armies[0].getName(), this.armies[0].size(), this.armies[1].getName(),
+		    this.armies[1].size(), this.armies.length, this.random.getSeed());
+	    event.commit();
+	}
+    }
+
+    private void recordEnd()
+    {
+	this.ended = true;
+	FlightEvents.BattleEnded event = FlightEvents.battleEnded();
+	if (event != null && event.shouldCommit())
+	{
+	    Army winner = getWinner();
+	    int survivors = 0;
+	    for (Army survivor : this.factions.getSurvivors())
+		survivors += survivor.size();
+	    event.set(winner != null ? winner.getName() : null, survivors, this.tickCount, this.elapsedTime);
+	    event.commit();
+	}
+    }
+
+    /**
+     * commits a <i>PartitionPhase</i> event begun before the phase ran
+     */
+    private void recordPhase(FlightEvents.PartitionPhase event, String phase, Partition partition)
+    {
+	if (event != null && event.shouldCommit())
+	{
+	    event.set(phase, this.tickCount + 1L, partition.index, partition.to - partition.from);
+	    event.commit();
+	}
+    }
+
+    /**
+     * publishes <i>ArmyDefeated</i> for every army newly left without actors
+     */
+    private void publishDefeats()
+    {
+	long tick = this.tickCount + 1L;
+	for (int i = 0; i < this.armies.length; ++i)
+	{
+	    if (!this.defeatPublished[i] && this.factions.getLiveCount(this.armies[i]) == 0)
+	    {
+		this.tickEvents.add(new BattleEvent.ArmyDefeated(tick, this.armies[i], getWinner()));
+		this.defeatPublished[i] = true;
+	    }
+	}
+    }
+
+    private boolean aggregatesMatch()
+    {
+	for (Army army : this.armies)
+	{
+	    if (!army.aggregatesMatch())
+		return false;
+	}
+	return true;
+    }
+}
@@ -0,0 +1,213 @@
+package engine;
+
+import actor.Actor;
+import army.Army;
+
+/**
+ * <i>BattleEvent</i> is something that happened in a tick of a
+ * <i>BattleEngine</i>, as published through a <i>BattleEventPublisher</i>.
+ * Events are immutable and carry the tick they happened in; the actors they
+ * refer to keep changing afterwards, so read what is needed when the event
+ * arrives or take it from the event itself.
+ */
+public abstract class BattleEvent
+{
+    private final long tick;
+
+    BattleEvent(long tick)
+    {
+	this.tick = tick;
+    }
+
+    /**
+     * @return number of the tick the event happened in, counting from 1
+     */
+    public long getTick()
+    {
+	return this.tick;
+    }
+
+    /**
+     * one round of combat between two actors within <i>COMBAT_RANGE</i>
+     */
+    public static final class CombatRound extends BattleEvent
+    {
+	private final Actor attacker;
+	private final Actor defender;
+	private final double attackerHealth;
+	private final double defenderHealth;
+
+	CombatRound(long tick, Actor attacker, Actor defender)
+	{
+	    super(tick);
+	    this.attacker = attacker;
+	    this.defender = defender;
+	    this.attackerHealth = attacker.getHealth();
+	    this.defenderHealth = defender.getHealth();
+	}
+
+	/**
+	 * @return the actor whose decision started the round
+	 */
+	public Actor getAttacker()
+	{
+	    return this.attacker;
+	}
+
+	public Actor getDefender()
+	{
+	    return this.defender;
+	}
+
+	/**
+	 * @return health of the attacker after the round
+	 */
+	public double getAttackerHealth()
+	{
+	    return this.attackerHealth;
+	}
+
+	/**
+	 * @return health of the defender after the round
+	 */
+	public double getDefenderHealth()
+	{
+	    return this.defenderHealth;
+	}
+
+	@Override
+	public String toString()
+	{
+	    return String.format("%d: %s (%.1f) fights %s (%.1f)", getTick(), this.attacker.getName(),
+		    this.attackerHealth, this.defender.getName(), this.defenderHealth);
+	}
+    } // end class CombatRound
+
+    /**
+     * an actor walked from one location to another
+     */
+    public static final class ActorMoved extends BattleEvent
+    {
+	private final Actor actor;
+	private final double fromX;
+	private final double fromY;
+	private final double toX;
+	private final double toY;
+
+	ActorMoved(long tick, Actor actor, double fromX, double fromY)
+	{
+	    super(tick);
+	    this.actor = actor;
+	    this.fromX = fromX;
+	    this.fromY = fromY;
+	    this.toX = actor.getX();
+	    this.toY = actor.getY();
+	}
+
+	public Actor getActor()
+	{
+	    return this.actor;
+	}
+
+	public double getFromX()
+	{
+	    return this.fromX;
+	}
+
+	public double getFromY()
+	{
+	    return this.fromY;
+	}
+
+	public double getToX()
+	{
+	    return this.toX;
+	}
+
+	public double getToY()
+	{
+	    return this.toY;
+	}
+
+	@Override
+	public String toString()
+	{
+	    return String.format("%d: %s moves to (%.1f, %.1f)", getTick(), this.actor.getName(), this.toX, this.toY);
+	}
+    } // end class ActorMoved
+
+    /**
+     * an actor ran out of health and left its army
+     */
+    public static final class ActorDied extends BattleEvent
+    {
+	private final Actor actor;
+	private final Army army;
+
+	ActorDied(long tick, Actor actor, Army army)
+	{
+	    super(tick);
+	    this.actor = actor;
+	    this.army = army;
+	}
+
+	public Actor getActor()
+	{
+	    return this.actor;
+	}
+
+	/**
+	 * @return the army the actor fought for
+	 */
+	public Army getArmy()
+	{
+	    return this.army;
+	}
+
+	@Override
+	public String toString()
+	{
+	    return String.format("%d: %s of %s dies", getTick(), this.actor.getName(), this.army.getName());
+	}
+    } // end class ActorDied
+
+    /**
+     * the last actor of an army died; published once per army and battle
+     */
+    public static final class ArmyDefeated extends BattleEvent
+    {
+	private final Army army;
+	private final Army winner;
+
+	ArmyDefeated(long tick, Army army, Army winner)
+	{
+	    super(tick);
+	    this.army = army;
+	    this.winner = winner;
+	}
+
+	/**
+	 * @return the army that has no actors left
+	 */
+	public Army getArmy()
+	{
+	    return this.army;
+	}
+
+	/**
+	 * @return the one army left standing once the battle is decided, or null
+	 * while other armies still fight, when an alliance won, or when the last
+	 * armies fell in the same tick
+	 */
+	public Army getWinner()
+	{
+	    return this.winner;
+	}
+
+	@Override
+	public String toString()
+	{
+	    return String.format("%d: %s is defeated", getTick(), this.army.getName());
+	}
+    } // end class ArmyDefeated
+}
@@ -0,0 +1,309 @@
+package engine;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <i>BattleEventPublisher</i> hands the <i>BattleEvent</i>s of a
+ * <i>BattleEngine</i> to any number of subscribers, such as the UI, a logger
+ * or a statistics aggregator, without ever holding up the engine.
+ * <p>
+ * It is a <i>Flow.Publisher</i> of the project's own <i>Flow</i>, the Java 8
+ * stand-in for <i>java.util.concurrent.Flow</i> with the same signatures, so
+ * a subscriber written against it needs only its imports changed once the
+ * project moves past Java 8. Each subscriber gets a bounded buffer
+ * and receives events on the <i>Executor</i> only as fast as it asks for them
+ * through <i>Subscription.request()</i>. When its buffer is full the oldest
+ * event is dropped and counted, so a slow subscriber loses events instead of
+ * stalling the simulation loop.
+ */
+public final class BattleEventPublisher implements Flow.Publisher<BattleEvent>
+{
+    /** events buffered per subscriber unless set otherwise, currently:{@value} */
+    public static final int DEFAULT_BUFFER_CAPACITY = 1024;
+    /** most events taken from a buffer under one lock while draining, currently:{@value} */
+    private static final int DRAIN_BATCH = 64;
+
+    private final Executor executor;
+    private final int bufferCapacity;
+    private final CopyOnWriteArrayList<BufferedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    /** events dropped because a buffer was full, over all subscribers ever */
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * builds a publisher that delivers on the common <i>ForkJoinPool</i>
+     */
+    public BattleEventPublisher()
+    {
+	this(ForkJoinPool.commonPool(), DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * @param executor runs the delivery to subscribers, never on the engine's
+     * thread unless the executor itself does so
+     * @param bufferCapacity events buffered per subscriber before the oldest is
+     * dropped
+     */
+    public BattleEventPublisher(Executor executor, int bufferCapacity)
+    {
+	if (bufferCapacity < 1)
+	    throw new IllegalArgumentException("buffer capacity must be at least 1");
+	this.executor = executor;
+	this.bufferCapacity = bufferCapacity;
+    }
+
+    /**
+     * @param subscriber subscriber to add; it is told about every event published
+     * after this call
+     * @throws NullPointerException if <i>subscriber</i> is null
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super BattleEvent> subscriber)
+    {
+	Objects.requireNonNull(subscriber, "subscriber");
+	BufferedSubscription subscription = new BufferedSubscription(subscriber);
+	if (this.closed)
+	{
+	    subscription.complete();
+	    return;
+	}
+	this.subscriptions.add(subscription);
+	subscription.schedule(); // onSubscribe() runs on the executor like everything else
+    }
+
+    /**
+     * @return true when at least one subscriber is listening; the engine does not
+     * even build events otherwise
+     */
+    public boolean hasSubscribers()
+    {
+	return !this.subscriptions.isEmpty();
+    }
+
+    /**
+     * @return number of subscribers listening
+     */
+    public int getSubscriberCount()
+    {
+	return this.subscriptions.size();
+    }
+
+    /**
+     * Offers an event to every subscriber. Never blocks: a subscriber whose buffer
+     * is full loses its oldest event.
+     *
+     * @param event the event
+     */
+    public void submit(BattleEvent event)
+    {
+	submit(Collections.singletonList(event));
+    }
+
+    /**
+     * Offers a batch of events, such as those of one tick, to every subscriber,
+     * taking each subscriber's lock only once. Never blocks: a subscriber whose
+     * buffer is full loses its oldest events.
+     *
+     * @param events the events, in the order they happened
+     */
+    public void submit(List<? extends BattleEvent> events)
+    {
+	if (this.closed || events.isEmpty())
+	    return;
+	for (BufferedSubscription subscription : this.subscriptions)
+	    subscription.offer(events);
+    }
+
+    /**
+     * @return events dropped so far across all subscribers because their
+     * buffers were full
+     */
+    public long getDroppedCount()
+    {
+	return this.dropped.sum();
+    }
+
+    /**
+     * stops accepting events; every subscriber receives what is still buffered
+     * and then <i>onComplete()</i>
+     */
+    public void close()
+    {
+	this.closed = true;
+	for (BufferedSubscription subscription : this.subscriptions)
+	    subscription.complete();
+    }
+
+    /**
+     * <i>BufferedSubscription</i> keeps the buffer and the outstanding demand of
+     * one subscriber and drains it on the executor. At most one drain per
+     * subscriber runs at a time, which keeps the calls to the subscriber serial.
+     */
+    private final class BufferedSubscription implements Flow.Subscription, Runnable
+    {
+	private final Flow.Subscriber<? super BattleEvent> subscriber;
+	/** guarded by this */
+	private final ArrayDeque<BattleEvent> buffer = new ArrayDeque<>();
+	/** guarded by this */
+	private long demand;
+	/** guarded by this */
+	private boolean subscribed;
+	/** guarded by this */
+	private boolean completing;
+	private volatile boolean cancelled;
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	private BufferedSubscription(Flow.Subscriber<? super BattleEvent> subscriber)
+	{
+	    this.subscriber = subscriber;
+	}
+
+	@Override
+	public void request(long n)
+	{
+	    if (n <= 0L)
+	    {
+		fail(new IllegalArgumentException("request must be positive, was " + n));
+		return;
+	    }
+	    synchronized (this)
+	    {
+		this.demand = this.demand + n < 0L ? Long.MAX_VALUE : this.demand + n; // saturate, as Flow allows
+	    }
+	    schedule();
+	}
+
+	@Override
+	public void cancel()
+	{
+	    this.cancelled = true;
+	    subscriptions.remove(this);
+	    synchronized (this)
+	    {
+		this.buffer.clear();
+	    }
+	}
+
+	private void offer(List<? extends BattleEvent> events)
+	{
+	    int overflow = 0;
+	    boolean ready;
+	    synchronized (this)
+	    {
+		for (int i = 0; i < events.size(); ++i)
+		{
+		    if (this.buffer.size() == bufferCapacity)
+		    {
+			this.buffer.pollFirst();
+			++overflow;
+		    }
+		    this.buffer.addLast(events.get(i));
+		}
+		ready = this.demand > 0L; // otherwise the next request() schedules the drain
+	    }
+	    if (overflow > 0)
+		dropped.add(overflow);
+	    if (ready)
+		schedule();
+	}
+
+	private void complete()
+	{
+	    synchronized (this)
+	    {
+		this.completing = true;
+	    }
+	    schedule();
+	}
+
+	private void schedule()
+	{
+	    if (!this.cancelled && !this.scheduled.get() && this.scheduled.compareAndSet(false, true))
+		executor.execute(this);
+	}
+
+	/**
+	 * delivers as many buffered events as the subscriber asked for
+	 */
+	@Override
+	public void run()
+	{
+	    try
+	    {
+		boolean first;
+		synchronized (this)
+		{
+		    first = !this.subscribed;
+		    this.subscribed = true;
+		}
+		if (first)
+		    this.subscriber.onSubscribe(this);
+		BattleEvent[] batch = new BattleEvent[DRAIN_BATCH];
+		while (!this.cancelled)
+		{
+		    int count = 0;
+		    boolean finished = false;
+		    synchronized (this)
+		    {
+			if (this.buffer.isEmpty() && this.completing)
+			{
+			    this.cancelled = true;
+			    subscriptions.remove(this);
+			    finished = true;
+			} else
+			{
+			    long allowed = Math.min(this.demand, DRAIN_BATCH);
+			    while (count < allowed && !this.buffer.isEmpty())
+				batch[count++] = this.buffer.pollFirst();
+			    if (this.demand != Long.MAX_VALUE)
+				this.demand -= count;
+			}
+		    }
+		    if (finished)
+		    {
+			this.subscriber.onComplete();
+			return;
+		    }
+		    if (count == 0)
+			break;
+		    for (int i = 0; i < count && !this.cancelled; ++i)
+		    {
+			this.subscriber.onNext(batch[i]);
+			batch[i] = null;
+		    }
+		} // end while
+	    } catch (RuntimeException e)
+	    {
+		fail(e);
+		return;
+	    } finally
+	    {
+		this.scheduled.set(false);
+	    }
+	    // an event or request may have arrived after the loop gave up and before
+	    // the flag was cleared
+	    synchronized (this)
+	    {
+		if (this.cancelled || !((this.demand > 0L && !this.buffer.isEmpty()) || this.completing))
+		    return;
+	    }
+	    schedule();
+	} // end run()
+
+	private void fail(Throwable throwable)
+	{
+	    if (this.cancelled)
+		return;
+	    cancel();
+	    this.subscriber.onError(throwable);
+	}
+    } // end class BufferedSubscription
+}
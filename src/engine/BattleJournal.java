@@ -0,0 +1,451 @@
+package engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import actor.Actor;
+import army.Army;
+import army.BattlefieldFile;
+
+/**
+ * <i>BattleJournal</i> makes a long battle survive a crash without rewriting
+ * the whole battlefield every few seconds. Each tick appends only what changed
+ * (moves, health after damage, deaths) to a journal file, so the cost of a tick
+ * is proportional to the number of changes, not to the size of the armies.
+ * Every <i>checkpointInterval</i> ticks the battlefield is written as a
+ * compacted <i>BattlefieldFile</i> checkpoint and a new journal is started.
+ * <i>recover()</i> restores the latest checkpoint and replays the journal
+ * written after it.
+ * <p>
+ * The directory holds <i>checkpoint-N.bin</i> and <i>journal-N.log</i> for the
+ * latest checkpoint N only; older ones are deleted once a newer checkpoint is on
+ * disk. A journal starts with a header (<i>MAGIC</i> as an int,
+ * <i>VERSION</i> as a short, then the tick count and elapsed time of the
+ * checkpoint) followed by one block per tick that changed anything: payload
+ * length (int), CRC-32 of the payload (int), then the payload, which is the tick
+ * count (long), the elapsed time (double) and the records. A record is a kind
+ * byte, an army byte and the index of the actor in the checkpoint (int),
+ * followed by x and y for a move or the health for damage. A block cut short by
+ * a crash fails its length or CRC check and is dropped together with anything
+ * after it.
+ * <p>
+ * The journal records the state of the actors, not the plans of the
+ * <i>BattleEngine</i> (where a unit is walking to, how long it still waits), so
+ * an engine rebuilt after recovery carries on from the same state but
+ * decides afresh.
+ */
+public final class BattleJournal implements Closeable
+{
+    /** first four bytes of every journal ("MEJL"), currently:{@value} */
+    public static final int MAGIC = 0x4D454A4C;
+    /** version of the journal written by this class, currently:{@value} */
+    public static final short VERSION = 1;
+    /** ticks between checkpoints unless set otherwise (10 s), currently:{@value} */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 600L;
+    private static final byte MOVE = 1;
+    private static final byte DAMAGE = 2;
+    private static final byte DEATH = 3;
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 8;
+    /** length and CRC in front of each block */
+    private static final int BLOCK_PREFIX = 4 + 4;
+    private static final int NO_SLOT = -1;
+
+    private final Path directory;
+    private final Army[] armies;
+    /** per army: index in the latest checkpoint of each store id */
+    private final int[][] slots;
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private long sequence;
+    private long checkpointTick;
+    private FileChannel channel;
+    /** block of the tick in progress; its payload starts after the prefix */
+    private ByteBuffer block = newBuffer(4096);
+    private int records;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * <i>Recovery</i> tells where a recovered battle stands
+     */
+    public static final class Recovery
+    {
+	private final long tickCount;
+	private final double elapsedTime;
+	private final int ticksReplayed;
+
+	private Recovery(long tickCount, double elapsedTime, int ticksReplayed)
+	{
+	    this.tickCount = tickCount;
+	    this.elapsedTime = elapsedTime;
+	    this.ticksReplayed = ticksReplayed;
+	}
+
+	/**
+	 * @return ticks the battle had run when its last journaled tick ended
+	 */
+	public long getTickCount()
+	{
+	    return this.tickCount;
+	}
+
+	/**
+	 * @return simulated seconds the battle had run at that point
+	 */
+	public double getElapsedTime()
+	{
+	    return this.elapsedTime;
+	}
+
+	/**
+	 * @return journaled ticks replayed on top of the checkpoint
+	 */
+	public int getTicksReplayed()
+	{
+	    return this.ticksReplayed;
+	}
+    } // end class Recovery
+
+    /**
+     * starts journaling two armies into <i>directory</i>, beginning with a
+     * checkpoint of their current state
+     *
+     * @param directory directory for checkpoints and journals; created if needed
+     * @param forcesOfLight first army
+     * @param forcesOfDarkness second army
+     * @param tickCount ticks the battle has already run
+     * @param elapsedTime simulated seconds the battle has already run
+     * @throws IOException if the first checkpoint cannot be written
+     */
+    public BattleJournal(Path directory, Army forcesOfLight, Army forcesOfDarkness, long tickCount,
+	    double elapsedTime) throws IOException
+    {
+	this.directory = Files.createDirectories(directory);
+	this.armies = new Army[] { forcesOfLight, forcesOfDarkness };
+	this.slots = new int[this.armies.length][];
+	this.sequence = latestSequence(directory);
+	checkpoint(tickCount, elapsedTime);
+    }
+
+    /**
+     * @param checkpointInterval ticks between two checkpoints; longer intervals
+     * write less but replay more on recovery
+     */
+    public void setCheckpointInterval(long checkpointInterval)
+    {
+	if (checkpointInterval < 1L)
+	    throw new IllegalArgumentException("checkpoint interval must be at least one tick");
+	this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * restores the two armies from the latest checkpoint in <i>directory</i> and
+     * replays the journal written after it
+     *
+     * @param directory directory a <i>BattleJournal</i> wrote to
+     * @param forcesOfLight first army, emptied and refilled
+     * @param forcesOfDarkness second army, emptied and refilled
+     * @return where the recovered battle stands, or null when there is nothing
+     * to recover
+     * @throws IOException if the checkpoint cannot be read
+     */
+    public static Recovery recover(Path directory, Army forcesOfLight, Army forcesOfDarkness) throws IOException
+    {
+	long sequence = latestSequence(directory);
+	if (sequence < 0L)
+	    return null;
+	Army[] armies = { forcesOfLight, forcesOfDarkness };
+	BattlefieldFile.read(checkpointPath(directory, sequence), armies);
+	Actor[][] bySlot = new Actor[armies.length][];
+	for (int i = 0; i < armies.length; ++i)
+	    bySlot[i] = armies[i].getCollectionActors().toArray(new Actor[0]);
+
+	Path journalPath = journalPath(directory, sequence);
+	if (!Files.exists(journalPath))
+	    return new Recovery(0L, 0.0, 0);
+	try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.READ))
+	{
+	    ByteBuffer journal = newBuffer((int) channel.size());
+	    while (journal.hasRemaining() && channel.read(journal) >= 0)
+		continue;
+	    journal.flip();
+	    if (journal.remaining() < HEADER_SIZE || journal.getInt() != MAGIC)
+		throw new IOException(journalPath + " is not a battle journal");
+	    short version = journal.getShort();
+	    if (version < 1 || version > VERSION)
+		throw new IOException(journalPath + " has unsupported version " + version);
+	    long tickCount = journal.getLong();
+	    double elapsedTime = journal.getDouble();
+	    int ticksReplayed = 0;
+	    CRC32 crc = new CRC32();
+	    while (journal.remaining() >= BLOCK_PREFIX)
+	    {
+		int length = journal.getInt();
+		int checksum = journal.getInt();
+		if (length < 16 || length > journal.remaining())
+		    break; // torn tail
+		ByteBuffer payload = journal.slice().order(ByteOrder.LITTLE_ENDIAN);
+		payload.limit(length);
+		crc.reset();
+		crc.update(payload.duplicate());
+		if ((int) crc.getValue() != checksum)
+		    break; // torn tail
+		journal.position(journal.position() + length);
+		tickCount = payload.getLong();
+		elapsedTime = payload.getDouble();
+		replay(payload, armies, bySlot);
+		++ticksReplayed;
+	    }
+	    for (Army army : armies)
+		army.dropDeadActors();
+	    return new Recovery(tickCount, elapsedTime, ticksReplayed);
+	}
+    } // end recover()
+
+    /**
+     * records that an actor moved; its current location is journaled
+     */
+    void recordMove(Actor actor)
+    {
+	int slot = slotOf(actor);
+	if (slot == NO_SLOT)
+	    return;
+	ByteBuffer buffer = reserve(1 + 1 + 4 + 8 + 8);
+	buffer.put(MOVE).put((byte) armyIndex(actor)).putInt(slot);
+	buffer.putDouble(actor.getX()).putDouble(actor.getY());
+	++this.records;
+    }
+
+    /**
+     * records that an actor took damage; its current health is journaled
+     */
+    void recordDamage(Actor actor)
+    {
+	int slot = slotOf(actor);
+	if (slot == NO_SLOT)
+	    return;
+	ByteBuffer buffer = reserve(1 + 1 + 4 + 8);
+	buffer.put(DAMAGE).put((byte) armyIndex(actor)).putInt(slot).putDouble(actor.getHealth());
+	++this.records;
+    }
+
+    /**
+     * records that an actor died and left its army
+     */
+    void recordDeath(Actor actor)
+    {
+	int slot = slotOf(actor);
+	if (slot == NO_SLOT)
+	    return;
+	reserve(1 + 1 + 4).put(DEATH).put((byte) armyIndex(actor)).putInt(slot);
+	++this.records;
+    }
+
+    /**
+     * appends the block of the tick that just ended, if anything changed, and
+     * writes a checkpoint when one is due
+     *
+     * @param tickCount ticks run including this one
+     * @param elapsedTime simulated seconds run including this tick
+     */
+    void endTick(long tickCount, double elapsedTime)
+    {
+	try
+	{
+	    if (this.records > 0)
+	    {
+		int end = this.block.position();
+		this.block.putLong(BLOCK_PREFIX, tickCount);
+		this.block.putDouble(BLOCK_PREFIX + 8, elapsedTime);
+		ByteBuffer payload = this.block.duplicate();
+		payload.position(BLOCK_PREFIX).limit(end);
+		this.crc.reset();
+		this.crc.update(payload);
+		this.block.putInt(0, end - BLOCK_PREFIX);
+		this.block.putInt(4, (int) this.crc.getValue());
+		this.block.flip();
+		while (this.block.hasRemaining())
+		    this.channel.write(this.block);
+	    }
+	    startBlock();
+	    if (tickCount - this.checkpointTick >= this.checkpointInterval)
+		checkpoint(tickCount, elapsedTime);
+	} catch (IOException e)
+	{
+	    throw new UncheckedIOException(e);
+	}
+    } // end endTick()
+
+    /**
+     * forces the journal to disk and closes it; the files stay for recovery
+     */
+    @Override
+    public void close() throws IOException
+    {
+	if (this.channel != null)
+	{
+	    this.channel.force(false);
+	    this.channel.close();
+	    this.channel = null;
+	}
+    }
+
+    /**
+     * Writes the armies to a new checkpoint, renamed into place only once it is
+     * complete, starts the journal that follows it and deletes the previous
+     * pair. Dead actors are not in a checkpoint, so each one is compacted.
+     */
+    private void checkpoint(long tickCount, double elapsedTime) throws IOException
+    {
+	long next = this.sequence + 1L;
+	Path temporary = this.directory.resolve("checkpoint-" + next + ".tmp");
+	BattlefieldFile.write(temporary, this.armies);
+	try (FileChannel written = FileChannel.open(temporary, StandardOpenOption.WRITE))
+	{
+	    written.force(true);
+	}
+	for (int i = 0; i < this.armies.length; ++i)
+	{
+	    List<Actor> actors = this.armies[i].getCollectionActors();
+	    int[] armySlots = new int[this.armies[i].getStore().size()];
+	    Arrays.fill(armySlots, NO_SLOT);
+	    for (int slot = 0; slot < actors.size(); ++slot)
+		armySlots[actors.get(slot).getId()] = slot;
+	    this.slots[i] = armySlots;
+	}
+
+	close();
+	Path journalPath = journalPath(this.directory, next);
+	this.channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+		StandardOpenOption.TRUNCATE_EXISTING);
+	ByteBuffer header = newBuffer(HEADER_SIZE);
+	header.putInt(MAGIC).putShort(VERSION).putLong(tickCount).putDouble(elapsedTime).flip();
+	while (header.hasRemaining())
+	    this.channel.write(header);
+	this.channel.force(false);
+	// the new pair is complete once the checkpoint has its final name
+	Files.move(temporary, checkpointPath(this.directory, next), StandardCopyOption.ATOMIC_MOVE);
+
+	Files.deleteIfExists(checkpointPath(this.directory, this.sequence));
+	Files.deleteIfExists(journalPath(this.directory, this.sequence));
+	this.sequence = next;
+	this.checkpointTick = tickCount;
+	startBlock();
+    } // end checkpoint()
+
+    private void startBlock()
+    {
+	this.block.clear();
+	this.block.position(BLOCK_PREFIX + 8 + 8); // prefix, tick count and elapsed time are filled in at the end
+	this.records = 0;
+    }
+
+    private ByteBuffer reserve(int bytes)
+    {
+	if (this.block.remaining() < bytes)
+	{
+	    ByteBuffer larger = newBuffer(Math.max(this.block.capacity() * 2, this.block.position() + bytes));
+	    this.block.flip();
+	    larger.put(this.block);
+	    this.block = larger;
+	}
+	return this.block;
+    }
+
+    private int armyIndex(Actor actor)
+    {
+	return actor.getArmyAllegiance() == this.armies[0] ? 0 : 1;
+    }
+
+    /**
+     * @return index of the actor in the latest checkpoint, or <i>NO_SLOT</i> for
+     * actors that joined after it
+     */
+    private int slotOf(Actor actor)
+    {
+	Army army = actor.getArmyAllegiance();
+	if (army != this.armies[0] && army != this.armies[1])
+	    return NO_SLOT;
+	int[] armySlots = this.slots[armyIndex(actor)];
+	int id = actor.getId();
+	return id < armySlots.length && actor.getStore() == army.getStore() ? armySlots[id] : NO_SLOT;
+    }
+
+    private static void replay(ByteBuffer payload, Army[] armies, Actor[][] bySlot) throws IOException
+    {
+	while (payload.hasRemaining())
+	{
+	    byte kind = payload.get();
+	    int army = payload.get();
+	    int slot = payload.getInt();
+	    if (army < 0 || army >= armies.length || slot < 0 || slot >= bySlot[army].length)
+		throw new IOException("journal refers to unknown actor " + slot + " of army " + army);
+	    Actor actor = bySlot[army][slot];
+	    switch (kind)
+	    {
+	    case MOVE:
+		actor.setLocation(payload.getDouble(), payload.getDouble());
+		break;
+	    case DAMAGE:
+		actor.setHealth(payload.getDouble());
+		break;
+	    case DEATH:
+		armies[army].removeNowDeadActor(actor);
+		break;
+	    default:
+		throw new IOException("unknown journal record " + kind);
+	    }
+	} // end while
+    } // end replay()
+
+    /**
+     * @return the highest checkpoint sequence in the directory, or -1 if there is
+     * none
+     */
+    private static long latestSequence(Path directory) throws IOException
+    {
+	long latest = -1L;
+	if (!Files.isDirectory(directory))
+	    return latest;
+	try (DirectoryStream<Path> checkpoints = Files.newDirectoryStream(directory, "checkpoint-*.bin"))
+	{
+	    for (Path checkpoint : checkpoints)
+	    {
+		String name = checkpoint.getFileName().toString();
+		try
+		{
+		    latest = Math.max(latest, Long.parseLong(name.substring(11, name.length() - 4)));
+		} catch (NumberFormatException e)
+		{
+		    // not one of ours
+		}
+	    }
+	}
+	return latest;
+    }
+
+    private static Path checkpointPath(Path directory, long sequence)
+    {
+	return directory.resolve("checkpoint-" + sequence + ".bin");
+    }
+
+    private static Path journalPath(Path directory, long sequence)
+    {
+	return directory.resolve("journal-" + sequence + ".log");
+    }
+
+    private static ByteBuffer newBuffer(int capacity)
+    {
+	return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
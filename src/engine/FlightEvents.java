@@ -0,0 +1,161 @@
+package engine;
+
+/**
+ * <i>FlightEvents</i> hands out the JDK Flight Recorder events of the
+ * simulator, so a recording shows battles, ticks and their phases, combat,
+ * spatial index rebuilds and saves instead of anonymous JavaFX and lambda
+ * frames. They all sit in the "Hobbit Battlefield" category of JDK Mission
+ * Control.
+ * <p>
+ * Every event is written the same way: built and begun before the work, then
+ * filled in and committed only if <i>shouldCommit()</i> says the recording
+ * wants it. With no recording running that is a single check.
+ * <p>
+ * The project builds against Java 8, which has no <i>jdk.jfr</i>, so this
+ * class and the interfaces below name nothing of it. The events themselves are
+ * <i>JfrFlightEvents</i> in the <i>jfr</i> source folder, which needs a JDK
+ * with <i>jdk.jfr</i> (8u262, 11 or later) and is compiled on top of the
+ * rest: <code>javac -cp bin -d bin jfr/engine/*.java</code>. They are loaded
+ * through reflection when both they and <i>jdk.jfr</i> are there; otherwise
+ * <i>AVAILABLE</i> is false and every method below returns null, so callers
+ * build no event at all.
+ */
+public final class FlightEvents
+{
+    /** class holding the events, loaded only if present, currently:{@value} */
+    private static final String EVENTS_CLASS = "engine.JfrFlightEvents";
+    private static final Factory FACTORY = loadFactory();
+    /** true when the events were found and this runtime has the flight recorder */
+    public static final boolean AVAILABLE = FACTORY != null;
+
+    private FlightEvents()
+    {
+    }
+
+    /**
+     * one event of the recording, as <i>jdk.jfr.Event</i> has it
+     */
+    public interface Event
+    {
+	void begin();
+
+	boolean shouldCommit();
+
+	void commit();
+    }
+
+    /** an engine ran the first tick of its battle; only the first two factions are named */
+    public interface BattleStarted extends Event
+    {
+	void set(String firstArmy, int firstArmyActors, String secondArmy, int secondArmyActors, int armies,
+		long seed);
+    }
+
+    /** no army left standing has an enemy left standing */
+    public interface BattleEnded extends Event
+    {
+	void set(String winner, int survivors, long ticks, double simulatedSeconds);
+    }
+
+    /** one fixed time step of the battle */
+    public interface Tick extends Event
+    {
+	void set(long tick, int units, int partitions, int nearestQueries, int targetCacheHits, int combatRounds,
+		int deaths);
+    }
+
+    /** one phase (read, move or merge) of a tick run over one partition of the units */
+    public interface PartitionPhase extends Event
+    {
+	void set(String phase, long tick, int partition, int units);
+    }
+
+    /** damage of the combat rounds one partition rolled, dealt in the merge */
+    public interface CombatRounds extends Event
+    {
+	void set(long tick, int partition, int rounds);
+    }
+
+    /** the spatial grid of an army was filled from scratch, on populate or restore */
+    public interface SpatialIndexRebuild extends Event
+    {
+	void set(String army, int actors, String cause);
+    }
+
+    /** a battlefield was saved to or restored from a file */
+    public interface Persistence extends Event
+    {
+	void set(String operation, String path, int armies, int actors, long bytes);
+    }
+
+    /**
+     * builds the events; implemented by <i>JfrFlightEvents</i>
+     */
+    public interface Factory
+    {
+	BattleStarted battleStarted();
+
+	BattleEnded battleEnded();
+
+	Tick tick();
+
+	PartitionPhase partitionPhase();
+
+	CombatRounds combatRounds();
+
+	SpatialIndexRebuild spatialIndexRebuild();
+
+	Persistence persistence();
+    }
+
+    /**
+     * @return the events, or null when they were left out of the build or the
+     * runtime has no flight recorder
+     */
+    private static Factory loadFactory()
+    {
+	try
+	{
+	    Class.forName("jdk.jfr.Event", false, FlightEvents.class.getClassLoader());
+	    return (Factory) Class.forName(EVENTS_CLASS).getDeclaredConstructor().newInstance();
+	} catch (ReflectiveOperationException | LinkageError e)
+	{
+	    return null;
+	}
+    }
+
+    public static BattleStarted battleStarted()
+    {
+	return FACTORY != null ? FACTORY.battleStarted() : null;
+    }
+
+    public static BattleEnded battleEnded()
+    {
+	return FACTORY != null ? FACTORY.battleEnded() : null;
+    }
+
+    public static Tick tick()
+    {
+	return FACTORY != null ? FACTORY.tick() : null;
+    }
+
+    public static PartitionPhase partitionPhase()
+    {
+	return FACTORY != null ? FACTORY.partitionPhase() : null;
+    }
+
+    public static CombatRounds combatRounds()
+    {
+	return FACTORY != null ? FACTORY.combatRounds() : null;
+    }
+
+    public static SpatialIndexRebuild spatialIndexRebuild()
+    {
+	return FACTORY != null ? FACTORY.spatialIndexRebuild() : null;
+    }
+
+    public static Persistence persistence()
+    {
+	return FACTORY != null ? FACTORY.persistence() : null;
+    }
+}
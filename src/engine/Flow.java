@@ -0,0 +1,84 @@
+package engine;
+
+/**
+ * <i>Flow</i> is a stand-in for <i>java.util.concurrent.Flow</i>, which only
+ * exists from Java 9 on while the project targets Java 8. Its interfaces keep
+ * the names, type parameters and method signatures of the JDK ones exactly,
+ * so code written against them moves to the JDK by changing the import of
+ * <i>engine.Flow</i> to <i>java.util.concurrent.Flow</i> and nothing else.
+ * The contracts are those of the JDK interfaces, too: the Reactive Streams
+ * rules of demand, serial signals and a single terminal call.
+ */
+public final class Flow
+{
+    private Flow()
+    {
+    }
+
+    /**
+     * a source of items for any number of subscribers, as
+     * <i>Flow.Publisher</i>
+     */
+    @FunctionalInterface
+    public static interface Publisher<T>
+    {
+	/**
+	 * adds a subscriber, which first receives <i>onSubscribe()</i>
+	 *
+	 * @param subscriber the subscriber
+	 * @throws NullPointerException if <i>subscriber</i> is null
+	 */
+	public void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * receives the items of a publisher, as <i>Flow.Subscriber</i>. Calls are
+     * made one at a time, never concurrently.
+     */
+    public static interface Subscriber<T>
+    {
+	/**
+	 * called once, before any other method; nothing is delivered until the
+	 * subscriber calls <i>subscription.request()</i>
+	 */
+	public void onSubscribe(Subscription subscription);
+
+	public void onNext(T item);
+
+	/**
+	 * called instead of any further <i>onNext()</i> when delivery failed, for
+	 * example because <i>onNext()</i> threw
+	 */
+	public void onError(Throwable throwable);
+
+	/**
+	 * called once the publisher is closed and every item was delivered
+	 */
+	public void onComplete();
+    }
+
+    /**
+     * the link between a publisher and one subscriber, as
+     * <i>Flow.Subscription</i>
+     */
+    public static interface Subscription
+    {
+	/**
+	 * @param n number of further items the subscriber is ready for; must be
+	 * positive
+	 */
+	public void request(long n);
+
+	/**
+	 * stops delivery; items already on their way may still arrive
+	 */
+	public void cancel();
+    }
+
+    /**
+     * both a subscriber and a publisher, as <i>Flow.Processor</i>
+     */
+    public static interface Processor<T, R> extends Subscriber<T>, Publisher<R>
+    {
+    }
+}
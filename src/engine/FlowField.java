@@ -0,0 +1,214 @@
+package engine;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <i>FlowField</i> gives the cells of a <i>TerrainMap</i> the cost of the
+ * cheapest walk from each of them into one region of the map, so that an actor
+ * anywhere finds its way into that region by stepping to whichever of its
+ * eight neighbouring cells costs least.
+ * <p>
+ * The costs are found with Dijkstra's algorithm, starting from every cell of
+ * the region at once, and incrementally: a cell is only worked out when an
+ * actor asks about it, and the search goes on from where it stopped, cheapest
+ * cells first. A target that moves into the next region needs a new field,
+ * but only the part of it between the actors and that region is ever worked
+ * out.
+ * <p>
+ * A cell is settled once and never changes after, so a settled cell is read
+ * without taking the lock; only working out more of the field is done under
+ * it. The costs are the same whichever thread settles them, which keeps a
+ * battle on terrain the same whatever the number of threads.
+ */
+public final class FlowField
+{
+    /** columns and rows from a cell to its eight neighbours */
+    private static final int[] NEIGHBOUR_COLUMNS = { -1, 0, 1, -1, 1, -1, 0, 1 };
+    private static final int[] NEIGHBOUR_ROWS = { -1, -1, -1, 0, 0, 1, 1, 1 };
+    private static final float DIAGONAL = (float) Math.sqrt(2.0);
+
+    private final TerrainMap terrain;
+    private final int region;
+    /** cost of the cheapest walk from each cell into the region once settled, infinite until then */
+    private final float[] costs;
+    /** cheapest walk found so far from each cell not yet settled */
+    private final float[] tentative;
+    /**
+     * cells waiting to be settled as a binary heap, each the bits of its
+     * tentative cost above its index, so the cheapest comes first and ties go to
+     * the lowest index
+     */
+    private long[] heap = new long[64];
+    private int heapSize;
+    private int settledCells;
+    /** guards the search; settled cells are read without it */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    FlowField(TerrainMap terrain, int region)
+    {
+	this.terrain = terrain;
+	this.region = region;
+	int cells = terrain.getColumns() * terrain.getRows();
+	this.costs = new float[cells];
+	this.tentative = new float[cells];
+	Arrays.fill(this.costs, Float.POSITIVE_INFINITY);
+	Arrays.fill(this.tentative, Float.POSITIVE_INFINITY);
+	for (int cell = 0; cell < cells; ++cell)
+	{
+	    if (terrain.regionOf(cell) == region)
+		offer(cell, 0.0f);
+	}
+    }
+
+    /**
+     * @return the region of the map this field leads into
+     */
+    public int getRegion()
+    {
+	return this.region;
+    }
+
+    /**
+     * @return cells worked out so far
+     */
+    public int getSettledCells()
+    {
+	this.lock.lock();
+	try
+	{
+	    return this.settledCells;
+	} finally
+	{
+	    this.lock.unlock();
+	}
+    }
+
+    /**
+     * @return the cost of the cheapest walk from a cell into the region, working
+     * it out first when nobody asked about the cell before
+     */
+    float cost(int cell)
+    {
+	float cost = this.costs[cell];
+	if (cost != Float.POSITIVE_INFINITY)
+	    return cost;
+	this.lock.lock();
+	try
+	{
+	    while (this.costs[cell] == Float.POSITIVE_INFINITY && this.heapSize > 0)
+		settleNext();
+	    return this.costs[cell];
+	} finally
+	{
+	    this.lock.unlock();
+	}
+    }
+
+    /**
+     * @return the neighbour of a cell to step to on the cheapest walk into the
+     * region, or the cell itself once inside it
+     */
+    int next(int cell)
+    {
+	int columns = this.terrain.getColumns();
+	int column = cell % columns;
+	int row = cell / columns;
+	int best = cell;
+	float bestCost = cost(cell);
+	for (int i = 0; i < NEIGHBOUR_COLUMNS.length; ++i)
+	{
+	    int neighbourColumn = column + NEIGHBOUR_COLUMNS[i];
+	    int neighbourRow = row + NEIGHBOUR_ROWS[i];
+	    if (neighbourColumn < 0 || neighbourColumn >= columns || neighbourRow < 0
+		    || neighbourRow >= this.terrain.getRows())
+		continue;
+	    int neighbour = neighbourRow * columns + neighbourColumn;
+	    float neighbourCost = cost(neighbour);
+	    if (neighbourCost < bestCost)
+	    {
+		best = neighbour;
+		bestCost = neighbourCost;
+	    }
+	}
+	return best;
+    } // end next()
+
+    /**
+     * settles the cheapest cell waiting and offers its neighbours the walk
+     * through it
+     */
+    private void settleNext()
+    {
+	long head = this.heap[0];
+	this.heap[0] = this.heap[--this.heapSize];
+	siftDown(0);
+	int cell = (int) head;
+	if (this.costs[cell] != Float.POSITIVE_INFINITY)
+	    return; // settled already, from a cheaper entry
+	float cost = Float.intBitsToFloat((int) (head >>> 32));
+	this.costs[cell] = cost;
+	++this.settledCells;
+	int columns = this.terrain.getColumns();
+	int column = cell % columns;
+	int row = cell / columns;
+	float cellCost = this.terrain.cost(cell);
+	for (int i = 0; i < NEIGHBOUR_COLUMNS.length; ++i)
+	{
+	    int neighbourColumn = column + NEIGHBOUR_COLUMNS[i];
+	    int neighbourRow = row + NEIGHBOUR_ROWS[i];
+	    if (neighbourColumn < 0 || neighbourColumn >= columns || neighbourRow < 0
+		    || neighbourRow >= this.terrain.getRows())
+		continue;
+	    int neighbour = neighbourRow * columns + neighbourColumn;
+	    if (this.costs[neighbour] != Float.POSITIVE_INFINITY)
+		continue;
+	    float step = NEIGHBOUR_COLUMNS[i] != 0 && NEIGHBOUR_ROWS[i] != 0 ? DIAGONAL : 1.0f;
+	    offer(neighbour, cost + step * (float) TerrainMap.CELL_SIZE * (cellCost + this.terrain.cost(neighbour))
+		    / 2.0f);
+	}
+    } // end settleNext()
+
+    private void offer(int cell, float cost)
+    {
+	if (cost >= this.tentative[cell])
+	    return;
+	this.tentative[cell] = cost;
+	if (this.heapSize == this.heap.length)
+	    this.heap = Arrays.copyOf(this.heap, 2 * this.heap.length);
+	this.heap[this.heapSize] = (long) Float.floatToIntBits(cost) << 32 | cell;
+	siftUp(this.heapSize++);
+    }
+
+    private void siftUp(int index)
+    {
+	long entry = this.heap[index];
+	while (index > 0)
+	{
+	    int parent = (index - 1) >>> 1;
+	    if (this.heap[parent] <= entry)
+		break;
+	    this.heap[index] = this.heap[parent];
+	    index = parent;
+	}
+	this.heap[index] = entry;
+    }
+
+    private void siftDown(int index)
+    {
+	long entry = this.heap[index];
+	while (true)
+	{
+	    int child = 2 * index + 1;
+	    if (child >= this.heapSize)
+		break;
+	    if (child + 1 < this.heapSize && this.heap[child + 1] < this.heap[child])
+		++child;
+	    if (entry <= this.heap[child])
+		break;
+	    this.heap[index] = this.heap[child];
+	    index = child;
+	}
+	this.heap[index] = entry;
+    }
+}
@@ -0,0 +1,120 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import actor.Actor;
+import util.BattleRandom;
+
+/**
+ * <i>Partition</i> is a fixed slice of the units of a <i>BattleEngine</i>
+ * together with the writes its read phase produced. The slices depend only on
+ * the number of units, never on the number of threads, and the writes are
+ * merged in partition order, which is what keeps a tick bit-identical however
+ * many workers run it.
+ */
+final class Partition
+{
+    /** position of the slice among the partitions of the tick */
+    int index;
+    /** first unit of the slice */
+    int from;
+    /** one past the last unit of the slice */
+    int to;
+    /** stream for this partition in this tick; never shared with another worker */
+    BattleRandom random;
+    /** true once any unit of the slice changed place or ran out of health */
+    boolean progressed;
+    /** units that moved during the read phase, in unit order */
+    final ArrayList<Unit> movers = new ArrayList<>();
+    /** units found out of health during the read phase, in unit order */
+    final ArrayList<Unit> dying = new ArrayList<>();
+    /** full nearest-opponent searches made by the read phase, for the metrics */
+    int nearestQueries;
+    /** decisions the read phase took against a cached target, for the metrics */
+    int targetCacheHits;
+    private Actor[] hitTargets = new Actor[16];
+    private double[] hitDamage = new double[16];
+    private int hits;
+
+    /**
+     * forgets the writes of the previous tick and takes a new slice
+     */
+    void reset(int index, int from, int to, BattleRandom random)
+    {
+	this.index = index;
+	this.from = from;
+	this.to = to;
+	this.random = random;
+	this.progressed = false;
+	this.movers.clear();
+	this.dying.clear();
+	this.nearestQueries = 0;
+	this.targetCacheHits = 0;
+	Arrays.fill(this.hitTargets, 0, this.hits, null);
+	this.hits = 0;
+    }
+
+    /**
+     * records damage to be dealt to <i>target</i> in the write phase. A combat
+     * round records two hits in a row, the attacker's own first, which is what
+     * <i>addRounds()</i> relies on.
+     */
+    void addHit(Actor target, double damage)
+    {
+	if (this.hits == this.hitTargets.length)
+	{
+	    this.hitTargets = Arrays.copyOf(this.hitTargets, this.hits * 2);
+	    this.hitDamage = Arrays.copyOf(this.hitDamage, this.hits * 2);
+	}
+	this.hitTargets[this.hits] = target;
+	this.hitDamage[this.hits] = damage;
+	++this.hits;
+    }
+
+    /**
+     * deals every recorded hit, in the order it was recorded
+     *
+     * @param journal journal told about every change of health, or null
+     * @return true when at least one hit changed the health of its target
+     */
+    boolean applyHits(BattleJournal journal)
+    {
+	boolean changed = false;
+	for (int i = 0; i < this.hits; ++i)
+	{
+	    Actor target = this.hitTargets[i];
+	    double healthBefore = target.getHealth();
+	    target.takeDamage(this.hitDamage[i]);
+	    if (target.getHealth() != healthBefore)
+	    {
+		changed = true;
+		if (journal != null)
+		    journal.recordDamage(target);
+	    }
+	}
+	return changed;
+    }
+
+    /**
+     * @return combat rounds fought by the read phase, two hits each
+     */
+    int getRoundCount()
+    {
+	return this.hits / 2;
+    }
+
+    /**
+     * adds one <i>CombatRound</i> for every pair of hits dealt by
+     * <i>applyHits()</i>
+     *
+     * @param events events of the tick being merged
+     * @param tick number of the tick being merged
+     */
+    void addRounds(List<BattleEvent> events, long tick)
+    {
+	for (int i = 0; i + 1 < this.hits; i += 2)
+	    events.add(new BattleEvent.CombatRound(tick, this.hitTargets[i], this.hitTargets[i + 1]));
+    }
+}
@@ -0,0 +1,237 @@
+package engine;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+import army.Army;
+import army.BattlefieldFile;
+import util.BattleRandom;
+
+/**
+ * <i>ReplayPlayer</i> plays back a battle recorded by a <i>ReplayRecorder</i>.
+ * It loads the starting armies and re-runs the <i>BattleEngine</i> from the
+ * recorded seed, at any speed. Seeking runs the ticks it skips headless, so no
+ * frame is drawn for them; seeking backwards starts over from the beginning.
+ * <p>
+ * Every <i>ReplayRecorder.DIGEST_INTERVAL</i> ticks the battle is checked
+ * against the recorded digest. The first tick at which they differ is kept in
+ * <i>getDivergedTick()</i>; the replay keeps playing, but no longer shows what
+ * really happened.
+ */
+public final class ReplayPlayer
+{
+    private final Path path;
+    private final Army forcesOfLight;
+    private final Army forcesOfDarkness;
+    private final ForkJoinPool pool;
+    private final long seed;
+    private final int digestInterval;
+    private final long length;
+    private final long[] digests;
+    private BattleEngine engine;
+    private double speed = 1.0;
+    /** real time times speed that has not yet filled a whole tick */
+    private double accumulator;
+    private long divergedTick = -1L;
+    /** ground the recorded battle was fought on, or null */
+    private TerrainMap terrain;
+
+    /**
+     * opens a replay and loads its starting armies
+     *
+     * @param path replay file
+     * @param forcesOfLight army to play the first recorded army in
+     * @param forcesOfDarkness army to play the second recorded army in
+     * @param pool workers that run the partitions of each tick
+     * @throws IOException if the file cannot be read or is not a replay this
+     * version can play
+     */
+    public ReplayPlayer(Path path, Army forcesOfLight, Army forcesOfDarkness, ForkJoinPool pool) throws IOException
+    {
+	this.path = path;
+	this.forcesOfLight = forcesOfLight;
+	this.forcesOfDarkness = forcesOfDarkness;
+	this.pool = pool;
+	try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+	{
+	    ByteBuffer header = read(channel, 0L, ReplayRecorder.HEADER_SIZE);
+	    if (header.getInt() != ReplayRecorder.MAGIC)
+		throw new IOException(path + " is not a replay");
+	    short version = header.getShort();
+	    if (version < 1 || version > ReplayRecorder.VERSION)
+		throw new IOException(path + " has unsupported version " + version);
+	    header.getShort();
+	    this.seed = header.getLong();
+	    this.digestInterval = header.getInt();
+	    long trailerOffset = read(channel, channel.size() - 8L, 8).getLong();
+	    if (trailerOffset < ReplayRecorder.HEADER_SIZE || trailerOffset > channel.size() - 20L)
+		throw new IOException(path + " has no trailer; was the recording closed?");
+	    ByteBuffer trailer = read(channel, trailerOffset, 12);
+	    this.length = trailer.getLong();
+	    int digestCount = trailer.getInt();
+	    if (digestCount < 0 || trailerOffset + 12L + 8L * digestCount > channel.size() - 8L)
+		throw new IOException(path + " has a corrupt trailer");
+	    ByteBuffer digestBuffer = read(channel, trailerOffset + 12L, 8 * digestCount);
+	    this.digests = new long[digestCount];
+	    for (int i = 0; i < digestCount; ++i)
+		this.digests[i] = digestBuffer.getLong();
+	}
+	restart();
+    } // end constructor
+
+    /**
+     * @return the engine playing the replay; draw its armies after each call to
+     * <i>advance()</i> or <i>seek()</i>
+     */
+    public BattleEngine getEngine()
+    {
+	return this.engine;
+    }
+
+    /**
+     * @return number of ticks recorded
+     */
+    public long getLength()
+    {
+	return this.length;
+    }
+
+    /**
+     * @return the tick the playback has reached
+     */
+    public long getTick()
+    {
+	return this.engine.getTickCount();
+    }
+
+    /**
+     * @return true once every recorded tick has been played
+     */
+    public boolean isFinished()
+    {
+	return getTick() >= this.length;
+    }
+
+    /**
+     * @return the first tick at which playback differed from the recording, or -1
+     */
+    public long getDivergedTick()
+    {
+	return this.divergedTick;
+    }
+
+    /**
+     * @param speed multiplier of real time, for example 4.0 to play four times
+     * as fast or 0.25 for slow motion
+     */
+    public void setSpeed(double speed)
+    {
+	if (!(speed > 0.0))
+	    throw new IllegalArgumentException("speed must be positive");
+	this.speed = speed;
+    }
+
+    public double getSpeed()
+    {
+	return this.speed;
+    }
+
+    /**
+     * The recording does not hold the terrain, so a battle fought on one only
+     * plays back the same when given the same terrain before the first tick.
+     *
+     * @param terrain ground the recorded battle was fought on, or null
+     */
+    public void setTerrain(TerrainMap terrain)
+    {
+	this.terrain = terrain;
+	this.engine.setTerrain(terrain);
+    }
+
+    /**
+     * Plays the ticks that fit into <i>realSeconds</i> at the current speed. At
+     * most <i>BattleEngine.MAX_FRAME_TIME</i> of real time is caught up on, as
+     * in <i>BattleEngine.advance()</i>.
+     *
+     * @param realSeconds seconds that passed since the previous call
+     * @return number of ticks played
+     */
+    public int advance(double realSeconds)
+    {
+	this.accumulator += Math.min(realSeconds, BattleEngine.MAX_FRAME_TIME) * this.speed;
+	int ticks = 0;
+	while (this.accumulator >= BattleEngine.TIME_STEP && !isFinished())
+	{
+	    step();
+	    this.accumulator -= BattleEngine.TIME_STEP;
+	    ++ticks;
+	}
+	if (isFinished())
+	    this.accumulator = 0.0;
+	return ticks;
+    }
+
+    /**
+     * jumps to a tick without drawing anything on the way
+     *
+     * @param tick tick to jump to; clamped to the recorded length
+     * @throws IOException if going back requires reading the starting armies
+     * again and that fails
+     */
+    public void seek(long tick) throws IOException
+    {
+	long target = Math.max(0L, Math.min(tick, this.length));
+	if (target < getTick())
+	    restart();
+	while (getTick() < target)
+	    step();
+	this.accumulator = 0.0;
+    }
+
+    private void step()
+    {
+	this.engine.step(BattleEngine.TIME_STEP);
+	long tick = this.engine.getTickCount();
+	if (this.divergedTick < 0L && tick % this.digestInterval == 0L)
+	{
+	    long index = tick / this.digestInterval - 1L;
+	    if (index < this.digests.length
+		    && this.digests[(int) index] != ReplayRecorder.digest(this.forcesOfLight, this.forcesOfDarkness))
+		this.divergedTick = tick;
+	}
+    }
+
+    /**
+     * loads the starting armies again and builds a fresh engine with the
+     * recorded seed
+     */
+    private void restart() throws IOException
+    {
+	try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ))
+	{
+	    channel.position(ReplayRecorder.HEADER_SIZE);
+	    BattlefieldFile.read(channel, this.forcesOfLight, this.forcesOfDarkness);
+	}
+	this.engine = new BattleEngine(this.forcesOfLight, this.forcesOfDarkness, this.pool,
+		new BattleRandom(this.seed));
+	this.engine.setTerrain(this.terrain);
+	this.accumulator = 0.0;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException
+    {
+	ByteBuffer buffer = ReplayRecorder.newBuffer(length);
+	while (buffer.hasRemaining())
+	{
+	    if (channel.read(buffer, position + buffer.position()) < 0)
+		throw new EOFException("replay ends early");
+	}
+	buffer.flip();
+	return buffer;
+    }
+}
@@ -0,0 +1,156 @@
+package engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import actor.Actor;
+import army.Army;
+import army.BattlefieldFile;
+
+/**
+ * <i>ReplayRecorder</i> records a battle so it can be reviewed later with a
+ * <i>ReplayPlayer</i>. Because a <i>BattleEngine</i> replays a battle exactly
+ * from its seed and the armies it started with, that is all a replay needs: the
+ * per-tick decisions follow from them. To catch a replay that no longer
+ * matches (for example after the rules changed) a digest of the battle is also
+ * kept every <i>DIGEST_INTERVAL</i> ticks.
+ * <p>
+ * All values are little-endian. A replay holds a header (<i>MAGIC</i> as an
+ * int, <i>VERSION</i> and a reserved field as shorts, the seed as a long and
+ * the digest interval as an int), the starting armies as a
+ * <i>BattlefieldFile</i>, a trailer (number of ticks as a long, number of
+ * digests as an int, then the digests as longs) and finally the offset of the
+ * trailer as a long.
+ */
+public final class ReplayRecorder implements TickListener, Closeable
+{
+    /** first four bytes of every replay ("MERP"), currently:{@value} */
+    public static final int MAGIC = 0x4D455250;
+    /** version of the replay written by this class, currently:{@value} */
+    public static final short VERSION = 1;
+    /** ticks between two digests of the battle (1 s), currently:{@value} */
+    public static final int DIGEST_INTERVAL = 60;
+    /** bytes in front of the starting armies, currently:{@value} */
+    static final int HEADER_SIZE = 4 + 2 + 2 + 8 + 4;
+
+    private final FileChannel channel;
+    private final long trailerOffset;
+    private long[] digests = new long[64];
+    private int digestCount;
+    private long tickCount;
+
+    /**
+     * starts recording a battle that has not run any tick yet; register the
+     * recorder with <i>engine.addTickListener()</i>
+     *
+     * @param path file to write the replay to; replaced if it exists
+     * @param engine engine of the battle
+     * @throws IOException if the replay cannot be written
+     */
+    public ReplayRecorder(Path path, BattleEngine engine) throws IOException
+    {
+	if (engine.getTickCount() != 0L)
+	    throw new IllegalStateException("a replay must start before the first tick");
+	this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+		StandardOpenOption.TRUNCATE_EXISTING);
+	try
+	{
+	    ByteBuffer header = newBuffer(HEADER_SIZE);
+	    header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(engine.getRandom().getSeed())
+		    .putInt(DIGEST_INTERVAL).flip();
+	    writeFully(header);
+	    BattlefieldFile.write(this.channel, engine.getForcesOfLight(), engine.getForcesOfDarkness());
+	    this.trailerOffset = this.channel.position();
+	} catch (IOException | RuntimeException e)
+	{
+	    this.channel.close();
+	    throw e;
+	}
+    }
+
+    @Override
+    public void tickEnded(BattleEngine engine)
+    {
+	this.tickCount = engine.getTickCount();
+	if (this.tickCount % DIGEST_INTERVAL == 0L)
+	{
+	    if (this.digestCount == this.digests.length)
+		this.digests = Arrays.copyOf(this.digests, this.digestCount * 2);
+	    this.digests[this.digestCount++] = digest(engine.getForcesOfLight(), engine.getForcesOfDarkness());
+	}
+    }
+
+    /**
+     * @return ticks recorded so far
+     */
+    public long getTickCount()
+    {
+	return this.tickCount;
+    }
+
+    /**
+     * writes the trailer and closes the replay
+     */
+    @Override
+    public void close() throws IOException
+    {
+	if (!this.channel.isOpen())
+	    return;
+	try
+	{
+	    ByteBuffer trailer = newBuffer(8 + 4 + 8 * this.digestCount + 8);
+	    trailer.putLong(this.tickCount).putInt(this.digestCount);
+	    for (int i = 0; i < this.digestCount; ++i)
+		trailer.putLong(this.digests[i]);
+	    trailer.putLong(this.trailerOffset).flip();
+	    this.channel.position(this.trailerOffset);
+	    writeFully(trailer);
+	} finally
+	{
+	    this.channel.close();
+	}
+    }
+
+    /**
+     * Mixes the location and health of every actor, in army order, into one
+     * value. Two runs of the same battle give the same digest at the same tick.
+     */
+    static long digest(Army... armies)
+    {
+	long digest = 0xcbf29ce484222325L;
+	for (Army army : armies)
+	{
+	    for (Actor actor : army.getCollectionActors())
+	    {
+		digest = mix(digest, Double.doubleToLongBits(actor.getX()));
+		digest = mix(digest, Double.doubleToLongBits(actor.getY()));
+		digest = mix(digest, Double.doubleToLongBits(actor.getHealth()));
+	    }
+	    digest = mix(digest, army.size());
+	}
+	return digest;
+    }
+
+    private static long mix(long digest, long value)
+    {
+	long z = (digest ^ value) * 0x9e3779b97f4a7c15L;
+	return z ^ (z >>> 29);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException
+    {
+	while (buffer.hasRemaining())
+	    this.channel.write(buffer);
+    }
+
+    static ByteBuffer newBuffer(int capacity)
+    {
+	return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
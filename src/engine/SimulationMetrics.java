@@ -0,0 +1,245 @@
+package engine;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import army.Army;
+import util.LatencyHistogram;
+
+/**
+ * <i>SimulationMetrics</i> tells where a battle spends its time: how long
+ * ticks and frames take, how many nearest-opponent searches, target cache
+ * hits, combat rounds and deaths each tick brings, and how many actors each
+ * army has left. A <i>BattleEngine</i> given the metrics through
+ * <i>setMetrics()</i> records one sample at the end of every tick; whoever
+ * draws the battle records its frames.
+ * <p>
+ * Recording is a handful of plain additions and one histogram increment per
+ * tick, none of them shared between the partition workers: the engine sums
+ * what its partitions counted before it records. Everything can be read from
+ * any thread, through the getters or as the MXBean {@value #OBJECT_NAME}.
+ */
+public final class SimulationMetrics implements SimulationMetricsMXBean
+{
+    /** name the metrics are registered under, currently:{@value} */
+    public static final String OBJECT_NAME = "simulator:type=SimulationMetrics";
+    /** length of the window rates are averaged over, currently:{@value} */
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+    /** windows without a tick after which rates read 0, currently:{@value} */
+    private static final int IDLE_WINDOWS = 3;
+
+    private final LatencyHistogram tickTime = new LatencyHistogram();
+    private final LatencyHistogram frameTime = new LatencyHistogram();
+    private final Rate ticks = new Rate();
+    private final Rate nearestQueries = new Rate();
+    private final Rate targetCacheHits = new Rate();
+    private final Rate combatRounds = new Rate();
+    private final Rate deaths = new Rate();
+    /** armies whose live actors are counted */
+    private volatile Army[] armies = new Army[0];
+
+    /**
+     * <i>Rate</i> is a running total and its rate over the latest complete
+     * window. Only the engine thread adds to it.
+     */
+    private static final class Rate
+    {
+	private volatile long total;
+	private volatile double perSecond;
+	private volatile long windowStart = -1L;
+	private long windowStartTotal;
+
+	private void add(long amount, long now)
+	{
+	    this.total = this.total + amount;
+	    if (this.windowStart < 0L)
+	    {
+		this.windowStart = now;
+		this.windowStartTotal = this.total - amount;
+	    } else if (now - this.windowStart >= RATE_WINDOW_NANOS)
+	    {
+		this.perSecond = (this.total - this.windowStartTotal) * 1.0e9 / (now - this.windowStart);
+		this.windowStartTotal = this.total;
+		this.windowStart = now;
+	    }
+	}
+
+	private double perSecond()
+	{
+	    long start = this.windowStart;
+	    if (start < 0L || System.nanoTime() - start > IDLE_WINDOWS * RATE_WINDOW_NANOS)
+		return 0.0;
+	    return this.perSecond;
+	}
+    } // end class Rate
+
+    /**
+     * @param armies armies whose live actors <i>getLiveActors()</i> reports
+     */
+    public void setArmies(Army... armies)
+    {
+	this.armies = armies.clone();
+    }
+
+    /**
+     * Records the end of one tick. Called by the engine thread only.
+     *
+     * @param nanos how long the tick took
+     * @param nearestQueries full nearest-opponent searches made during the tick
+     * @param targetCacheHits decisions taken against a cached target during the
+     * tick
+     * @param combatRounds combat rounds fought during the tick
+     * @param deaths actors that died during the tick
+     */
+    public void recordTick(long nanos, int nearestQueries, int targetCacheHits, int combatRounds, int deaths)
+    {
+	long now = System.nanoTime();
+	this.tickTime.record(nanos);
+	this.ticks.add(1L, now);
+	this.nearestQueries.add(nearestQueries, now);
+	this.targetCacheHits.add(targetCacheHits, now);
+	this.combatRounds.add(combatRounds, now);
+	this.deaths.add(deaths, now);
+    }
+
+    /**
+     * Records one drawn frame. Called by the drawing thread only.
+     *
+     * @param nanos how long drawing the frame took
+     */
+    public void recordFrame(long nanos)
+    {
+	this.frameTime.record(nanos);
+    }
+
+    /**
+     * registers the metrics with the platform MBean server, where JConsole finds
+     * them under {@value #OBJECT_NAME}
+     *
+     * @throws JMException when the metrics cannot be registered, for instance
+     * because other metrics already are
+     */
+    public void register() throws JMException
+    {
+	ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+
+    /**
+     * takes the metrics off the platform MBean server, if they are on it
+     *
+     * @throws JMException when the metrics cannot be unregistered
+     */
+    public void unregister() throws JMException
+    {
+	MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	ObjectName name = new ObjectName(OBJECT_NAME);
+	if (server.isRegistered(name))
+	    server.unregisterMBean(name);
+    }
+
+    @Override
+    public long getTicks()
+    {
+	return this.ticks.total;
+    }
+
+    @Override
+    public double getTicksPerSecond()
+    {
+	return this.ticks.perSecond();
+    }
+
+    @Override
+    public LatencyHistogram.Summary getTickTime()
+    {
+	return this.tickTime.getSummary();
+    }
+
+    @Override
+    public long getNearestQueries()
+    {
+	return this.nearestQueries.total;
+    }
+
+    @Override
+    public double getNearestQueriesPerTick()
+    {
+	double ticksPerSecond = this.ticks.perSecond();
+	return ticksPerSecond == 0.0 ? 0.0 : this.nearestQueries.perSecond() / ticksPerSecond;
+    }
+
+    @Override
+    public long getTargetCacheHits()
+    {
+	return this.targetCacheHits.total;
+    }
+
+    @Override
+    public double getTargetCacheHitRate()
+    {
+	long hits = this.targetCacheHits.total;
+	long decisions = hits + this.nearestQueries.total;
+	return decisions == 0L ? 0.0 : (double) hits / decisions;
+    }
+
+    @Override
+    public long getCombatRounds()
+    {
+	return this.combatRounds.total;
+    }
+
+    @Override
+    public double getCombatRoundsPerSecond()
+    {
+	return this.combatRounds.perSecond();
+    }
+
+    @Override
+    public long getDeaths()
+    {
+	return this.deaths.total;
+    }
+
+    @Override
+    public double getDeathsPerSecond()
+    {
+	return this.deaths.perSecond();
+    }
+
+    @Override
+    public Map<String, Integer> getLiveActors()
+    {
+	Map<String, Integer> live = new LinkedHashMap<>();
+	for (Army army : this.armies)
+	    live.put(army.getName(), army.size());
+	return live;
+    }
+
+    @Override
+    public LatencyHistogram.Summary getFrameTime()
+    {
+	return this.frameTime.getSummary();
+    }
+
+    @Override
+    public void resetHistograms()
+    {
+	this.tickTime.reset();
+	this.frameTime.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+	return String.format(
+		"ticks/s=%.1f tick[%s] nearest/tick=%.1f target hits=%.1f%% rounds/s=%.1f deaths/s=%.1f live=%s"
+			+ " frame[%s]",
+		getTicksPerSecond(), getTickTime(), getNearestQueriesPerTick(), 100.0 * getTargetCacheHitRate(),
+		getCombatRoundsPerSecond(), getDeathsPerSecond(), getLiveActors(), getFrameTime());
+    }
+}
@@ -0,0 +1,62 @@
+package engine;
+
+import java.util.Map;
+
+import util.LatencyHistogram;
+
+/**
+ * Management interface of <i>SimulationMetrics</i>, as JConsole and other JMX
+ * clients see it. Rates are per second of wall-clock time, averaged over the
+ * latest complete window of about a second, and read 0 once the battle has not
+ * ticked for a few windows.
+ */
+public interface SimulationMetricsMXBean
+{
+    /** @return ticks run since the metrics were built */
+    long getTicks();
+
+    /** @return ticks run per second */
+    double getTicksPerSecond();
+
+    /** @return how long the engine took to run one tick */
+    LatencyHistogram.Summary getTickTime();
+
+    /** @return full nearest-opponent searches made since the metrics were built */
+    long getNearestQueries();
+
+    /** @return full nearest-opponent searches per tick, averaged like the rates */
+    double getNearestQueriesPerTick();
+
+    /** @return decisions taken against a cached target since the metrics were built */
+    long getTargetCacheHits();
+
+    /**
+     * @return share of all decisions so far taken against a cached target
+     * instead of a full search, between 0 and 1
+     */
+    double getTargetCacheHitRate();
+
+    /** @return combat rounds fought since the metrics were built */
+    long getCombatRounds();
+
+    /** @return combat rounds fought per second */
+    double getCombatRoundsPerSecond();
+
+    /** @return actors that died since the metrics were built */
+    long getDeaths();
+
+    /** @return actors that died per second */
+    double getDeathsPerSecond();
+
+    /** @return actors still fighting, by army name */
+    Map<String, Integer> getLiveActors();
+
+    /** @return how long the simulator took to draw one frame */
+    LatencyHistogram.Summary getFrameTime();
+
+    /**
+     * forgets the tick and frame times recorded so far, for instance after the
+     * JIT has warmed up
+     */
+    void resetHistograms();
+}
@@ -0,0 +1,288 @@
+package engine;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.imageio.ImageIO;
+
+/**
+ * <i>TerrainMap</i> is a grid of cells {@value #CELL_SIZE} wide laid over the
+ * battlefield, each with the cost of walking through it: {@value #MIN_COST} on
+ * open ground, up to {@value #MAX_COST} where the map is drawn thick with ink
+ * (mountains, forests, rivers and marsh on <i>MiddleEarth-3.jpg</i>). An actor
+ * walks through a cell that much slower.
+ * <p>
+ * Finding a way around the costly cells per actor would be far too slow for
+ * battles of this size, so the way is worked out per region of
+ * {@value #REGION_CELLS} by {@value #REGION_CELLS} cells instead: a
+ * <i>FlowField</i> gives every cell the cost of the cheapest walk from it into
+ * one region, and every actor heading for an opponent in that region follows
+ * the same field. The map keeps the {@value #FLOW_FIELD_CAPACITY} most recently
+ * used fields and drops the least recently used one to make room.
+ * <p>
+ * A map is built once and never changes, so every engine of a simulator can
+ * share it, and its fields, from any thread.
+ */
+public final class TerrainMap
+{
+    /** side of a cell, in battlefield units, currently:{@value} */
+    public static final double CELL_SIZE = 10.0;
+    /** cells on each side of the region a flow field leads into, currently:{@value} */
+    public static final int REGION_CELLS = 8;
+    /** flow fields kept at most, currently:{@value} */
+    public static final int FLOW_FIELD_CAPACITY = 128;
+    /** cost of open ground, currently:{@value} */
+    public static final double MIN_COST = 1.0;
+    /** cost of the hardest ground, currently:{@value} */
+    public static final double MAX_COST = 4.0;
+    /** luminance (0 to 255) under which a pixel of the image counts as ink, currently:{@value} */
+    private static final int INK_LUMINANCE = 110;
+    /** cost a cell drawn all in ink would add, before the cap at <i>MAX_COST</i>, currently:{@value} */
+    private static final double INK_COST = 10.0;
+
+    private final double width;
+    private final double height;
+    private final int columns;
+    private final int rows;
+    /** cost of every cell, row after row */
+    private final float[] costs;
+    private final int regionColumns;
+    /** guards the flow fields and their counts */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** flow fields by region, least recently used first */
+    private final LinkedHashMap<Integer, FlowField> flowFields;
+    private long flowFieldsBuilt;
+    private long flowFieldHits;
+    private long flowFieldEvictions;
+
+    private TerrainMap(double width, double height, int columns, int rows, float[] costs)
+    {
+	this.width = width;
+	this.height = height;
+	this.columns = columns;
+	this.rows = rows;
+	this.costs = costs;
+	this.regionColumns = (columns + REGION_CELLS - 1) / REGION_CELLS;
+	this.flowFields = new LinkedHashMap<Integer, FlowField>(2 * FLOW_FIELD_CAPACITY, 0.75f, true)
+	{
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected boolean removeEldestEntry(Map.Entry<Integer, FlowField> eldest)
+	    {
+		if (size() <= FLOW_FIELD_CAPACITY)
+		    return false;
+		++TerrainMap.this.flowFieldEvictions;
+		return true;
+	    }
+	};
+    }
+
+    /**
+     * reads an image and lays it over a battlefield of the given size, the way
+     * the simulator stretches its background over the scene
+     *
+     * @param image background image of the battlefield
+     * @param width width of the battlefield
+     * @param height height of the battlefield
+     * @return the terrain the image shows
+     * @throws IOException when the image cannot be read
+     */
+    public static TerrainMap read(Path image, double width, double height) throws IOException
+    {
+	BufferedImage pixels = ImageIO.read(image.toFile());
+	if (pixels == null)
+	    throw new IOException(image + " is not an image");
+	int imageWidth = pixels.getWidth();
+	int imageHeight = pixels.getHeight();
+	return fromPixels(pixels.getRGB(0, 0, imageWidth, imageHeight, null, 0, imageWidth), imageWidth, imageHeight,
+		width, height);
+    }
+
+    /**
+     * Works out the cost of every cell from the share of ink among the pixels
+     * of the image that fall into it.
+     *
+     * @param argb pixels of the image, row after row
+     * @param imageWidth pixels in a row
+     * @param imageHeight rows of pixels
+     * @param width width of the battlefield the image is stretched over
+     * @param height height of the battlefield
+     * @return the terrain the image shows
+     */
+    public static TerrainMap fromPixels(int[] argb, int imageWidth, int imageHeight, double width, double height)
+    {
+	int columns = (int) Math.ceil(width / CELL_SIZE);
+	int rows = (int) Math.ceil(height / CELL_SIZE);
+	float[] costs = new float[columns * rows];
+	for (int row = 0; row < rows; ++row)
+	{
+	    int y0 = Math.min(imageHeight - 1, (int) (row * CELL_SIZE / height * imageHeight));
+	    int y1 = Math.max(y0 + 1, Math.min(imageHeight, (int) ((row + 1) * CELL_SIZE / height * imageHeight)));
+	    for (int column = 0; column < columns; ++column)
+	    {
+		int x0 = Math.min(imageWidth - 1, (int) (column * CELL_SIZE / width * imageWidth));
+		int x1 = Math.max(x0 + 1, Math.min(imageWidth, (int) ((column + 1) * CELL_SIZE / width * imageWidth)));
+		int ink = 0;
+		for (int y = y0; y < y1; ++y)
+		{
+		    for (int x = x0; x < x1; ++x)
+		    {
+			int pixel = argb[y * imageWidth + x];
+			int luminance = (3 * (pixel >> 16 & 0xFF) + 6 * (pixel >> 8 & 0xFF) + (pixel & 0xFF)) / 10;
+			if (luminance < INK_LUMINANCE)
+			    ++ink;
+		    }
+		}
+		double inkShare = (double) ink / ((x1 - x0) * (y1 - y0));
+		costs[row * columns + column] = (float) Math.min(MAX_COST, MIN_COST + INK_COST * inkShare);
+	    }
+	}
+	return new TerrainMap(width, height, columns, rows, costs);
+    } // end fromPixels()
+
+    public double getWidth()
+    {
+	return this.width;
+    }
+
+    public double getHeight()
+    {
+	return this.height;
+    }
+
+    public int getColumns()
+    {
+	return this.columns;
+    }
+
+    public int getRows()
+    {
+	return this.rows;
+    }
+
+    /**
+     * @return the cost of the cell a point lies in; points off the map take the
+     * nearest cell
+     */
+    public double getCost(double x, double y)
+    {
+	return this.costs[cellOf(x, y)];
+    }
+
+    /**
+     * Gives the flow field into the region a point lies in: the cached one when
+     * there is one, otherwise a new one, which only works out as much of the
+     * map as the actors following it ask for.
+     *
+     * @return the field every actor heading for that region follows
+     */
+    public FlowField getFlowField(double x, double y)
+    {
+	int region = regionOf(cellOf(x, y));
+	this.lock.lock();
+	try
+	{
+	    FlowField field = this.flowFields.get(region);
+	    if (field != null)
+	    {
+		++this.flowFieldHits;
+		return field;
+	    }
+	    field = new FlowField(this, region);
+	    this.flowFields.put(region, field);
+	    ++this.flowFieldsBuilt;
+	    return field;
+	} finally
+	{
+	    this.lock.unlock();
+	}
+    } // end getFlowField()
+
+    /**
+     * @return flow fields built so far, including those built again after being
+     * dropped
+     */
+    public long getFlowFieldsBuilt()
+    {
+	this.lock.lock();
+	try
+	{
+	    return this.flowFieldsBuilt;
+	} finally
+	{
+	    this.lock.unlock();
+	}
+    }
+
+    /**
+     * @return requests for a flow field answered from the cache so far
+     */
+    public long getFlowFieldHits()
+    {
+	this.lock.lock();
+	try
+	{
+	    return this.flowFieldHits;
+	} finally
+	{
+	    this.lock.unlock();
+	}
+    }
+
+    /**
+     * @return flow fields dropped so far to make room for newer ones
+     */
+    public long getFlowFieldEvictions()
+    {
+	this.lock.lock();
+	try
+	{
+	    return this.flowFieldEvictions;
+	} finally
+	{
+	    this.lock.unlock();
+	}
+    }
+
+    @Override
+    public String toString()
+    {
+	return String.format("%dx%d cells, flow fields built=%d hits=%d evicted=%d", this.columns, this.rows,
+		getFlowFieldsBuilt(), getFlowFieldHits(), getFlowFieldEvictions());
+    }
+
+    /**
+     * @return the cell a point lies in; points off the map take the nearest cell
+     */
+    int cellOf(double x, double y)
+    {
+	int column = Math.max(0, Math.min(this.columns - 1, (int) Math.floor(x / CELL_SIZE)));
+	int row = Math.max(0, Math.min(this.rows - 1, (int) Math.floor(y / CELL_SIZE)));
+	return row * this.columns + column;
+    }
+
+    int regionOf(int cell)
+    {
+	return cell / this.columns / REGION_CELLS * this.regionColumns + cell % this.columns / REGION_CELLS;
+    }
+
+    float cost(int cell)
+    {
+	return this.costs[cell];
+    }
+
+    double centerX(int cell)
+    {
+	return (cell % this.columns + 0.5) * CELL_SIZE;
+    }
+
+    double centerY(int cell)
+    {
+	return (cell / this.columns + 0.5) * CELL_SIZE;
+    }
+}
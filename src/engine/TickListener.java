@@ -0,0 +1,14 @@
+package engine;
+
+/**
+ * <i>TickListener</i> is told every time a <i>BattleEngine</i> finishes a tick,
+ * once the state of the battle is final for that tick.
+ */
+public interface TickListener
+{
+    /**
+     * @param engine the engine whose tick just ended; its tick count already
+     * includes that tick
+     */
+    void tickEnded(BattleEngine engine);
+}
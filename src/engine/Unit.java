@@ -0,0 +1,69 @@
+package engine;
+
+import actor.Actor;
+
+/**
+ * <i>Unit</i> holds the per-actor bookkeeping the <i>BattleEngine</i> needs
+ * between ticks. It replaces the state that used to live inside the
+ * <i>TranslateTransition</i> and <i>RotateTransition</i> of each
+ * <i>Actor</i>: where the actor is heading and how long it still has to wait
+ * before it can act again. It also carries the intent worked out for the
+ * current tick until the write phase applies it.
+ * <p>
+ * A unit is only ever touched by the partition that owns it during the read
+ * phase, so none of these fields need synchronisation.
+ */
+final class Unit
+{
+    /** the <i>Actor</i> whose rules drive this unit */
+    final Actor actor;
+    /** horizontal location the actor is walking towards */
+    double destinationX;
+    /** vertical location the actor is walking towards */
+    double destinationY;
+    /** true while the actor is walking towards its destination */
+    boolean moving;
+    /**
+     * seconds left before the actor may move or decide again (the start delay of
+     * a move, or the length of a combat round)
+     */
+    double delayRemaining;
+    /** set once the actor has been removed from its army */
+    boolean dead;
+    /** partition of one holding this unit in the current tick, when it runs as an agent */
+    Partition partition;
+
+    // TARGET CACHE
+    /** opponent found by the latest full search, or null */
+    Actor target;
+    /** distance from the actor to <i>target</i> when it was found */
+    double targetDistance;
+    /** location of the actor when <i>target</i> was found */
+    double targetFromX;
+    double targetFromY;
+    /** <i>Factions.getChangeCount()</i> of the roster when <i>target</i> was found */
+    long targetChanges;
+
+    // TERRAIN
+    /** flow field towards the region of the latest opponent walked to, or null */
+    FlowField flowField;
+
+    // INTENT FOR THE CURRENT TICK
+    /** true when the read phase moved the actor to <i>(nextX, nextY)</i> */
+    boolean moved;
+    double nextX;
+    double nextY;
+    /** location before the write phase moved the actor */
+    double previousX;
+    double previousY;
+    /** true when the read phase found the actor out of health */
+    boolean dying;
+
+    /**
+     * @param actor the <i>Actor</i> this unit advances
+     */
+    Unit(Actor actor)
+    {
+	this.actor = actor;
+    }
+}
@@ -0,0 +1,251 @@
+package simulator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.TextFieldTableCell;
+import javafx.util.converter.DoubleStringConverter;
+import actor.Actor;
+import army.Army;
+
+/**
+ * <i>ArmyViewModel</i> is what the army list and table windows show instead of
+ * the live <i>Army</i>. The battle changes every actor every tick; binding the
+ * windows to it directly fired a change event per move and per death, and had
+ * every list cell format its actor again. Here the army is copied into one
+ * <i>Row</i> per actor only when <i>refresh()</i> is called, a few times a
+ * second. The rows of the actors that died since are then taken out and those
+ * of new actors appended, each as a single change, and the rows in between
+ * stay where they are, so a refresh keeps what is selected in the windows.
+ * A refresh is put off while a cell of the table is being edited, since
+ * redrawing the table would cancel the edit.
+ * <p>
+ * A row formats its text the first time it is shown after its actor changed,
+ * so a refresh of a 100k-actor army formats only the few rows on screen.
+ */
+final class ArmyViewModel
+{
+    private final Army army;
+    private final ObservableList<Row> rows = FXCollections.observableArrayList();
+    /** row of every actor still in the army, reused from refresh to refresh */
+    private final IdentityHashMap<Actor, Row> rowsByActor = new IdentityHashMap<>();
+    private final ArrayList<Row> snapshot = new ArrayList<>();
+    /** the latest list made, the one the list window shows, or null */
+    private ListView<Row> listView;
+    /** the latest table made, the one the table window shows, or null */
+    private TableView<Row> table;
+    /** number of the latest refresh; rows not reached by it belong to dead actors */
+    private long generation;
+
+    /**
+     * one actor as of the latest refresh
+     */
+    static final class Row
+    {
+	private final Actor actor;
+	private String name;
+	private double health;
+	private double strength;
+	private double speed;
+	private double x;
+	private double y;
+	/** formatted <i>toString()</i>, or null until it is next needed */
+	private String text;
+	private long generation;
+
+	private Row(Actor actor)
+	{
+	    this.actor = actor;
+	}
+
+	/**
+	 * copies the current state of the actor, dropping the formatted text if any
+	 * of it changed
+	 */
+	private void update()
+	{
+	    String name = this.actor.getName();
+	    double health = this.actor.getHealth();
+	    double strength = this.actor.getStrength();
+	    double speed = this.actor.getSpeed();
+	    if (health != this.health || strength != this.strength || speed != this.speed || !name.equals(this.name))
+		this.text = null;
+	    this.name = name;
+	    this.health = health;
+	    this.strength = strength;
+	    this.speed = speed;
+	    this.x = this.actor.getX();
+	    this.y = this.actor.getY();
+	}
+
+	/**
+	 * @return the same text as <i>Actor.toString()</i>, as of the latest refresh
+	 */
+	@Override
+	public String toString()
+	{
+	    if (this.text == null)
+		this.text = String.format("Name:%s   Health:%.1f   Strength:%.1f   Speed:%.1f ", this.name, this.health,
+			this.strength, this.speed);
+	    return this.text;
+	}
+    } // end class Row
+
+    ArmyViewModel(Army army)
+    {
+	this.army = army;
+    }
+
+    /**
+     * @return the rows, in army order; changed at most twice per refresh
+     */
+    ObservableList<Row> getRows()
+    {
+	return this.rows;
+    }
+
+    /**
+     * copies the army into the rows and redraws the windows, unless a cell of the
+     * table is being edited
+     */
+    void refresh()
+    {
+	if (this.table != null && this.table.getEditingCell() != null)
+	    return; // the next refresh after the edit catches up
+	++this.generation;
+	this.snapshot.clear();
+	List<Actor> actors = this.army.getCollectionActors();
+	for (int i = 0; i < actors.size(); ++i)
+	{
+	    Actor actor = actors.get(i);
+	    Row row = this.rowsByActor.get(actor);
+	    if (row == null)
+	    {
+		row = new Row(actor);
+		this.rowsByActor.put(actor, row);
+	    }
+	    row.update();
+	    row.generation = this.generation;
+	    this.snapshot.add(row);
+	}
+	if (this.rowsByActor.size() > this.snapshot.size())
+	    this.rowsByActor.values().removeIf(row -> row.generation != this.generation);
+	if (!updateRows())
+	    this.rows.setAll(this.snapshot);
+	// the rows left in place changed too, but their cells only redraw when told
+	if (this.listView != null)
+	    this.listView.refresh();
+	if (this.table != null)
+	    this.table.refresh();
+    } // end refresh()
+
+    /**
+     * Brings the rows up to the snapshot in place: the rows of dead actors are
+     * taken out and those of new actors appended, which is how the army itself
+     * changes during a battle.
+     *
+     * @return false, leaving the rows alone, when the rows still in the army are
+     * not the start of the snapshot in the same order, or none of them are,
+     * as after a restore
+     */
+    private boolean updateRows()
+    {
+	HashSet<Row> dead = new HashSet<>();
+	int kept = 0;
+	for (int i = 0; i < this.rows.size(); ++i)
+	{
+	    Row row = this.rows.get(i);
+	    if (row.generation != this.generation)
+		dead.add(row);
+	    else if (kept < this.snapshot.size() && this.snapshot.get(kept) == row)
+		++kept;
+	    else
+		return false;
+	}
+	if (kept == 0 && !this.rows.isEmpty())
+	    return false;
+	if (!dead.isEmpty())
+	    this.rows.removeAll(dead);
+	if (kept < this.snapshot.size())
+	    this.rows.addAll(this.snapshot.subList(kept, this.snapshot.size()));
+	return true;
+    } // end updateRows()
+
+    /**
+     * @return a list of the rows, one line per actor
+     */
+    ListView<Row> createListView()
+    {
+	this.listView = new ListView<Row>(this.rows);
+	return this.listView;
+    }
+
+    /**
+     * Builds a table of the rows. Name, health, strength and speed can be edited;
+     * an edit goes straight to the actor, and to its row so the table shows it
+     * before the next refresh. The table replaces any made before as the one
+     * whose edits hold off the refreshes.
+     */
+    TableView<Row> createTable()
+    {
+	TableView<Row> table = new TableView<Row>(this.rows);
+	final double PREF_WIDTH_DOUBLE = 75.0;
+	table.setPrefWidth(PREF_WIDTH_DOUBLE * 7.5);
+	table.setEditable(true);
+
+	TableColumn<Row, String> nameCol = new TableColumn<>("Name");
+	nameCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().name));
+	nameCol.setPrefWidth(PREF_WIDTH_DOUBLE);
+	TableColumn<Row, Double> healthCol = new TableColumn<>("Health");
+	healthCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().health));
+	healthCol.setPrefWidth(PREF_WIDTH_DOUBLE);
+	TableColumn<Row, Double> strengthCol = new TableColumn<>("Strength");
+	strengthCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().strength));
+	strengthCol.setPrefWidth(PREF_WIDTH_DOUBLE);
+	TableColumn<Row, Double> speedCol = new TableColumn<>("Speed");
+	speedCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().speed));
+	speedCol.setPrefWidth(PREF_WIDTH_DOUBLE);
+	TableColumn<Row, Double> locationXCol = new TableColumn<>("X");
+	locationXCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().x));
+	locationXCol.setPrefWidth(PREF_WIDTH_DOUBLE);
+	TableColumn<Row, Double> locationYCol = new TableColumn<>("Y");
+	locationYCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().y));
+	locationYCol.setPrefWidth(PREF_WIDTH_DOUBLE);
+	ObservableList<TableColumn<Row, ?>> c = table.getColumns();
+	c.add(nameCol);
+	c.add(healthCol);
+	c.add(strengthCol);
+	c.add(speedCol);
+	c.add(locationXCol);
+	c.add(locationYCol);
+
+	// X and Y stay read-only: the engine owns the locations
+	nameCol.setCellFactory(TextFieldTableCell.<Row>forTableColumn());
+	nameCol.setOnEditCommit(event -> commit(event.getRowValue(), actor -> actor.setName(event.getNewValue())));
+	healthCol.setCellFactory(TextFieldTableCell.<Row, Double>forTableColumn(new DoubleStringConverter()));
+	healthCol.setOnEditCommit(event -> commit(event.getRowValue(), actor -> actor.setHealth(event.getNewValue())));
+	strengthCol.setCellFactory(TextFieldTableCell.<Row, Double>forTableColumn(new DoubleStringConverter()));
+	strengthCol
+		.setOnEditCommit(event -> commit(event.getRowValue(), actor -> actor.setStrength(event.getNewValue())));
+	speedCol.setCellFactory(TextFieldTableCell.<Row, Double>forTableColumn(new DoubleStringConverter()));
+	speedCol.setOnEditCommit(event -> commit(event.getRowValue(), actor -> actor.setSpeed(event.getNewValue())));
+	this.table = table;
+	return table;
+    } // end createTable()
+
+    private static void commit(Row row, Consumer<Actor> edit)
+    {
+	edit.accept(row.actor);
+	row.actor.resetAvatarAttributes();
+	row.update();
+    }
+}
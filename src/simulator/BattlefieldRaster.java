@@ -0,0 +1,357 @@
+package simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javafx.scene.paint.Color;
+import actor.Actor;
+import actor.ActorFactory;
+import actor.ActorStore;
+import army.Army;
+
+/**
+ * <i>BattlefieldRaster</i> draws every living actor of a battle into two plain
+ * pixel arrays, straight from the <i>ActorStore</i> columns: the bodies at full
+ * resolution and the glow of the armies at 1/{@value #GLOW_SCALE} of it. The
+ * glow takes the place of the <i>DropShadow</i> each avatar node used to carry:
+ * every actor adds its army colour to the cell it stands in and one blur over
+ * the whole (small) glow layer spreads it, however many actors there are.
+ * <p>
+ * Only the actors inside the view set by <i>setView()</i> are looked at; the
+ * spatial index of each army finds them, so actors off screen cost nothing.
+ * Nothing here touches the scene graph, so a frame costs the same with or
+ * without a display; <i>CanvasRenderer</i> hands the finished arrays to
+ * JavaFX. Pixels are premultiplied ARGB, as <i>PixelFormat.getIntArgbPreInstance()</i>
+ * expects them.
+ */
+public final class BattlefieldRaster
+{
+    /** pixels of the body layer per glow cell, in each direction, currently:{@value} */
+    public static final int GLOW_SCALE = 4;
+    /**
+     * radius of each box blur, in glow cells; two passes spread a glow about as
+     * far as the old <i>DropShadow</i> of radius 20, currently:{@value}
+     */
+    private static final int GLOW_RADIUS = 2;
+    /** most opaque a glow gets where many actors stand close, currently:{@value} */
+    private static final float MAX_GLOW_ALPHA = 0.8f;
+
+    private final int width;
+    private final int height;
+    private final int glowWidth;
+    private final int glowHeight;
+    /** body layer, premultiplied ARGB, row after row */
+    private final int[] pixels;
+    /** glow layer, premultiplied ARGB, filled by <i>finish()</i> */
+    private final int[] glowPixels;
+    /** army colour added to each glow cell, weighted by the body area in it */
+    private final float[] glowRed;
+    private final float[] glowGreen;
+    private final float[] glowBlue;
+    private final float[] glowWeight;
+    /** space for the horizontal pass of the blur */
+    private final float[] scratch;
+    /** running sum of every column during the vertical pass of the blur */
+    private final float[] columnSums;
+    /** living actors drawn since the last <i>clear()</i> */
+    private int drawn;
+    /** battlefield point shown at the top left pixel */
+    private double originX;
+    private double originY;
+    /** pixels per battlefield unit */
+    private double zoom = 1.0;
+    /** actors found in the view, reused from army to army */
+    private final ArrayList<Actor> visible = new ArrayList<>();
+
+    /**
+     * @param width width of the battlefield in pixels
+     * @param height height of the battlefield in pixels
+     */
+    public BattlefieldRaster(int width, int height)
+    {
+	if (width < 1 || height < 1)
+	    throw new IllegalArgumentException("raster must be at least 1 by 1 pixels");
+	this.width = width;
+	this.height = height;
+	this.glowWidth = (width + GLOW_SCALE - 1) / GLOW_SCALE;
+	this.glowHeight = (height + GLOW_SCALE - 1) / GLOW_SCALE;
+	this.pixels = new int[width * height];
+	int cells = this.glowWidth * this.glowHeight;
+	this.glowPixels = new int[cells];
+	this.glowRed = new float[cells];
+	this.glowGreen = new float[cells];
+	this.glowBlue = new float[cells];
+	this.glowWeight = new float[cells];
+	this.scratch = new float[cells];
+	this.columnSums = new float[this.glowWidth];
+    }
+
+    /**
+     * sets the part of the battlefield the following frames show
+     *
+     * @param originX battlefield point shown at the left edge
+     * @param originY battlefield point shown at the top edge
+     * @param zoom pixels per battlefield unit
+     */
+    public void setView(double originX, double originY, double zoom)
+    {
+	this.originX = originX;
+	this.originY = originY;
+	this.zoom = zoom;
+    }
+
+    /**
+     * starts a new frame with both layers transparent
+     */
+    public void clear()
+    {
+	Arrays.fill(this.pixels, 0);
+	Arrays.fill(this.glowRed, 0.0f);
+	Arrays.fill(this.glowGreen, 0.0f);
+	Arrays.fill(this.glowBlue, 0.0f);
+	Arrays.fill(this.glowWeight, 0.0f);
+	this.drawn = 0;
+    }
+
+    /**
+     * draws every living actor of <i>army</i> inside the view, with the avatar
+     * its type and strength give it and the glow of the army colour
+     *
+     * @param army army to draw
+     */
+    public void draw(Army army)
+    {
+	ActorStore store = army.getStore();
+	Color glow = army.getColor();
+	float red = (float) glow.getRed();
+	float green = (float) glow.getGreen();
+	float blue = (float) glow.getBlue();
+	ActorFactory.Type[] types = ActorFactory.Type.values();
+	int[] typeColors = new int[types.length];
+	for (int i = 0; i < types.length; ++i)
+	    typeColors[i] = types[i] == ActorFactory.Type.RANDOM ? 0 : toArgb(types[i].getAvatarColor());
+	this.visible.clear();
+	army.collectActorsWithin(this.originX - Camera.VIEW_MARGIN, this.originY - Camera.VIEW_MARGIN,
+		this.originX + this.width / this.zoom + Camera.VIEW_MARGIN,
+		this.originY + this.height / this.zoom + Camera.VIEW_MARGIN, this.visible);
+	for (int i = 0; i < this.visible.size(); ++i)
+	{
+	    int id = this.visible.get(i).getId();
+	    if (!store.isAlive(id))
+		continue;
+	    ActorFactory.Type type = store.getType(id);
+	    double size = type.getAvatarSize(store.getStrength(id)) * this.zoom;
+	    double x = (store.getX(id) - this.originX) * this.zoom;
+	    double y = (store.getY(id) - this.originY) * this.zoom;
+	    if (type.isAvatarRound())
+		fillCircle(x + size / 2.0, y + size / 2.0, size / 2.0, typeColors[type.ordinal()]);
+	    else
+		fillSquare(x, y, size, typeColors[type.ordinal()]);
+	    addGlow(x + size / 2.0, y + size / 2.0, (float) (size * size) / (GLOW_SCALE * GLOW_SCALE), red, green,
+		    blue);
+	    ++this.drawn;
+	}
+    } // end draw()
+
+    /**
+     * blurs the glow layer and turns it into pixels; call once all armies of the
+     * frame are drawn
+     */
+    public void finish()
+    {
+	blur(this.glowRed);
+	blur(this.glowGreen);
+	blur(this.glowBlue);
+	blur(this.glowWeight);
+	for (int i = 0; i < this.glowPixels.length; ++i)
+	{
+	    float weight = this.glowWeight[i];
+	    if (weight <= 1.0e-4f)
+	    {
+		this.glowPixels[i] = 0;
+		continue;
+	    }
+	    float alpha = Math.min(MAX_GLOW_ALPHA, weight);
+	    float scale = alpha / weight * 255.0f; // average colour of the cell, premultiplied by alpha
+	    this.glowPixels[i] = (int) (alpha * 255.0f) << 24 | channel(this.glowRed[i] * scale) << 16
+		    | channel(this.glowGreen[i] * scale) << 8 | channel(this.glowBlue[i] * scale);
+	}
+    }
+
+    public int getWidth()
+    {
+	return this.width;
+    }
+
+    public int getHeight()
+    {
+	return this.height;
+    }
+
+    public int getGlowWidth()
+    {
+	return this.glowWidth;
+    }
+
+    public int getGlowHeight()
+    {
+	return this.glowHeight;
+    }
+
+    /**
+     * @return the body layer, premultiplied ARGB, <i>getWidth()</i> pixels per row
+     */
+    public int[] getPixels()
+    {
+	return this.pixels;
+    }
+
+    /**
+     * @return the glow layer, premultiplied ARGB, <i>getGlowWidth()</i> cells per
+     * row; stretch it by <i>GLOW_SCALE</i> to lay it under the bodies
+     */
+    public int[] getGlowPixels()
+    {
+	return this.glowPixels;
+    }
+
+    /**
+     * @return number of actors drawn into the current frame
+     */
+    public int getDrawnCount()
+    {
+	return this.drawn;
+    }
+
+    private void fillSquare(double x, double y, double size, int argb)
+    {
+	int x0 = Math.max(0, (int) Math.floor(x));
+	int y0 = Math.max(0, (int) Math.floor(y));
+	int x1 = Math.min(this.width, (int) Math.ceil(x + size));
+	int y1 = Math.min(this.height, (int) Math.ceil(y + size));
+	if (x0 >= x1)
+	    return; // off the battlefield
+	int[] pixels = this.pixels;
+	for (int offset = y0 * this.width, end = y1 * this.width; offset < end; offset += this.width)
+	{
+	    for (int i = offset + x0, last = offset + x1; i < last; ++i)
+		pixels[i] = argb;
+	}
+    }
+
+    private void fillCircle(double centerX, double centerY, double radius, int argb)
+    {
+	int y0 = Math.max(0, (int) Math.floor(centerY - radius));
+	int y1 = Math.min(this.height, (int) Math.ceil(centerY + radius));
+	int[] pixels = this.pixels;
+	for (int row = y0; row < y1; ++row)
+	{
+	    double dy = row + 0.5 - centerY;
+	    double span = radius * radius - dy * dy;
+	    if (span <= 0.0)
+		continue;
+	    double halfWidth = Math.sqrt(span);
+	    int x0 = Math.max(0, (int) (centerX - halfWidth + 0.5));
+	    int x1 = Math.min(this.width, (int) (centerX + halfWidth + 0.5));
+	    for (int i = row * this.width + x0, last = row * this.width + x1; i < last; ++i)
+		pixels[i] = argb;
+	}
+    }
+
+    private void addGlow(double centerX, double centerY, float weight, float red, float green, float blue)
+    {
+	int cellX = (int) (centerX / GLOW_SCALE);
+	int cellY = (int) (centerY / GLOW_SCALE);
+	if (cellX < 0 || cellY < 0 || cellX >= this.glowWidth || cellY >= this.glowHeight)
+	    return;
+	int cell = cellY * this.glowWidth + cellX;
+	this.glowRed[cell] += red * weight;
+	this.glowGreen[cell] += green * weight;
+	this.glowBlue[cell] += blue * weight;
+	this.glowWeight[cell] += weight;
+    }
+
+    /**
+     * two box blurs of <i>GLOW_RADIUS</i> in each direction, which together come
+     * close to a gaussian; each pass costs the same whatever the radius
+     */
+    private void blur(float[] layer)
+    {
+	for (int pass = 0; pass < 2; ++pass)
+	{
+	    blurRows(layer, this.scratch);
+	    blurColumns(this.scratch, layer);
+	}
+    }
+
+    /**
+     * blurs every row of <i>source</i> into <i>target</i> with a running sum;
+     * cells outside the layer count as empty
+     */
+    private void blurRows(float[] source, float[] target)
+    {
+	float norm = 1.0f / (2 * GLOW_RADIUS + 1);
+	int length = this.glowWidth;
+	for (int start = 0; start < source.length; start += length)
+	{
+	    float sum = 0.0f;
+	    for (int i = 0; i < GLOW_RADIUS && i < length; ++i)
+		sum += source[start + i];
+	    for (int i = 0; i < length; ++i)
+	    {
+		if (i + GLOW_RADIUS < length)
+		    sum += source[start + i + GLOW_RADIUS];
+		if (i - GLOW_RADIUS - 1 >= 0)
+		    sum -= source[start + i - GLOW_RADIUS - 1];
+		target[start + i] = sum * norm;
+	    }
+	}
+    }
+
+    /**
+     * blurs every column of <i>source</i> into <i>target</i>, a whole row at a
+     * time so memory is walked in order; cells outside the layer count as empty
+     */
+    private void blurColumns(float[] source, float[] target)
+    {
+	float norm = 1.0f / (2 * GLOW_RADIUS + 1);
+	int row = this.glowWidth;
+	int rows = this.glowHeight;
+	float[] sums = this.columnSums;
+	Arrays.fill(sums, 0.0f);
+	for (int r = 0; r < GLOW_RADIUS && r < rows; ++r)
+	    for (int i = 0; i < row; ++i)
+		sums[i] += source[r * row + i];
+	for (int r = 0; r < rows; ++r)
+	{
+	    int enter = (r + GLOW_RADIUS) * row;
+	    int leave = (r - GLOW_RADIUS - 1) * row;
+	    int out = r * row;
+	    for (int i = 0; i < row; ++i)
+	    {
+		float sum = sums[i];
+		if (r + GLOW_RADIUS < rows)
+		    sum += source[enter + i];
+		if (leave >= 0)
+		    sum -= source[leave + i];
+		sums[i] = sum;
+		target[out + i] = sum * norm;
+	    }
+	}
+    } // end blurColumns()
+
+    /**
+     * clamps a colour channel to 0..255; the running sums of the blur can leave
+     * tiny negative values behind
+     */
+    private static int channel(float value)
+    {
+	return Math.max(0, Math.min(255, (int) value));
+    }
+
+    private static int toArgb(Color color)
+    {
+	return (int) Math.round(color.getOpacity() * 255.0) << 24 | (int) Math.round(color.getRed() * 255.0) << 16
+		| (int) Math.round(color.getGreen() * 255.0) << 8 | (int) Math.round(color.getBlue() * 255.0);
+    }
+}
@@ -0,0 +1,198 @@
+package simulator;
+
+import java.util.List;
+
+import javafx.scene.transform.Affine;
+import actor.Actor;
+import army.Army;
+
+/**
+ * <i>Camera</i> decides which part of the battlefield is on screen: it can be
+ * panned, zoomed around a point and told to follow an army. The
+ * <i>Simulator</i> asks it for the visible rectangle to find the actors worth
+ * drawing, and hands its transform to the node that holds the battlefield.
+ * <p>
+ * Battlefield (world) coordinates are those of the actors; screen coordinates
+ * are pixels of the window. A world point <i>(x, y)</i> is shown at
+ * <i>((x - originX) * zoom, (y - originY) * zoom)</i>.
+ */
+public final class Camera
+{
+    /** farthest the camera zooms out, currently:{@value} */
+    public static final double MIN_ZOOM = 0.25;
+    /** closest the camera zooms in, currently:{@value} */
+    public static final double MAX_ZOOM = 8.0;
+    /**
+     * battlefield units around the view still searched for actors, since an
+     * actor is filed under its top left corner but its avatar and glow reach
+     * further, currently:{@value}
+     */
+    public static final double VIEW_MARGIN = 64.0;
+
+    private double originX;
+    private double originY;
+    private double zoom = 1.0;
+    private double viewportWidth = 1.0;
+    private double viewportHeight = 1.0;
+    /** army the camera keeps centred, or null */
+    private Army followed;
+    /** world to screen; updated in place so whoever holds it follows along */
+    private final Affine transform = new Affine();
+
+    /**
+     * @param width width of the window area the battlefield is shown in
+     * @param height height of that area
+     */
+    public void setViewport(double width, double height)
+    {
+	this.viewportWidth = Math.max(1.0, width);
+	this.viewportHeight = Math.max(1.0, height);
+    }
+
+    /**
+     * moves the view by a distance in screen pixels, as when the battlefield is
+     * dragged; stops following an army
+     *
+     * @param screenDeltaX pixels the battlefield is dragged to the right
+     * @param screenDeltaY pixels the battlefield is dragged down
+     */
+    public void pan(double screenDeltaX, double screenDeltaY)
+    {
+	this.followed = null;
+	this.originX -= screenDeltaX / this.zoom;
+	this.originY -= screenDeltaY / this.zoom;
+	updateTransform();
+    }
+
+    /**
+     * zooms by <i>factor</i>, keeping the battlefield point under
+     * <i>(screenX, screenY)</i> where it is on screen
+     *
+     * @param factor more than 1.0 zooms in, less than 1.0 zooms out
+     * @param screenX horizontal screen position to zoom around
+     * @param screenY vertical screen position to zoom around
+     */
+    public void zoom(double factor, double screenX, double screenY)
+    {
+	double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, this.zoom * factor));
+	double worldX = this.originX + screenX / this.zoom;
+	double worldY = this.originY + screenY / this.zoom;
+	this.originX = worldX - screenX / newZoom;
+	this.originY = worldY - screenY / newZoom;
+	this.zoom = newZoom;
+	updateTransform();
+    }
+
+    /**
+     * keeps an army in the centre of the view from now on
+     *
+     * @param army army to follow, or null to stop following
+     */
+    public void follow(Army army)
+    {
+	this.followed = army;
+	update();
+    }
+
+    public Army getFollowed()
+    {
+	return this.followed;
+    }
+
+    /**
+     * back to the whole battlefield at its natural size
+     */
+    public void reset()
+    {
+	this.followed = null;
+	this.originX = 0.0;
+	this.originY = 0.0;
+	this.zoom = 1.0;
+	updateTransform();
+    }
+
+    /**
+     * Centres the view on the army being followed, if any; called once per
+     * frame. The centre is the mean location of its living actors, which the
+     * army keeps up to date as they move.
+     */
+    public void update()
+    {
+	if (this.followed != null && this.followed.size() > 0)
+	{
+	    this.originX = this.followed.getCentroidX() - this.viewportWidth / 2.0 / this.zoom;
+	    this.originY = this.followed.getCentroidY() - this.viewportHeight / 2.0 / this.zoom;
+	}
+	updateTransform();
+    } // end update()
+
+    /**
+     * @return battlefield coordinate at the left edge of the view
+     */
+    public double getMinX()
+    {
+	return this.originX;
+    }
+
+    /**
+     * @return battlefield coordinate at the top edge of the view
+     */
+    public double getMinY()
+    {
+	return this.originY;
+    }
+
+    /**
+     * @return battlefield coordinate at the right edge of the view
+     */
+    public double getMaxX()
+    {
+	return this.originX + this.viewportWidth / this.zoom;
+    }
+
+    /**
+     * @return battlefield coordinate at the bottom edge of the view
+     */
+    public double getMaxY()
+    {
+	return this.originY + this.viewportHeight / this.zoom;
+    }
+
+    /**
+     * adds the actors of <i>army</i> that are in view, or close enough to reach
+     * into it, to <i>out</i>; the spatial index of the army finds them without
+     * looking at the rest
+     *
+     * @param army army to search
+     * @param out list the actors are added to
+     * @return number of actors added
+     */
+    public int collectVisible(Army army, List<Actor> out)
+    {
+	return army.collectActorsWithin(getMinX() - VIEW_MARGIN, getMinY() - VIEW_MARGIN, getMaxX() + VIEW_MARGIN,
+		getMaxY() + VIEW_MARGIN, out);
+    }
+
+    /**
+     * @return screen pixels per battlefield unit
+     */
+    public double getZoom()
+    {
+	return this.zoom;
+    }
+
+    /**
+     * @return the world to screen transform; the same object for the life of the
+     * camera, changed in place as the camera moves
+     */
+    public Affine getTransform()
+    {
+	return this.transform;
+    }
+
+    private void updateTransform()
+    {
+	this.transform.setToTransform(this.zoom, 0.0, -this.originX * this.zoom, 0.0, this.zoom,
+		-this.originY * this.zoom);
+    }
+}
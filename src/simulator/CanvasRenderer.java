@@ -0,0 +1,101 @@
+package simulator;
+
+import java.nio.IntBuffer;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.transform.Affine;
+import army.Army;
+
+/**
+ * <i>CanvasRenderer</i> draws the whole battle onto a single <i>Canvas</i>
+ * once per pulse, instead of keeping one <i>Node</i> with its own
+ * <i>DropShadow</i> per actor in the scene graph. The actors are rasterised
+ * by a <i>BattlefieldRaster</i> and reach the canvas as two images, the glow
+ * stretched underneath the bodies, so a frame is two draw calls however many
+ * actors there are.
+ * <p>
+ * The canvas sits inside the battlefield, which the <i>Camera</i> transform
+ * pans and zooms, but it must stay in screen pixels to stay sharp; it is
+ * therefore given the inverse of the camera transform and the raster does the
+ * panning and zooming itself.
+ */
+final class CanvasRenderer
+{
+    private final Canvas canvas = new Canvas();
+    /** screen to world, cancelling the camera transform of the battlefield */
+    private final Affine inverseCamera = new Affine();
+    private BattlefieldRaster raster;
+    private WritableImage bodyImage;
+    private WritableImage glowImage;
+
+    CanvasRenderer()
+    {
+	this.canvas.getTransforms().add(this.inverseCamera);
+    }
+
+    /**
+     * @return the canvas to put in the scene graph
+     */
+    Canvas getCanvas()
+    {
+	return this.canvas;
+    }
+
+    /**
+     * draws one frame of the battle from the engine state of <i>armies</i>, as
+     * seen through <i>camera</i>
+     *
+     * @param width width of the view in pixels
+     * @param height height of the view in pixels
+     * @param camera camera the battle is seen through
+     * @param armies armies to draw, in the order they are stacked
+     */
+    void render(double width, double height, Camera camera, Army... armies)
+    {
+	resize((int) Math.ceil(width), (int) Math.ceil(height));
+	double zoom = camera.getZoom();
+	this.inverseCamera.setToTransform(1.0 / zoom, 0.0, camera.getMinX(), 0.0, 1.0 / zoom, camera.getMinY());
+	this.raster.setView(camera.getMinX(), camera.getMinY(), zoom);
+	this.raster.clear();
+	for (Army army : armies)
+	    this.raster.draw(army);
+	this.raster.finish();
+	PixelFormat<IntBuffer> format = PixelFormat.getIntArgbPreInstance();
+	this.bodyImage.getPixelWriter().setPixels(0, 0, this.raster.getWidth(), this.raster.getHeight(), format,
+		this.raster.getPixels(), 0, this.raster.getWidth());
+	this.glowImage.getPixelWriter().setPixels(0, 0, this.raster.getGlowWidth(), this.raster.getGlowHeight(),
+		format, this.raster.getGlowPixels(), 0, this.raster.getGlowWidth());
+	GraphicsContext graphics = this.canvas.getGraphicsContext2D();
+	graphics.clearRect(0.0, 0.0, this.canvas.getWidth(), this.canvas.getHeight());
+	graphics.drawImage(this.glowImage, 0.0, 0.0, this.raster.getGlowWidth() * BattlefieldRaster.GLOW_SCALE,
+		this.raster.getGlowHeight() * BattlefieldRaster.GLOW_SCALE); // smoothed while stretched
+	graphics.drawImage(this.bodyImage, 0.0, 0.0);
+    } // end render()
+
+    /**
+     * clears the canvas, for when the battlefield is emptied
+     */
+    void clear()
+    {
+	this.canvas.getGraphicsContext2D().clearRect(0.0, 0.0, this.canvas.getWidth(), this.canvas.getHeight());
+    }
+
+    /**
+     * builds the raster and images again when the battlefield changed size
+     */
+    private void resize(int width, int height)
+    {
+	width = Math.max(1, width);
+	height = Math.max(1, height);
+	if (this.raster != null && this.raster.getWidth() == width && this.raster.getHeight() == height)
+	    return;
+	this.raster = new BattlefieldRaster(width, height);
+	this.bodyImage = new WritableImage(width, height);
+	this.glowImage = new WritableImage(this.raster.getGlowWidth(), this.raster.getGlowHeight());
+	this.canvas.setWidth(width);
+	this.canvas.setHeight(height);
+    }
+}
@@ -6,6 +6,7 @@ import java.io.IOException;
 import javafx.application.Application;
 import javafx.scene.Group;
 import javafx.scene.Scene;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
@@ -17,6 +18,8 @@ public class FXLauncher extends Application
 {
     private Simulator simulator; // Must be a heap-oriented instance field so that MenuItem objects can make
     // repeated calls to it.
+    /** zoom factor of one notch of the mouse wheel, currently:{@value} */
+    private static final double ZOOM_STEP = 1.1;
 
     /**
      * Entry point to program execution for a JavaFX application
@@ -64,10 +67,9 @@ public class FXLauncher extends Application
 	// thus on the bottom visually. The
 	// simulator sits on top of that.
 
-	Group sceneGraphRoot = new Group(simulatorContainer, createMenuBar());// Order matters here. The
-	// simulatorContainer is first, thus on
-	// the bottom visually. The newly
-	// contructed MenuBar sits on top of that.
+	Group sceneGraphRoot = new Group(simulatorContainer, simulator.getNotifications(), createMenuBar());// Order
+	// matters here. The simulatorContainer is first, thus on the bottom visually. The death notices sit on top of
+	// that, and the newly contructed MenuBar on top of them.
 	Scene mainScene = new Scene(sceneGraphRoot, SCENEWIDTH, SCENEWIDTH * aspectRatio); // Scene needs the Parent
 	// Node (and a parent Node
 	// will have child Node
@@ -75,6 +77,22 @@ public class FXLauncher extends Application
 	// to know its initial size.
 	imageViewBackground.fitWidthProperty().bind(mainScene.widthProperty()); // resize the Background automatically,
 	// based on the Scene resizing
+	simulatorContainer.getTransforms().add(simulator.getCamera().getTransform()); // the camera pans and zooms the
+	// Background and the Simulator together
+	final double[] dragAnchor = new double[2]; // screen position the latest drag event was at
+	simulatorContainer.setOnMousePressed(event ->
+	{
+	    dragAnchor[0] = event.getSceneX();
+	    dragAnchor[1] = event.getSceneY();
+	});
+	simulatorContainer.setOnMouseDragged(event ->
+	{
+	    simulator.panCamera(event.getSceneX() - dragAnchor[0], event.getSceneY() - dragAnchor[1]);
+	    dragAnchor[0] = event.getSceneX();
+	    dragAnchor[1] = event.getSceneY();
+	});
+	mainScene.setOnScroll(event -> simulator.zoomCamera(event.getDeltaY() > 0.0 ? ZOOM_STEP : 1.0 / ZOOM_STEP,
+		event.getSceneX(), event.getSceneY()));
 
 	return mainScene;
     } // end createScene()
@@ -124,8 +142,14 @@ public class FXLauncher extends Application
 	save.setOnAction(event -> simulator.save());
 	MenuItem restore = new MenuItem("Res_tore");
 	restore.setOnAction(event -> simulator.restore());
+	MenuItem saveSnapshot = new MenuItem("Save Snapshot");
+	saveSnapshot.setOnAction(event -> simulator.saveSnapshot());
+	MenuItem openSnapshot = new MenuItem("Open Snapshot");
+	openSnapshot.setOnAction(event -> simulator.openSnapshot());
+	MenuItem recover = new MenuItem("Re_cover");
+	recover.setOnAction(event -> simulator.recover());
 	Menu menuFile = new Menu("_File");
-	menuFile.getItems().addAll(save, restore);
+	menuFile.getItems().addAll(save, restore, saveSnapshot, openSnapshot, recover);
 
 	// Create the "Run" Menu
 	MenuItem populateMenuItem = new MenuItem("_Populate");
@@ -147,6 +171,33 @@ public class FXLauncher extends Application
 												  // in the "Run"
 	// Menu
 
+	// Create the "Replay" Menu
+	MenuItem playReplayMenuItem = new MenuItem("_Play Latest Battle");
+	playReplayMenuItem.setOnAction(event -> simulator.playReplay());
+	Menu menuReplay = new Menu("Re_play");
+	menuReplay.getItems().add(playReplayMenuItem);
+	for (double speed : new double[] { 0.25, 1.0, 4.0, 16.0 })
+	{
+	    MenuItem speedMenuItem = new MenuItem(String.format("Speed x%s", speed < 1.0 ? speed : (int) speed));
+	    speedMenuItem.setOnAction(event -> simulator.setReplaySpeed(speed));
+	    menuReplay.getItems().add(speedMenuItem);
+	}
+	MenuItem skipMenuItem = new MenuItem("_Skip 10 Seconds");
+	skipMenuItem.setOnAction(event -> simulator.skipReplay(10.0));
+	menuReplay.getItems().add(skipMenuItem);
+
+	// Create the "Factions" Menu
+	Menu menuFactions = new Menu("_Factions");
+	for (int count : new int[] { 2, 3, 4, 8, 16 })
+	{
+	    MenuItem countMenuItem = new MenuItem(count + " Factions");
+	    countMenuItem.setOnAction(event -> simulator.setFactionCount(count));
+	    menuFactions.getItems().add(countMenuItem);
+	}
+	CheckMenuItem alliancesMenuItem = new CheckMenuItem("_Light and Darkness Alliances");
+	alliancesMenuItem.setOnAction(event -> simulator.setAlliances(alliancesMenuItem.isSelected()));
+	menuFactions.getItems().add(alliancesMenuItem);
+
 	// Create the "Properties" Menu
 	MenuItem openArmyListsMenuItem = new MenuItem("Show Army _Lists");
 	openArmyListsMenuItem.setOnAction(event -> simulator.openListViewWindow()); // create CALLBACK, that is, the
@@ -158,12 +209,27 @@ public class FXLauncher extends Application
 	// code to execute when triggered
 	// by user event (in this case,
 	// simulator.openListViewWindow())
+	CheckMenuItem canvasRenderingMenuItem = new CheckMenuItem("_Canvas Rendering");
+	canvasRenderingMenuItem.setOnAction(event -> simulator.setCanvasRendering(canvasRenderingMenuItem.isSelected()));
+	CheckMenuItem terrainMenuItem = new CheckMenuItem("T_errain");
+	terrainMenuItem.setSelected(true);
+	terrainMenuItem.setOnAction(event -> simulator.setTerrainEnabled(terrainMenuItem.isSelected()));
 	Menu menuProperties = new Menu("_Properties");
-	menuProperties.getItems().addAll(openArmyListsMenuItem, openArmyTablesMenuItem); // assemble MenuItems in the
-	// "Run" Menu
+	menuProperties.getItems().addAll(openArmyListsMenuItem, openArmyTablesMenuItem, canvasRenderingMenuItem,
+		terrainMenuItem); // assemble
+	// MenuItems in the "Properties" Menu
+
+	MenuItem followLightMenuItem = new MenuItem("Follow Forces of _Light");
+	followLightMenuItem.setOnAction(event -> simulator.followArmy(true));
+	MenuItem followDarknessMenuItem = new MenuItem("Follow Forces of _Darkness");
+	followDarknessMenuItem.setOnAction(event -> simulator.followArmy(false));
+	MenuItem resetCameraMenuItem = new MenuItem("_Reset Camera");
+	resetCameraMenuItem.setOnAction(event -> simulator.resetCamera());
+	Menu menuCamera = new Menu("C_amera");
+	menuCamera.getItems().addAll(followLightMenuItem, followDarknessMenuItem, resetCameraMenuItem);
 
 	// Assemble Menu objects in new MenuBar and return
-	return new MenuBar(menuFile, menuRun, menuProperties);
+	return new MenuBar(menuFile, menuRun, menuReplay, menuFactions, menuProperties, menuCamera);
     } // end createMenuBar()
 
     public static void main(String[] args)
@@ -0,0 +1,238 @@
+package simulator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import javafx.animation.AnimationTimer;
+import javafx.animation.FadeTransition;
+import javafx.animation.ParallelTransition;
+import javafx.animation.TranslateTransition;
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.util.Duration;
+import actor.Actor;
+import actor.ActorFactory;
+import army.Army;
+
+/**
+ * <i>NotificationOverlay</i> shows the death notices of the battle on top of
+ * the battlefield, in screen pixels. A death only bumps a counter, so the
+ * battle never waits for a notice to be drawn. A few times a second the
+ * counters are turned into notices: one death shows as "Dead: <i>name</i>",
+ * a burst as "Dead: 143 Orcs".
+ * <p>
+ * The notices are a fixed pool of <i>Text</i> nodes, each with its animation
+ * built once and replayed, so a wave of casualties never puts more than
+ * {@value #MAX_NOTICES} notices on screen. Deaths that find every notice busy
+ * wait for the next free one, and keep adding up meanwhile.
+ */
+public final class NotificationOverlay extends Group
+{
+    /** notices on screen at once, which is every node ever built, currently:{@value} */
+    public static final int MAX_NOTICES = 6;
+    /** seconds deaths are gathered before they are shown, currently:{@value} */
+    private static final double FLUSH_INTERVAL = 0.25;
+    private static final Duration NOTICE_DURATION = Duration.seconds(3.0);
+    private static final double NOTICE_X = 120.0;
+    private static final double NOTICE_Y = 120.0;
+    /** gap between the starting lines of two notices, currently:{@value} */
+    private static final double NOTICE_SPACING = 32.0;
+    /** how far a notice sinks while it fades, currently:{@value} */
+    private static final double NOTICE_DRIFT = 200.0;
+    private static final Font FONT = new Font("Copperplate Gothic Bold", 25.0);
+
+    private final ArrayDeque<Notice> idleNotices = new ArrayDeque<>(MAX_NOTICES);
+    private final Notice[] notices = new Notice[MAX_NOTICES];
+    /** deaths not shown yet, one entry per army and actor type */
+    private final ArrayList<Pending> pending = new ArrayList<>();
+    /** entry the next flush starts at, so no army or type is always last in line */
+    private int flushStart;
+    private final FlushTimer flushTimer = new FlushTimer();
+
+    /**
+     * turns the counted deaths into notices every {@value #FLUSH_INTERVAL}
+     * seconds; stops itself once nothing is waiting or playing
+     */
+    private class FlushTimer extends AnimationTimer
+    {
+	private long previousFlush;
+	private boolean running;
+
+	@Override
+	public void start()
+	{
+	    if (this.running)
+		return;
+	    this.running = true;
+	    this.previousFlush = -1L;
+	    super.start();
+	}
+
+	@Override
+	public void stop()
+	{
+	    this.running = false;
+	    super.stop();
+	}
+
+	@Override
+	public void handle(long now)
+	{
+	    if (this.previousFlush >= 0L && (now - this.previousFlush) / 1.0e9 < FLUSH_INTERVAL)
+		return;
+	    this.previousFlush = now;
+	    if (!flush() && idleNotices.size() == MAX_NOTICES)
+		stop();
+	}
+    } // end class FlushTimer
+
+    /**
+     * deaths of one actor type of one army since they were last shown
+     */
+    private static final class Pending
+    {
+	private final Army army;
+	private final ActorFactory.Type type;
+	private int count;
+	/** name of the first of them, shown when there is only one */
+	private String firstName;
+
+	private Pending(Army army, ActorFactory.Type type)
+	{
+	    this.army = army;
+	    this.type = type;
+	}
+    }
+
+    /**
+     * one pooled notice: its node and its animation, both reused
+     */
+    private final class Notice
+    {
+	private final Text text;
+	private final ParallelTransition transition;
+
+	private Notice(double y)
+	{
+	    this.text = new Text(NOTICE_X, y, "");
+	    this.text.setFont(FONT);
+	    this.text.setVisible(false);
+	    FadeTransition ft = new FadeTransition(NOTICE_DURATION);
+	    ft.setToValue(0.0);
+	    TranslateTransition tt = new TranslateTransition(NOTICE_DURATION);
+	    tt.setByY(NOTICE_DRIFT);
+	    this.transition = new ParallelTransition(this.text, ft, tt);
+	    this.transition.setOnFinished(event -> retire());
+	}
+
+	private void show(String message, Color color)
+	{
+	    this.text.setText(message);
+	    this.text.setStroke(color);
+	    this.text.setOpacity(1.0);
+	    this.text.setTranslateY(0.0);
+	    this.text.setVisible(true);
+	    this.transition.playFromStart();
+	}
+
+	private void retire()
+	{
+	    this.text.setVisible(false);
+	    idleNotices.add(this);
+	}
+    } // end class Notice
+
+    public NotificationOverlay()
+    {
+	setMouseTransparent(true); // the battlefield underneath is dragged through the notices
+	for (int i = 0; i < MAX_NOTICES; ++i)
+	{
+	    this.notices[i] = new Notice(NOTICE_Y + i * NOTICE_SPACING);
+	    this.idleNotices.add(this.notices[i]);
+	    getChildren().add(this.notices[i].text);
+	}
+    }
+
+    /**
+     * Counts the death of <i>actor</i> towards the next notice of its army and
+     * type. Cheap enough to call for every casualty of a mass wave; nothing is
+     * drawn here.
+     *
+     * @param actor actor that just died
+     */
+    public void reportDeath(Actor actor)
+    {
+	Army army = actor.getArmyAllegiance();
+	ActorFactory.Type type = actor.getType();
+	Pending deaths = null;
+	for (int i = 0; i < this.pending.size() && deaths == null; ++i)
+	{
+	    Pending candidate = this.pending.get(i);
+	    if (candidate.army == army && candidate.type == type)
+		deaths = candidate;
+	}
+	if (deaths == null)
+	{
+	    deaths = new Pending(army, type);
+	    this.pending.add(deaths);
+	}
+	if (deaths.count++ == 0)
+	    deaths.firstName = actor.getName();
+	this.flushTimer.start();
+    } // end reportDeath()
+
+    /**
+     * takes every notice off the screen and forgets the deaths not shown yet
+     */
+    public void clear()
+    {
+	this.flushTimer.stop();
+	this.pending.clear(); // the armies may be different ones next battle
+	this.flushStart = 0;
+	this.idleNotices.clear();
+	for (Notice notice : this.notices)
+	{
+	    notice.transition.stop();
+	    notice.text.setVisible(false);
+	    this.idleNotices.add(notice);
+	}
+    }
+
+    /**
+     * shows as many of the counted deaths as there are idle notices for
+     *
+     * @return true when deaths are still waiting for a notice
+     */
+    private boolean flush()
+    {
+	boolean waiting = false;
+	int size = this.pending.size();
+	for (int i = 0; i < size; ++i)
+	{
+	    Pending deaths = this.pending.get((this.flushStart + i) % size);
+	    if (deaths.count == 0)
+		continue;
+	    Notice notice = this.idleNotices.poll();
+	    if (notice == null)
+	    {
+		waiting = true;
+		break;
+	    }
+	    notice.show(message(deaths), deaths.army.getColor());
+	    deaths.count = 0;
+	    deaths.firstName = null;
+	}
+	this.flushStart = size == 0 ? 0 : (this.flushStart + 1) % size;
+	return waiting;
+    } // end flush()
+
+    private static String message(Pending deaths)
+    {
+	if (deaths.count == 1)
+	    return "Dead: " + deaths.firstName;
+	String typeName = deaths.type.name();
+	return "Dead: " + deaths.count + " " + typeName.charAt(0) + typeName.substring(1).toLowerCase() + "s";
+    }
+}
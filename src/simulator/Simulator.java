@@ -1,27 +1,152 @@
 package simulator;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
 
+import javax.management.JMException;
+
+import javafx.animation.AnimationTimer;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.scene.Group;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.ListView;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
+import javafx.util.Duration;
 import actor.Actor;
-import actor.ActorFactory;
 import army.Army;
+import army.Factions;
+import army.BattlefieldFile;
+import army.BattlefieldSnapshot;
+import army.Composition;
+import engine.BattleEngine;
+import engine.BattleEventPublisher;
+import engine.BattleJournal;
+import engine.ReplayPlayer;
+import engine.ReplayRecorder;
+import engine.SimulationMetrics;
+import engine.TerrainMap;
+import util.BattleRandom;
 
 public class Simulator extends Group
 {
+    /** background image the terrain is read from, currently:{@value} */
+    private static final String TERRAIN_IMAGE = "MiddleEarth-3.jpg";
+    /** file the battlefield is saved to, currently:{@value} */
+    private static final String SAVE_FILE = "battlefield.bin";
+    /** file earlier versions saved the battlefield to, currently:{@value} */
+    private static final String LEGACY_SAVE_FILE = "battlefield.ser";
+    /** memory-mapped snapshot of very large battlefields, currently:{@value} */
+    private static final String SNAPSHOT_FILE = "battlefield.snapshot";
+    /** directory the running battle is journaled to, currently:{@value} */
+    private static final String JOURNAL_DIRECTORY = "journal";
+    /** replay of the latest battle, currently:{@value} */
+    private static final String REPLAY_FILE = "battle.replay";
+    /** refreshes per second of the army list and table windows, currently:{@value} */
+    public static final double DEFAULT_VIEW_REFRESH_RATE = 5.0;
+    /** distance from the mouse to the tip of the avatar under it, currently:{@value} */
+    private static final double ACTOR_TIP_OFFSET = 12.0;
     private Stage primaryStage;
     private Army forcesOfLight;
     private Army forcesOfDarkness;
+    /** every army of the battle, the Forces of Light and of Darkness first */
+    private Army[] armies;
+    /** who fights whom among the armies */
+    private Factions factions;
+    /** true when the armies fight as two alliances, even against odd positions */
+    private boolean alliances;
+    /** ground of the background image, or null when it could not be read */
+    private TerrainMap terrain;
+    /** true when the actors walk on the terrain rather than on open ground */
+    private boolean terrainEnabled = true;
     private Stage stageListControllerWindow;
     private Stage stageTableControllerWindow;
+    /** headless engine that owns the battle; built lazily from the current armies */
+    private BattleEngine engine;
+    private final RenderLoop renderLoop = new RenderLoop();
+    /** stream of the battle; armies and engine get splits of it */
+    private BattleRandom random = new BattleRandom();
+    /** snapshot the armies were last opened from; kept mapped while it is in use */
+    private BattlefieldSnapshot snapshot;
+    /** camera rectangle the snapshot was last materialized for: min x, min y, max x, max y */
+    private final double[] materializedView = new double[4];
+    /** journal of the current engine, or null when journaling failed */
+    private BattleJournal journal;
+    /** where a recovered battle stood, until the engine that resumes it is built */
+    private BattleJournal.Recovery recovery;
+    /** records the current battle from its first tick, or null */
+    private ReplayRecorder recorder;
+    /** plays back the latest replay instead of a live battle, or null */
+    private ReplayPlayer player;
+    /** where the battle spends its time; also registered as an MXBean */
+    private final SimulationMetrics metrics = new SimulationMetrics();
+    /** events of every live battle, for whoever wants to follow it */
+    private final BattleEventPublisher eventPublisher = new BattleEventPublisher();
+    /** draws every actor onto one canvas instead of one node each, or null */
+    private CanvasRenderer canvasRenderer;
+    /** death notices, drawn over the battlefield in screen pixels */
+    private final NotificationOverlay notifications = new NotificationOverlay();
+    /** part of the battlefield that is on screen */
+    private final Camera camera = new Camera();
+    /** actors found in view by the latest render */
+    private final ArrayList<Actor> inView = new ArrayList<>();
+    /** avatars the latest render left in the scene graph */
+    private HashSet<Node> shownAvatars = new HashSet<>();
+    /** avatars of the render in progress; swapped with shownAvatars */
+    private HashSet<Node> nextShownAvatars = new HashSet<>();
+    /** avatars coming into view during the render in progress */
+    private final ArrayList<Node> enteringAvatars = new ArrayList<>();
+    /** what the army list and table windows show of each army */
+    private final ArmyViewModel lightViewModel;
+    private final ArmyViewModel darkViewModel;
+    /** refreshes the view models while a list or table window is open */
+    private Timeline viewRefresh;
+    /** tip of whichever avatar the mouse is over; built on the first hover */
+    private Tooltip actorTip;
+
+    /**
+     * <i>RenderLoop</i> runs once per JavaFX pulse. It feeds the elapsed time to
+     * the <i>BattleEngine</i> and then draws the engine state; no simulation rule
+     * lives here.
+     */
+    private class RenderLoop extends AnimationTimer
+    {
+	private long previousPulse = -1L;
+
+	@Override
+	public void start()
+	{
+	    this.previousPulse = -1L;
+	    super.start();
+	}
+
+	@Override
+	public void handle(long now)
+	{
+	    if (this.previousPulse >= 0L)
+	    {
+		if (player != null)
+		    player.advance((now - this.previousPulse) / 1.0e9);
+		else
+		    getEngine().advance((now - this.previousPulse) / 1.0e9);
+	    }
+	    this.previousPulse = now;
+	    render();
+	}
+    } // end class RenderLoop
 
     /**
      * this sets up the forces when simulator is ran ssetting their initial values
@@ -35,8 +160,32 @@ public class Simulator extends Group
 	this.forcesOfDarkness = new Army("Forces of Darkness", this, Color.RED);
 	this.forcesOfDarkness.setOpposingArmy(forcesOfLight);
 	this.forcesOfLight.setOpposingArmy(forcesOfDarkness);
+	this.armies = new Army[] { this.forcesOfLight, this.forcesOfDarkness };
+	this.factions = this.forcesOfLight.getFactions();
+	this.lightViewModel = new ArmyViewModel(this.forcesOfLight);
+	this.darkViewModel = new ArmyViewModel(this.forcesOfDarkness);
+	setViewRefreshRate(DEFAULT_VIEW_REFRESH_RATE);
+	try
+	{
+	    this.terrain = TerrainMap.read(Paths.get(TERRAIN_IMAGE), BattleEngine.BATTLEFIELD_WIDTH,
+		    BattleEngine.BATTLEFIELD_HEIGHT);
+	} catch (IOException e)
+	{
+	    e.printStackTrace(); // the actors just walk on open ground
+	}
+	this.metrics.setArmies(this.armies);
+	try
+	{
+	    this.metrics.register();
+	} catch (JMException e)
+	{
+	    e.printStackTrace(); // still available through getMetrics()
+	}
 	this.buildListViewWindow();
 	this.buildTableViewWindow();
+	// one pair of handlers for every avatar, instead of a Tooltip installed on each
+	addEventHandler(MouseEvent.MOUSE_ENTERED_TARGET, this::showActorTip);
+	addEventHandler(MouseEvent.MOUSE_EXITED_TARGET, event -> hideActorTip());
     }
 
     /**
@@ -44,10 +193,128 @@ public class Simulator extends Group
      */
     public void populate()
     {
-	this.forcesOfLight.populate(ActorFactory.Type.HOBBIT, 2);
-	this.forcesOfLight.populate(ActorFactory.Type.WIZARD, 8);
-	this.forcesOfDarkness.populate(ActorFactory.Type.NAZGUL, 4);
-	this.forcesOfDarkness.populate(ActorFactory.Type.ORC, 4);
+	for (Army army : this.armies)
+	    army.setRandom(this.random.split());
+	if (this.armies.length == 2)
+	    Composition.standard().populate(this.forcesOfLight, this.forcesOfDarkness);
+	else
+	{
+	    Composition.standard().populate(this.factions.getArmies());
+	    for (int i = 2; i < this.armies.length; ++i)
+		spreadOut(this.armies[i], i);
+	}
+	discardEngine();
+	render();
+    }
+
+    /**
+     * Turns the camp of an extra faction around the centre of the battlefield,
+     * so that the armies that share a composition do not start on top of each
+     * other: each pair of factions gets its own share of a full turn.
+     * 
+     * @param army army of the extra faction, just populated
+     * @param faction position of the army in the roster
+     */
+    private void spreadOut(Army army, int faction)
+    {
+	double width = getScene().getWidth();
+	double height = getScene().getHeight();
+	double angle = 2.0 * Math.PI * (faction / 2) / ((this.armies.length + 1) / 2);
+	double cos = Math.cos(angle);
+	double sin = Math.sin(angle);
+	for (Actor actor : army.getCollectionActors())
+	{
+	    double dx = actor.getX() - width / 2.0;
+	    double dy = actor.getY() - height / 2.0;
+	    actor.setLocation(Math.max(0.0, Math.min(width, width / 2.0 + dx * cos - dy * sin)),
+		    Math.max(0.0, Math.min(height, height / 2.0 + dx * sin + dy * cos)));
+	}
+    }
+
+    /**
+     * Sets how many factions fight the next battle. The Forces of Light and of
+     * Darkness are always the first two; the others are named after their
+     * position and take the composition of the Light at even positions and of
+     * the Darkness at odd ones. Every army is cleared. Journals, replays and
+     * saves only hold battles of two factions.
+     * 
+     * @param count factions, from 2 to <i>Factions.MAX_FACTIONS</i>
+     */
+    public void setFactionCount(int count)
+    {
+	if (count < 2 || count > Factions.MAX_FACTIONS)
+	    throw new IllegalArgumentException("a battle needs 2 to " + Factions.MAX_FACTIONS + " factions, not " + count);
+	this.renderLoop.stop();
+	releaseSnapshot();
+	for (Army army : this.armies)
+	    army.clearScreen();
+	Army[] resized = Arrays.copyOf(this.armies, count);
+	for (int i = this.armies.length; i < count; ++i)
+	    resized[i] = new Army("Faction " + (i + 1), this,
+		    Color.hsb(360.0 * (i - 2) / (Factions.MAX_FACTIONS - 2), 0.8, 1.0));
+	this.armies = resized;
+	this.factions = new Factions(resized);
+	setAlliances(this.alliances);
+	this.metrics.setArmies(this.armies);
+	this.notifications.clear();
+	discardEngine();
+	render();
+    } // end setFactionCount()
+
+    /**
+     * @param alliances true to have the armies at even positions fight those at
+     * odd positions, the Forces of Light on one side and of Darkness on the
+     * other; false to have every army fight every other one. Takes effect at
+     * once, even in the middle of a battle.
+     */
+    public void setAlliances(boolean alliances)
+    {
+	this.alliances = alliances;
+	for (int i = 0; i < this.armies.length; ++i)
+	{
+	    for (int j = i + 1; j < this.armies.length; ++j)
+		this.factions.setAllied(this.armies[i], this.armies[j], alliances && i % 2 == j % 2);
+	}
+    }
+
+    /**
+     * Has the actors walk on the terrain of the background image, slower
+     * through the ground drawn thick with ink and around it where they can, or
+     * on open ground everywhere. Takes effect with the next battle; replays
+     * and recovered battles only play out the same on the ground they were
+     * fought on.
+     * 
+     * @param terrainEnabled true to walk on the terrain
+     */
+    public void setTerrainEnabled(boolean terrainEnabled)
+    {
+	this.terrainEnabled = terrainEnabled;
+    }
+
+    /**
+     * @return the terrain the next battle is fought on, or null for open ground
+     */
+    public TerrainMap getTerrain()
+    {
+	return this.terrainEnabled ? this.terrain : null;
+    }
+
+    /**
+     * @return the roster of the current battle
+     */
+    public Factions getFactions()
+    {
+	return this.factions;
+    }
+
+    /**
+     * goes back to a battle of the Forces of Light against the Forces of
+     * Darkness, for what only knows battles of two
+     */
+    private void dropExtraFactions()
+    {
+	if (this.armies.length > 2)
+	    setFactionCount(2);
     }
 
     /**
@@ -55,14 +322,18 @@ public class Simulator extends Group
      */
     public void run()
     {
-	this.forcesOfLight.startMoving();
-	this.forcesOfDarkness.startMoving();
+	this.renderLoop.start();
     }
 
     public void clear()
     {
-	this.forcesOfLight.clearScreen();
-	this.forcesOfDarkness.clearScreen();
+	this.renderLoop.stop();
+	releaseSnapshot();
+	for (Army army : this.armies)
+	    army.clearScreen();
+	this.notifications.clear();
+	discardEngine();
+	render();
     }
 
     /**
@@ -70,9 +341,356 @@ public class Simulator extends Group
      */
     public void suspend()
     {
-	this.forcesOfLight.suspendMoving();
-	this.forcesOfDarkness.suspendMoving();
+	this.renderLoop.stop();
+    }
+
+    /**
+     * returns the engine driving the battle, building one for the actors that are
+     * currently on the battlefield if there is none yet
+     * 
+     * @return the <i>BattleEngine</i> for the current armies
+     */
+    public BattleEngine getEngine()
+    {
+	if (this.engine == null)
+	    materializeSnapshot(); // the engine cannot run on the mapped columns, only on the heap
+	if (this.engine == null && this.armies.length > 2)
+	{ // journals and replays only hold battles of two
+	    this.engine = new BattleEngine(this.factions, ForkJoinPool.commonPool(), this.random.split());
+	    this.engine.setTerrain(getTerrain());
+	    this.engine.setEventPublisher(this.eventPublisher);
+	    this.engine.setMetrics(this.metrics);
+	} else if (this.engine == null)
+	{
+	    this.engine = new BattleEngine(this.forcesOfLight, this.forcesOfDarkness, ForkJoinPool.commonPool(),
+		    this.random.split());
+	    this.engine.setTerrain(getTerrain());
+	    if (this.recovery != null)
+		this.engine.setClock(this.recovery.getTickCount(), this.recovery.getElapsedTime());
+	    this.recovery = null;
+	    this.engine.setEventPublisher(this.eventPublisher);
+	    this.engine.setMetrics(this.metrics);
+	    if (this.engine.getTickCount() == 0L)
+	    {
+		try
+		{
+		    this.recorder = new ReplayRecorder(Paths.get(REPLAY_FILE), this.engine);
+		    this.engine.addTickListener(this.recorder);
+		} catch (IOException e)
+		{
+		    e.printStackTrace(); // the battle still runs, it just is not recorded
+		}
+	    }
+	    try
+	    {
+		this.journal = new BattleJournal(Paths.get(JOURNAL_DIRECTORY), this.forcesOfLight,
+			this.forcesOfDarkness, this.engine.getTickCount(), this.engine.getElapsedTime());
+		this.engine.setJournal(this.journal);
+	    } catch (IOException e)
+	    {
+		e.printStackTrace(); // the battle still runs, it just cannot be recovered
+	    }
+	}
+	return this.engine;
+    }
+
+    /**
+     * drops the engine, and closes its journal, once the armies it was built for
+     * change
+     */
+    private void discardEngine()
+    {
+	this.engine = null;
+	this.player = null;
+	try
+	{
+	    if (this.journal != null)
+		this.journal.close();
+	    if (this.recorder != null)
+		this.recorder.close();
+	} catch (IOException e)
+	{
+	    e.printStackTrace();
+	}
+	this.journal = null;
+	this.recorder = null;
+    }
+
+    /**
+     * plays back the latest recorded battle from its start, at the current replay
+     * speed
+     */
+    public void playReplay()
+    {
+	this.renderLoop.stop();
+	releaseSnapshot();
+	double speed = this.player != null ? this.player.getSpeed() : 1.0;
+	discardEngine(); // also finishes the recording, if the latest battle is still running
+	dropExtraFactions();
+	try
+	{
+	    this.forcesOfLight.clearScreen();
+	    this.forcesOfDarkness.clearScreen();
+	    this.player = new ReplayPlayer(Paths.get(REPLAY_FILE), this.forcesOfLight, this.forcesOfDarkness,
+		    ForkJoinPool.commonPool());
+	    this.player.setSpeed(speed);
+	    this.player.setTerrain(getTerrain());
+	    this.engine = this.player.getEngine();
+	    render();
+	    this.renderLoop.start();
+	} catch (IOException e)
+	{
+	    e.printStackTrace();
+	}
+    } // end playReplay()
+
+    /**
+     * @param speed multiplier of real time for the replay being played
+     */
+    public void setReplaySpeed(double speed)
+    {
+	if (this.player != null)
+	    this.player.setSpeed(speed);
+    }
+
+    /**
+     * skips part of the replay being played; the skipped ticks are simulated
+     * without drawing a single frame
+     * 
+     * @param seconds simulated seconds to skip
+     */
+    public void skipReplay(double seconds)
+    {
+	if (this.player == null)
+	    return;
+	try
+	{
+	    this.player.seek(this.player.getTick() + Math.round(seconds / BattleEngine.TIME_STEP));
+	    this.engine = this.player.getEngine();
+	    render();
+	} catch (IOException e)
+	{
+	    e.printStackTrace();
+	}
+    }
+
+    /**
+     * restores the battle that was running when the simulator last stopped, from
+     * its latest checkpoint and journal
+     */
+    public void recover()
+    {
+	this.renderLoop.stop();
+	releaseSnapshot();
+	discardEngine();
+	dropExtraFactions();
+	try
+	{
+	    this.forcesOfLight.clearScreen();
+	    this.forcesOfDarkness.clearScreen();
+	    this.recovery = BattleJournal.recover(Paths.get(JOURNAL_DIRECTORY), this.forcesOfLight,
+		    this.forcesOfDarkness);
+	    render();
+	} catch (IOException e)
+	{
+	    e.printStackTrace();
+	}
+    }
+
+    /**
+     * seeds the battle, so the next populate and run can be reproduced exactly
+     * 
+     * @param seed seed of the battle
+     */
+    public void setSeed(long seed)
+    {
+	this.random = new BattleRandom(seed);
+    }
+
+    /**
+     * Draws the part of the battlefield the camera shows. With avatar nodes only
+     * the actors in view, found through the spatial index of their army, are
+     * kept in the scene graph and have the engine state copied onto them;
+     * avatars are added as their actors come into view and taken out as they
+     * leave it. With canvas rendering only the actors in view are drawn.
+     */
+    private void render()
+    {
+	long start = System.nanoTime();
+	this.camera.setViewport(getScene().getWidth(), getScene().getHeight());
+	this.camera.update();
+	materializeInView();
+	if (this.canvasRenderer != null)
+	    this.canvasRenderer.render(getScene().getWidth(), getScene().getHeight(), this.camera, this.armies);
+	else
+	    renderAvatars();
+	this.metrics.recordFrame(System.nanoTime() - start);
+    }
+
+    /**
+     * keeps the avatars of the actors in view, and only those, in the scene
+     * graph, and copies the engine state onto them
+     */
+    private void renderAvatars()
+    {
+	this.inView.clear();
+	for (Army army : this.armies)
+	    this.camera.collectVisible(army, this.inView);
+	for (int i = 0; i < this.inView.size(); ++i)
+	{
+	    Actor actor = this.inView.get(i);
+	    Node avatar = actor.getArmyAllegiance().getAvatar(actor);
+	    actor.updateAvatar();
+	    this.nextShownAvatars.add(avatar);
+	    if (!this.shownAvatars.remove(avatar))
+		this.enteringAvatars.add(avatar);
+	}
+	// what is left of the previous frame has gone out of view (or died)
+	if (!this.shownAvatars.isEmpty())
+	    getChildren().removeAll(this.shownAvatars);
+	if (!this.enteringAvatars.isEmpty())
+	    getChildren().addAll(this.enteringAvatars);
+	this.enteringAvatars.clear();
+	this.shownAvatars.clear();
+	HashSet<Node> swap = this.shownAvatars;
+	this.shownAvatars = this.nextShownAvatars;
+	this.nextShownAvatars = swap;
+	if (this.actorTip != null && this.actorTip.isShowing() && this.actorTip.getOwnerNode().getParent() == null)
+	    hideActorTip(); // its avatar left the scene graph under the mouse
+    } // end renderAvatars()
+
+    /**
+     * takes every avatar the camera put in the scene graph back out
+     */
+    private void hideAvatars()
+    {
+	getChildren().removeAll(this.shownAvatars);
+	this.shownAvatars.clear();
+	hideActorTip();
+    }
+
+    /**
+     * shows what the avatar the mouse just entered stands for. The text is made
+     * as the tip is shown, so it is never out of date.
+     */
+    private void showActorTip(MouseEvent event)
+    {
+	if (!(event.getTarget() instanceof Node))
+	    return;
+	Node avatar = (Node) event.getTarget();
+	if (!(avatar.getUserData() instanceof Actor))
+	    return; // the battlefield itself, or a notice
+	if (this.actorTip == null)
+	    this.actorTip = new Tooltip();
+	this.actorTip.setText(avatar.getUserData().toString());
+	this.actorTip.show(avatar, event.getScreenX() + ACTOR_TIP_OFFSET, event.getScreenY() + ACTOR_TIP_OFFSET);
+    }
+
+    private void hideActorTip()
+    {
+	if (this.actorTip != null)
+	    this.actorTip.hide();
+    }
+
+    /**
+     * @return the death notices of the battle; the overlay belongs above the
+     * node that holds this <i>Simulator</i>, outside the camera transform
+     */
+    public NotificationOverlay getNotifications()
+    {
+	return this.notifications;
+    }
+
+    /**
+     * @return tick, frame, combat and casualty metrics of the battles run by this
+     * <i>Simulator</i>; the same figures JConsole shows under
+     * {@value engine.SimulationMetrics#OBJECT_NAME}
+     */
+    public SimulationMetrics getMetrics()
+    {
+	return this.metrics;
+    }
+
+    /**
+     * @return the camera the battlefield is seen through; its transform belongs
+     * on the node that holds this <i>Simulator</i>
+     */
+    public Camera getCamera()
+    {
+	return this.camera;
+    }
+
+    /**
+     * drags the battlefield by a distance in screen pixels
+     */
+    public void panCamera(double screenDeltaX, double screenDeltaY)
+    {
+	this.camera.pan(screenDeltaX, screenDeltaY);
+	render();
+    }
+
+    /**
+     * zooms the battlefield around a screen position
+     * 
+     * @param factor more than 1.0 zooms in, less than 1.0 zooms out
+     */
+    public void zoomCamera(double factor, double screenX, double screenY)
+    {
+	this.camera.zoom(factor, screenX, screenY);
+	render();
+    }
 
+    /**
+     * keeps the Forces of Light (or of Darkness) in the centre of the screen
+     * 
+     * @param light true to follow the Forces of Light
+     */
+    public void followArmy(boolean light)
+    {
+	this.camera.follow(light ? this.forcesOfLight : this.forcesOfDarkness);
+	render();
+    }
+
+    /**
+     * shows the whole battlefield at its natural size again
+     */
+    public void resetCamera()
+    {
+	this.camera.reset();
+	render();
+    }
+
+    /**
+     * Switches between drawing every actor as its own avatar node and drawing
+     * the whole battle onto a single canvas each pulse. The canvas holds tens of
+     * thousands of actors, but has no tooltips.
+     * 
+     * @param canvasRendering true to draw onto the canvas
+     */
+    public void setCanvasRendering(boolean canvasRendering)
+    {
+	if (canvasRendering == isCanvasRendering())
+	    return;
+	if (canvasRendering)
+	{
+	    hideAvatars();
+	    this.canvasRenderer = new CanvasRenderer();
+	    getChildren().add(0, this.canvasRenderer.getCanvas()); // below the notifications
+	} else
+	{
+	    getChildren().remove(this.canvasRenderer.getCanvas());
+	    this.canvasRenderer = null;
+	}
+	render();
+    }
+
+    /**
+     * @return true while the battle is drawn onto a single canvas; the armies
+     * build no avatar nodes then
+     */
+    public boolean isCanvasRendering()
+    {
+	return this.canvasRenderer != null;
     }
 
     /**
@@ -80,7 +698,9 @@ public class Simulator extends Group
      */
     public void openListViewWindow()
     {
+	refreshViews();
 	this.stageListControllerWindow.show();
+	this.viewRefresh.play();
     }
 
     /**
@@ -88,44 +708,222 @@ public class Simulator extends Group
      */
     public void openTableViewWindow()
     {
+	refreshViews();
 	this.stageTableControllerWindow.show();
+	this.viewRefresh.play();
+
+    }
+
+    /**
+     * Sets how many times a second the army list and table windows catch up
+     * with the battle. Each refresh copies both armies once and changes each
+     * window once, however much happened in between.
+     * 
+     * @param refreshesPerSecond refresh rate, for example
+     * {@value #DEFAULT_VIEW_REFRESH_RATE}
+     */
+    public void setViewRefreshRate(double refreshesPerSecond)
+    {
+	if (refreshesPerSecond <= 0.0)
+	    throw new IllegalArgumentException("refresh rate must be positive: " + refreshesPerSecond);
+	boolean running = this.viewRefresh != null && this.viewRefresh.getStatus() == Timeline.Status.RUNNING;
+	if (this.viewRefresh != null)
+	    this.viewRefresh.stop();
+	this.viewRefresh = new Timeline(new KeyFrame(Duration.seconds(1.0 / refreshesPerSecond), event -> refreshViews()));
+	this.viewRefresh.setCycleCount(Timeline.INDEFINITE);
+	if (running)
+	    this.viewRefresh.play();
+    }
 
+    /**
+     * copies the armies into the list and table windows; stops the refreshes once
+     * both windows are closed
+     */
+    private void refreshViews()
+    {
+	boolean showing = this.stageListControllerWindow != null && this.stageListControllerWindow.isShowing()
+		|| this.stageTableControllerWindow != null && this.stageTableControllerWindow.isShowing();
+	if (!showing && this.viewRefresh.getStatus() == Timeline.Status.RUNNING)
+	{
+	    this.viewRefresh.stop();
+	    return;
+	}
+	this.lightViewModel.refresh();
+	this.darkViewModel.refresh();
     }
 
     /**
-     * use for saving actors on the screen for later
+     * use for saving actors on the screen for later; only the Forces of Light
+     * and of Darkness are saved
      */
     public void save()
     {
-	// Using a try block in case there is a file I/O error. Open a file that
-	// is configured for binary output.
-	try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream("battlefield.ser")))
+	materializeSnapshot();
+	try
 	{
-	    this.forcesOfLight.serialize(out);// "normal" method call that I created. Army class NOT serializable.
-	    this.forcesOfDarkness.serialize(out);// Actor class and ALL its subclasses are serializable.
-	} catch (Exception e)
+	    BattlefieldFile.write(Paths.get(SAVE_FILE), this.forcesOfLight, this.forcesOfDarkness);
+	} catch (IOException e)
 	{
 	    e.printStackTrace();
 	}
     } // end save()
 
     /**
-     * use to read or open saved acotrs on the screen to display
+     * use to read or open saved acotrs on the screen to display. Battlefields
+     * saved with Java serialization by earlier versions are still read when no
+     * binary save exists.
      */
     public void restore()
     {
-	// Using a try block in case there is a file I/O error. Open a file that
-	// is configured for binary input.
-	try (ObjectInputStream in = new ObjectInputStream(new FileInputStream("battlefield.ser")))
+	releaseSnapshot();
+	dropExtraFactions();
+	try
 	{
-	    this.forcesOfLight.deserialize(in);// "normal" method call that I created. Army class NOT serializable.
-	    this.forcesOfDarkness.deserialize(in);// Actor class and ALL its subclasses are serializable.
+	    if (Files.exists(Paths.get(SAVE_FILE)) || !Files.exists(Paths.get(LEGACY_SAVE_FILE)))
+		BattlefieldFile.read(Paths.get(SAVE_FILE), this.forcesOfLight, this.forcesOfDarkness);
+	    else
+		restoreLegacy();
+	    discardEngine();
+	    render();
 	} catch (Exception e)
 	{
 	    e.printStackTrace();
 	}
     } // end restore()
 
+    /**
+     * saves the Forces of Light and of Darkness to a memory-mapped snapshot, for
+     * battlefields too large to restore in one go
+     */
+    public void saveSnapshot()
+    {
+	materializeSnapshot(); // also unmaps the file before it is written again
+	try
+	{
+	    BattlefieldSnapshot.write(Paths.get(SNAPSHOT_FILE), this.forcesOfLight, this.forcesOfDarkness);
+	} catch (IOException e)
+	{
+	    e.printStackTrace();
+	}
+    }
+
+    /**
+     * maps the snapshot and materializes only the actors that are on screen; the
+     * rest stays in the file until the camera shows it, or until a battle starts
+     * or the armies are saved, which materializes every actor and closes the
+     * snapshot
+     */
+    public void openSnapshot()
+    {
+	try
+	{
+	    BattlefieldSnapshot opened = BattlefieldSnapshot.open(Paths.get(SNAPSHOT_FILE));
+	    closeSnapshot();
+	    dropExtraFactions();
+	    this.snapshot = opened;
+	    Army[] armies = { this.forcesOfLight, this.forcesOfDarkness };
+	    for (int i = 0; i < armies.length && i < opened.getArmyCount(); ++i)
+	    {
+		armies[i].clearScreen();
+		BattlefieldSnapshot.Section section = opened.getArmy(i);
+		section.attach(armies[i]);
+	    }
+	    Arrays.fill(this.materializedView, Double.NaN); // render() materializes what is on screen
+	    discardEngine();
+	    render();
+	} catch (IOException e)
+	{
+	    e.printStackTrace();
+	}
+    } // end openSnapshot()
+
+    /**
+     * @return the snapshot the armies were last opened from while some of its
+     * actors are still only in the file, or null
+     */
+    public BattlefieldSnapshot getSnapshot()
+    {
+	return this.snapshot;
+    }
+
+    /**
+     * materializes the actors of the snapshot the camera has come to show since
+     * the last call; only the Forces of Light and of Darkness are attached to it
+     */
+    private void materializeInView()
+    {
+	if (this.snapshot == null)
+	    return;
+	double[] view = { this.camera.getMinX(), this.camera.getMinY(), this.camera.getMaxX(),
+		this.camera.getMaxY() };
+	if (Arrays.equals(view, this.materializedView))
+	    return;
+	for (int i = 0; i < 2 && i < this.snapshot.getArmyCount(); ++i)
+	    this.snapshot.getArmy(i).materializeWithin(view[0], view[1], view[2], view[3]);
+	System.arraycopy(view, 0, this.materializedView, 0, view.length);
+    }
+
+    /**
+     * materializes every actor still only in the snapshot, before the armies
+     * are fought over or saved, and closes it. The engine cannot run on the
+     * mapped columns, so a battle pays for a full restore here.
+     */
+    private void materializeSnapshot()
+    {
+	if (this.snapshot == null)
+	    return;
+	for (int i = 0; i < 2 && i < this.snapshot.getArmyCount(); ++i)
+	    this.snapshot.getArmy(i).materializeAll();
+	releaseSnapshot();
+    }
+
+    /**
+     * closes the snapshot, once its actors are all materialized or the armies
+     * it filled are emptied
+     */
+    private void releaseSnapshot()
+    {
+	try
+	{
+	    closeSnapshot();
+	} catch (IOException e)
+	{
+	    e.printStackTrace();
+	}
+    }
+
+    private void closeSnapshot() throws IOException
+    {
+	if (this.snapshot != null)
+	    this.snapshot.close();
+	this.snapshot = null;
+    }
+
+    /**
+     * reads a battlefield saved with Java serialization
+     */
+    private void restoreLegacy() throws IOException, ClassNotFoundException
+    {
+	// Open a file that is configured for binary input.
+	try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(LEGACY_SAVE_FILE)))
+	{
+	    this.forcesOfLight.deserialize(in);// "normal" method call that I created. Army class NOT serializable.
+	    this.forcesOfDarkness.deserialize(in);// Actor class and ALL its subclasses are serializable.
+	}
+    }
+
+    /**
+     * Subscribers receive the events of every live battle on the common
+     * <i>ForkJoinPool</i>, as fast as they ask for them; one that falls behind
+     * loses the oldest events rather than slowing the battle.
+     * 
+     * @return the publisher of the battle events
+     */
+    public BattleEventPublisher getEventPublisher()
+    {
+	return this.eventPublisher;
+    }
+
     /**
      * get force of light actors
      * 
@@ -154,10 +952,10 @@ public class Simulator extends Group
       // the constructor
 
 	final double PREF_WIDTH = 700.0;
-	ListView<Actor> listView = new ListView<Actor>(this.forcesOfLight.getCollectionActors());
+	ListView<ArmyViewModel.Row> listView = this.lightViewModel.createListView();
 	listView.setPrefWidth(PREF_WIDTH);
 	VBox vBoxLightArmy = new VBox(5.0, new Text(" " + this.forcesOfLight.getName()), listView);
-	listView = new ListView<Actor>(this.forcesOfDarkness.getCollectionActors());
+	listView = this.darkViewModel.createListView();
 	listView.setPrefWidth(PREF_WIDTH);
 	VBox vBoxDarkArmy = new VBox(5.0, new Text(this.forcesOfDarkness.getName()), listView);
 	HBox hBoxSceneGraphRoot = new HBox(5.0, vBoxLightArmy, vBoxDarkArmy);
@@ -181,11 +979,10 @@ public class Simulator extends Group
       // the constructor
 	final double PREF_WIDTH = 470.0;
 	final double PREF_HEIGHT = 450.0;
-	VBox vBoxLightArmy = new VBox(10.0, new Text(this.forcesOfLight.getName()),
-		this.forcesOfLight.getTableViewOfActors());
+	VBox vBoxLightArmy = new VBox(10.0, new Text(this.forcesOfLight.getName()), this.lightViewModel.createTable());
 	vBoxLightArmy.setPrefWidth(PREF_WIDTH);
 	VBox vBoxDarkArmy = new VBox(10.0, new Text(this.forcesOfDarkness.getName()),
-		this.forcesOfDarkness.getTableViewOfActors());
+		this.darkViewModel.createTable());
 	vBoxDarkArmy.setPrefWidth(PREF_WIDTH);
 	HBox hBoxSceneGraphRoot = new HBox(10.0, vBoxLightArmy, vBoxDarkArmy);
 	hBoxSceneGraphRoot.setPrefWidth((PREF_WIDTH + 20) * 2);
@@ -0,0 +1,149 @@
+package util;
+
+import java.util.SplittableRandom;
+
+/**
+ * <i>BattleRandom</i> is the random number stream of one battle. Unlike
+ * <i>SingletonRandom</i> it is seeded, so the same seed replays the same
+ * battle, and it is splittable: every <i>Army</i>, and every partition of
+ * every engine tick, draws from a stream of its own instead of contending for
+ * a shared generator.
+ * <p>
+ * A <i>BattleRandom</i> is not thread-safe. Hand each worker its own stream
+ * through <i>split()</i> or <i>derive()</i>.
+ */
+public final class BattleRandom
+{
+    /** odd constant used to spread the seeds of derived streams (golden ratio) */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+    private final SplittableRandom random;
+
+    /**
+     * builds a stream with an arbitrary seed, for battles that do not need to be
+     * replayed
+     */
+    public BattleRandom()
+    {
+	this(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * @param seed seed of the stream; the same seed always yields the same values
+     */
+    public BattleRandom(long seed)
+    {
+	this.seed = seed;
+	this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * @return the seed this stream was built from
+     */
+    public long getSeed()
+    {
+	return this.seed;
+    }
+
+    /**
+     * builds an independent child stream and advances this one
+     *
+     * @return a new stream whose values do not overlap this one
+     */
+    public BattleRandom split()
+    {
+	return new BattleRandom(this.random.nextLong());
+    }
+
+    /**
+     * builds the stream for a given position in the battle, such as a tick and a
+     * partition. The result depends only on this stream's seed and the
+     * arguments, never on how many values have been drawn, so any thread can
+     * derive it at any time.
+     *
+     * @param first first coordinate, for example the tick number
+     * @param second second coordinate, for example the partition index
+     * @return the stream for that position
+     */
+    public BattleRandom derive(long first, long second)
+    {
+	long mixed = mix64(this.seed + GOLDEN_GAMMA * (mix64(first) + second + 1L));
+	return new BattleRandom(mixed);
+    }
+
+    /**
+     * @return a value in <i>[0.0, 1.0)</i>, used where the code used to call
+     * <i>Math.random()</i>
+     */
+    public double nextDouble()
+    {
+	return this.random.nextDouble();
+    }
+
+    /**
+     * @return an arbitrary long, used to seed further streams
+     */
+    public long nextLong()
+    {
+	return this.random.nextLong();
+    }
+
+    /**
+     * @param bound upper limit, exclusive
+     * @return a value in <i>[0, bound)</i>
+     */
+    public int nextInt(int bound)
+    {
+	return this.random.nextInt(bound);
+    }
+
+    /**
+     * @return a normally distributed value with mean 0.0 and standard deviation
+     * 1.0, computed with <i>StrictMath</i> so a seed gives the same values on
+     * every machine
+     */
+    public double nextGaussian()
+    {
+	double u1 = 1.0 - this.random.nextDouble(); // (0.0, 1.0], keeps log() finite
+	double u2 = this.random.nextDouble();
+	return StrictMath.sqrt(-2.0 * StrictMath.log(u1)) * StrictMath.cos(2.0 * StrictMath.PI * u2);
+    }
+
+    /**
+     * Same contract as <i>SingletonRandom.getNormalDistribution()</i>, drawn from
+     * this stream.
+     *
+     * @param lowerLimit returned values will always be greater-than-or-equal-to
+     * this value
+     * @param upperLimit returned values will always be less-than-or-equal-to this
+     * value
+     * @param standardDeviationSpread influences the shape of the "normal" curve,
+     * between 1.0 (flat) and 5.0 (sharply peaked)
+     * @return a random number that follows a normal (Gaussian) distribution within
+     * the specified range.
+     */
+    public double getNormalDistribution(double lowerLimit, double upperLimit, double standardDeviationSpread)
+    {
+	if (standardDeviationSpread < 1.0 || standardDeviationSpread > 5.0)
+	    throw new IllegalArgumentException();
+	double range = upperLimit - lowerLimit + 1.0;
+	double mean = (lowerLimit + upperLimit) / 2.0;
+	double calculatedRandom;
+	do
+	{
+	    calculatedRandom = (nextGaussian() * (range / 2.0) / standardDeviationSpread) + mean;
+	} while (calculatedRandom < lowerLimit || calculatedRandom > upperLimit);
+	return calculatedRandom;
+    } // end getNormalDistribution()
+
+    /**
+     * the finalizer of SplitMix64; turns nearby inputs into unrelated outputs
+     */
+    private static long mix64(long z)
+    {
+	z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+	z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+	return z ^ (z >>> 31);
+    }
+}
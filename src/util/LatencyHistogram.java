@@ -0,0 +1,190 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <i>LatencyHistogram</i> counts durations in nanoseconds into log-linear
+ * buckets, the way an HDR histogram does: every power of two is split into
+ * {@value #SUB_BUCKETS} equal buckets, so any percentile read back is within
+ * about 3% of the true value, from single nanoseconds up to hours, in a fixed
+ * {@value #BUCKET_COUNT} counters.
+ * <p>
+ * Recording is one atomic increment and never allocates. One thread records
+ * (the engine thread for tick times, the FX thread for frame times); any
+ * thread may read a <i>Summary</i> at any time, which may then be a recording
+ * or two behind.
+ */
+public final class LatencyHistogram
+{
+    /** log2 of the buckets per power of two, currently:{@value} */
+    private static final int SUB_BUCKET_BITS = 5;
+    /** buckets per power of two, currently:{@value} */
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** counters needed to cover every positive long, currently:{@value} */
+    public static final int BUCKET_COUNT = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private volatile long count;
+    private volatile long totalNanos;
+    private volatile long maxNanos;
+
+    /**
+     * <i>Summary</i> is what a histogram held when it was read, in
+     * milliseconds; its getters make it readable as JMX composite data.
+     */
+    public static final class Summary
+    {
+	private final long count;
+	private final double meanMillis;
+	private final double p50Millis;
+	private final double p90Millis;
+	private final double p99Millis;
+	private final double p999Millis;
+	private final double maxMillis;
+
+	private Summary(LatencyHistogram histogram)
+	{
+	    long[] counts = new long[BUCKET_COUNT];
+	    long count = 0L;
+	    for (int i = 0; i < BUCKET_COUNT; ++i)
+	    {
+		counts[i] = histogram.counts.get(i);
+		count += counts[i];
+	    }
+	    long max = histogram.maxNanos;
+	    this.count = count;
+	    this.meanMillis = count == 0L ? 0.0 : histogram.totalNanos / (double) histogram.count / 1.0e6;
+	    this.p50Millis = percentile(counts, count, max, 0.50);
+	    this.p90Millis = percentile(counts, count, max, 0.90);
+	    this.p99Millis = percentile(counts, count, max, 0.99);
+	    this.p999Millis = percentile(counts, count, max, 0.999);
+	    this.maxMillis = max / 1.0e6;
+	}
+
+	public long getCount()
+	{
+	    return this.count;
+	}
+
+	public double getMeanMillis()
+	{
+	    return this.meanMillis;
+	}
+
+	public double getP50Millis()
+	{
+	    return this.p50Millis;
+	}
+
+	public double getP90Millis()
+	{
+	    return this.p90Millis;
+	}
+
+	public double getP99Millis()
+	{
+	    return this.p99Millis;
+	}
+
+	public double getP999Millis()
+	{
+	    return this.p999Millis;
+	}
+
+	public double getMaxMillis()
+	{
+	    return this.maxMillis;
+	}
+
+	@Override
+	public String toString()
+	{
+	    return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+		    this.count, this.meanMillis, this.p50Millis, this.p90Millis, this.p99Millis, this.p999Millis,
+		    this.maxMillis);
+	}
+    } // end class Summary
+
+    /**
+     * counts one duration
+     *
+     * @param nanos the duration; negative values count as 0
+     */
+    public void record(long nanos)
+    {
+	long value = Math.max(0L, nanos);
+	this.counts.incrementAndGet(bucket(value));
+	// one recording thread, so plain read-modify-write of the volatiles is safe
+	this.count = this.count + 1L;
+	this.totalNanos = this.totalNanos + value;
+	if (value > this.maxNanos)
+	    this.maxNanos = value;
+    }
+
+    /**
+     * @return the histogram as it is now
+     */
+    public Summary getSummary()
+    {
+	return new Summary(this);
+    }
+
+    /**
+     * forgets every recording; meant for the recording thread, or for when it is
+     * idle
+     */
+    public void reset()
+    {
+	for (int i = 0; i < BUCKET_COUNT; ++i)
+	    this.counts.set(i, 0L);
+	this.count = 0L;
+	this.totalNanos = 0L;
+	this.maxNanos = 0L;
+    }
+
+    /**
+     * The first {@value #SUB_BUCKETS} buckets hold 0 to SUB_BUCKETS - 1
+     * exactly. Above that the bucket is given by the position of the highest
+     * set bit and the {@value #SUB_BUCKET_BITS} bits below it.
+     */
+    static int bucket(long value)
+    {
+	if (value < SUB_BUCKETS)
+	    return (int) value;
+	int exponent = 63 - Long.numberOfLeadingZeros(value);
+	int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+	return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + mantissa;
+    }
+
+    /**
+     * @return the largest value that falls into <i>bucket</i>
+     */
+    static long highestValue(int bucket)
+    {
+	if (bucket < SUB_BUCKETS)
+	    return bucket;
+	int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+	long mantissa = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+	long lowest = (SUB_BUCKETS + mantissa) << (exponent - SUB_BUCKET_BITS);
+	return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1L;
+    }
+
+    /**
+     * @return the value at or below which <i>quantile</i> of the recordings
+     * fall, in milliseconds; never above the largest recording
+     */
+    private static double percentile(long[] counts, long count, long max, double quantile)
+    {
+	if (count == 0L)
+	    return 0.0;
+	long rank = Math.max(1L, (long) Math.ceil(quantile * count));
+	long seen = 0L;
+	for (int i = 0; i < counts.length; ++i)
+	{
+	    seen += counts[i];
+	    if (seen >= rank)
+		return Math.min(highestValue(i), max) / 1.0e6;
+	}
+	return max / 1.0e6;
+    }
+}
@@ -5,7 +5,12 @@ import java.util.Random;
 /**
  * <i>Singleton</i> class that provides a simplified interface to random number
  * generation using a Gaussian (normal) distribution.
+ * 
+ * @deprecated one unseeded generator shared by every thread can neither be
+ * replayed nor used by parallel workers without contention; draw from the
+ * <i>BattleRandom</i> of the battle instead.
  */
+@Deprecated
 public class SingletonRandom
 {
     /**
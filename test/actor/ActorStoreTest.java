@@ -0,0 +1,216 @@
+package actor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the running totals of an <i>ActorStore</i> agree with the totals
+ * recomputed from its columns after every kind of change to them.
+ */
+public class ActorStoreTest
+{
+    private static final double DELTA = 1.0e-9;
+
+    private ActorStore store;
+
+    @Before
+    public void setUp()
+    {
+	this.store = new ActorStore(2); // small, so the tests also grow the columns
+    }
+
+    @Test
+    public void emptyStoreHasNoTotals()
+    {
+	assertEquals(0, this.store.getAliveCount());
+	assertEquals(0.0, this.store.getTotalHealth(), 0.0);
+	assertAggregates(this.store);
+    }
+
+    @Test
+    public void allocateCountsTheNewActor()
+    {
+	int hobbit = this.store.allocate(ActorFactory.Type.HOBBIT);
+	this.store.allocate(ActorFactory.Type.ORC);
+	this.store.allocate(ActorFactory.Type.ORC);
+	assertEquals(0, hobbit);
+	assertEquals(3, this.store.size());
+	assertEquals(3, this.store.getAliveCount());
+	assertEquals(1, this.store.getAliveCount(ActorFactory.Type.HOBBIT));
+	assertEquals(2, this.store.getAliveCount(ActorFactory.Type.ORC));
+	assertEquals(0, this.store.getAliveCount(ActorFactory.Type.NAZGUL));
+	assertAggregates(this.store);
+    }
+
+    @Test
+    public void reservedActorsOnlyCountOnceActivated()
+    {
+	this.store.allocate(ActorFactory.Type.WIZARD);
+	int first = this.store.reserve(ActorFactory.Type.NAZGUL, 5);
+	assertEquals(1, first);
+	assertEquals(6, this.store.size());
+	for (int id = first; id < first + 5; ++id)
+	{
+	    assertFalse(this.store.isAlive(id));
+	    this.store.setHealth(id, 10.0 * id);
+	    this.store.setStrength(id, id);
+	}
+	assertEquals(1, this.store.getAliveCount());
+	assertEquals(0, this.store.getAliveCount(ActorFactory.Type.NAZGUL));
+	assertEquals(0.0, this.store.getTotalHealth(), DELTA);
+	assertAggregates(this.store);
+
+	this.store.activate(first, 5);
+	assertEquals(6, this.store.getAliveCount());
+	assertEquals(5, this.store.getAliveCount(ActorFactory.Type.NAZGUL));
+	assertEquals(10.0 * (1 + 2 + 3 + 4 + 5), this.store.getTotalHealth(), DELTA);
+	assertEquals(1 + 2 + 3 + 4 + 5, this.store.getTotalStrength(ActorFactory.Type.NAZGUL), DELTA);
+	assertAggregates(this.store);
+    }
+
+    @Test
+    public void setHealthAndStrengthAdjustTotals()
+    {
+	int hobbit = this.store.allocate(ActorFactory.Type.HOBBIT);
+	int orc = this.store.allocate(ActorFactory.Type.ORC);
+	this.store.setHealth(hobbit, 30.0);
+	this.store.setHealth(orc, 50.0);
+	this.store.setStrength(hobbit, 4.0);
+	this.store.setStrength(orc, 9.0);
+	assertEquals(80.0, this.store.getTotalHealth(), DELTA);
+	assertAggregates(this.store);
+
+	this.store.setHealth(orc, 12.5);
+	this.store.setStrength(hobbit, 1.5);
+	assertEquals(42.5, this.store.getTotalHealth(), DELTA);
+	assertEquals(1.5, this.store.getTotalStrength(ActorFactory.Type.HOBBIT), DELTA);
+	assertEquals(9.0, this.store.getTotalStrength(ActorFactory.Type.ORC), DELTA);
+	assertAggregates(this.store);
+    }
+
+    @Test
+    public void deadActorsLeaveTheTotals()
+    {
+	int hobbit = this.store.allocate(ActorFactory.Type.HOBBIT);
+	int orc = this.store.allocate(ActorFactory.Type.ORC);
+	this.store.setHealth(hobbit, 30.0);
+	this.store.setHealth(orc, 50.0);
+	this.store.setStrength(orc, 9.0);
+
+	this.store.setAlive(orc, false);
+	assertEquals(1, this.store.getAliveCount());
+	assertEquals(0, this.store.getAliveCount(ActorFactory.Type.ORC));
+	assertEquals(30.0, this.store.getTotalHealth(), DELTA);
+	assertEquals(0.0, this.store.getTotalStrength(ActorFactory.Type.ORC), DELTA);
+	assertAggregates(this.store);
+
+	this.store.setHealth(orc, -5.0); // changes to the dead do not count
+	this.store.setAlive(orc, false); // nor does dying twice
+	assertEquals(30.0, this.store.getTotalHealth(), DELTA);
+	assertAggregates(this.store);
+
+	this.store.setAlive(orc, true);
+	assertEquals(25.0, this.store.getTotalHealth(), DELTA);
+	assertEquals(9.0, this.store.getTotalStrength(ActorFactory.Type.ORC), DELTA);
+	assertAggregates(this.store);
+
+	this.store.setAlive(hobbit, false);
+	this.store.setAlive(orc, false);
+	assertEquals(0, this.store.getAliveCount());
+	assertEquals(0.0, this.store.getTotalHealth(), 0.0); // exactly zero, not rounding leftovers
+	assertAggregates(this.store);
+    }
+
+    @Test
+    public void copyFromCarriesEveryColumn()
+    {
+	ActorStore source = new ActorStore();
+	int living = source.allocate(ActorFactory.Type.WIZARD);
+	source.setHealth(living, 70.0);
+	source.setStrength(living, 6.0);
+	source.setSpeed(living, 3.0);
+	source.setLocation(living, 100.0, 200.0);
+	int dead = source.allocate(ActorFactory.Type.ORC);
+	source.setHealth(dead, 40.0);
+	source.setAlive(dead, false);
+
+	this.store.allocate(ActorFactory.Type.HOBBIT);
+	int copy = this.store.copyFrom(source, living);
+	int deadCopy = this.store.copyFrom(source, dead);
+	assertEquals(ActorFactory.Type.WIZARD, this.store.getType(copy));
+	assertEquals(70.0, this.store.getHealth(copy), 0.0);
+	assertEquals(6.0, this.store.getStrength(copy), 0.0);
+	assertEquals(3.0, this.store.getSpeed(copy), 0.0);
+	assertEquals(100.0, this.store.getX(copy), 0.0);
+	assertEquals(200.0, this.store.getY(copy), 0.0);
+	assertTrue(this.store.isAlive(copy));
+	assertFalse(this.store.isAlive(deadCopy));
+	assertEquals(2, this.store.getAliveCount());
+	assertEquals(0, this.store.getAliveCount(ActorFactory.Type.ORC));
+	assertEquals(70.0, this.store.getTotalHealth(), DELTA);
+	assertAggregates(this.store);
+	assertAggregates(source);
+    }
+
+    @Test
+    public void manyRandomChangesKeepTotalsRight()
+    {
+	java.util.Random random = new java.util.Random(42L);
+	ActorFactory.Type[] types = { ActorFactory.Type.HOBBIT, ActorFactory.Type.WIZARD, ActorFactory.Type.ORC,
+		ActorFactory.Type.NAZGUL };
+	for (int i = 0; i < 1_000; ++i)
+	    this.store.allocate(types[random.nextInt(types.length)]);
+	for (int i = 0; i < 20_000; ++i)
+	{
+	    int id = random.nextInt(this.store.size());
+	    switch (random.nextInt(3))
+	    {
+	    case 0:
+		this.store.setHealth(id, 100.0 * random.nextDouble());
+		break;
+	    case 1:
+		this.store.setStrength(id, 10.0 * random.nextDouble());
+		break;
+	    default:
+		this.store.setAlive(id, random.nextBoolean());
+	    }
+	}
+	assertAggregates(this.store);
+    }
+
+    /**
+     * recomputes every total from the columns, one actor at a time, and
+     * compares it with the running one
+     */
+    public static void assertAggregates(ActorStore store)
+    {
+	ActorFactory.Type[] types = ActorFactory.Type.values();
+	int alive = 0;
+	int[] aliveByType = new int[types.length];
+	double health = 0.0;
+	double[] strengthByType = new double[types.length];
+	for (int id = 0; id < store.size(); ++id)
+	{
+	    if (!store.isAlive(id))
+		continue;
+	    ++alive;
+	    ++aliveByType[store.getType(id).ordinal()];
+	    health += store.getHealth(id);
+	    strengthByType[store.getType(id).ordinal()] += store.getStrength(id);
+	}
+	assertEquals("living actors", alive, store.getAliveCount());
+	assertEquals("total health", health, store.getTotalHealth(), 1.0e-6 * Math.max(1.0, Math.abs(health)));
+	for (ActorFactory.Type type : types)
+	{
+	    double strength = strengthByType[type.ordinal()];
+	    assertEquals("living " + type, aliveByType[type.ordinal()], store.getAliveCount(type));
+	    assertEquals("strength of " + type, strength, store.getTotalStrength(type),
+		    1.0e-6 * Math.max(1.0, Math.abs(strength)));
+	}
+	assertTrue("aggregatesMatch()", store.aggregatesMatch());
+    } // end assertAggregates()
+}
@@ -0,0 +1,115 @@
+package army;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import javafx.scene.paint.Color;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import actor.Actor;
+import actor.ActorFactory;
+import actor.ActorStoreTest;
+import actor.Hobbit;
+import actor.Nazgul;
+import actor.Orc;
+import actor.Wizard;
+
+/**
+ * Restores the <i>battlefield.ser</i> checked in with the project, which the
+ * first version wrote with Java serialization, the way
+ * <i>Simulator.restore()</i> falls back to it when there is no binary save.
+ * Runs from the project directory.
+ */
+public class LegacySaveTest
+{
+    private static final String LEGACY_SAVE_FILE = "battlefield.ser";
+    private static final double DELTA = 1.0e-9;
+
+    private Army light;
+    private Army dark;
+
+    @Before
+    public void setUp() throws IOException, ClassNotFoundException
+    {
+	this.light = new Army("light", Color.WHITE);
+	this.dark = new Army("dark", Color.WHITE);
+	try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(Paths.get(LEGACY_SAVE_FILE))))
+	{
+	    this.light.deserialize(in);
+	    this.dark.deserialize(in);
+	    assertEquals("end of the file", -1, in.read());
+	}
+    }
+
+    @Test
+    public void armiesKeepTheirNamesAndActors()
+    {
+	assertEquals("Forces of Light", this.light.getName());
+	assertEquals(10, this.light.size());
+	assertEquals(2, countOf(this.light, Hobbit.class));
+	assertEquals(8, countOf(this.light, Wizard.class));
+	assertEquals("Forces of Darkness", this.dark.getName());
+	assertEquals(Color.RED, this.dark.getColor());
+	assertEquals(8, this.dark.size());
+	assertEquals(4, countOf(this.dark, Nazgul.class));
+	assertEquals(4, countOf(this.dark, Orc.class));
+    }
+
+    @Test
+    public void actorsKeepTheirState()
+    {
+	Actor first = this.light.getCollectionActors().get(0);
+	assertEquals("Hobbit1", first.getName());
+	assertTrue(first.hasDefaultName());
+	assertEquals(62.9, first.getHealth(), 0.05);
+	assertEquals(56.9, first.getStrength(), 0.05);
+	assertEquals(67.9, first.getSpeed(), 0.05);
+	assertEquals(444.1639525390001, first.getX(), DELTA);
+	assertEquals(176.26252268601027, first.getY(), DELTA);
+	Orc orc = (Orc) this.dark.getCollectionActors().get(4);
+	assertEquals("Orc15", orc.getName());
+	assertTrue(orc.toString().contains("hasAXE: true"));
+	for (Army army : new Army[] { this.light, this.dark })
+	{
+	    for (Actor actor : army.getCollectionActors())
+	    {
+		assertTrue(actor.getName(), actor.hasDefaultName());
+		assertTrue(actor.getName(), actor.isAlive());
+	    }
+	    ActorStoreTest.assertAggregates(army.getStore());
+	    assertTrue(army.getName() + " aggregatesMatch()", army.aggregatesMatch());
+	}
+    }
+
+    @Test
+    public void newActorsAreNumberedPastTheRestoredOnes()
+    {
+	for (int i = 0; i < 20; ++i) // enough to reach Orc15 to Orc18 from a fresh counter
+	{
+	    Actor actor = ActorFactory.Type.ORC.create(null);
+	    for (Actor restored : this.dark.getCollectionActors())
+		assertFalse(actor.getName(), actor.getName().equals(restored.getName()));
+	}
+    }
+
+    private static int countOf(Army army, Class<? extends Actor> type)
+    {
+	int count = 0;
+	List<Actor> actors = army.getCollectionActors();
+	for (Actor actor : actors)
+	{
+	    if (type.isInstance(actor))
+		++count;
+	}
+	return count;
+    }
+}
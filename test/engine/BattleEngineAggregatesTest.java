@@ -0,0 +1,66 @@
+package engine;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import javafx.scene.paint.Color;
+
+import org.junit.Test;
+
+import actor.Actor;
+import actor.ActorFactory;
+import actor.ActorStoreTest;
+import army.Army;
+import util.BattleRandom;
+
+/**
+ * Fights headless battles until actors die and checks that the running totals
+ * of both armies still agree with the totals recomputed from their actors.
+ */
+public class BattleEngineAggregatesTest
+{
+    private static final int ARMY_SIZE = 2_000;
+    private static final int MAX_TICKS = 3_000;
+
+    @Test
+    public void aggregatesSurviveABattleWithDeaths()
+    {
+	for (long seed = 1L; seed <= 3L; ++seed)
+	{
+	    BattleRandom random = new BattleRandom(seed);
+	    Army light = army("Forces of Light", Color.AQUA, ActorFactory.Type.HOBBIT, ActorFactory.Type.WIZARD, random);
+	    Army dark = army("Forces of Darkness", Color.RED, ActorFactory.Type.ORC, ActorFactory.Type.NAZGUL, random);
+	    light.setOpposingArmy(dark);
+	    dark.setOpposingArmy(light);
+	    BattleEngine engine = new BattleEngine(light, dark, ForkJoinPool.commonPool(), random.split());
+	    for (int tick = 0; tick < MAX_TICKS && !engine.isBattleOver(); ++tick)
+		engine.step(BattleEngine.TIME_STEP);
+
+	    assertTrue("actors died with seed " + seed,
+		    light.getAliveCount() + dark.getAliveCount() < 2 * ARMY_SIZE);
+	    for (Army army : new Army[] { light, dark })
+	    {
+		ActorStoreTest.assertAggregates(army.getStore());
+		assertTrue(army.getName() + " aggregatesMatch()", army.aggregatesMatch());
+	    }
+	}
+    } // end aggregatesSurviveABattleWithDeaths()
+
+    /**
+     * fills a headless army with two types in equal parts and scatters it over
+     * the whole battlefield
+     */
+    private static Army army(String name, Color color, ActorFactory.Type first, ActorFactory.Type second,
+	    BattleRandom random)
+    {
+	Army army = new Army(name, color);
+	army.setRandom(random.split());
+	army.populate(first, ARMY_SIZE / 2);
+	army.populate(second, ARMY_SIZE - ARMY_SIZE / 2);
+	for (Actor actor : army.getCollectionActors())
+	    actor.setLocation(random.nextDouble() * BattleEngine.BATTLEFIELD_WIDTH,
+		    random.nextDouble() * BattleEngine.BATTLEFIELD_HEIGHT);
+	return army;
+    }
+}
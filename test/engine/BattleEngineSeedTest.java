@@ -0,0 +1,83 @@
+package engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import army.Army;
+
+/**
+ * Fights a seeded battle twice, journalling both, and checks that the seed
+ * alone reproduces the battle: the same actor columns bit for bit at the end,
+ * and the same checkpoint and journal byte for byte.
+ */
+public class BattleEngineSeedTest
+{
+    private static final long SEED = 42L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void aSeedReproducesTheBattle() throws IOException
+    {
+	Path firstJournal = this.folder.newFolder("first").toPath();
+	Path secondJournal = this.folder.newFolder("second").toPath();
+	BattleEngine first = fight(firstJournal);
+	BattleEngine second = fight(secondJournal);
+	assertTrue("actors died", Battles.deaths(first) > 0);
+	Battles.assertSameBattle(first, second);
+
+	String[] files = firstJournal.toFile().list();
+	Arrays.sort(files);
+	String[] secondFiles = secondJournal.toFile().list();
+	Arrays.sort(secondFiles);
+	assertArrayEquals("journal files", files, secondFiles);
+	assertTrue("a checkpoint and a journal", files.length >= 2);
+	for (String file : files)
+	    assertArrayEquals(file, Files.readAllBytes(firstJournal.resolve(file)),
+		    Files.readAllBytes(secondJournal.resolve(file)));
+    }
+
+    @Test
+    public void anotherSeedFightsAnotherBattle()
+    {
+	BattleEngine first = Battles.newBattle(SEED, ForkJoinPool.commonPool());
+	BattleEngine other = Battles.newBattle(SEED + 1L, ForkJoinPool.commonPool());
+	Army army = first.getFactions().get(0);
+	Army otherArmy = other.getFactions().get(0);
+	assertEquals(army.size(), otherArmy.size());
+	boolean differs = false;
+	for (int id = 0; id < army.getStore().size() && !differs; ++id)
+	    differs = army.getStore().getX(id) != otherArmy.getStore().getX(id);
+	assertTrue("the seed decides where the actors stand", differs);
+    }
+
+    /**
+     * fights the battle of <i>SEED</i> on the common pool, journalling it into
+     * <i>directory</i>
+     */
+    private static BattleEngine fight(Path directory) throws IOException
+    {
+	BattleEngine engine = Battles.newBattle(SEED, ForkJoinPool.commonPool());
+	Army light = engine.getFactions().get(0);
+	Army dark = engine.getFactions().get(1);
+	try (BattleJournal journal = new BattleJournal(directory, light, dark, 0L, 0.0))
+	{
+	    engine.setJournal(journal);
+	    Battles.fight(engine);
+	    engine.setJournal(null);
+	}
+	return engine;
+    }
+}
@@ -0,0 +1,41 @@
+package engine;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Fights the same seeded battle on a single thread and on several, and checks
+ * that the fork/join engine leaves every actor column the same bit for bit,
+ * whatever the number of threads.
+ */
+public class BattleEngineThreadCountTest
+{
+    private static final long SEED = 7L;
+    private static final int[] THREAD_COUNTS = { 2, 4 };
+
+    @Test
+    public void anyThreadCountFightsTheSameBattle()
+    {
+	BattleEngine single = fight(1);
+	assertTrue("actors died", Battles.deaths(single) > 0);
+	for (int threads : THREAD_COUNTS)
+	    Battles.assertSameBattle(single, fight(threads));
+    }
+
+    private static BattleEngine fight(int threads)
+    {
+	ForkJoinPool pool = new ForkJoinPool(threads);
+	try
+	{
+	    BattleEngine engine = Battles.newBattle(SEED, pool);
+	    Battles.fight(engine);
+	    return engine;
+	} finally
+	{
+	    pool.shutdown();
+	}
+    }
+}
@@ -0,0 +1,127 @@
+package engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import javafx.scene.paint.Color;
+
+import actor.Actor;
+import actor.ActorFactory;
+import actor.ActorStore;
+import army.Army;
+import util.BattleRandom;
+
+/**
+ * Builds the seeded headless battles the engine tests fight, and compares
+ * what two of them leave behind bit for bit.
+ */
+final class Battles
+{
+    /** actors in each army, currently:{@value} */
+    static final int ARMY_SIZE = 2_000;
+    /** ticks fought unless the battle ends first (25 s), currently:{@value} */
+    static final int MAX_TICKS = 1_500;
+
+    private Battles()
+    {
+    }
+
+    /**
+     * sets up a battle of the Forces of Light against the Forces of Darkness,
+     * drawn from nothing but <i>seed</i>
+     *
+     * @param pool pool the engine runs its partitions on
+     * @return the engine, before its first tick
+     */
+    static BattleEngine newBattle(long seed, ForkJoinPool pool)
+    {
+	BattleRandom random = new BattleRandom(seed);
+	Army light = army("Forces of Light", Color.AQUA, ActorFactory.Type.HOBBIT, ActorFactory.Type.WIZARD, random);
+	Army dark = army("Forces of Darkness", Color.RED, ActorFactory.Type.ORC, ActorFactory.Type.NAZGUL, random);
+	light.setOpposingArmy(dark);
+	dark.setOpposingArmy(light);
+	return new BattleEngine(light, dark, pool, random.split());
+    }
+
+    /**
+     * runs <i>MAX_TICKS</i> ticks, or fewer if the battle ends first
+     */
+    static void fight(BattleEngine engine)
+    {
+	for (int tick = 0; tick < MAX_TICKS && !engine.isBattleOver(); ++tick)
+	    engine.step(BattleEngine.TIME_STEP);
+    }
+
+    /**
+     * @return actors of the battle that died so far
+     */
+    static int deaths(BattleEngine engine)
+    {
+	int deaths = 0;
+	for (Army army : engine.getFactions().getArmies())
+	    deaths += ARMY_SIZE - army.size();
+	return deaths;
+    }
+
+    /**
+     * Asserts that two battles stand at the same tick with every column of
+     * every army the same, down to the last bit of each double, and with the
+     * same actors left in the same order.
+     */
+    static void assertSameBattle(BattleEngine expected, BattleEngine actual)
+    {
+	assertEquals("ticks", expected.getTickCount(), actual.getTickCount());
+	assertEquals("elapsed time", Double.doubleToRawLongBits(expected.getElapsedTime()),
+		Double.doubleToRawLongBits(actual.getElapsedTime()));
+	List<Army> expectedArmies = expected.getFactions().getArmies();
+	List<Army> actualArmies = actual.getFactions().getArmies();
+	assertEquals("armies", expectedArmies.size(), actualArmies.size());
+	for (int i = 0; i < expectedArmies.size(); ++i)
+	{
+	    Army army = expectedArmies.get(i);
+	    ActorStore expectedStore = army.getStore();
+	    ActorStore actualStore = actualArmies.get(i).getStore();
+	    assertEquals(army.getName() + " store size", expectedStore.size(), actualStore.size());
+	    for (int id = 0; id < expectedStore.size(); ++id)
+	    {
+		String actor = army.getName() + " actor " + id;
+		assertEquals(actor + " type", expectedStore.getType(id), actualStore.getType(id));
+		assertEquals(actor + " alive", expectedStore.isAlive(id), actualStore.isAlive(id));
+		assertBits(actor + " health", expectedStore.getHealth(id), actualStore.getHealth(id));
+		assertBits(actor + " strength", expectedStore.getStrength(id), actualStore.getStrength(id));
+		assertBits(actor + " speed", expectedStore.getSpeed(id), actualStore.getSpeed(id));
+		assertBits(actor + " x", expectedStore.getX(id), actualStore.getX(id));
+		assertBits(actor + " y", expectedStore.getY(id), actualStore.getY(id));
+	    }
+	    List<Actor> expectedActors = army.getCollectionActors();
+	    List<Actor> actualActors = actualArmies.get(i).getCollectionActors();
+	    assertEquals(army.getName() + " actors left", expectedActors.size(), actualActors.size());
+	    for (int j = 0; j < expectedActors.size(); ++j)
+		assertEquals(army.getName() + " actor at " + j, expectedActors.get(j).getId(), actualActors.get(j).getId());
+	}
+    } // end assertSameBattle()
+
+    private static void assertBits(String message, double expected, double actual)
+    {
+	assertEquals(message, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+    }
+
+    /**
+     * fills a headless army with two types in equal parts and scatters it over
+     * the whole battlefield
+     */
+    private static Army army(String name, Color color, ActorFactory.Type first, ActorFactory.Type second,
+	    BattleRandom random)
+    {
+	Army army = new Army(name, color);
+	army.setRandom(random.split());
+	army.populate(first, ARMY_SIZE / 2);
+	army.populate(second, ARMY_SIZE - ARMY_SIZE / 2);
+	for (Actor actor : army.getCollectionActors())
+	    actor.setLocation(random.nextDouble() * BattleEngine.BATTLEFIELD_WIDTH,
+		    random.nextDouble() * BattleEngine.BATTLEFIELD_HEIGHT);
+	return army;
+    }
+}